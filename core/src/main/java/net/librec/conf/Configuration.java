@@ -35,6 +35,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides access to configuration parameters.
@@ -68,6 +69,10 @@ public class Configuration implements Iterable<Map.Entry<String, String>> {
     private static final ConcurrentMap<ClassLoader, Map<String, Class<?>>> CACHE_CLASSES = new ConcurrentHashMap<ClassLoader, Map<String, Class<?>>>();
     private Properties properties;
     private ClassLoader classLoader;
+    /**
+     * the number of changes of the parameters, see {@link #getVersion()}
+     */
+    private final AtomicLong version = new AtomicLong();
 
     {
         classLoader = Thread.currentThread().getContextClassLoader();
@@ -121,6 +126,26 @@ public class Configuration implements Iterable<Map.Entry<String, String>> {
         this.loadDefaults = loadDefaults;
     }
 
+    /**
+     * A new configuration with the same resources and parameters as
+     * {@code other}. Later changes of either configuration are not reflected
+     * by the other one.
+     *
+     * @param other the configuration to copy
+     */
+    public Configuration(Configuration other) {
+        this.loadDefaults = other.loadDefaults;
+        this.classLoader = other.classLoader;
+        Properties props = other.getProps();
+        synchronized (other) {
+            this.resources = new ArrayList<Resource>(other.resources);
+        }
+        this.properties = new Properties();
+        synchronized (props) {
+            overlay(this.properties, props);
+        }
+    }
+
     public static class Resource {
         private final Object resource;
         private final String name;
@@ -182,6 +207,7 @@ public class Configuration implements Iterable<Map.Entry<String, String>> {
     public synchronized void addResource(Resource resource) {
         loadProperty(getProps(), resource);
         resources.add(resource);
+        version.incrementAndGet();
     }
 
     private void overlay(Properties to, Properties from) {
@@ -198,6 +224,7 @@ public class Configuration implements Iterable<Map.Entry<String, String>> {
      */
     public void set(String name, String value) {
         getProps().setProperty(name, value);
+        version.incrementAndGet();
     }
 
     public String get(String name) {
@@ -416,6 +443,31 @@ public class Configuration implements Iterable<Map.Entry<String, String>> {
         }
     }
 
+    /**
+     * Take an immutable copy of the current parameters, see
+     * {@link ConfigurationSnapshot}. Later changes of this configuration are
+     * not reflected by the snapshot.
+     *
+     * @return the snapshot of the parameters
+     */
+    public ConfigurationSnapshot snapshot() {
+        Properties props = getProps();
+        synchronized (props) {
+            return new ConfigurationSnapshot(props, version.get());
+        }
+    }
+
+    /**
+     * Get the version of the parameters, which increases on every change by
+     * {@link #set(String, String)} or {@link #addResource(Resource)}. Values
+     * resolved from this configuration are stale once its version changes.
+     *
+     * @return the version of the parameters
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     protected synchronized Properties getProps() {
         if (properties == null) {
             properties = new Properties();
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.conf;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable copy of the parameters of a {@link Configuration}, taken by
+ * {@link Configuration#snapshot()}.
+ * <p>
+ * The parameters of a configuration are held in a synchronized
+ * {@link Properties} and parsed on every read. The values of a snapshot are
+ * parsed once when it is taken, and it is read without locks, so it may be
+ * shared by threads. Components should still resolve their parameters into
+ * fields once, when they are set up, rather than read them in their inner
+ * loops.
+ */
+public final class ConfigurationSnapshot {
+    private final Map<String, String> values;
+    private final Map<String, Value> parsedValues;
+    private final long version;
+
+    ConfigurationSnapshot(Properties properties, long version) {
+        Map<String, String> copy = new HashMap<>();
+        Map<String, Value> parsedCopy = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            copy.put(name, value);
+            if (StringUtils.isNotBlank(value)) {
+                parsedCopy.put(name, new Value(value));
+            }
+        }
+        this.values = Collections.unmodifiableMap(copy);
+        this.parsedValues = parsedCopy;
+        this.version = version;
+    }
+
+    /**
+     * @return the version of the configuration when the snapshot was taken,
+     * see {@link Configuration#getVersion()}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param name property name
+     * @return true if the property is set to a non blank value
+     */
+    public boolean contains(String name) {
+        return parsedValues.containsKey(name);
+    }
+
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        Value value = parsedValues.get(name);
+        return value != null ? value.text : defaultValue;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        Value value = parsedValues.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.longValue == null || value.longValue != value.longValue.intValue()) {
+            throw new NumberFormatException("For input string: \"" + value.text + "\"");
+        }
+        return value.longValue.intValue();
+    }
+
+    public long getLong(String name, long defaultValue) {
+        Value value = parsedValues.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.longValue == null) {
+            throw new NumberFormatException("For input string: \"" + value.text + "\"");
+        }
+        return value.longValue;
+    }
+
+    public float getFloat(String name, float defaultValue) {
+        Value value = parsedValues.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.floatValue == null) {
+            throw new NumberFormatException("For input string: \"" + value.text + "\"");
+        }
+        return value.floatValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        Value value = parsedValues.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.doubleValue == null) {
+            throw new NumberFormatException("For input string: \"" + value.text + "\"");
+        }
+        return value.doubleValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        Value value = parsedValues.get(name);
+        return value != null ? value.booleanValue : defaultValue;
+    }
+
+    /**
+     * @return the parameters of the snapshot
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    /**
+     * A non blank parameter with the typed values it parses to, null where it
+     * does not parse to the type.
+     */
+    private static final class Value {
+        private final String text;
+        private final Long longValue;
+        private final Float floatValue;
+        private final Double doubleValue;
+        private final boolean booleanValue;
+
+        private Value(String text) {
+            this.text = text;
+            String trimmed = text.trim();
+            Long parsedLong;
+            try {
+                parsedLong = Long.parseLong(trimmed);
+            } catch (NumberFormatException e) {
+                parsedLong = null;
+            }
+            Float parsedFloat;
+            Double parsedDouble;
+            try {
+                parsedFloat = Float.parseFloat(text);
+                parsedDouble = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                parsedFloat = null;
+                parsedDouble = null;
+            }
+            this.longValue = parsedLong;
+            this.floatValue = parsedFloat;
+            this.doubleValue = parsedDouble;
+            this.booleanValue = Boolean.parseBoolean(trimmed);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package net.librec.data;
 
 import net.librec.conf.Configuration;
 import net.librec.math.structure.DataFrame;
+import net.librec.math.structure.IdDictionaries;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.math.structure.SparseTensor;
 
@@ -45,6 +46,15 @@ public interface DataConvertor {
      * @return a {@code SparseMatrix} object which stores rate data.
      */
     DataFrame getMatrix();
+
+    /**
+     * Returns the {raw id, inner id} dictionaries the convertor assigns
+     * inner ids with, without processing the data.
+     *
+     * @return the {raw id, inner id} dictionaries of the data
+     */
+    IdDictionaries getIdDictionaries();
+
     SequentialAccessSparseMatrix getPreferenceMatrix();
     //    SequentialAccessSparseMatrix getPreferenceMatrix(String[] columns);
     SequentialAccessSparseMatrix getPreferenceMatrix(Configuration conf);
@@ -98,6 +98,14 @@ public interface DataModel {
      */
     BiMap<String, Integer> getItemMappingData();
 
+    /**
+     * Get the mapping data of an attribute, e.g. "review".
+     *
+     * @param attrName the name of the attribute
+     * @return the {raw id, inner id} map of the attribute in the data model.
+     */
+    BiMap<String, Integer> getMappingData(String attrName);
+
 
     /**
      * Get data appender.
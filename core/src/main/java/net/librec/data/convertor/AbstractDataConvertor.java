@@ -21,6 +21,7 @@ import net.librec.conf.Configuration;
 import net.librec.data.DataConvertor;
 import net.librec.job.progress.ProgressReporter;
 import net.librec.math.structure.DataFrame;
+import net.librec.math.structure.IdDictionaries;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.math.structure.SparseTensor;
 import org.apache.commons.logging.Log;
@@ -42,6 +43,12 @@ public abstract class AbstractDataConvertor extends ProgressReporter implements
      */
     protected DataFrame matrix;
 
+    /**
+     * {raw id, inner id} dictionaries of the data, the default ones of
+     * {@link DataFrame} if not set
+     */
+    protected IdDictionaries idDictionaries;
+
     /**
      * store rate data as {user, item, rate} matrix
      */
@@ -74,6 +81,25 @@ public abstract class AbstractDataConvertor extends ProgressReporter implements
         return matrix;
     }
 
+    /**
+     * Set the dictionaries to assign inner ids with, e.g. the ones of the
+     * training data for the test data. Data models set fresh ones, so that
+     * they do not share inner ids with other data models.
+     *
+     * @param idDictionaries the {raw id, inner id} dictionaries
+     */
+    public void setIdDictionaries(IdDictionaries idDictionaries) {
+        this.idDictionaries = idDictionaries;
+    }
+
+    @Override
+    public IdDictionaries getIdDictionaries() {
+        if (idDictionaries == null) {
+            idDictionaries = DataFrame.getDefaultIdDictionaries();
+        }
+        return idDictionaries;
+    }
+
     @Override
     public SequentialAccessSparseMatrix getPreferenceMatrix(){
         if (null == preferenceMatrix){
@@ -110,7 +110,7 @@ public class ArffDataConvertor extends AbstractDataConvertor {
      */
     public void readData(String... inputDataPath) throws IOException {
         LOG.info(String.format("Dataset: %s", Arrays.toString(inputDataPath)));
-        matrix = new DataFrame();
+        matrix = new DataFrame(getIdDictionaries());
         List<String> attrTypeList = new ArrayList<>();
         final List<File> files = new ArrayList<File>();
         SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
@@ -178,7 +178,7 @@ public class ArffDataConvertor extends AbstractDataConvertor {
                         if (attrType.startsWith("{") && attrType.endsWith("}")) {
                             isNominal = true;
                         }
-                        BiMap<String, Integer> colId = DataFrame.getInnerMapping(attrName);
+                        BiMap<String, Integer> colId = matrix.getIdDictionary(attrName);
 
                         // if nominal type, set columnIds
                         if (isNominal) {
@@ -232,7 +232,7 @@ public class ArffDataConvertor extends AbstractDataConvertor {
         }
         // initialize attributes
         for (int i = 0; i < attributes.size(); i++) {
-            attributes.get(i).setColumnSet(DataFrame.getInnerMapping(attributes.get(i).getName()).keySet());
+            attributes.get(i).setColumnSet(matrix.getIdDictionary(attributes.get(i).getName()).keySet());
         }
         // initialize instance attributes
         ArffInstance.attrs = attributes;
@@ -275,10 +275,10 @@ public class ArffDataConvertor extends AbstractDataConvertor {
                                 case "INTEGER":
                                     break;
                                 case "STRING":
-                                    DataFrame.setId(col, attributes.get(i).getName());
+                                    matrix.getIdDictionary(attributes.get(i).getName()).intern(col);
                                     break;
                                 case "NOMINAL":
-                                    BiMap<String, Integer> colId = DataFrame.getInnerMapping(attributes.get(i).getName());
+                                    BiMap<String, Integer> colId = matrix.getIdDictionary(attributes.get(i).getName());
                                     StringBuilder sb = new StringBuilder();
                                     String[] ss = col.split(",");
                                     for (int ns = 0; ns < ss.length; ns++) {
@@ -375,7 +375,7 @@ public class ArffDataConvertor extends AbstractDataConvertor {
      * @return the mapping between row id and inner id of users
      */
     public BiMap<String, Integer> getUserIds() {
-        return DataFrame.getInnerMapping("user");
+        return getIdDictionaries().get("user");
         //        return featuresInnerMapping.get(userCol);
     }
 
@@ -385,7 +385,7 @@ public class ArffDataConvertor extends AbstractDataConvertor {
      * @return the mapping between row id and inner id of items
      */
     public BiMap<String, Integer> getItemIds() {
-        return DataFrame.getInnerMapping("item");
+        return getIdDictionaries().get("item");
 //        return featuresInnerMapping.get(itemCol);
     }
 
@@ -397,4 +397,4 @@ public class ArffDataConvertor extends AbstractDataConvertor {
     public ArrayList<BiMap<String, Integer>> getAllFeatureIds() {
         return featuresInnerMapping;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
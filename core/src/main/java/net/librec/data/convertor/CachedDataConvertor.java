@@ -0,0 +1,476 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import net.librec.conf.Configuration;
+import net.librec.math.structure.DataFrame;
+import net.librec.math.structure.IdDictionaries;
+import net.librec.math.structure.IdDictionary;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialSparseVector;
+import net.librec.math.structure.VectorBasedSequentialSparseVector;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A <tt>CachedDataConvertor</tt> keeps the output of another convertor in a
+ * binary file: the {raw id, inner id} maps of users and items, and the
+ * compressed rows of the preference and datetime matrices. The next run with
+ * the same input files (paths, sizes and modification times) and convert
+ * settings memory-maps the file instead of parsing the input again.
+ * <p>
+ * The file starts with a magic number and {@link #FORMAT_VERSION}. A file of
+ * another version is rebuilt, as is every file when the configuration sets
+ * {@code data.cache.refresh}.
+ */
+public class CachedDataConvertor extends AbstractDataConvertor {
+    private static final long MAGIC = 0x4c69625265634443L;
+
+    /**
+     * the version of the binary format, to be increased on every change of it
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String CACHE_FILE_SUFFIX = ".librec";
+
+    /**
+     * the attributes whose {raw id, inner id} maps are cached
+     */
+    private static final String[] MAPPING_NAMES = {"user", "item"};
+
+    /**
+     * the largest region mapped at once
+     */
+    private static final int MAX_MAPPED_BYTES = 1 << 30;
+
+    private final AbstractDataConvertor source;
+    private final File cacheFile;
+    private final Configuration conf;
+    private final boolean hasDatetime;
+
+    /**
+     * @param source      the convertor parsing the input on a cache miss
+     * @param cacheFile   the cache file, see {@link #getCacheFile}
+     * @param conf        the configuration for the preference matrix
+     * @param hasDatetime whether the input has a datetime column
+     */
+    public CachedDataConvertor(AbstractDataConvertor source, File cacheFile, Configuration conf, boolean hasDatetime) {
+        this.source = source;
+        this.cacheFile = cacheFile;
+        this.conf = conf;
+        this.hasDatetime = hasDatetime;
+    }
+
+    /**
+     * Load the cache file if it is valid, otherwise convert the input with the
+     * source convertor and write the cache file.
+     *
+     * @throws IOException if the input can not be read
+     */
+    @Override
+    public void processData() throws IOException {
+        if (cacheFile.exists() && !conf.getBoolean("data.cache.refresh", false)) {
+            try {
+                if (read()) {
+                    LOG.info(String.format("Dataset loaded from cache %s", cacheFile));
+                    return;
+                }
+            } catch (IOException e) {
+                LOG.warn(String.format("Cache %s can not be read, the input is converted again", cacheFile), e);
+            }
+        }
+
+        source.processData();
+        matrix = source.getMatrix();
+        preferenceMatrix = source.getPreferenceMatrix(conf);
+        if (hasDatetime) {
+            datetimeMatrix = source.getDatetimeMatrix();
+        }
+        try {
+            write();
+            LOG.info(String.format("Dataset cached in %s", cacheFile));
+        } catch (IOException e) {
+            LOG.warn(String.format("Cache %s can not be written", cacheFile), e);
+        }
+    }
+
+    /**
+     * Return the data frame, which is not cached and is parsed by the source
+     * convertor on request.
+     *
+     * @return the data frame
+     * @throws UncheckedIOException if the input can not be read
+     */
+    @Override
+    public DataFrame getMatrix() {
+        if (matrix == null) {
+            try {
+                if (preferenceMatrix == null) {
+                    processData();
+                } else {
+                    source.processData();
+                }
+                matrix = source.getMatrix();
+            } catch (IOException e) {
+                LOG.error(String.format("Dataset of cache %s can not be converted", cacheFile), e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return the dictionaries of the source convertor
+     */
+    @Override
+    public IdDictionaries getIdDictionaries() {
+        return source.getIdDictionaries();
+    }
+
+    @Override
+    public void progress() {
+        source.progress();
+    }
+
+    /**
+     * Return the cache file of the given input and settings. Its name is a
+     * digest of the format version, of the path, size and modification time
+     * of every input file and of the settings.
+     *
+     * @param cacheDirectory the directory of the cache files
+     * @param inputDataPath  the input files or directories
+     * @param settings       the settings the conversion depends on
+     * @return the cache file
+     * @throws IOException if the input can not be listed
+     */
+    public static File getCacheFile(String cacheDirectory, String[] inputDataPath, String... settings)
+            throws IOException {
+        List<File> files = new ArrayList<>();
+        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                files.add(file.toFile());
+                return super.visitFile(file, attrs);
+            }
+        };
+        for (String path : inputDataPath) {
+            Files.walkFileTree(Paths.get(path.trim()), finder);
+        }
+
+        StringBuilder key = new StringBuilder().append(FORMAT_VERSION);
+        for (File file : files) {
+            key.append('\n').append(file.getAbsolutePath())
+                    .append('\t').append(file.length())
+                    .append('\t').append(file.lastModified());
+        }
+        for (String setting : settings) {
+            key.append('\n').append(setting);
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(cacheDirectory, name.append(CACHE_FILE_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Delete all of the cache files in a directory.
+     *
+     * @param cacheDirectory the directory of the cache files
+     * @return the number of deleted files
+     */
+    public static int clear(String cacheDirectory) {
+        File[] files = new File(cacheDirectory).listFiles((dir, name) -> name.endsWith(CACHE_FILE_SUFFIX));
+        int numDeleted = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (file.delete()) {
+                    numDeleted++;
+                }
+            }
+        }
+        return numDeleted;
+    }
+
+    private void write() throws IOException {
+        File directory = cacheFile.getAbsoluteFile().getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("can not create directory " + directory);
+        }
+        // written aside and moved, so that a cache file is always complete
+        File temporaryFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+                out.writeLong(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(MAPPING_NAMES.length);
+                for (String name : MAPPING_NAMES) {
+                    getIdDictionaries().get(name).writeTo(out);
+                }
+                writeMatrix(out, preferenceMatrix);
+                writeMatrix(out, datetimeMatrix);
+            }
+            Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    private static void writeMatrix(DataOutputStream out, SequentialAccessSparseMatrix matrix) throws IOException {
+        out.writeBoolean(matrix != null);
+        if (matrix == null) {
+            return;
+        }
+        out.writeInt(matrix.rowSize());
+        out.writeInt(matrix.columnSize());
+        out.writeInt(matrix.getNumEntries());
+        int rowPointer = 0;
+        out.writeInt(rowPointer);
+        for (int rowIndex = 0; rowIndex < matrix.rowSize(); rowIndex++) {
+            rowPointer += matrix.row(rowIndex).getNumEntries();
+            out.writeInt(rowPointer);
+        }
+        for (int rowIndex = 0; rowIndex < matrix.rowSize(); rowIndex++) {
+            SequentialSparseVector row = matrix.row(rowIndex);
+            for (int position = 0; position < row.getNumEntries(); position++) {
+                out.writeInt(row.getIndexAtPosition(position));
+            }
+        }
+        for (int rowIndex = 0; rowIndex < matrix.rowSize(); rowIndex++) {
+            SequentialSparseVector row = matrix.row(rowIndex);
+            for (int position = 0; position < row.getNumEntries(); position++) {
+                out.writeDouble(row.getAtPosition(position));
+            }
+        }
+    }
+
+    /**
+     * @return false if the file is of another version or its maps do not
+     * agree with the inner ids assigned already
+     */
+    private boolean read() throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "r");
+             Reader reader = new Reader(randomAccessFile.getChannel())) {
+            if (reader.readLong() != MAGIC || reader.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+            int numMappings = reader.readInt();
+            List<List<String>> mappings = new ArrayList<>(numMappings);
+            for (int mapping = 0; mapping < numMappings; mapping++) {
+                int numIds = reader.readInt();
+                List<String> rawIds = new ArrayList<>(numIds);
+                for (int innerId = 0; innerId < numIds; innerId++) {
+                    rawIds.add(new String(reader.readBytes(reader.readInt()), StandardCharsets.UTF_8));
+                }
+                mappings.add(rawIds);
+            }
+            for (int mapping = 0; mapping < numMappings; mapping++) {
+                IdDictionary rawIds = getIdDictionaries().get(MAPPING_NAMES[mapping]);
+                List<String> cachedRawIds = mappings.get(mapping);
+                if (rawIds.size() > cachedRawIds.size()) {
+                    return false;
+                }
+                for (int innerId = 0; innerId < rawIds.size(); innerId++) {
+                    if (!cachedRawIds.get(innerId).equals(rawIds.getRawId(innerId))) {
+                        return false;
+                    }
+                }
+            }
+
+            SequentialAccessSparseMatrix cachedPreferenceMatrix = readMatrix(reader);
+            SequentialAccessSparseMatrix cachedDatetimeMatrix = readMatrix(reader);
+            for (int mapping = 0; mapping < numMappings; mapping++) {
+                IdDictionary rawIds = getIdDictionaries().get(MAPPING_NAMES[mapping]);
+                for (String rawId : mappings.get(mapping)) {
+                    rawIds.intern(rawId);
+                }
+            }
+            preferenceMatrix = cachedPreferenceMatrix;
+            datetimeMatrix = cachedDatetimeMatrix;
+            return true;
+        }
+    }
+
+    private static SequentialAccessSparseMatrix readMatrix(Reader reader) throws IOException {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        int rows = reader.readInt();
+        int columns = reader.readInt();
+        int numEntries = reader.readInt();
+        int[] rowPointers = reader.readInts(rows + 1);
+        if (rowPointers[rows] != numEntries) {
+            throw new IOException("corrupt matrix in the cache file");
+        }
+        // the index region, then the value region, is read from start to end
+        int[][] rowIndices = new int[rows][];
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            rowIndices[rowIndex] = reader.readInts(rowPointers[rowIndex + 1] - rowPointers[rowIndex]);
+        }
+        VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[rows];
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            double[] values = reader.readDoubles(rowIndices[rowIndex].length);
+            rowVectors[rowIndex] = new VectorBasedSequentialSparseVector(columns, rowIndices[rowIndex], values);
+        }
+        return new SequentialAccessSparseMatrix(rows, columns, rowVectors);
+    }
+
+    /**
+     * Reads a cache file through memory-mapped regions of at most
+     * {@link #MAX_MAPPED_BYTES} bytes. A region is unmapped when the next one
+     * is mapped, and the last one when the reader is closed.
+     */
+    private static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer region;
+        private long regionPosition;
+        private long position;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /**
+         * @return the mapped region holding the next numBytes bytes, positioned at them
+         */
+        private ByteBuffer region(int numBytes) throws IOException {
+            if (position + numBytes > size) {
+                throw new IOException("unexpected end of the cache file");
+            }
+            if (region == null || position < regionPosition || position + numBytes > regionPosition + region.capacity()) {
+                unmap(region);
+                region = null;
+                regionPosition = position;
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(size - position, Math.max(numBytes, MAX_MAPPED_BYTES)));
+            }
+            region.position((int) (position - regionPosition));
+            position += numBytes;
+            return region;
+        }
+
+        boolean readBoolean() throws IOException {
+            return region(1).get() != 0;
+        }
+
+        int readInt() throws IOException {
+            return region(4).getInt();
+        }
+
+        long readLong() throws IOException {
+            return region(8).getLong();
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            region(length).get(bytes);
+            return bytes;
+        }
+
+        int[] readInts(int length) throws IOException {
+            int[] values = new int[length];
+            for (int offset = 0; offset < length; ) {
+                int count = Math.min(length - offset, MAX_MAPPED_BYTES / 4);
+                region(4 * count).asIntBuffer().get(values, offset, count);
+                offset += count;
+            }
+            return values;
+        }
+
+        double[] readDoubles(int length) throws IOException {
+            double[] values = new double[length];
+            for (int offset = 0; offset < length; ) {
+                int count = Math.min(length - offset, MAX_MAPPED_BYTES / 8);
+                region(8 * count).asDoubleBuffer().get(values, offset, count);
+                offset += count;
+            }
+            return values;
+        }
+
+        @Override
+        public void close() {
+            unmap(region);
+            region = null;
+        }
+
+        /**
+         * Release a region without waiting for the garbage collector, through
+         * {@code Unsafe.invokeCleaner} since Java 9 or the cleaner of the buffer
+         * on Java 8. Where neither is accessible the collector releases it.
+         */
+        private static void unmap(MappedByteBuffer buffer) {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                try {
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                } catch (ReflectiveOperationException | RuntimeException ignored) {
+                    // released by the garbage collector
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // released by the garbage collector
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans the lines of the files under a path through a file channel into a
+ * reused byte buffer and splits them into fields on spaces, tabs and commas,
+ * as {@code line.trim().split("[ \t,]+")} does. Lines end at {@code \r} or
+ * {@code \n} and blank lines are skipped.
+ * <p>
+ * The fields are handed out as byte ranges of the buffer, so numbers and ids
+ * are parsed without creating a string per line or field. Data appenders use
+ * it to read their auxiliary files.
+ */
+public final class DataFileScanner {
+    private static final Log LOG = LogFactory.getLog(DataFileScanner.class);
+
+    /**
+     * The initial size of the buffer, which grows for longer lines
+     */
+    private static final int BSIZE = 1024 * 1024;
+
+    private DataFileScanner() {
+    }
+
+    /**
+     * Handler of the lines of a scan.
+     */
+    public interface LineHandler {
+        /**
+         * Handle a line, which is valid during the call only.
+         *
+         * @param line the fields of the line
+         * @throws IOException if the line can not be handled
+         */
+        void handle(Line line) throws IOException;
+    }
+
+    /**
+     * Scan the files under the given path, in the order they are visited.
+     *
+     * @param inputDataPath the path of a data file or of a directory of them
+     * @param handler       the handler of the lines
+     * @return the number of bytes read
+     * @throws IOException if I/O error occurs during reading
+     */
+    public static long scan(String inputDataPath, LineHandler handler) throws IOException {
+        final List<File> files = new ArrayList<>();
+        Files.walkFileTree(Paths.get(inputDataPath), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                files.add(file.toFile());
+                return super.visitFile(file, attrs);
+            }
+        });
+
+        long startTime = System.nanoTime();
+        long numBytes = 0L;
+        Line line = new Line();
+        byte[] bytes = new byte[BSIZE];
+        for (File dataFile : files) {
+            try (FileInputStream fis = new FileInputStream(dataFile);
+                 FileChannel fileRead = fis.getChannel()) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                int len;
+                while ((len = fileRead.read(buffer)) != -1) {
+                    numBytes += len;
+                    int end = buffer.position();
+                    int lineStart = 0;
+                    for (int index = end - len; index < end; index++) {
+                        if (bytes[index] == '\n' || bytes[index] == '\r') {
+                            if (line.split(bytes, lineStart, index)) {
+                                handler.handle(line);
+                            }
+                            lineStart = index + 1;
+                        }
+                    }
+                    // keep the incomplete line, in a larger buffer if it fills this one
+                    int remaining = end - lineStart;
+                    if (lineStart > 0) {
+                        System.arraycopy(bytes, lineStart, bytes, 0, remaining);
+                    } else if (remaining == bytes.length) {
+                        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                    }
+                    buffer = ByteBuffer.wrap(bytes);
+                    buffer.position(remaining);
+                }
+                if (line.split(bytes, 0, buffer.position())) {
+                    handler.handle(line);
+                }
+            }
+        }
+
+        double seconds = Math.max(System.nanoTime() - startTime, 1L) / 1e9;
+        double megabytes = numBytes / (1024.0 * 1024.0);
+        LOG.info(String.format("Read %.1f MB of %s in %.3f s (%.1f MB/s)",
+                megabytes, inputDataPath, seconds, megabytes / seconds));
+        return numBytes;
+    }
+
+    /**
+     * The fields of a line as byte ranges of the buffer of the scanner.
+     */
+    public static final class Line {
+        private byte[] bytes;
+        private int from;
+        private int to;
+        private int numFields;
+        private int[] fieldStarts = new int[8];
+        private int[] fieldEnds = new int[8];
+
+        private Line() {
+        }
+
+        /**
+         * Split the line into fields.
+         *
+         * @return false if the line is blank
+         */
+        private boolean split(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            numFields = 0;
+            int index = from;
+            while (index < to && bytes[index] >= 0 && bytes[index] <= ' ') {
+                index++;
+            }
+            int end = to;
+            while (end > index && bytes[end - 1] >= 0 && bytes[end - 1] <= ' ') {
+                end--;
+            }
+            this.from = index;
+            this.to = end;
+            while (index < end) {
+                int fieldStart = index;
+                while (index < end && !isSeparator(bytes[index])) {
+                    index++;
+                }
+                if (index > fieldStart || numFields == 0) {
+                    if (numFields == fieldStarts.length) {
+                        fieldStarts = Arrays.copyOf(fieldStarts, numFields * 2);
+                        fieldEnds = Arrays.copyOf(fieldEnds, numFields * 2);
+                    }
+                    fieldStarts[numFields] = fieldStart;
+                    fieldEnds[numFields] = index;
+                    numFields++;
+                }
+                while (index < end && isSeparator(bytes[index])) {
+                    index++;
+                }
+            }
+            return this.to > this.from;
+        }
+
+        private static boolean isSeparator(byte character) {
+            return character == ' ' || character == '\t' || character == ',';
+        }
+
+        private void checkField(int field) {
+            if (field < 0 || field >= numFields) {
+                throw new ArrayIndexOutOfBoundsException("field " + field + " of " + numFields + " fields: " + this);
+            }
+        }
+
+        /**
+         * @return the number of fields of the line
+         */
+        public int numFields() {
+            return numFields;
+        }
+
+        /**
+         * Get a field as a string.
+         *
+         * @param field the index of the field
+         * @return the field
+         */
+        public String getString(int field) {
+            checkField(field);
+            return new String(bytes, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Parse a field as a double, as {@link Double#parseDouble(String)} does.
+         *
+         * @param field the index of the field
+         * @return the value of the field
+         */
+        public double getDouble(int field) {
+            checkField(field);
+            return TextDataChunk.parseDouble(bytes, fieldStarts[field], fieldEnds[field]);
+        }
+
+        /**
+         * Look a field up in an id index, without creating a string of it.
+         *
+         * @param field the index of the field
+         * @param ids   the index of the raw ids
+         * @return the inner id of the field, or -1 if the index has not got it
+         */
+        public int getId(int field, IdIndex ids) {
+            checkField(field);
+            return ids.get(bytes, fieldStarts[field], fieldEnds[field]);
+        }
+
+        /**
+         * @return the trimmed line
+         */
+        @Override
+        public String toString() {
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * An open addressing index of the UTF-8 bytes of raw ids, to look up the
+     * inner ids of fields without decoding them.
+     */
+    public static final class IdIndex {
+        private final int mask;
+        private final int[] slots;
+        private final int[] keyOffsets;
+        private final byte[] keyBytes;
+        private final int[] values;
+
+        private IdIndex(Map<String, Integer> idMap) {
+            int numKeys = idMap.size();
+            int capacity = Integer.highestOneBit(Math.max(numKeys, 1) * 2 - 1) << 1;
+            mask = capacity - 1;
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            keyOffsets = new int[numKeys + 1];
+            values = new int[numKeys];
+
+            List<byte[]> keys = new ArrayList<>(numKeys);
+            int key = 0;
+            for (Map.Entry<String, Integer> entry : idMap.entrySet()) {
+                byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                keys.add(bytes);
+                keyOffsets[key + 1] = keyOffsets[key] + bytes.length;
+                values[key] = entry.getValue();
+                key++;
+            }
+            keyBytes = new byte[keyOffsets[numKeys]];
+            for (key = 0; key < numKeys; key++) {
+                byte[] bytes = keys.get(key);
+                System.arraycopy(bytes, 0, keyBytes, keyOffsets[key], bytes.length);
+                int slot = hash(bytes, 0, bytes.length) & mask;
+                while (slots[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = key;
+            }
+        }
+
+        /**
+         * Build the index of a {raw id, inner id} map.
+         *
+         * @param idMap the {raw id, inner id} map
+         * @return the index of the map
+         */
+        public static IdIndex of(Map<String, Integer> idMap) {
+            return new IdIndex(idMap);
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int hash = 0;
+            for (int index = from; index < to; index++) {
+                hash = 31 * hash + bytes[index];
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        /**
+         * Look up the raw id in the given byte range.
+         *
+         * @param bytes the bytes holding the raw id
+         * @param from  the start of the raw id
+         * @param to    the end of the raw id
+         * @return the inner id, or -1 if the index has not got the raw id
+         */
+        public int get(byte[] bytes, int from, int to) {
+            int length = to - from;
+            int slot = hash(bytes, from, to) & mask;
+            int key;
+            while ((key = slots[slot]) != -1) {
+                int keyOffset = keyOffsets[key];
+                if (keyOffsets[key + 1] - keyOffset == length && equalBytes(bytes, from, keyOffset, length)) {
+                    return values[key];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private boolean equalBytes(byte[] bytes, int from, int keyOffset, int length) {
+            for (int index = 0; index < length; index++) {
+                if (bytes[from + index] != keyBytes[keyOffset + index]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * A byte range of a text data file, starting and ending on line boundaries,
+ * parsed into primitive columns on a worker thread of {@link TextDataConvertor}.
+ * <p>
+ * The cells of STRING attributes are numbered by a dictionary local to the
+ * chunk, in order of first appearance. Merging the dictionaries of the chunks
+ * in file order therefore assigns the same inner ids as reading the file line
+ * by line.
+ */
+class TextDataChunk implements Callable<TextDataChunk> {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private final File file;
+    private final long start;
+    private final long end;
+    private final String[] attr;
+    private final Delimiter delimiter;
+
+    /**
+     * the number of parsed rows and whether the chunk holds a blank line,
+     * which ends the file
+     */
+    private int numRows;
+    private boolean terminated;
+
+    /**
+     * int[] local ids for STRING attributes, double[] for NUMERIC and long[]
+     * for DATE attributes
+     */
+    private Object[] columnValues;
+    private List<String>[] columnKeys;
+
+    TextDataChunk(File file, long start, long end, String[] attr, Delimiter delimiter) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.attr = attr;
+        this.delimiter = delimiter;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getNumBytes() {
+        return end - start;
+    }
+
+    int getNumRows() {
+        return numRows;
+    }
+
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    Object[] getColumnValues() {
+        return columnValues;
+    }
+
+    /**
+     * @param column column index of a STRING attribute
+     * @return the raw ids of the column in order of their local inner ids
+     */
+    List<String> getColumnKeys(int column) {
+        return columnKeys[column];
+    }
+
+    /**
+     * @param attr attribute types
+     * @return true if the chunks can parse all of the attribute types
+     */
+    static boolean isSupported(String[] attr) {
+        for (String type : attr) {
+            if (!"STRING".equals(type) && !"NUMERIC".equals(type) && !"DATE".equals(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split a file into byte ranges of about the given size, each one ending
+     * just after a line feed or at the end of the file.
+     *
+     * @param file      the file
+     * @param chunkSize the size of a range in bytes
+     * @return the offsets of the ranges, from 0 to the file length
+     * @throws IOException if the file can not be read
+     */
+    static long[] split(File file, long chunkSize) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            long length = randomAccessFile.length();
+            List<Long> offsets = new ArrayList<>();
+            offsets.add(0L);
+            byte[] buffer = new byte[8192];
+            long offset = chunkSize;
+            while (offset < length) {
+                randomAccessFile.seek(offset);
+                long lineEnd = -1L;
+                int numRead;
+                while (lineEnd < 0 && (numRead = randomAccessFile.read(buffer)) > 0) {
+                    for (int index = 0; index < numRead; index++) {
+                        if (buffer[index] == '\n') {
+                            lineEnd = offset + index + 1;
+                            break;
+                        }
+                    }
+                    offset += numRead;
+                }
+                if (lineEnd < 0 || lineEnd >= length) {
+                    break;
+                }
+                offsets.add(lineEnd);
+                offset = lineEnd + chunkSize;
+            }
+            offsets.add(length);
+
+            long[] result = new long[offsets.size()];
+            for (int index = 0; index < result.length; index++) {
+                result[index] = offsets.get(index);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TextDataChunk call() throws IOException {
+        byte[] bytes = read();
+        int numColumns = attr.length;
+        int capacity = Math.max(16, bytes.length / 16);
+        columnValues = new Object[numColumns];
+        columnKeys = (List<String>[]) new List<?>[numColumns];
+        Object2IntOpenHashMap<String>[] dictionaries =
+                (Object2IntOpenHashMap<String>[]) new Object2IntOpenHashMap<?>[numColumns];
+        for (int column = 0; column < numColumns; column++) {
+            if ("STRING".equals(attr[column])) {
+                columnValues[column] = new int[capacity];
+                columnKeys[column] = new ArrayList<>();
+                dictionaries[column] = new Object2IntOpenHashMap<>();
+                dictionaries[column].defaultReturnValue(-1);
+            } else if ("NUMERIC".equals(attr[column])) {
+                columnValues[column] = new double[capacity];
+            } else {
+                columnValues[column] = new long[capacity];
+            }
+        }
+
+        // start and end offsets of the fields of a line, one more than needed to detect extra fields
+        int[] fieldStarts = new int[numColumns + 1];
+        int[] fieldEnds = new int[numColumns + 1];
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int nextLineStart = lineEnd + 1;
+            if (lineEnd < bytes.length && lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (isBlank(bytes, lineStart, lineEnd)) {
+                terminated = true;
+                break;
+            }
+
+            int numFields = delimiter.split(bytes, lineStart, lineEnd, fieldStarts, fieldEnds);
+            if (numFields != numColumns) {
+                throw new IOException(String.format("%s: expected %d fields but found %s in line \"%s\"",
+                        file, numColumns, numFields > numColumns ? "more" : String.valueOf(numFields),
+                        new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8)));
+            }
+
+            if (numRows == capacity) {
+                capacity = capacity + (capacity >> 1);
+                for (int column = 0; column < numColumns; column++) {
+                    Object values = columnValues[column];
+                    columnValues[column] = values instanceof int[] ? Arrays.copyOf((int[]) values, capacity)
+                            : values instanceof double[] ? Arrays.copyOf((double[]) values, capacity)
+                            : Arrays.copyOf((long[]) values, capacity);
+                }
+            }
+            for (int column = 0; column < numColumns; column++) {
+                int from = fieldStarts[column];
+                int to = fieldEnds[column];
+                if ("STRING".equals(attr[column])) {
+                    String key = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+                    int id = dictionaries[column].getInt(key);
+                    if (id < 0) {
+                        id = columnKeys[column].size();
+                        dictionaries[column].put(key, id);
+                        columnKeys[column].add(key);
+                    }
+                    ((int[]) columnValues[column])[numRows] = id;
+                } else if ("NUMERIC".equals(attr[column])) {
+                    ((double[]) columnValues[column])[numRows] = parseDouble(bytes, from, to);
+                } else {
+                    ((long[]) columnValues[column])[numRows] = parseLong(bytes, from, to);
+                }
+            }
+            numRows++;
+            lineStart = nextLineStart;
+        }
+        return this;
+    }
+
+    private byte[] read() throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException(file + " is shorter than expected");
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return true if the line would be empty after {@link String#trim()}
+     */
+    private static boolean isBlank(byte[] bytes, int from, int to) {
+        for (int index = from; index < to; index++) {
+            // bytes of multi-byte UTF-8 characters are negative
+            if (bytes[index] < 0 || bytes[index] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a decimal without exponent of at most 15 digits exactly, as the
+     * quotient of two doubles that are exact, which rounds as
+     * {@link Double#parseDouble(String)} does. Other numbers are left to it.
+     */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int index = from;
+        boolean negative = false;
+        if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+            negative = bytes[index] == '-';
+            index++;
+        }
+        long mantissa = 0L;
+        int numDigits = 0;
+        int numFractionDigits = 0;
+        boolean point = false;
+        for (; index < to; index++) {
+            byte digit = bytes[index];
+            if (digit >= '0' && digit <= '9') {
+                mantissa = mantissa * 10 + (digit - '0');
+                numDigits++;
+                if (point) {
+                    numFractionDigits++;
+                }
+            } else if (digit == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (index < to || numDigits == 0 || numDigits > 15) {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+        double value = mantissa / POWERS_OF_TEN[numFractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse an integer of at most 18 digits, other numbers are left to
+     * {@link Long#parseLong(String)}.
+     */
+    static long parseLong(byte[] bytes, int from, int to) {
+        int index = from;
+        boolean negative = false;
+        if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+            negative = bytes[index] == '-';
+            index++;
+        }
+        if (index == to || to - index > 18) {
+            return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+        long value = 0L;
+        for (; index < to; index++) {
+            byte digit = bytes[index];
+            if (digit < '0' || digit > '9') {
+                return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Splits lines into fields as {@link Pattern#split(CharSequence)} does with
+     * the separator of the convertor. Separators that are a single character, a
+     * character class of single characters or a literal string of ASCII
+     * characters are matched on the bytes, other ones by the pattern itself.
+     */
+    static class Delimiter {
+        private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+        /**
+         * single byte separators, a literal separator, or the pattern
+         */
+        private final boolean[] separatorBytes;
+        private final byte[] literal;
+        private final Pattern pattern;
+
+        Delimiter(String sep) {
+            Pattern compiled = Pattern.compile(sep);
+            boolean[] bytes = null;
+            byte[] literalBytes = null;
+            if (sep.length() > 2 && sep.charAt(0) == '[' && sep.charAt(sep.length() - 1) == ']') {
+                bytes = parseCharacters(sep.substring(1, sep.length() - 1), true);
+            } else {
+                boolean[] single = parseCharacters(sep, false);
+                if (single != null) {
+                    bytes = single;
+                } else if (isLiteral(sep)) {
+                    literalBytes = sep.getBytes(StandardCharsets.US_ASCII);
+                }
+            }
+            this.separatorBytes = bytes;
+            this.literal = literalBytes;
+            this.pattern = bytes == null && literalBytes == null ? compiled : null;
+        }
+
+        /**
+         * @return true if the separator is matched on the bytes
+         */
+        boolean isTokenizer() {
+            return pattern == null;
+        }
+
+        /**
+         * Parse a sequence of plain ASCII characters or escapes of them. In a
+         * character class all of them are separators, otherwise the sequence
+         * should be one character.
+         */
+        private static boolean[] parseCharacters(String characters, boolean characterClass) {
+            boolean[] bytes = new boolean[128];
+            int numCharacters = 0;
+            for (int index = 0; index < characters.length(); index++) {
+                char character = characters.charAt(index);
+                if (character == '\\') {
+                    if (++index == characters.length()) {
+                        return null;
+                    }
+                    char escaped = characters.charAt(index);
+                    if (escaped == 't') {
+                        character = '\t';
+                    } else if (escaped < 128 && !Character.isLetterOrDigit(escaped)) {
+                        character = escaped;
+                    } else {
+                        return null;
+                    }
+                } else if (character >= 128 || METACHARACTERS.indexOf(character) >= 0
+                        || (characterClass && (character == '-' || character == '&'))) {
+                    return null;
+                }
+                if (character == '\n' || character == '\r') {
+                    return null;
+                }
+                bytes[character] = true;
+                numCharacters++;
+            }
+            return numCharacters == 0 || (!characterClass && numCharacters > 1) ? null : bytes;
+        }
+
+        private static boolean isLiteral(String sep) {
+            for (int index = 0; index < sep.length(); index++) {
+                char character = sep.charAt(index);
+                if (character >= 128 || character == '\n' || character == '\r'
+                        || METACHARACTERS.indexOf(character) >= 0) {
+                    return false;
+                }
+            }
+            return !sep.isEmpty();
+        }
+
+        /**
+         * Split the bytes of a line into fields, dropping trailing empty ones.
+         *
+         * @return the number of fields, or fieldStarts.length if there are more
+         */
+        int split(byte[] bytes, int from, int to, int[] fieldStarts, int[] fieldEnds) {
+            if (pattern != null) {
+                return splitByPattern(bytes, from, to, fieldStarts, fieldEnds);
+            }
+            int numFields = 0;
+            int fieldStart = from;
+            int index = from;
+            while (index < to) {
+                int separatorLength = separatorLength(bytes, index, to);
+                if (separatorLength == 0) {
+                    index++;
+                    continue;
+                }
+                if (numFields == fieldStarts.length) {
+                    return numFields;
+                }
+                fieldStarts[numFields] = fieldStart;
+                fieldEnds[numFields] = index;
+                numFields++;
+                index += separatorLength;
+                fieldStart = index;
+            }
+            if (numFields == fieldStarts.length) {
+                return numFields;
+            }
+            fieldStarts[numFields] = fieldStart;
+            fieldEnds[numFields] = to;
+            numFields++;
+            while (numFields > 0 && fieldStarts[numFields - 1] == fieldEnds[numFields - 1]) {
+                numFields--;
+            }
+            return numFields;
+        }
+
+        private int separatorLength(byte[] bytes, int index, int to) {
+            if (separatorBytes != null) {
+                return bytes[index] >= 0 && separatorBytes[bytes[index]] ? 1 : 0;
+            }
+            if (to - index < literal.length) {
+                return 0;
+            }
+            for (int offset = 0; offset < literal.length; offset++) {
+                if (bytes[index + offset] != literal[offset]) {
+                    return 0;
+                }
+            }
+            return literal.length;
+        }
+
+        private int splitByPattern(byte[] bytes, int from, int to, int[] fieldStarts, int[] fieldEnds) {
+            String line = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            String[] fields = pattern.split(line);
+            // offsets of the fields in the bytes, the line being decoded again field by field
+            int numFields = Math.min(fields.length, fieldStarts.length);
+            int searchFrom = 0;
+            for (int field = 0; field < numFields; field++) {
+                int charOffset = line.indexOf(fields[field], searchFrom);
+                int byteOffset = from + line.substring(0, charOffset).getBytes(StandardCharsets.UTF_8).length;
+                fieldStarts[field] = byteOffset;
+                fieldEnds[field] = byteOffset + fields[field].getBytes(StandardCharsets.UTF_8).length;
+                searchFrom = charOffset + fields[field].length();
+            }
+            return fields.length > fieldStarts.length ? fieldStarts.length : fields.length;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package net.librec.data.convertor;
 
 import com.google.common.collect.BiMap;
 import net.librec.math.structure.DataFrame;
+import net.librec.math.structure.IdDictionary;
 import net.librec.util.StringUtil;
 import okio.BufferedSource;
 import okio.Okio;
@@ -32,10 +33,16 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -57,6 +64,16 @@ public class TextDataConvertor extends AbstractDataConvertor {
      */
     private static final int BSIZE = 1024 * 1024;
 
+    /**
+     * The number of leading lines used to estimate the number of rows from the file sizes
+     */
+    private static final int CAPACITY_SAMPLE_LINES = 1024;
+
+    /**
+     * The default size of the byte ranges parsed by the threads of the parallel reader
+     */
+    private static final long READ_CHUNK_SIZE = 8L * 1024 * 1024;
+
     /**
      * The default format of input data file
      */
@@ -66,6 +83,11 @@ public class TextDataConvertor extends AbstractDataConvertor {
     private String[] attr;
     private String sep;
     private float fileRate;
+    /**
+     * the number of threads parsing the input files, 1 to read them line by line
+     */
+    private int numReadThreads = 1;
+    private long readChunkSize = READ_CHUNK_SIZE;
     /**
      * the path of the input data file
      */
@@ -129,6 +151,22 @@ public class TextDataConvertor extends AbstractDataConvertor {
     }
 
 
+    /**
+     * Set the number of threads parsing the input files. With more than one
+     * thread, the files are split into byte ranges on line boundaries which are
+     * parsed concurrently and merged in file order, so that the inner ids and
+     * rows are the same as reading the files line by line.
+     *
+     * @param numReadThreads the number of threads
+     */
+    public void setNumReadThreads(int numReadThreads) {
+        this.numReadThreads = numReadThreads;
+    }
+
+    void setReadChunkSize(long readChunkSize) {
+        this.readChunkSize = readChunkSize;
+    }
+
     /**
      * Process the input data.
      *
@@ -141,7 +179,7 @@ public class TextDataConvertor extends AbstractDataConvertor {
 
     private void readData(String... inputDataPath) throws IOException {
         LOG.info(String.format("Dataset: %s", Arrays.toString(inputDataPath)));
-        matrix = new DataFrame();
+        matrix = new DataFrame(getIdDictionaries());
         if (Objects.isNull(header)) {
             if (dataColumnFormat.toLowerCase().equals("uirt")) {
                 header = new String[]{"user", "item", "rating", "datetime"};
@@ -165,8 +203,27 @@ public class TextDataConvertor extends AbstractDataConvertor {
         for (String path : inputDataPath) {
             Files.walkFileTree(Paths.get(path.trim()), finder);
         }
+        long numBytes = 0L;
+        for (File file : files) {
+            numBytes += file.length();
+        }
+        if (numReadThreads > 1 && TextDataChunk.isSupported(attr)) {
+            readFilesInParallel(files, numBytes);
+        } else {
+            readFiles(files, numBytes);
+        }
+        List<Double> ratingScale = matrix.getRatingScale();
+        if (ratingScale != null) {
+            LOG.info(String.format("rating Scale: %s", ratingScale.toString()));
+        }
+        LOG.info(String.format("user number: %d,\t item number is: %d", matrix.numUsers(), matrix.numItems()));
+    }
+
+    private void readFiles(List<File> files, long numBytes) {
         int numFiles = files.size();
         int cur = 0;
+        long numSampledBytes = 0L;
+        int numSampledLines = 0;
         Pattern pattern = Pattern.compile(sep);
         for (File file : files) {
             try (Source fileSource = Okio.source(file);
@@ -178,12 +235,15 @@ public class TextDataConvertor extends AbstractDataConvertor {
                     }
                     String[] eachRow = pattern.split(temp);
 //                    String[] eachRow = temp.split("::");
-                    for (int i = 0; i < header.length; i++) {
-                        if (Objects.equals(attr[i], "STRING")) {
-                            DataFrame.setId(eachRow[i], matrix.getHeader(i));
+                    // the inner ids of STRING attributes are assigned while adding
+                    matrix.add(eachRow);
+                    if (numSampledLines < CAPACITY_SAMPLE_LINES) {
+                        numSampledBytes += temp.length() + 1;
+                        if (++numSampledLines == CAPACITY_SAMPLE_LINES) {
+                            matrix.ensureCapacity((int) Math.min(Integer.MAX_VALUE - 8,
+                                    numBytes * numSampledLines / numSampledBytes));
                         }
                     }
-                    matrix.add(eachRow);
                 }
                 LOG.info(String.format("DataSet: %s is finished", StringUtil.last(file.toString(), 38)));
                 cur++;
@@ -192,11 +252,118 @@ public class TextDataConvertor extends AbstractDataConvertor {
                 e.printStackTrace();
             }
         }
-        List<Double> ratingScale = matrix.getRatingScale();
-        if (ratingScale != null) {
-            LOG.info(String.format("rating Scale: %s", ratingScale.toString()));
+    }
+
+    /**
+     * Parse byte ranges of the files on {@link #numReadThreads} threads and
+     * merge them into the data frame in file order. A few ranges are parsed
+     * ahead of the one being merged.
+     */
+    private void readFilesInParallel(List<File> files, long numBytes) throws IOException {
+        TextDataChunk.Delimiter delimiter = new TextDataChunk.Delimiter(sep);
+        List<TextDataChunk> chunks = new ArrayList<>();
+        for (File file : files) {
+            try {
+                long[] offsets = TextDataChunk.split(file, readChunkSize);
+                for (int index = 0; index < offsets.length - 1; index++) {
+                    chunks.add(new TextDataChunk(file, offsets[index], offsets[index + 1], attr, delimiter));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
-        LOG.info(String.format("user number: %d,\t item number is: %d", matrix.numUsers(), matrix.numItems()));
+
+        int numFiles = files.size();
+        int cur = 0;
+        boolean capacityHinted = false;
+        ExecutorService executorService = Executors.newFixedThreadPool(numReadThreads);
+        try {
+            Deque<Future<TextDataChunk>> futures = new ArrayDeque<>();
+            int numSubmitted = 0;
+            // a file is skipped from its first blank line or read error on, as the line reader does
+            File skippedFile = null;
+            boolean skippedOnError = false;
+            for (int index = 0; index < chunks.size(); index++) {
+                while (numSubmitted < chunks.size() && numSubmitted < index + 2 * numReadThreads) {
+                    futures.add(executorService.submit(chunks.get(numSubmitted++)));
+                }
+                Future<TextDataChunk> future = futures.poll();
+                TextDataChunk chunk = chunks.get(index);
+                chunks.set(index, null);
+                File file = chunk.getFile();
+                boolean lastChunkOfFile = index + 1 == chunks.size() || !chunks.get(index + 1).getFile().equals(file);
+                if (file.equals(skippedFile)) {
+                    future.cancel(true);
+                } else {
+                    try {
+                        waitFor(future);
+                        mergeChunk(chunk);
+                        if (!capacityHinted && chunk.getNumRows() > 0) {
+                            matrix.ensureCapacity((int) Math.min(Integer.MAX_VALUE - 8,
+                                    numBytes * chunk.getNumRows() / chunk.getNumBytes()));
+                            capacityHinted = true;
+                        }
+                        if (chunk.isTerminated()) {
+                            skippedFile = file;
+                            skippedOnError = false;
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        skippedFile = file;
+                        skippedOnError = true;
+                    }
+                }
+                if (lastChunkOfFile && !(skippedOnError && file.equals(skippedFile))) {
+                    LOG.info(String.format("DataSet: %s is finished", StringUtil.last(file.toString(), 38)));
+                    cur++;
+                    fileRate = cur / numFiles;
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void waitFor(Future<TextDataChunk> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Translate the local ids of the STRING attributes of a chunk into inner
+     * ids, in order of first appearance, and append its rows.
+     */
+    private void mergeChunk(TextDataChunk chunk) {
+        Object[] columnValues = chunk.getColumnValues();
+        for (int column = 0; column < columnValues.length; column++) {
+            if (Objects.equals(attr[column], "STRING")) {
+                List<String> keys = chunk.getColumnKeys(column);
+                IdDictionary dictionary = matrix.getIdDictionary(header[column]);
+                int[] innerIds = new int[keys.size()];
+                for (int localId = 0; localId < innerIds.length; localId++) {
+                    innerIds[localId] = dictionary.intern(keys.get(localId));
+                }
+                int[] values = (int[]) columnValues[column];
+                for (int row = 0; row < chunk.getNumRows(); row++) {
+                    values[row] = innerIds[values[row]];
+                }
+            }
+        }
+        matrix.addRows(columnValues, chunk.getNumRows());
     }
 
     @Override
@@ -10,27 +10,16 @@ import com.google.common.collect.Table;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataAppender;
+import net.librec.data.convertor.DataFileScanner;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 public class AuxiliaryItemDataAppender extends Configured implements DataAppender {
 
-    /**
-     * The size of the buffer
-     */
-    private static final int BSIZE = 1024 * 1024;
-
     /**
      * a {@code SparseMatrix} object build by the social data
      */
@@ -96,61 +85,22 @@ public class AuxiliaryItemDataAppender extends Configured implements DataAppende
         // Table {row-id, col-id, rate}
         Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
         // BiMap {raw id, inner id} userIds, itemIds
-        final List<File> files = new ArrayList<File>();
-        final ArrayList<Long> fileSizeList = new ArrayList<Long>();
-        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                fileSizeList.add(file.toFile().length());
-                files.add(file.toFile());
-                return super.visitFile(file, attrs);
-            }
-        };
-        Files.walkFileTree(Paths.get(inputDataPath), finder);
-        long allFileSize = 0;
-        for (Long everyFileSize : fileSizeList) {
-            allFileSize = allFileSize + everyFileSize.longValue();
-        }
-        // loop every dataFile collecting from walkFileTree
-        for (File dataFile : files) {
-            FileInputStream fis = new FileInputStream(dataFile);
-            FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = new String();
-            byte[] bytes = new byte[BSIZE];
-            while ((len = fileRead.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len)).replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = new String(bufferData[i]);
-                    ArrayList<Integer> feature = new ArrayList<>();
-                    String[] data = line.trim().split("\\|\\|");
-                    String[] str1 = data[0].trim().split("\\|");
-                    String itemId = str1[0];
-                    if (itemIds.containsKey(itemId)) {
-                        int item = itemIds.get(itemId);
-                        // todo 这里注意有两个斜杠
-                        String[] str2 = data[1].trim().split("\\|");
-                        for (int j = 1; j < str2.length; j++) {
-                            feature.add(Integer.valueOf(str2[j]));
-                        }
-                        itemFeature.put(item, feature);
-                    }
-
+        DataFileScanner.scan(inputDataPath, line -> {
+            String text = line.toString();
+            ArrayList<Integer> feature = new ArrayList<>();
+            String[] data = text.trim().split("\\|\\|");
+            String[] str1 = data[0].trim().split("\\|");
+            String itemId = str1[0];
+            if (itemIds.containsKey(itemId)) {
+                int item = itemIds.get(itemId);
+                // todo 这里注意有两个斜杠
+                String[] str2 = data[1].trim().split("\\|");
+                for (int j = 1; j < str2.length; j++) {
+                    feature.add(Integer.valueOf(str2[j]));
                 }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
-                }
-                buffer.clear();
+                itemFeature.put(item, feature);
             }
-            fileRead.close();
-            fis.close();
-        }
+        });
         int numRows = userIds.size(), numCols = userIds.size();
         // build rating matrix
         userSocialMatrix = new SequentialAccessSparseMatrix(numRows, numCols, dataTable);
@@ -4,19 +4,13 @@ import com.google.common.collect.BiMap;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataAppender;
+import net.librec.data.convertor.DataFileScanner;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 import static net.librec.recommender.cf.rating.PMFBigItemRecommender.CAPACITY;
 
@@ -26,11 +20,6 @@ import static net.librec.recommender.cf.rating.PMFBigItemRecommender.CAPACITY;
  */
 public class AuxiliaryItemTagAppender extends Configured implements DataAppender {
 
-    /**
-     * The size of the buffer
-     */
-    private static final int BSIZE = 1024 * 1024;
-
     /**
      * a {@code SparseMatrix} object build by the social data
      */
@@ -97,102 +86,61 @@ public class AuxiliaryItemTagAppender extends Configured implements DataAppender
         // Table {row-id, col-id, rate}
 //        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
         // BiMap {raw id, inner id} userIds, itemIds
-        final List<File> files = new ArrayList<File>();
-        final ArrayList<Long> fileSizeList = new ArrayList<Long>();
-        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                fileSizeList.add(file.toFile().length());
-                files.add(file.toFile());
-                return super.visitFile(file, attrs);
+        DataFileScanner.scan(inputDataPath, line -> {
+            String userId = line.getString(0);
+            String itemId = line.getString(1);
+            String tag = line.getString(2);
+
+            // todo 不一定这样做？？？？
+            if (!userIds.containsKey(userId) || !itemIds.containsKey(itemId)) {
+                return;
             }
-        };
-        Files.walkFileTree(Paths.get(inputDataPath), finder);
-        long allFileSize = 0;
-        for (Long everyFileSize : fileSizeList) {
-            allFileSize = allFileSize + everyFileSize.longValue();
-        }
-        // loop every dataFile collecting from walkFileTree
-        for (File dataFile : files) {
-            FileInputStream fis = new FileInputStream(dataFile);
-            FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = new String();
-            byte[] bytes = new byte[BSIZE];
-            while ((len = fileRead.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len)).replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = new String(bufferData[i]);
-                    String[] data = line.trim().split("[ \t,]+");
-                    String userId = data[0];
-                    String itemId = data[1];
-                    String tag = data[2];
-
-                    // todo 不一定这样做？？？？
-                    if (!userIds.containsKey(userId) || !itemIds.containsKey(itemId)) {
-                        continue;
-                    }
-                    int user = userIds.get(userId);
-                    int item = itemIds.get(itemId);
-                    if (!tagInformation.containsKey(item)) {
-                        ArrayList<String> arrayList = new ArrayList<>();
-                        arrayList.add(tag);
-
-                        HashMap<Integer, ArrayList<String>> userTag = new HashMap<>();
-                        userTag.put(user, arrayList);
-                        tagInformation.put(item, userTag);
-                        arrayList = null;
-                        userTag = null;
-                    } else {
-                        if (!tagInformation.get(item).containsKey(user)) {
-                            ArrayList<String> arrayList = new ArrayList<>();
-                            arrayList.add(tag);
-                            HashMap<Integer, ArrayList<String>> userTag = new HashMap<>();
-                            userTag.put(user, arrayList);
-
-                            HashMap<Integer, ArrayList<String>> listUserTagTemp = new HashMap<>();
-                            listUserTagTemp = tagInformation.get(item);
-                            userTag.putAll(listUserTagTemp);
-                            tagInformation.put(item, userTag);
-
-                            arrayList = null;
-                            userTag = null;
-                            listUserTagTemp = null;
-
-
-                        } else {
-                            ArrayList<String> arrayList = new ArrayList<>();
-                            arrayList.add(tag);
-
-                            ArrayList<String> listTemp = tagInformation.get(item).get(user);
-                            arrayList.addAll(listTemp);
-
-                            HashMap<Integer, ArrayList<String>> userTag = new HashMap<>();
-                            userTag.put(user, arrayList);
-                            tagInformation.put(item, userTag);
-
-                            arrayList = null;
-                            listTemp = null;
-                            userTag = null;
-                        }
-
-                    }
-
-                }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
+            int user = userIds.get(userId);
+            int item = itemIds.get(itemId);
+            if (!tagInformation.containsKey(item)) {
+                ArrayList<String> arrayList = new ArrayList<>();
+                arrayList.add(tag);
+
+                HashMap<Integer, ArrayList<String>> userTag = new HashMap<>();
+                userTag.put(user, arrayList);
+                tagInformation.put(item, userTag);
+                arrayList = null;
+                userTag = null;
+            } else {
+                if (!tagInformation.get(item).containsKey(user)) {
+                    ArrayList<String> arrayList = new ArrayList<>();
+                    arrayList.add(tag);
+                    HashMap<Integer, ArrayList<String>> userTag = new HashMap<>();
+                    userTag.put(user, arrayList);
+
+                    HashMap<Integer, ArrayList<String>> listUserTagTemp = new HashMap<>();
+                    listUserTagTemp = tagInformation.get(item);
+                    userTag.putAll(listUserTagTemp);
+                    tagInformation.put(item, userTag);
+
+                    arrayList = null;
+                    userTag = null;
+                    listUserTagTemp = null;
+
+
+                } else {
+                    ArrayList<String> arrayList = new ArrayList<>();
+                    arrayList.add(tag);
+
+                    ArrayList<String> listTemp = tagInformation.get(item).get(user);
+                    arrayList.addAll(listTemp);
+
+                    HashMap<Integer, ArrayList<String>> userTag = new HashMap<>();
+                    userTag.put(user, arrayList);
+                    tagInformation.put(item, userTag);
+
+                    arrayList = null;
+                    listTemp = null;
+                    userTag = null;
                 }
-                buffer.clear();
+
             }
-            fileRead.close();
-            fis.close();
-        }
+        });
 //        int numRows = userIds.size(), numCols = userIds.size();
         // build rating matrix
 //        userSocialMatrix = new SequentialAccessSparseMatrix(numRows, numCols, dataTable);
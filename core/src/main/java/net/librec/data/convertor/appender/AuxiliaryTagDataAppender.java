@@ -6,19 +6,13 @@ import com.google.common.collect.Table;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataAppender;
+import net.librec.data.convertor.DataFileScanner;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 import static net.librec.recommender.cf.rating.PMFBigItemRecommender.CAPACITY;
 
@@ -29,11 +23,6 @@ import static net.librec.recommender.cf.rating.PMFBigItemRecommender.CAPACITY;
 
 public class AuxiliaryTagDataAppender extends Configured implements DataAppender {
 
-    /**
-     * The size of the buffer
-     */
-    private static final int BSIZE = 1024 * 1024;
-
     /**
      * a {@code SparseMatrix} object build by the social data
      */
@@ -100,75 +89,34 @@ public class AuxiliaryTagDataAppender extends Configured implements DataAppender
         // Table {row-id, col-id, rate}
 //        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
         // BiMap {raw id, inner id} userIds, itemIds
-        final List<File> files = new ArrayList<File>();
-        final ArrayList<Long> fileSizeList = new ArrayList<Long>();
-        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                fileSizeList.add(file.toFile().length());
-                files.add(file.toFile());
-                return super.visitFile(file, attrs);
+        DataFileScanner.scan(inputDataPath, line -> {
+            ArrayList<String> itemTag = new ArrayList<>();
+            String userId = line.getString(0);
+            String itemId = line.getString(1);
+            String tag = line.getString(2);
+
+            if (!userTagInformation.containsKey(userId)) {
+                ArrayList<String> arrayList = new ArrayList<>();
+                arrayList.add(tag);
+                userTagInformation.put(userId, arrayList);
+            } else {
+                ArrayList<String> arrayList = new ArrayList<>();
+                arrayList.add(tag);
+                arrayList.addAll(userTagInformation.get(userId));
+                userTagInformation.put(userId, arrayList);
             }
-        };
-        Files.walkFileTree(Paths.get(inputDataPath), finder);
-        long allFileSize = 0;
-        for (Long everyFileSize : fileSizeList) {
-            allFileSize = allFileSize + everyFileSize.longValue();
-        }
-        // loop every dataFile collecting from walkFileTree
-        for (File dataFile : files) {
-            FileInputStream fis = new FileInputStream(dataFile);
-            FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = new String();
-            byte[] bytes = new byte[BSIZE];
-            while ((len = fileRead.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len)).replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = new String(bufferData[i]);
-                    ArrayList<String> itemTag = new ArrayList<>();
-                    String[] data = line.trim().split("[ \t,]+");
-                    String userId = data[0];
-                    String itemId = data[1];
-                    String tag = data[2];
-
-                    if (!userTagInformation.containsKey(userId)) {
-                        ArrayList<String> arrayList = new ArrayList<>();
-                        arrayList.add(tag);
-                        userTagInformation.put(userId, arrayList);
-                    } else {
-                        ArrayList<String> arrayList = new ArrayList<>();
-                        arrayList.add(tag);
-                        arrayList.addAll(userTagInformation.get(userId));
-                        userTagInformation.put(userId, arrayList);
-                    }
-
-                    if (!itemTagInformation.containsKey(itemId)) {
-                        ArrayList<String> arrayList = new ArrayList<>();
-                        arrayList.add(tag);
-                        itemTagInformation.put(itemId, arrayList);
-                    } else {
-                        ArrayList<String> arrayList = new ArrayList<>();
-                        arrayList.add(tag);
-                        arrayList.addAll(itemTagInformation.get(itemId));
-                        itemTagInformation.put(itemId, arrayList);
-                    }
-
-                }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
-                }
-                buffer.clear();
+
+            if (!itemTagInformation.containsKey(itemId)) {
+                ArrayList<String> arrayList = new ArrayList<>();
+                arrayList.add(tag);
+                itemTagInformation.put(itemId, arrayList);
+            } else {
+                ArrayList<String> arrayList = new ArrayList<>();
+                arrayList.add(tag);
+                arrayList.addAll(itemTagInformation.get(itemId));
+                itemTagInformation.put(itemId, arrayList);
             }
-            fileRead.close();
-            fis.close();
-        }
+        });
 //        int numRows = userIds.size(), numCols = userIds.size();
         // build rating matrix
 //        userSocialMatrix = new SequentialAccessSparseMatrix(numRows, numCols, dataTable);
@@ -4,21 +4,14 @@ import com.google.common.collect.BiMap;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataAppender;
+import net.librec.data.convertor.DataFileScanner;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.recommender.item.KeyValue;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Created by jinyuanyuan on 2017/4/15.
@@ -79,56 +72,15 @@ public class LocationDataAppender extends Configured implements DataAppender {
      * @throws IOException if I/O error occurs during reading
      */
     private void readData(String inputDataPath) throws IOException {
-
-        final List<File> files = new ArrayList<File>();
-        final ArrayList<Long> fileSizeList = new ArrayList<Long>();
-        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                fileSizeList.add(file.toFile().length());
-                files.add(file.toFile());
-                return super.visitFile(file, attrs);
-            }
-        };
-        Files.walkFileTree(Paths.get(inputDataPath), finder);
-        long allFileSize = 0;
-        for (Long everyFileSize : fileSizeList) {
-            allFileSize = allFileSize + everyFileSize.longValue();
-        }
-        // loop every dataFile collecting from walkFileTree
-        for (File dataFile : files) {
-            FileInputStream fis = new FileInputStream(dataFile);
-            FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = new String();
-            byte[] bytes = new byte[BSIZE];
-            while ((len = fileRead.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len)).replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = new String(bufferData[i]);
-                    String[] data = line.trim().split("[ \t,]+");
-                    String POIId = data[0];
-                    Double latitude = Double.parseDouble(data[1]);
-                    Double longtitude = Double.parseDouble(data[2]);
-
-                    if (itemIds.containsKey(POIId)) {
-                        locationArray[itemIds.get(POIId)] = new KeyValue<Double, Double>(latitude, longtitude);//innerid as the index of locaitonArray
-                    }
-                }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
-                }
-                buffer.clear();
+        DataFileScanner.IdIndex itemIndex = DataFileScanner.IdIndex.of(itemIds);
+        DataFileScanner.scan(inputDataPath, line -> {
+            double latitude = line.getDouble(1);
+            double longtitude = line.getDouble(2);
+            int POIId = line.getId(0, itemIndex);
+            if (POIId >= 0) {
+                locationArray[POIId] = new KeyValue<Double, Double>(latitude, longtitude);//innerid as the index of locaitonArray
             }
-            fileRead.close();
-            fis.close();
-        }
+        });
     }
 
     /**
@@ -1,24 +1,16 @@
 package net.librec.data.convertor.appender;
 
 import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataAppender;
+import net.librec.data.convertor.DataFileScanner;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SparseMatrixBuilder;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 /**
  * @author szkb
@@ -27,11 +19,6 @@ import java.util.List;
 public class TagDataAppender extends Configured implements DataAppender {
 
 
-    /**
-     * The size of the buffer
-     */
-    private static final int BSIZE = 1024 * 1024;
-
     /**
      * a {@code SparseMatrix} object build by the social data
      */
@@ -94,70 +81,25 @@ public class TagDataAppender extends Configured implements DataAppender {
      * @throws IOException if I/O error occurs during reading
      */
     private void readData(String inputDataPath) throws IOException {
-        // Table {row-id, col-id, rate}
-        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-
-        // BiMap {raw id, inner id} userIds, itemIds
-        final List<File> files = new ArrayList<File>();
-        final ArrayList<Long> fileSizeList = new ArrayList<Long>();
-        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                fileSizeList.add(file.toFile().length());
-                files.add(file.toFile());
-                return super.visitFile(file, attrs);
+        // entries {row-id, col-id, tag-id}
+        SparseMatrixBuilder builder = new SparseMatrixBuilder();
+        DataFileScanner.IdIndex userIndex = DataFileScanner.IdIndex.of(userIds);
+        DataFileScanner.scan(inputDataPath, line -> {
+            String tag = line.getString(2);
+            if (!tagToIntegerMap.containsKey(tag)) {
+                int cur= tagToIntegerMap.size();
+                tagToIntegerMap.put(tag, (cur + 1) * 1.0);
             }
-        };
-        Files.walkFileTree(Paths.get(inputDataPath), finder);
-        long allFileSize = 0;
-        for (Long everyFileSize : fileSizeList) {
-            allFileSize = allFileSize + everyFileSize.longValue();
-        }
-        // loop every dataFile collecting from walkFileTree
-        for (File dataFile : files) {
-            FileInputStream fis = new FileInputStream(dataFile);
-            FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = new String();
-            byte[] bytes = new byte[BSIZE];
-            while ((len = fileRead.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len)).replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = new String(bufferData[i]);
-                    String[] data = line.trim().split("[ \t,]+");
-                    String userA = data[0];
-                    String userB = data[1];
-                    String tag = data[2];
-                    if (!tagToIntegerMap.containsKey(tag)) {
-                        int cur= tagToIntegerMap.size();
-                        tagToIntegerMap.put(tag, (cur + 1) * 1.0);
-                    }
-                    if (userIds.containsKey(userA) && userIds.containsKey(userB)) {
-                        int row = userIds.get(userA);
-                        int col = userIds.get(userB);
-                        dataTable.put(row, col, tagToIntegerMap.get(tag));
-                    }
-                }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
-                }
-                buffer.clear();
+            int row = line.getId(0, userIndex);
+            int col = line.getId(1, userIndex);
+            if (row >= 0 && col >= 0) {
+                builder.add(row, col, tagToIntegerMap.get(tag));
             }
-            fileRead.close();
-            fis.close();
-        }
+        });
         int numRows = userIds.size(), numCols = userIds.size();
         // build rating matrix
-        userTagMatrix = new SequentialAccessSparseMatrix(numRows, numCols, dataTable);
+        userTagMatrix = builder.build(numRows, numCols);
         System.out.println(userTagMatrix.size());
-        // release memory of data table
-        dataTable = null;
     }
 
     /**
@@ -19,16 +19,22 @@ package net.librec.data.model;
 
 import com.google.common.collect.BiMap;
 import net.librec.common.LibrecException;
+import net.librec.common.LibrecRuntimeException;
+import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.*;
 import net.librec.math.structure.DataFrame;
 import net.librec.math.structure.DataSet;
+import net.librec.math.structure.IdDictionary;
+import net.librec.math.structure.MappedSequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.util.DriverClassUtil;
 import net.librec.util.ReflectionUtil;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -94,7 +100,7 @@ public abstract class AbstractDataModel extends Configured implements DataModel
             if (dataSplitter != null) {
                 dataSplitter.setDataConvertor(dataConvertor);
                 dataSplitter.splitData();
-                trainDataSet = dataSplitter.getTrainData();
+                trainDataSet = mapTrainDataSet(conf, dataSplitter.getTrainData());
                 testDataSet = dataSplitter.getTestData();
             }
         } catch (ClassNotFoundException e) {
@@ -157,12 +163,42 @@ public abstract class AbstractDataModel extends Configured implements DataModel
 
     @Override
     public void nextFold(){
-        trainDataSet = dataSplitter.getTrainData();
+        trainDataSet = mapTrainDataSet(conf, dataSplitter.getTrainData());
         testDataSet = dataSplitter.getTestData();
         validDataSet = dataSplitter.getValidData();
         // generate next fold by Splitter
     }
 
+    /**
+     * Move a train matrix to a memory-mapped file in the directory of
+     * {@code data.model.mapped.dir}, if it is set, see
+     * {@link MappedSequentialAccessSparseMatrix}. The mapped matrix is
+     * read-only, recommenders modifying their train matrix copy it to the
+     * heap, see {@code MatrixRecommender#isTrainMatrixModified()}.
+     *
+     * @param conf         the configuration
+     * @param trainDataSet the train set
+     * @return the mapped train matrix, or the train set itself
+     */
+    public static DataSet mapTrainDataSet(Configuration conf, DataSet trainDataSet) {
+        String mappedDir = conf.get("data.model.mapped.dir");
+        if (StringUtils.isBlank(mappedDir) || !(trainDataSet instanceof SequentialAccessSparseMatrix)
+                || trainDataSet instanceof MappedSequentialAccessSparseMatrix) {
+            return trainDataSet;
+        }
+        try {
+            File dir = new File(mappedDir);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("can not create the directory " + dir);
+            }
+            File file = File.createTempFile("train", ".matrix", dir);
+            file.deleteOnExit();
+            return MappedSequentialAccessSparseMatrix.write((SequentialAccessSparseMatrix) trainDataSet, file);
+        } catch (IOException e) {
+            throw new LibrecRuntimeException("failed to map the train matrix to " + mappedDir, e);
+        }
+    }
+
     /**
      * Load data model.
      *
@@ -252,12 +288,27 @@ public abstract class AbstractDataModel extends Configured implements DataModel
 
     @Override
     public BiMap<String, Integer> getUserMappingData(){
-        return DataFrame.getInnerMapping("user");
+        return getMappingData("user");
     }
 
     @Override
     public BiMap<String, Integer> getItemMappingData(){
-        return DataFrame.getInnerMapping("item");
+        return getMappingData("item");
+    }
+
+    /**
+     * Get the mapping data of an attribute, from the dictionaries of the
+     * convertor of this data model.
+     *
+     * @param attrName the name of the attribute
+     * @return the {raw id, inner id} dictionary of the attribute.
+     */
+    @Override
+    public IdDictionary getMappingData(String attrName){
+        if (dataConvertor == null) {
+            return DataFrame.getInnerMapping(attrName);
+        }
+        return dataConvertor.getIdDictionaries().get(attrName);
     }
 
 
@@ -24,6 +24,7 @@ import net.librec.conf.Configured;
 import net.librec.data.DataModel;
 import net.librec.data.convertor.ArffDataConvertor;
 import net.librec.math.structure.DataSet;
+import net.librec.math.structure.IdDictionaries;
 import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.math.structure.SparseTensor;
@@ -68,7 +69,9 @@ public class ArffDataModel extends AbstractDataModel implements DataModel {
         String splitter = conf.get("data.model.splitter");
         String dfsDataDir = conf.get(Configured.CONF_DFS_DATA_DIR);
         String inputDataPath = dfsDataDir + "/" + conf.get(Configured.CONF_DATA_INPUT_PATH);
-        dataConvertor = new ArffDataConvertor(inputDataPath);
+        ArffDataConvertor arffDataConvertor = new ArffDataConvertor(inputDataPath);
+        arffDataConvertor.setIdDictionaries(new IdDictionaries());
+        dataConvertor = arffDataConvertor;
     }
 
     /**
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.model;
+
+import com.google.common.collect.BiMap;
+import net.librec.common.LibrecException;
+import net.librec.data.DataAppender;
+import net.librec.data.DataContext;
+import net.librec.data.DataModel;
+import net.librec.data.DataSplitter;
+import net.librec.math.structure.DataSet;
+
+/**
+ * A <tt>FoldDataModel</tt> is the view of a data model on one fold of a cross
+ * validation. It has its own train and test sets and shares everything else,
+ * e.g. the id mappings and the appender, with the data model it is built on,
+ * so that several folds can be trained at the same time.
+ */
+public class FoldDataModel implements DataModel {
+    /**
+     * the data model the fold is taken from
+     */
+    private final DataModel dataModel;
+    /**
+     * train DataSet
+     */
+    private final DataSet trainDataSet;
+    /**
+     * test DataSet
+     */
+    private final DataSet testDataSet;
+
+    /**
+     * Initializes a newly created {@code FoldDataModel} object.
+     *
+     * @param dataModel    the built data model the fold is taken from
+     * @param trainDataSet the train set of the fold
+     * @param testDataSet  the test set of the fold
+     */
+    public FoldDataModel(DataModel dataModel, DataSet trainDataSet, DataSet testDataSet) {
+        this.dataModel = dataModel;
+        this.trainDataSet = trainDataSet;
+        this.testDataSet = testDataSet;
+    }
+
+    /**
+     * A fold is built already, nothing to do.
+     */
+    @Override
+    public void buildDataModel() throws LibrecException {
+    }
+
+    @Override
+    public void loadDataModel() throws LibrecException {
+        dataModel.loadDataModel();
+    }
+
+    @Override
+    public void saveDataModel() throws LibrecException {
+        dataModel.saveDataModel();
+    }
+
+    @Override
+    public DataSplitter getDataSplitter() {
+        return dataModel.getDataSplitter();
+    }
+
+    @Override
+    public DataSet getTrainDataSet() {
+        return trainDataSet;
+    }
+
+    @Override
+    public DataSet getTestDataSet() {
+        return testDataSet;
+    }
+
+    @Override
+    public DataSet getValidDataSet() {
+        DataSplitter dataSplitter = dataModel.getDataSplitter();
+        return dataSplitter != null ? dataSplitter.getValidData() : dataModel.getValidDataSet();
+    }
+
+    @Override
+    public DataSet getDatetimeDataSet() {
+        return dataModel.getDatetimeDataSet();
+    }
+
+    @Override
+    public BiMap<String, Integer> getUserMappingData() {
+        return dataModel.getUserMappingData();
+    }
+
+    @Override
+    public BiMap<String, Integer> getItemMappingData() {
+        return dataModel.getItemMappingData();
+    }
+
+    @Override
+    public BiMap<String, Integer> getMappingData(String attrName) {
+        return dataModel.getMappingData(attrName);
+    }
+
+    @Override
+    public DataAppender getDataAppender() {
+        return dataModel.getDataAppender();
+    }
+
+    @Override
+    public DataContext getContext() {
+        return dataModel.getContext();
+    }
+
+    /**
+     * A fold has no folds of its own.
+     */
+    @Override
+    public void nextFold() {
+    }
+
+    /**
+     * A fold has no folds of its own.
+     *
+     * @return false
+     */
+    @Override
+    public boolean hasNextFold() {
+        return false;
+    }
+}
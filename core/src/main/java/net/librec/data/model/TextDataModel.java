@@ -20,9 +20,13 @@ package net.librec.data.model;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
+import net.librec.data.convertor.CachedDataConvertor;
 import net.librec.data.convertor.TextDataConvertor;
+import net.librec.math.structure.IdDictionaries;
 import net.librec.math.structure.DataSet;
+import org.apache.commons.lang.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -62,8 +66,20 @@ public class TextDataModel extends AbstractDataModel {
             inputDataPath[i] = conf.get(Configured.CONF_DFS_DATA_DIR) + "/" + inputDataPath[i];
         }
         String dataColumnFormat = conf.get(Configured.CONF_DATA_COLUMN_FORMAT, "UIR");
-        dataConvertor = new TextDataConvertor(dataColumnFormat, inputDataPath, conf.get("data.convert.sep","[\t;, ]"));
+        TextDataConvertor textDataConvertor = new TextDataConvertor(dataColumnFormat, inputDataPath,
+                conf.get("data.convert.sep","[\t;, ]"));
+        textDataConvertor.setNumReadThreads(conf.getInt("data.convert.read.threads", 1));
+        textDataConvertor.setIdDictionaries(new IdDictionaries());
+        dataConvertor = textDataConvertor;
         try {
+            String cacheDirectory = conf.get("data.cache.dir");
+            if (cacheDirectory != null && conf.getBoolean("data.cache", true)) {
+                File cacheFile = CachedDataConvertor.getCacheFile(cacheDirectory, inputDataPath, dataColumnFormat,
+                        conf.get("data.convert.sep", "[\t;, ]"), conf.get("data.convert.columns"),
+                        conf.get("data.convert.binarize.threshold"));
+                dataConvertor = new CachedDataConvertor(textDataConvertor, cacheFile, conf,
+                        StringUtils.equals(dataColumnFormat, "UIRT"));
+            }
             dataConvertor.processData();
         } catch (IOException e) {
             e.printStackTrace();
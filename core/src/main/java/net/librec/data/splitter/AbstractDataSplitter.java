@@ -20,12 +20,12 @@ package net.librec.data.splitter;
 import net.librec.conf.Configured;
 import net.librec.data.DataConvertor;
 import net.librec.data.DataSplitter;
-import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialSparseVector;
+import net.librec.math.structure.VectorBasedSequentialSparseVector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.LinkedList;
 
 /**
  * Abstract Data Splitter
@@ -54,9 +54,38 @@ public abstract class AbstractDataSplitter extends Configured implements DataSpl
      */
     protected SequentialAccessSparseMatrix validationMatrix;
     /**
-     * assign matrix
+     * the set of an entry assigned to the train set
      */
-    protected LinkedList<SequentialAccessSparseMatrix> assignMatrixList;
+    protected static final byte TRAIN = 0;
+    /**
+     * the set of an entry assigned to the test set
+     */
+    protected static final byte TEST = 1;
+    /**
+     * the set of an entry assigned to the validation set
+     */
+    protected static final byte VALIDATION = 2;
+
+    /**
+     * The set each entry of the preference matrix is assigned to, in the
+     * order the matrix iterates its entries. The train, test and validation
+     * matrices are built from it when they are asked for, so splitting keeps
+     * one byte per entry instead of copies of the preference matrix.
+     */
+    private byte[] assignments;
+    /**
+     * the fold of each entry of the preference matrix, from 1, when cross
+     * validating
+     */
+    protected byte[] entryFolds;
+    /**
+     * the number of folds of the cross validation
+     */
+    protected int numFolds;
+    /**
+     * the number of folds {@link #nextFold()} went through
+     */
+    private int numFoldsDone;
 
     protected SequentialAccessSparseMatrix preferenceMatrix = null;
     protected SequentialAccessSparseMatrix datetimeMatrix = null;
@@ -73,6 +102,9 @@ public abstract class AbstractDataSplitter extends Configured implements DataSpl
      */
     @Override
     public SequentialAccessSparseMatrix getTrainData() {
+        if (trainMatrix == null && assignments != null) {
+            trainMatrix = select(assignments, TRAIN);
+        }
         return trainMatrix;
     }
 
@@ -83,6 +115,9 @@ public abstract class AbstractDataSplitter extends Configured implements DataSpl
      */
     @Override
     public SequentialAccessSparseMatrix getTestData() {
+        if (testMatrix == null && assignments != null) {
+            testMatrix = select(assignments, TEST);
+        }
         return testMatrix;
     }
 
@@ -93,6 +128,9 @@ public abstract class AbstractDataSplitter extends Configured implements DataSpl
      */
     @Override
     public SequentialAccessSparseMatrix getValidData() {
+        if (validationMatrix == null && assignments != null && contains(assignments, VALIDATION)) {
+            validationMatrix = select(assignments, VALIDATION);
+        }
         return validationMatrix;
     }
 
@@ -100,31 +138,176 @@ public abstract class AbstractDataSplitter extends Configured implements DataSpl
         this.preferenceMatrix = preferenceMatrix;
     }
 
+    /**
+     * Create the assignments of the entries of the preference matrix, all of
+     * them to the train set.
+     *
+     * @return the assignments indexed as the entries of the preference matrix
+     */
+    protected byte[] newAssignments() {
+        return new byte[preferenceMatrix.getNumEntries()];
+    }
+
+    /**
+     * Use the assignments of the entries as the split of the preference
+     * matrix. The matrices of the sets are built again when asked for.
+     *
+     * @param assignments the set of each entry of the preference matrix
+     */
+    protected void assign(byte[] assignments) {
+        this.assignments = assignments;
+        trainMatrix = null;
+        testMatrix = null;
+        validationMatrix = null;
+    }
+
+    /**
+     * Get the index of the first entry of each row of the preference matrix,
+     * the index of the entry at a column position of a row being the one of
+     * the row plus the position.
+     *
+     * @return the indices of the first entries of the rows, and the number of
+     * entries at the end
+     */
+    protected int[] rowEntryPointers() {
+        int numRows = preferenceMatrix.rowSize();
+        int[] rowPointers = new int[numRows + 1];
+        for (int row = 0; row < numRows; row++) {
+            rowPointers[row + 1] = rowPointers[row] + preferenceMatrix.row(row).getNumEntries();
+        }
+        return rowPointers;
+    }
+
+    /**
+     * Get the indices of the entries of each column of the preference matrix
+     * by their row positions, i.e. in the order of the rows.
+     *
+     * @return the indices of the entries of each column
+     */
+    protected int[][] columnEntries() {
+        int numRows = preferenceMatrix.rowSize();
+        int numColumns = preferenceMatrix.columnSize();
+        int[][] columnEntries = new int[numColumns][];
+        for (int column = 0; column < numColumns; column++) {
+            columnEntries[column] = new int[preferenceMatrix.column(column).getNumEntries()];
+        }
+        int[] rowPositions = new int[numColumns];
+        for (int row = 0, entry = 0; row < numRows; row++) {
+            SequentialSparseVector rowVector = preferenceMatrix.row(row);
+            for (int position = 0; position < rowVector.getNumEntries(); position++) {
+                int column = rowVector.getIndexAtPosition(position);
+                columnEntries[column][rowPositions[column]++] = entry++;
+            }
+        }
+        return columnEntries;
+    }
+
     @Override
     public boolean nextFold() {
-        if (assignMatrixList == null) {
-            assignMatrixList = new LinkedList<>();
+        if (entryFolds == null) {
+            // a single split, gone through by the first call
+            return numFoldsDone++ == 0;
+        }
+        if (numFoldsDone < numFolds) {
+            assign(foldAssignments(++numFoldsDone));
             return true;
         } else {
-            if (assignMatrixList.size() > 0) {
-                SequentialAccessSparseMatrix assign = assignMatrixList.poll();
-                trainMatrix = preferenceMatrix.clone();
-                testMatrix = preferenceMatrix.clone();
-
-                for (MatrixEntry matrixEntry : preferenceMatrix) {
-                    if (assign.get(matrixEntry.row(), matrixEntry.column()) == 1) {
-                        trainMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
-                    } else {
-                        testMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
-                    }
-                }
+            return false;
+        }
+    }
 
-                trainMatrix.reshape();
-                testMatrix.reshape();
+    /**
+     * Get the number of folds {@link #nextFold()} has still to go through.
+     *
+     * @return the number of remaining folds
+     */
+    public int getNumRemainingFolds() {
+        if (entryFolds == null) {
+            return numFoldsDone == 0 ? 1 : 0;
+        }
+        return numFolds - numFoldsDone;
+    }
+
+    /**
+     * Get the train and test matrices of a remaining fold without moving to
+     * it, so that several folds can be used at the same time. Every call
+     * builds new matrices, the state of the splitter is left unchanged.
+     *
+     * @param index the index of the fold among the remaining ones, in
+     *              [0, {@link #getNumRemainingFolds()})
+     * @return the train matrix and the test matrix of the fold
+     */
+    public SequentialAccessSparseMatrix[] getFold(int index) {
+        if (index < 0 || index >= getNumRemainingFolds()) {
+            throw new IndexOutOfBoundsException("fold " + index + " out of " + getNumRemainingFolds() + " remaining folds");
+        }
+        if (entryFolds == null) {
+            return new SequentialAccessSparseMatrix[]{getTrainData(), getTestData()};
+        }
+        byte[] foldAssignments = foldAssignments(numFoldsDone + index + 1);
+        return new SequentialAccessSparseMatrix[]{select(foldAssignments, TRAIN), select(foldAssignments, TEST)};
+    }
+
+    /**
+     * Assign the entries of a fold to the test set and the others to the
+     * train set.
+     *
+     * @param fold the fold, from 1
+     * @return the assignments of the entries
+     */
+    private byte[] foldAssignments(int fold) {
+        byte[] foldAssignments = new byte[entryFolds.length];
+        for (int entry = 0; entry < entryFolds.length; entry++) {
+            if (entryFolds[entry] == fold) {
+                foldAssignments[entry] = TEST;
+            }
+        }
+        return foldAssignments;
+    }
+
+    private static boolean contains(byte[] assignments, byte set) {
+        for (byte assignment : assignments) {
+            if (assignment == set) {
                 return true;
-            } else {
-                return false;
             }
         }
+        return false;
+    }
+
+    /**
+     * Build the matrix of the entries of the preference matrix assigned to a
+     * set, in one pass over the rows. Zero preferences are left out, as a
+     * reshape would do.
+     *
+     * @param assignments the set of each entry of the preference matrix
+     * @param set         the set to build
+     * @return the matrix of the entries of the set
+     */
+    protected SequentialAccessSparseMatrix select(byte[] assignments, byte set) {
+        int numRows = preferenceMatrix.rowSize();
+        int numColumns = preferenceMatrix.columnSize();
+        VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[numRows];
+        for (int row = 0, rowStart = 0; row < numRows; row++) {
+            SequentialSparseVector rowVector = preferenceMatrix.row(row);
+            int numEntries = rowVector.getNumEntries();
+            int numSelected = 0;
+            for (int position = 0; position < numEntries; position++) {
+                if (assignments[rowStart + position] == set && rowVector.getAtPosition(position) != 0.0D) {
+                    numSelected++;
+                }
+            }
+            int[] indices = new int[numSelected];
+            double[] values = new double[numSelected];
+            for (int position = 0, selected = 0; selected < numSelected; position++) {
+                double value = rowVector.getAtPosition(position);
+                if (assignments[rowStart + position] == set && value != 0.0D) {
+                    indices[selected] = rowVector.getIndexAtPosition(position);
+                    values[selected++] = value;
+                }
+            }
+            rowVectors[row] = new VectorBasedSequentialSparseVector(numColumns, indices, values);
+            rowStart += numEntries;
+        }
+        return new SequentialAccessSparseMatrix(numRows, numColumns, rowVectors);
     }
 }
@@ -29,6 +29,7 @@ import net.librec.util.RatingContext;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -41,11 +42,6 @@ import java.util.List;
  */
 public class GivenNDataSplitter extends AbstractDataSplitter {
 
-    /**
-     * The rate dataset for splitting
-     */
-    private SequentialAccessSparseMatrix preferenceMatrix;
-
     /**
      * The datetime dataset for splitting
      */
@@ -138,32 +134,20 @@ public class GivenNDataSplitter extends AbstractDataSplitter {
      */
     public void getGivenNByUser(int numGiven) throws Exception {
         if (numGiven > 0) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[] rowPointers = rowEntryPointers();
 
             for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
-                int numRated = preferenceMatrix.row(rowIndex).getNumEntries();
+                int numRated = rowPointers[rowIndex + 1] - rowPointers[rowIndex];
 
                 if (numRated > numGiven) {
-                    int[] givenPositions = Randoms.nextIntArray(numGiven, numRated);
-
-                    for (int testColumnPosition = 0, columnPosition = 0; columnPosition < numRated; columnPosition++) {
-                        if (testColumnPosition < givenPositions.length && givenPositions[testColumnPosition] == columnPosition) {
-                            testMatrix.setAtColumnPosition(rowIndex, columnPosition, 0.0D);
-                            testColumnPosition++;
-                        } else {
-                            trainMatrix.setAtColumnPosition(rowIndex, columnPosition, 0.0D);
-                        }
-                    }
-                } else {
-                    for (Vector.VectorEntry vectorEntry : preferenceMatrix.row(rowIndex)) {
-                        testMatrix.setAtColumnPosition(rowIndex, vectorEntry.position(), 0.0D);
+                    Arrays.fill(assignments, rowPointers[rowIndex], rowPointers[rowIndex + 1], TEST);
+                    for (int columnPosition : Randoms.nextIntArray(numGiven, numRated)) {
+                        assignments[rowPointers[rowIndex] + columnPosition] = TRAIN;
                     }
                 }
             }
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -176,9 +160,8 @@ public class GivenNDataSplitter extends AbstractDataSplitter {
      */
     public void getGivenNByUserDate(int numGiven) {
         if (numGiven > 0) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[] rowPointers = rowEntryPointers();
 
             for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
                 SequentialSparseVector itemRatingVector = preferenceMatrix.row(rowIndex);
@@ -193,16 +176,11 @@ public class GivenNDataSplitter extends AbstractDataSplitter {
 
                 Collections.sort(itemRatingList);
 
-                for (int index = 0; index < itemRatingList.size(); index++) {
-                    if (index < numGiven) {
-                        testMatrix.setAtColumnPosition(rowIndex, itemRatingList.get(index).getItem(), 0.0D);
-                    } else {
-                        trainMatrix.setAtColumnPosition(rowIndex, itemRatingList.get(index).getItem(), 0.0D);
-                    }
+                for (int index = numGiven; index < itemRatingList.size(); index++) {
+                    assignments[rowPointers[rowIndex] + itemRatingList.get(index).getItem()] = TEST;
                 }
             }
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -216,31 +194,21 @@ public class GivenNDataSplitter extends AbstractDataSplitter {
      */
     public void getGivenNByItem(int numGiven) throws Exception {
         if (numGiven > 0) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[][] columnEntries = columnEntries();
 
             for (int columnIndex = 0, columnSize = preferenceMatrix.columnSize(); columnIndex < columnSize; columnIndex++) {
-                int numRated = preferenceMatrix.column(columnIndex).getNumEntries();
+                int numRated = columnEntries[columnIndex].length;
                 if (numRated > numGiven) {
-                    int[] givenPositions = Randoms.nextIntArray(numGiven, numRated);
-                    for (int testRowPosition = 0, rowPosition = 0; rowPosition < numRated; rowPosition++) {
-                        if (testRowPosition < givenPositions.length && givenPositions[testRowPosition] == rowPosition) {
-                            testMatrix.setAtRowPosition(rowPosition, columnIndex, 0.0D);
-                            testRowPosition++;
-                        } else {
-                            trainMatrix.setAtRowPosition(rowPosition, columnIndex, 0.0D);
-                        }
+                    for (int entry : columnEntries[columnIndex]) {
+                        assignments[entry] = TEST;
                     }
-                } else {
-                    for (int rowPosition = 0; rowPosition < numRated; rowPosition++) {
-                        testMatrix.setAtRowPosition(rowPosition, columnIndex, 0.0D);
+                    for (int rowPosition : Randoms.nextIntArray(numGiven, numRated)) {
+                        assignments[columnEntries[columnIndex][rowPosition]] = TRAIN;
                     }
                 }
             }
-
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -253,8 +221,8 @@ public class GivenNDataSplitter extends AbstractDataSplitter {
      */
     public void getGivenNByItemDate(int numGiven) {
         if (numGiven > 0) {
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[][] columnEntries = columnEntries();
 
             for (int columnIndex = 0, columnSize = preferenceMatrix.columnSize(); columnIndex < columnSize; columnIndex++) {
                 SequentialSparseVector userRatingVector = preferenceMatrix.column(columnIndex);
@@ -271,16 +239,11 @@ public class GivenNDataSplitter extends AbstractDataSplitter {
                 }
 
                 Collections.sort(ratingContexts);
-                for (int rowPosition = 0; rowPosition < ratingContexts.size(); rowPosition++) {
-                    RatingContext ratingContext = ratingContexts.get(rowPosition);
-                    if (rowPosition < numGiven)
-                        testMatrix.setAtRowPosition(ratingContext.getUser(), columnIndex, 0.0D);
-                    else
-                        trainMatrix.setAtRowPosition(ratingContext.getUser(), columnIndex, 0.0D);
+                for (int rowPosition = numGiven; rowPosition < ratingContexts.size(); rowPosition++) {
+                    assignments[columnEntries[columnIndex][ratingContexts.get(rowPosition).getUser()]] = TEST;
                 }
             }
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 }
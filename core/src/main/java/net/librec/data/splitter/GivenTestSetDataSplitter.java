@@ -21,6 +21,7 @@ import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataConvertor;
+import net.librec.data.convertor.AbstractDataConvertor;
 import net.librec.data.convertor.ArffDataConvertor;
 import net.librec.data.convertor.TextDataConvertor;
 import net.librec.math.structure.MatrixEntry;
@@ -62,7 +63,7 @@ public class GivenTestSetDataSplitter extends AbstractDataSplitter {
 
     @Override
     public void splitData() throws LibrecException{
-        DataConvertor testConvertor = null;
+        AbstractDataConvertor testConvertor = null;
         String dataFormat = conf.get("data.model.format");
         String[] inputDataPath = conf.get("data.testset.path").trim().split(":");
         for (int i = 0; i < inputDataPath.length; i++) {
@@ -84,6 +85,8 @@ public class GivenTestSetDataSplitter extends AbstractDataSplitter {
         }
 
         try {
+            // the test data takes the inner ids of the training data
+            testConvertor.setIdDictionaries(dataConvertor.getIdDictionaries());
             testConvertor.processData();
         }catch (IOException e) {
             e.printStackTrace();
@@ -17,15 +17,14 @@
  */
 package net.librec.data.splitter;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.data.DataConvertor;
 import net.librec.data.convertor.ArffDataConvertor;
 import net.librec.math.algorithm.Randoms;
-import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialSparseVector;
+import net.librec.math.structure.VectorBasedSequentialSparseVector;
 import net.librec.util.Lists;
 import org.apache.commons.lang.StringUtils;
 
@@ -43,11 +42,6 @@ public class KCVDataSplitter extends AbstractDataSplitter {
      */
 //    private SparseMatrix preferenceMatrix;
 
-    /**
-     * The assign matrix for k-fold splitting
-     */
-    private SequentialAccessSparseMatrix assignMatrix;
-
     /**
      * The number of folds
      */
@@ -97,8 +91,10 @@ public class KCVDataSplitter extends AbstractDataSplitter {
             }
         }
 
+        if (kFold > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("at most " + Byte.MAX_VALUE + " folds are supported, not " + kFold);
+        }
         if (kFold > 0) {
-            assignMatrix = preferenceMatrix.clone();
             int numRates = preferenceMatrix.getNumEntries();
             int numFold = kFold > numRates ? numRates : kFold;
 
@@ -109,33 +105,13 @@ public class KCVDataSplitter extends AbstractDataSplitter {
                 rdm.add(new AbstractMap.SimpleImmutableEntry<>((int) (index / indvCount) + 1, Randoms.uniform()));
             }
 
-            int[] fold = new int[numRates];
+            // the fold of each entry, instead of an assign matrix per fold
+            entryFolds = new byte[numRates];
             Lists.sortList(rdm, true);
             for (int index = 0; index < numRates; index++) {
-                fold[index] = rdm.get(index).getKey();
-            }
-
-            int i = 0;
-            for (MatrixEntry matrixEntry : assignMatrix) {
-                assignMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), fold[i++]);
-            }
-        }
-
-        if (null == assignMatrixList) {
-            List<Table<Integer, Integer, Integer>> tableList = new ArrayList<>(kFold + 1);
-            for (int i = 0; i < kFold + 1; i++) {
-                tableList.add(HashBasedTable.create());
-            }
-            for (MatrixEntry me : assignMatrix) {
-                if (me.get() != 0) {
-                    tableList.get((int) me.get()).put(me.row(), me.column(), 1);
-                }
-            }
-
-            this.assignMatrixList = new LinkedList<>();
-            for (int i = 1; i < kFold + 1; i++) {
-                this.assignMatrixList.add(new SequentialAccessSparseMatrix(assignMatrix.rowSize(), assignMatrix.columnSize(), tableList.get(i)));
+                entryFolds[index] = rdm.get(index).getKey().byteValue();
             }
+            numFolds = kFold;
         }
     }
 
@@ -147,12 +123,48 @@ public class KCVDataSplitter extends AbstractDataSplitter {
     @Override
     public void splitData() throws LibrecException {
         this.cvNumber = conf.getInt("data.splitter.cv.number", 5);
-        if (null == assignMatrix) {
+        if (null == entryFolds) {
             splitData(this.cvNumber);
         }
     }
 
+    /**
+     * Get the assign matrices of the remaining folds, whose entries are 1 at
+     * the test entries of the folds. The matrices are built on each call.
+     *
+     * @return the assign matrices of the remaining folds
+     */
     public List<SequentialAccessSparseMatrix> getAssignMatrixList() {
-        return this.assignMatrixList;
+        if (entryFolds == null) {
+            return null;
+        }
+        int numRows = preferenceMatrix.rowSize();
+        int numColumns = preferenceMatrix.columnSize();
+        List<SequentialAccessSparseMatrix> assignMatrixList = new ArrayList<>(getNumRemainingFolds());
+        for (int fold = numFolds - getNumRemainingFolds() + 1; fold <= numFolds; fold++) {
+            VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[numRows];
+            for (int row = 0, rowStart = 0; row < numRows; row++) {
+                SequentialSparseVector rowVector = preferenceMatrix.row(row);
+                int numEntries = rowVector.getNumEntries();
+                int numAssigned = 0;
+                for (int position = 0; position < numEntries; position++) {
+                    if (entryFolds[rowStart + position] == fold) {
+                        numAssigned++;
+                    }
+                }
+                int[] indices = new int[numAssigned];
+                double[] values = new double[numAssigned];
+                for (int position = 0, assigned = 0; assigned < numAssigned; position++) {
+                    if (entryFolds[rowStart + position] == fold) {
+                        indices[assigned] = rowVector.getIndexAtPosition(position);
+                        values[assigned++] = 1;
+                    }
+                }
+                rowVectors[row] = new VectorBasedSequentialSparseVector(numColumns, indices, values);
+                rowStart += numEntries;
+            }
+            assignMatrixList.add(new SequentialAccessSparseMatrix(numRows, numColumns, rowVectors));
+        }
+        return assignMatrixList;
     }
 }
@@ -17,8 +17,6 @@
  */
 package net.librec.data.splitter;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.data.DataConvertor;
@@ -43,11 +41,6 @@ import java.util.List;
  */
 public class LOOCVDataSplitter extends AbstractDataSplitter {
 
-    /**
-     * The rate dataset for splitting
-     */
-    private SequentialAccessSparseMatrix preferenceMatrix;
-
     /**
      * The datetime dataset for splitting
      */
@@ -143,25 +136,18 @@ public class LOOCVDataSplitter extends AbstractDataSplitter {
      * the test set and the remaining data as the training set.
      */
     public void getLOOByUser() {
-        trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
+        byte[] assignments = newAssignments();
+        int[] rowPointers = rowEntryPointers();
 
         for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
-            int numColumnEntries = preferenceMatrix.row(rowIndex).getNumEntries();
+            int numColumnEntries = rowPointers[rowIndex + 1] - rowPointers[rowIndex];
             if (numColumnEntries == 0){
                 continue;
             }
             int randomRowPosition = (int) (numColumnEntries * Randoms.uniform());
-            this.preferenceMatrix = dataConvertor.getPreferenceMatrix();
-
-            trainMatrix.setAtColumnPosition(rowIndex, randomRowPosition, 0.0D);
-
-            dataTable.put(rowIndex, preferenceMatrix.row(rowIndex).getIndexAtPosition(randomRowPosition),
-                    preferenceMatrix.getAtColumnPosition(rowIndex, randomRowPosition));
+            assignments[rowPointers[rowIndex] + randomRowPosition] = TEST;
         }
-
-        trainMatrix.reshape();
-        testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix.rowSize(), preferenceMatrix.columnSize(), dataTable);
+        assign(assignments);
     }
 
     /**
@@ -169,8 +155,8 @@ public class LOOCVDataSplitter extends AbstractDataSplitter {
      * preserved as the test set and the remaining data as the training set.
      */
     public void getLOOByUserDate() {
-        trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
+        byte[] assignments = newAssignments();
+        int[] rowPointers = rowEntryPointers();
 
         for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
             SequentialSparseVector itemRatingVector = preferenceMatrix.row(rowIndex);
@@ -185,12 +171,9 @@ public class LOOCVDataSplitter extends AbstractDataSplitter {
             }
             Collections.sort(ratingContexts);
             int columnPosition = ratingContexts.get(ratingContexts.size() - 1).getItem();
-            trainMatrix.setAtColumnPosition(rowIndex, columnPosition, 0.0D);
-            dataTable.put(rowIndex, preferenceMatrix.row(rowIndex).getIndexAtPosition(columnPosition),
-                    preferenceMatrix.getAtColumnPosition(rowIndex, columnPosition));
+            assignments[rowPointers[rowIndex] + columnPosition] = TEST;
         }
-        trainMatrix.reshape();
-        testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix.rowSize(), preferenceMatrix.columnSize(), dataTable);
+        assign(assignments);
     }
 
     /**
@@ -198,24 +181,18 @@ public class LOOCVDataSplitter extends AbstractDataSplitter {
      * the test set and the remaining data as the training set.
      */
     public void getLOOByItems() {
-        trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-
-        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
+        byte[] assignments = newAssignments();
+        int[][] columnEntries = columnEntries();
 
         for (int columnIndex = 0, columnSize = preferenceMatrix.columnSize(); columnIndex < columnSize; columnIndex++) {
-            int numRowEntries = preferenceMatrix.column(columnIndex).getNumEntries();
+            int numRowEntries = columnEntries[columnIndex].length;
             if (numRowEntries == 0){
                 continue;
             }
             int randomRowPosition = (int) (numRowEntries * Randoms.uniform());
-
-            trainMatrix.setAtRowPosition(randomRowPosition, columnIndex, 0.0D);
-            dataTable.put(preferenceMatrix.column(columnIndex).getIndexAtPosition(randomRowPosition),
-                    columnIndex, preferenceMatrix.getAtRowPosition(randomRowPosition, columnIndex));
+            assignments[columnEntries[columnIndex][randomRowPosition]] = TEST;
         }
-
-        trainMatrix.reshape();
-        testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix.rowSize(), preferenceMatrix.columnSize(), dataTable);
+        assign(assignments);
     }
 
     /**
@@ -223,9 +200,8 @@ public class LOOCVDataSplitter extends AbstractDataSplitter {
      * preserved as the test set and the remaining data as the training set.
      */
     public void getLooByItemsDate() {
-        trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-
-        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
+        byte[] assignments = newAssignments();
+        int[][] columnEntries = columnEntries();
 
         for (int columnIndex = 0, columnSize = preferenceMatrix.columnSize(); columnIndex < columnSize; columnIndex++) {
             SequentialSparseVector userRatingVector = preferenceMatrix.column(columnIndex);
@@ -240,14 +216,9 @@ public class LOOCVDataSplitter extends AbstractDataSplitter {
             }
             Collections.sort(ratingContexts);
             int rowPosition = ratingContexts.get(ratingContexts.size() - 1).getUser();
-
-            trainMatrix.setAtRowPosition(rowPosition, columnIndex, 0.0D);
-            dataTable.put(preferenceMatrix.column(columnIndex).getIndexAtPosition(rowPosition), columnIndex,
-                    preferenceMatrix.getAtRowPosition(rowPosition, columnIndex));
+            assignments[columnEntries[columnIndex][rowPosition]] = TEST;
         }
-
-        trainMatrix.reshape();
-        testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix.rowSize(), preferenceMatrix.columnSize(), dataTable);
+        assign(assignments);
     }
 
 }
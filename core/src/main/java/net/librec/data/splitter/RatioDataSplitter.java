@@ -135,23 +135,13 @@ public class RatioDataSplitter extends AbstractDataSplitter {
      */
     public void getRatioByRating(double ratio) {
         if (ratio > 0 && ratio < 1) {
-
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-
-            for (MatrixEntry matrixEntry : preferenceMatrix) {
-
-                double rdm = Randoms.uniform();
-
-                if (rdm < ratio) {
-                    testMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
-                } else {
-                    trainMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
+            byte[] assignments = newAssignments();
+            for (int entry = 0; entry < assignments.length; entry++) {
+                if (Randoms.uniform() >= ratio) {
+                    assignments[entry] = TEST;
                 }
             }
-
-            testMatrix.reshape();
-            trainMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -163,9 +153,8 @@ public class RatioDataSplitter extends AbstractDataSplitter {
      */
     public void getRatioByRatingDate(double ratio) {
         if (ratio > 0 && ratio < 1) {
-
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[] rowPointers = rowEntryPointers();
 
             List<RatingContext> ratingContexts = new ArrayList<>(datetimeMatrix.size());
             for (MatrixEntry matrixEntry : preferenceMatrix) {
@@ -175,19 +164,11 @@ public class RatioDataSplitter extends AbstractDataSplitter {
             Collections.sort(ratingContexts);
 
             int trainSize = (int) (ratingContexts.size() * ratio);
-            for (int index = 0; index < ratingContexts.size(); index++) {
+            for (int index = trainSize; index < ratingContexts.size(); index++) {
                 RatingContext rc = ratingContexts.get(index);
-                int rowIndex = rc.getUser();
-                int columnPosition = rc.getItem();
-
-                if (index < trainSize)
-                    testMatrix.setAtColumnPosition(rowIndex, columnPosition, 0.0D);
-                else
-                    trainMatrix.setAtColumnPosition(rowIndex, columnPosition, 0.0D);
+                assignments[rowPointers[rc.getUser()] + rc.getItem()] = TEST;
             }
-
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -200,21 +181,9 @@ public class RatioDataSplitter extends AbstractDataSplitter {
      */
     public void getRatioByUser(double ratio) {
         if (ratio > 0 && ratio < 1) {
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-
-            for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
-                for (Vector.VectorEntry vectorEntry : preferenceMatrix.row(rowIndex)) {
-                    if (Randoms.uniform() < ratio) {
-                        testMatrix.setAtColumnPosition(rowIndex, vectorEntry.position(), 0.0D);
-                    } else {
-                        trainMatrix.setAtColumnPosition(rowIndex, vectorEntry.position(), 0.0D);
-                    }
-                }
-            }
+            // the entries of the users are the entries of the matrix in order
+            getRatioByRating(ratio);
         }
-        testMatrix.reshape();
-        trainMatrix.reshape();
     }
 
 
@@ -229,12 +198,11 @@ public class RatioDataSplitter extends AbstractDataSplitter {
     public void getFixedRatioByUser(double ratio) {
 
         if (ratio > 0 && ratio < 1) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[] rowPointers = rowEntryPointers();
 
             for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
-                int numRated = preferenceMatrix.row(rowIndex).getNumEntries();
+                int numRated = rowPointers[rowIndex + 1] - rowPointers[rowIndex];
 
                 // k is the test set, this will be smaller, so we want these indices in the list
                 int numRatio = (int) Math.floor(numRated * (1 - ratio));
@@ -243,22 +211,14 @@ public class RatioDataSplitter extends AbstractDataSplitter {
                 }
                 try {
                     int[] givenPositions = Randoms.nextIntArray(numRatio, numRated);
-
-                    for (int testColumnPosition = 0, columnPosition = 0; columnPosition < numRated; columnPosition++) {
-                        if (testColumnPosition < givenPositions.length && givenPositions[testColumnPosition] == columnPosition) {
-                            testMatrix.setAtColumnPosition(rowIndex, testColumnPosition, 0.0D);
-                            testColumnPosition++;
-                        } else {
-                            trainMatrix.setAtColumnPosition(rowIndex, testColumnPosition, 0.0D);
-                        }
+                    for (int columnPosition : givenPositions) {
+                        assignments[rowPointers[rowIndex] + columnPosition] = TEST;
                     }
                 } catch (java.lang.Exception e) {
                     LOG.error("This error should not happen because k cannot be outside of the range if ratio is " + ratio);
                 }
             }
-
-            testMatrix.reshape();
-            trainMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -271,9 +231,8 @@ public class RatioDataSplitter extends AbstractDataSplitter {
     public void getRatioByUserDate(double ratio) {
 
         if (ratio > 0 && ratio < 1) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[] rowPointers = rowEntryPointers();
 
             for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
                 SequentialSparseVector itemRatingVector = preferenceMatrix.row(rowIndex);
@@ -289,16 +248,11 @@ public class RatioDataSplitter extends AbstractDataSplitter {
 
                 Collections.sort(itemRatingList);
 
-                for (int index = 0; index < itemRatingList.size(); index++) {
-                    if (index < trainSize) {
-                        testMatrix.setAtColumnPosition(rowIndex, itemRatingList.get(index).getItem(), 0.0D);
-                    } else {
-                        trainMatrix.setAtColumnPosition(rowIndex, itemRatingList.get(index).getItem(), 0.0D);
-                    }
+                for (int index = trainSize; index < itemRatingList.size(); index++) {
+                    assignments[rowPointers[rowIndex] + itemRatingList.get(index).getItem()] = TEST;
                 }
             }
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -312,21 +266,17 @@ public class RatioDataSplitter extends AbstractDataSplitter {
     public void getRatioByItem(double ratio) {
 
         if (ratio > 0 && ratio < 1) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[][] columnEntries = columnEntries();
 
             for (int columnIndex = 0, columnSize = preferenceMatrix.columnSize(); columnIndex < columnSize; columnIndex++) {
-                for (Vector.VectorEntry vectorEntry : preferenceMatrix.column(columnIndex)) {
-                    if (Randoms.uniform() < ratio) {
-                        testMatrix.setAtRowPosition(vectorEntry.position(), columnIndex, 0.0D);
-                    } else {
-                        trainMatrix.setAtRowPosition(vectorEntry.position(), columnIndex, 0.0D);
+                for (int entry : columnEntries[columnIndex]) {
+                    if (Randoms.uniform() >= ratio) {
+                        assignments[entry] = TEST;
                     }
                 }
             }
-            trainMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -339,9 +289,8 @@ public class RatioDataSplitter extends AbstractDataSplitter {
     public void getRatioByItemDate(double ratio) {
 
         if (ratio > 0 && ratio < 1) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
+            byte[] assignments = newAssignments();
+            int[][] columnEntries = columnEntries();
 
             for (int columnIndex = 0, columnSize = preferenceMatrix.columnSize(); columnIndex < columnSize; columnIndex++) {
                 SequentialSparseVector userRatingVector = preferenceMatrix.column(columnIndex);
@@ -360,16 +309,11 @@ public class RatioDataSplitter extends AbstractDataSplitter {
                 Collections.sort(ratingContexts);
                 int trainSize = (int) (ratingContexts.size() * ratio);
 
-                for (int rowPosition = 0; rowPosition < ratingContexts.size(); rowPosition++) {
-                    RatingContext ratingContext = ratingContexts.get(rowPosition);
-                    if (rowPosition < trainSize)
-                        testMatrix.setAtRowPosition(ratingContext.getUser(), columnIndex, 0.0D);
-                    else
-                        trainMatrix.setAtRowPosition(ratingContext.getUser(), columnIndex, 0.0D);
+                for (int rowPosition = trainSize; rowPosition < ratingContexts.size(); rowPosition++) {
+                    assignments[columnEntries[columnIndex][ratingContexts.get(rowPosition).getUser()]] = TEST;
                 }
             }
-            testMatrix.reshape();
-            trainMatrix.reshape();
+            assign(assignments);
         }
     }
 
@@ -382,33 +326,18 @@ public class RatioDataSplitter extends AbstractDataSplitter {
      */
     public void getRatio(double trainRatio, double validationRatio) {
         if ((trainRatio > 0 && validationRatio > 0) && (trainRatio + validationRatio) < 1) {
-
-            trainMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            validationMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-            testMatrix = new SequentialAccessSparseMatrix(preferenceMatrix);
-
-//            for (int rowIndex = 0, rowSize = preferenceMatrix.rowSize(); rowIndex < rowSize; rowIndex++) {
-//                SequentialAccessSparseVector userRatingVector = preferenceMatrix.row(rowIndex);
-            for (MatrixEntry matrixEntry : preferenceMatrix) {
+            byte[] assignments = newAssignments();
+            for (int entry = 0; entry < assignments.length; entry++) {
                 double rdm = Randoms.uniform();
                 if (rdm < trainRatio) {
-                    // training
-                    validationMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
-                    testMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
+                    assignments[entry] = TRAIN;
                 } else if (rdm < trainRatio + validationRatio) {
-                    // validation
-                    trainMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
-                    testMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
+                    assignments[entry] = VALIDATION;
                 } else {
-                    // test
-                    trainMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
-                    validationMatrix.setAtColumnPosition(matrixEntry.row(), matrixEntry.columnPosition(), 0.0D);
+                    assignments[entry] = TEST;
                 }
             }
-
-            trainMatrix.reshape();
-            validationMatrix.reshape();
-            testMatrix.reshape();
+            assign(assignments);
         }
     }
-}
\ No newline at end of file
+}
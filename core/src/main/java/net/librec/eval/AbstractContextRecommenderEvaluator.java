@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+import net.librec.recommender.item.RecommendedList;
+
+import java.util.Collections;
+
+/**
+ * Abstract evaluator of the contexts one by one. Evaluated on its own, the
+ * evaluator runs an {@link EvaluationSweep} of its own, so the contexts are
+ * evaluated in parallel as well.
+ */
+public abstract class AbstractContextRecommenderEvaluator extends AbstractRecommenderEvaluator
+        implements ContextRecommenderEvaluator {
+
+    @Override
+    public double evaluate(EvalContext evalContext) {
+        return EvaluationSweep.evaluate(evalContext, Collections.singletonList(this))[0];
+    }
+
+    /**
+     * Evaluate on the test set with the the list of recommended items.
+     *
+     * @param groundTruthList the given ground truth list
+     * @param recommendedList the list of recommended items
+     * @return evaluate result
+     */
+    @Override
+    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
+        EvalContext evalContext = new EvalContext(conf, groundTruthList, recommendedList);
+        evalContext.setSimilarityMatrix(similarityMatrix);
+        evalContext.setSimilarities(similarities);
+        if (statistics != null) {
+            evalContext.setStatistics(statistics);
+        }
+        return evaluate(evalContext);
+    }
+}
@@ -48,6 +48,10 @@ public abstract class AbstractRecommenderEvaluator implements RecommenderEvaluat
      * all similarity maps
      */
     protected Map<String, RecommenderSimilarity> similarities;
+    /**
+     * statistics of the train and test sets
+     */
+    protected EvalStatistics statistics;
 
     /**
      * Evaluate on the recommender context with the recommended list.
@@ -63,10 +67,21 @@ public abstract class AbstractRecommenderEvaluator implements RecommenderEvaluat
             similarityMatrix = context.getSimilarity().getSimilarityMatrix();
             similarities = context.getSimilarities();
         }
+        statistics = context.getStatistics();
         return evaluate(groundTruthList, recommendedList);
     }
 
     public double evaluate(EvalContext evalContext){
+        prepare(evalContext);
+        return evaluate(evalContext.getGroundTruthList(), evalContext.getRecommendedList());
+    }
+
+    /**
+     * Take the configuration, the similarities and the statistics of the evaluate context.
+     *
+     * @param evalContext evaluate context
+     */
+    public void prepare(EvalContext evalContext) {
         conf = evalContext.getConf();
 
         if (evalContext.getSimilarityMatrix() != null){
@@ -76,7 +91,34 @@ public abstract class AbstractRecommenderEvaluator implements RecommenderEvaluat
         if (evalContext.getSimilarities() != null){
             similarities = evalContext.getSimilarities();
         }
-        return evaluate(evalContext.getGroundTruthList(), evalContext.getRecommendedList());
+
+        if (evalContext.getStatistics() != null){
+            statistics = evalContext.getStatistics();
+        }
+    }
+
+    /**
+     * Return a statistic of the train and test sets, or the statistic set in
+     * the configuration under the name of its key when there is none.
+     *
+     * @param key the key of the statistic
+     * @return the statistic, or null if it is found in neither
+     */
+    protected int[] getStatistic(EvalStatistics.Key<int[]> key) {
+        int[] statistic = statistics != null ? statistics.get(key) : null;
+        return statistic != null ? statistic : conf.getInts(key.getName());
+    }
+
+    /**
+     * Return the average value of the evaluated contexts.
+     *
+     * @param sum                  the sum of the values of the evaluated contexts
+     * @param numEvaluatedContexts the number of evaluated contexts
+     * @param numContexts          the number of contexts
+     * @return evaluate result
+     */
+    public double aggregate(double sum, int numEvaluatedContexts, int numContexts) {
+        return numEvaluatedContexts > 0 ? sum / numEvaluatedContexts : 0.0d;
     }
 
     /**
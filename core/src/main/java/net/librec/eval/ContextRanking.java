@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+import net.librec.recommender.item.KeyValue;
+import net.librec.recommender.item.KeyValueArrayList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ground truth and the recommended keys of one context in primitive
+ * arrays, as seen by a {@link ContextRecommenderEvaluator}. The ground truth
+ * is the slice of the context in a {@link GroundTruthIndex}, looked up by a
+ * binary search over its keys; when the keys of the index are not sorted, a
+ * copy sorted by key is made for the context.
+ * <p>
+ * An instance is filled context after context by one thread and its arrays
+ * are reused, so it must not be kept or shared across threads.
+ */
+public class ContextRanking {
+
+    private int contextIdx;
+
+    /**
+     * keys and values of the ground truth index, the context is at [truthStart, truthStart + truthSize)
+     */
+    private int[] truthKeys;
+    private double[] truthValues;
+    private int truthStart;
+    private int truthSize;
+
+    /**
+     * true if the keys of the context are sorted and distinct, so they are their own sorted copy
+     */
+    private boolean sortedByKey;
+
+    /**
+     * the ground truth sorted by key and then by position, as key &lt;&lt; 32 | position
+     */
+    private long[] sortedTruth = new long[16];
+    private int numDistinctTruth;
+
+    /**
+     * keys of the recommended list in the order of their ranks
+     */
+    private int[] recommendedKeys = new int[16];
+    private int recommendedSize;
+    private int[] sortedRecommendedKeys = new int[16];
+
+    private boolean[] truthMarks = new boolean[16];
+    private int[] keyBuffer = new int[16];
+    private double[] valueBuffer = new double[16];
+
+    /**
+     * Fill in the lists of a context.
+     *
+     * @param contextIdx       context index
+     * @param groundTruthIndex the ground truth of all contexts
+     * @param recommendedList  the recommended list of the context
+     */
+    public void reset(int contextIdx, GroundTruthIndex groundTruthIndex,
+                      List<KeyValue<Integer, Double>> recommendedList) {
+        this.contextIdx = contextIdx;
+
+        truthKeys = groundTruthIndex.getKeys();
+        truthValues = groundTruthIndex.getValues();
+        truthStart = groundTruthIndex.getStart(contextIdx);
+        truthSize = groundTruthIndex.getEnd(contextIdx) - truthStart;
+        if (truthMarks.length < truthSize) {
+            truthMarks = new boolean[Math.max(truthSize, truthMarks.length * 2)];
+        }
+        sortedByKey = groundTruthIndex.isSortedByKey();
+        if (sortedByKey) {
+            numDistinctTruth = truthSize;
+        } else {
+            if (sortedTruth.length < truthSize) {
+                sortedTruth = new long[Math.max(truthSize, sortedTruth.length * 2)];
+            }
+            for (int index = 0; index < truthSize; index++) {
+                sortedTruth[index] = ((long) truthKeys[truthStart + index] << 32) | index;
+            }
+            Arrays.sort(sortedTruth, 0, truthSize);
+            numDistinctTruth = 0;
+            for (int index = 0; index < truthSize; index++) {
+                if (index == 0 || getSortedTruthKey(index) != getSortedTruthKey(index - 1)) {
+                    numDistinctTruth++;
+                }
+            }
+        }
+
+        recommendedSize = recommendedList.size();
+        if (recommendedKeys.length < recommendedSize) {
+            recommendedKeys = new int[Math.max(recommendedSize, recommendedKeys.length * 2)];
+        }
+        if (recommendedList instanceof KeyValueArrayList) {
+            KeyValueArrayList keyValueList = (KeyValueArrayList) recommendedList;
+            for (int rank = 0; rank < recommendedSize; rank++) {
+                recommendedKeys[rank] = keyValueList.getKey(rank);
+            }
+        } else {
+            for (int rank = 0; rank < recommendedSize; rank++) {
+                recommendedKeys[rank] = recommendedList.get(rank).getKey();
+            }
+        }
+    }
+
+    /**
+     * @return the context index
+     */
+    public int getContextIdx() {
+        return contextIdx;
+    }
+
+    /**
+     * @return the size of the ground truth list, counting repeated keys
+     */
+    public int getTruthSize() {
+        return truthSize;
+    }
+
+    /**
+     * @return the number of distinct keys in the ground truth
+     */
+    public int getNumDistinctTruth() {
+        return numDistinctTruth;
+    }
+
+    /**
+     * @param index position in the ground truth list
+     * @return the key at the position
+     */
+    public int getTruthKey(int index) {
+        return truthKeys[truthStart + index];
+    }
+
+    /**
+     * @param index position in the ground truth list
+     * @return the value at the position
+     */
+    public double getTruthValue(int index) {
+        return truthValues[truthStart + index];
+    }
+
+    /**
+     * @param key key
+     * @return true if the key is in the ground truth
+     */
+    public boolean containsTruth(int key) {
+        return findTruth(key) >= 0;
+    }
+
+    /**
+     * Find the first entry of the key in the sorted ground truth.
+     *
+     * @param key key
+     * @return the index in the sorted ground truth of the entry with the key
+     * and the lowest position, or -1 if the key is not in the ground truth
+     */
+    public int findTruth(int key) {
+        int low = 0, high = truthSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getSortedTruthKey(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < truthSize && getSortedTruthKey(low) == key ? low : -1;
+    }
+
+    /**
+     * @param sortedIndex index in the sorted ground truth
+     * @return the key at the index
+     */
+    public int getSortedTruthKey(int sortedIndex) {
+        return sortedByKey ? truthKeys[truthStart + sortedIndex] : (int) (sortedTruth[sortedIndex] >> 32);
+    }
+
+    /**
+     * @param sortedIndex index in the sorted ground truth
+     * @return the position in the ground truth list of the entry at the index
+     */
+    public int getSortedTruthPosition(int sortedIndex) {
+        return sortedByKey ? sortedIndex : (int) sortedTruth[sortedIndex];
+    }
+
+    /**
+     * @return the size of the recommended list
+     */
+    public int getRecommendedSize() {
+        return recommendedSize;
+    }
+
+    /**
+     * @param rank rank in the recommended list, from 0
+     * @return the key at the rank
+     */
+    public int getRecommendedKey(int rank) {
+        return recommendedKeys[rank];
+    }
+
+    /**
+     * Return the keys of the first ranks of the recommended list sorted, for
+     * binary searches.
+     *
+     * @param topK the number of ranks
+     * @return an array starting with the keys of the ranks, sorted
+     */
+    public int[] getSortedRecommendedKeys(int topK) {
+        if (sortedRecommendedKeys.length < topK) {
+            sortedRecommendedKeys = new int[Math.max(topK, sortedRecommendedKeys.length * 2)];
+        }
+        System.arraycopy(recommendedKeys, 0, sortedRecommendedKeys, 0, topK);
+        Arrays.sort(sortedRecommendedKeys, 0, topK);
+        return sortedRecommendedKeys;
+    }
+
+    /**
+     * @param topN the number of recommended items evaluated
+     * @return the number of ranks evaluated in the recommended list
+     */
+    public int getTopK(int topN) {
+        return topN <= recommendedSize ? topN : recommendedSize;
+    }
+
+    /**
+     * @return one mark per position of the ground truth list, all cleared
+     */
+    public boolean[] getTruthMarks() {
+        Arrays.fill(truthMarks, 0, truthSize, false);
+        return truthMarks;
+    }
+
+    /**
+     * @param size the size needed
+     * @return a scratch array of at least the size
+     */
+    public int[] getKeyBuffer(int size) {
+        if (keyBuffer.length < size) {
+            keyBuffer = new int[Math.max(size, keyBuffer.length * 2)];
+        }
+        return keyBuffer;
+    }
+
+    /**
+     * @param size the size needed
+     * @return a scratch array of at least the size
+     */
+    public double[] getValueBuffer(int size) {
+        if (valueBuffer.length < size) {
+            valueBuffer = new double[Math.max(size, valueBuffer.length * 2)];
+        }
+        return valueBuffer;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+/**
+ * An evaluator whose value is added up from the recommended lists of the
+ * contexts one by one, so an {@link EvaluationSweep} computes it together with
+ * other evaluators in a single parallel pass over the contexts.
+ * <p>
+ * {@link #evaluate(ContextRanking, EvalSum)} is called from several threads
+ * at the same time and must only read the state set up by
+ * {@link #prepare(EvalContext)}.
+ */
+public interface ContextRecommenderEvaluator extends RecommenderEvaluator {
+
+    /**
+     * Prepare the evaluation of the contexts of the evaluate context, e.g.
+     * read the configuration and the statistics needed.
+     *
+     * @param evalContext evaluate context
+     */
+    void prepare(EvalContext evalContext);
+
+    /**
+     * Evaluate the recommended list of a context.
+     *
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
+     */
+    void evaluate(ContextRanking ranking, EvalSum sum);
+
+    /**
+     * Return the value of the evaluator from the sum of all contexts.
+     *
+     * @param sum                  the sum of the terms of all contexts
+     * @param numEvaluatedContexts the number of contexts added to the sum
+     * @param numContexts          the number of contexts
+     * @return evaluate result
+     */
+    double aggregate(double sum, int numEvaluatedContexts, int numContexts);
+}
@@ -19,11 +19,20 @@ import java.util.Map;
  */
 public class EvalContext {
     private RecommendedList groundTruthList;
+    private GroundTruthIndex groundTruthIndex;
+    /**
+     * the test matrix the ground truth list is built from when it is asked for
+     */
+    private SequentialAccessSparseMatrix testMatrix;
     private RecommendedList recommendedList;
     private SymmMatrix similarityMatrix = null;
     private Map<String, RecommenderSimilarity> similarities = null;
     private Configuration conf;
     private Recommender recommender;
+    /**
+     * statistics of the train and test sets the evaluators share
+     */
+    private EvalStatistics statistics = new EvalStatistics();
 
     public EvalContext(Configuration conf, RecommendedList recommendedList, SequentialAccessSparseMatrix testMatrix,
                        SymmMatrix similarityMatrix, Map<String, RecommenderSimilarity> similarities) {
@@ -31,13 +40,19 @@ public class EvalContext {
         this.similarities = similarities;
         this.similarityMatrix = similarityMatrix;
         this.recommendedList = recommendedList;
-        this.groundTruthList = getGroundTruthListFromSparseMatrix(testMatrix);
+        setTestMatrix(testMatrix);
     }
 
     public EvalContext(Configuration conf, RecommendedList recommendedList, SequentialAccessSparseMatrix testMatrix) {
         this.conf = conf;
         this.recommendedList = recommendedList;
-        this.groundTruthList = getGroundTruthListFromSparseMatrix(testMatrix);
+        setTestMatrix(testMatrix);
+    }
+
+    public EvalContext(Configuration conf, RecommendedList groundTruthList, RecommendedList recommendedList) {
+        this.conf = conf;
+        this.groundTruthList = groundTruthList;
+        this.recommendedList = recommendedList;
     }
 
     public EvalContext(Configuration conf, Recommender recommender, DataSet testDataset) throws LibrecException {
@@ -49,7 +64,7 @@ public class EvalContext {
         } else {
             recommendedList = recommender.recommendRating(testDataset);
         }
-        this.groundTruthList = getGroundTruthListFromDataSet(testDataset);
+        setGroundTruth(testDataset);
     }
 
     public EvalContext(Configuration conf, Recommender recommender, DataSet testDataset,
@@ -59,6 +74,41 @@ public class EvalContext {
         this.similarityMatrix = similarityMatrix;
     }
 
+    /**
+     * Evaluate the recommended list the recommender has already made for the
+     * test set, instead of recommending again.
+     *
+     * @param conf            configuration
+     * @param recommender     the recommender that made the list
+     * @param recommendedList the recommended list
+     * @param testDataset     the test set
+     */
+    public EvalContext(Configuration conf, Recommender recommender, RecommendedList recommendedList, DataSet testDataset) {
+        this.conf = conf;
+        this.recommender = recommender;
+        this.recommendedList = recommendedList;
+        setGroundTruth(testDataset);
+    }
+
+    /**
+     * Take the ground truth of the test set. A test matrix is only indexed,
+     * its ground truth list is built when it is asked for.
+     *
+     * @param testDataset the test set
+     */
+    private void setGroundTruth(DataSet testDataset) {
+        if (this.recommender instanceof TensorRecommender) {
+            this.groundTruthList = getGroundTruthListFromDataSet(testDataset);
+        } else {
+            setTestMatrix((SequentialAccessSparseMatrix) testDataset);
+        }
+    }
+
+    private void setTestMatrix(SequentialAccessSparseMatrix testMatrix) {
+        this.testMatrix = testMatrix;
+        this.groundTruthIndex = GroundTruthIndex.of(testMatrix);
+    }
+
     public RecommendedList getGroundTruthListFromDataSet(DataSet dataset) {
         if (this.recommender instanceof TensorRecommender){
             return getGroundTruthListFromSparseTensor((SparseTensor) dataset);
@@ -111,11 +161,28 @@ public class EvalContext {
     }
 
     public RecommendedList getGroundTruthList() {
+        if (groundTruthList == null && testMatrix != null) {
+            groundTruthList = getGroundTruthListFromSparseMatrix(testMatrix);
+        }
         return groundTruthList;
     }
 
     public void setGroundTruthList(RecommendedList groundTruthList) {
         this.groundTruthList = groundTruthList;
+        this.groundTruthIndex = null;
+        this.testMatrix = null;
+    }
+
+    /**
+     * return the ground truth of all contexts in compressed rows
+     *
+     * @return the ground truth index
+     */
+    public GroundTruthIndex getGroundTruthIndex() {
+        if (groundTruthIndex == null && groundTruthList != null) {
+            groundTruthIndex = GroundTruthIndex.of(groundTruthList);
+        }
+        return groundTruthIndex;
     }
 
     public RecommendedList getRecommendedList() {
@@ -142,6 +209,14 @@ public class EvalContext {
         this.similarities = similarities;
     }
 
+    public EvalStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(EvalStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     public Configuration getConf() {
         return conf;
     }
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Statistics of the train and test sets the evaluators need, such as the
+ * number of dropped items of each user, kept as typed values in memory. A
+ * statistic is either put as a value or as a supplier, which is called the
+ * first time the statistic is asked for and whose value is then shared by
+ * all the evaluators.
+ */
+public class EvalStatistics {
+
+    /**
+     * the number of items of each user that are not in the train set, for AUCEvaluator
+     */
+    public static final Key<int[]> NUM_DROPPED_ITEMS = new Key<>("rec.eval.auc.dropped.num");
+
+    /**
+     * the number of users of each item in the train and test sets, for NoveltyEvaluator
+     */
+    public static final Key<int[]> ITEM_PURCHASE_COUNTS = new Key<>("rec.eval.item.purchase.num");
+
+    private final Map<Key<?>, Object> values = new HashMap<>();
+
+    private final Map<Key<?>, Supplier<?>> suppliers = new HashMap<>();
+
+    /**
+     * Put the value of a statistic.
+     *
+     * @param key   the key of the statistic
+     * @param value the value
+     * @param <T>   the type of the value
+     */
+    public synchronized <T> void put(Key<T> key, T value) {
+        suppliers.remove(key);
+        values.put(key, value);
+    }
+
+    /**
+     * Put a statistic that is computed by the supplier when it is first asked for.
+     *
+     * @param key      the key of the statistic
+     * @param supplier the supplier of the value
+     * @param <T>      the type of the value
+     */
+    public synchronized <T> void putLazy(Key<T> key, Supplier<? extends T> supplier) {
+        values.remove(key);
+        suppliers.put(key, supplier);
+    }
+
+    /**
+     * Return the value of a statistic, computing it if it is put lazily and
+     * not computed yet.
+     *
+     * @param key the key of the statistic
+     * @param <T> the type of the value
+     * @return the value, or null if the statistic is not put
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(Key<T> key) {
+        Supplier<?> supplier = suppliers.remove(key);
+        if (supplier != null) {
+            values.put(key, supplier.get());
+        }
+        return (T) values.get(key);
+    }
+
+    /**
+     * @param key the key of the statistic
+     * @return true if the statistic is put, computed or not
+     */
+    public synchronized boolean contains(Key<?> key) {
+        return values.containsKey(key) || suppliers.containsKey(key);
+    }
+
+    /**
+     * The key of a statistic of type {@code T}, compared by identity.
+     *
+     * @param <T> the type of the value
+     */
+    public static final class Key<T> {
+        private final String name;
+
+        public Key(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the name of the statistic, the configuration key it was passed by before
+         */
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
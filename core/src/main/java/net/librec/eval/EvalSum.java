@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+/**
+ * The terms a {@link ContextRecommenderEvaluator} adds up for a block of
+ * contexts. The terms are kept in the order they are added, so the blocks of
+ * an {@link EvaluationSweep} are summed in the order of the contexts and give
+ * the same value as adding them up context after context.
+ */
+public class EvalSum {
+
+    private double[] terms = new double[64];
+    private int numTerms;
+    private int numContexts;
+
+    /**
+     * Add the value of an evaluated context.
+     *
+     * @param value the value of the context
+     */
+    public void add(double value) {
+        addTerm(value);
+        numContexts++;
+    }
+
+    /**
+     * Add a term to the sum without counting a context.
+     *
+     * @param term the term
+     */
+    public void addTerm(double term) {
+        if (numTerms == terms.length) {
+            double[] newTerms = new double[terms.length * 2];
+            System.arraycopy(terms, 0, newTerms, 0, numTerms);
+            terms = newTerms;
+        }
+        terms[numTerms++] = term;
+    }
+
+    /**
+     * Add the terms to a sum in the order they were added.
+     *
+     * @param sum the sum so far
+     * @return the sum with the terms added
+     */
+    public double addTo(double sum) {
+        for (int index = 0; index < numTerms; index++) {
+            sum += terms[index];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of evaluated contexts
+     */
+    public int getNumContexts() {
+        return numContexts;
+    }
+
+    /**
+     * Remove all the terms and contexts.
+     */
+    public void clear() {
+        numTerms = 0;
+        numContexts = 0;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+import net.librec.recommender.item.RecommendedList;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluate a recommended list with any number of
+ * {@link ContextRecommenderEvaluator}s in a single pass over the contexts.
+ * Each context is read once from the {@link GroundTruthIndex} and the
+ * recommended list into a {@link ContextRanking} and handed to all the
+ * evaluators. Blocks of contexts are evaluated in parallel and their sums
+ * are added up in the order of the contexts, so the values are the same
+ * whatever the number of threads.
+ */
+public final class EvaluationSweep {
+
+    /**
+     * the number of contexts evaluated by a task
+     */
+    static final int BLOCK_SIZE = 256;
+
+    /**
+     * the number of blocks evaluated before their sums are added up, per thread
+     */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private EvaluationSweep() {
+    }
+
+    /**
+     * Evaluate the recommended list of the evaluate context with the
+     * evaluators.
+     *
+     * @param evalContext evaluate context
+     * @param evaluators  the evaluators
+     * @return the values of the evaluators, in their order
+     */
+    public static double[] evaluate(EvalContext evalContext, List<? extends ContextRecommenderEvaluator> evaluators) {
+        final ContextRecommenderEvaluator[] evaluatorArray = evaluators.toArray(new ContextRecommenderEvaluator[0]);
+        final int numEvaluators = evaluatorArray.length;
+        for (ContextRecommenderEvaluator evaluator : evaluatorArray) {
+            evaluator.prepare(evalContext);
+        }
+
+        final GroundTruthIndex groundTruthIndex = evalContext.getGroundTruthIndex();
+        final RecommendedList recommendedList = evalContext.getRecommendedList();
+        final int numContexts = groundTruthIndex.size();
+        int numBlocks = (numContexts + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int numBlocksPerWave = Math.max(1, BLOCKS_PER_THREAD * Runtime.getRuntime().availableProcessors());
+
+        final EvalSum[][] blockSums = new EvalSum[Math.min(numBlocks, numBlocksPerWave)][numEvaluators];
+        for (EvalSum[] sums : blockSums) {
+            for (int evaluatorIdx = 0; evaluatorIdx < numEvaluators; evaluatorIdx++) {
+                sums[evaluatorIdx] = new EvalSum();
+            }
+        }
+        final ThreadLocal<ContextRanking> rankings = ThreadLocal.withInitial(ContextRanking::new);
+
+        double[] sums = new double[numEvaluators];
+        int[] numEvaluatedContexts = new int[numEvaluators];
+        for (int waveStart = 0; waveStart < numBlocks; waveStart += numBlocksPerWave) {
+            final int firstBlock = waveStart;
+            int waveEnd = Math.min(numBlocks, waveStart + numBlocksPerWave);
+            IntStream.range(firstBlock, waveEnd).parallel().forEach(blockIdx -> {
+                EvalSum[] blockSum = blockSums[blockIdx - firstBlock];
+                ContextRanking ranking = rankings.get();
+                int contextEnd = Math.min(numContexts, (blockIdx + 1) * BLOCK_SIZE);
+                for (int contextIdx = blockIdx * BLOCK_SIZE; contextIdx < contextEnd; contextIdx++) {
+                    ranking.reset(contextIdx, groundTruthIndex, recommendedList.getKeyValueListByContext(contextIdx));
+                    for (int evaluatorIdx = 0; evaluatorIdx < numEvaluators; evaluatorIdx++) {
+                        evaluatorArray[evaluatorIdx].evaluate(ranking, blockSum[evaluatorIdx]);
+                    }
+                }
+            });
+            for (int blockIdx = firstBlock; blockIdx < waveEnd; blockIdx++) {
+                EvalSum[] blockSum = blockSums[blockIdx - firstBlock];
+                for (int evaluatorIdx = 0; evaluatorIdx < numEvaluators; evaluatorIdx++) {
+                    sums[evaluatorIdx] = blockSum[evaluatorIdx].addTo(sums[evaluatorIdx]);
+                    numEvaluatedContexts[evaluatorIdx] += blockSum[evaluatorIdx].getNumContexts();
+                    blockSum[evaluatorIdx].clear();
+                }
+            }
+        }
+
+        double[] values = new double[numEvaluators];
+        for (int evaluatorIdx = 0; evaluatorIdx < numEvaluators; evaluatorIdx++) {
+            values[evaluatorIdx] = evaluatorArray[evaluatorIdx].aggregate(sums[evaluatorIdx],
+                    numEvaluatedContexts[evaluatorIdx], numContexts);
+        }
+        return values;
+    }
+}
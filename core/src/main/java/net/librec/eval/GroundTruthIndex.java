@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+import net.librec.math.structure.MatrixEntry;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.recommender.item.KeyValue;
+import net.librec.recommender.item.KeyValueArrayList;
+import net.librec.recommender.item.RecommendedList;
+
+import java.util.List;
+
+/**
+ * The ground truth of all contexts in compressed rows: the keys and values of
+ * context {@code c} are at the positions {@code [getStart(c), getEnd(c))} of
+ * {@link #getKeys()} and {@link #getValues()}, in the order of the ground truth
+ * list. Built from a test matrix, the keys of each context are sorted and
+ * distinct.
+ */
+public class GroundTruthIndex {
+
+    private final int[] contextStarts;
+    private final int[] keys;
+    private final double[] values;
+    private final boolean sortedByKey;
+
+    private GroundTruthIndex(int[] contextStarts, int[] keys, double[] values) {
+        this.contextStarts = contextStarts;
+        this.keys = keys;
+        this.values = values;
+        boolean sorted = true;
+        for (int contextIdx = 0; sorted && contextIdx < size(); contextIdx++) {
+            for (int position = contextStarts[contextIdx] + 1; position < contextStarts[contextIdx + 1]; position++) {
+                if (keys[position] <= keys[position - 1]) {
+                    sorted = false;
+                    break;
+                }
+            }
+        }
+        this.sortedByKey = sorted;
+    }
+
+    /**
+     * Index the entries of a test matrix, the rows being the contexts.
+     *
+     * @param testMatrix test matrix
+     * @return the ground truth index
+     */
+    public static GroundTruthIndex of(SequentialAccessSparseMatrix testMatrix) {
+        int numContexts = testMatrix.rowSize();
+        int[] contextStarts = new int[numContexts + 1];
+        for (MatrixEntry matrixEntry : testMatrix) {
+            contextStarts[matrixEntry.row() + 1]++;
+        }
+        for (int contextIdx = 0; contextIdx < numContexts; contextIdx++) {
+            contextStarts[contextIdx + 1] += contextStarts[contextIdx];
+        }
+        int[] keys = new int[contextStarts[numContexts]];
+        double[] values = new double[contextStarts[numContexts]];
+        int[] positions = new int[numContexts];
+        System.arraycopy(contextStarts, 0, positions, 0, numContexts);
+        for (MatrixEntry matrixEntry : testMatrix) {
+            int position = positions[matrixEntry.row()]++;
+            keys[position] = matrixEntry.column();
+            values[position] = matrixEntry.get();
+        }
+        return new GroundTruthIndex(contextStarts, keys, values);
+    }
+
+    /**
+     * Index a ground truth list.
+     *
+     * @param groundTruthList ground truth list
+     * @return the ground truth index
+     */
+    public static GroundTruthIndex of(RecommendedList groundTruthList) {
+        int numContexts = groundTruthList.size();
+        int[] contextStarts = new int[numContexts + 1];
+        for (int contextIdx = 0; contextIdx < numContexts; contextIdx++) {
+            contextStarts[contextIdx + 1] = contextStarts[contextIdx]
+                    + groundTruthList.getKeyValueListByContext(contextIdx).size();
+        }
+        int[] keys = new int[contextStarts[numContexts]];
+        double[] values = new double[contextStarts[numContexts]];
+        for (int contextIdx = 0; contextIdx < numContexts; contextIdx++) {
+            List<KeyValue<Integer, Double>> truth = groundTruthList.getKeyValueListByContext(contextIdx);
+            int start = contextStarts[contextIdx];
+            if (truth instanceof KeyValueArrayList) {
+                KeyValueArrayList keyValueList = (KeyValueArrayList) truth;
+                for (int index = 0; index < keyValueList.size(); index++) {
+                    keys[start + index] = keyValueList.getKey(index);
+                    values[start + index] = keyValueList.getValue(index);
+                }
+            } else {
+                for (int index = 0; index < truth.size(); index++) {
+                    KeyValue<Integer, Double> keyValue = truth.get(index);
+                    keys[start + index] = keyValue.getKey();
+                    values[start + index] = keyValue.getValue();
+                }
+            }
+        }
+        return new GroundTruthIndex(contextStarts, keys, values);
+    }
+
+    /**
+     * @return the number of contexts
+     */
+    public int size() {
+        return contextStarts.length - 1;
+    }
+
+    /**
+     * @param contextIdx context index
+     * @return the first position of the context
+     */
+    public int getStart(int contextIdx) {
+        return contextStarts[contextIdx];
+    }
+
+    /**
+     * @param contextIdx context index
+     * @return the position after the last one of the context
+     */
+    public int getEnd(int contextIdx) {
+        return contextStarts[contextIdx + 1];
+    }
+
+    /**
+     * @return the keys of all contexts
+     */
+    public int[] getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return the values of all contexts
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return true if the keys of each context are sorted and distinct
+     */
+    public boolean isSortedByKey() {
+        return sortedByKey;
+    }
+}
@@ -17,14 +17,15 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.common.LibrecException;
 import net.librec.common.LibrecRuntimeException;
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalContext;
+import net.librec.eval.EvalStatistics;
+import net.librec.eval.EvalSum;
 
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -33,75 +34,86 @@ import java.util.Set;
  *
  * @author Keqiang Wang
  */
-public class AUCEvaluator extends AbstractRecommenderEvaluator {
+public class AUCEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
-     *
-     * @param groundTruthList the given  ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * the number of dropped items of each context, read by {@link #prepare(EvalContext)}
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-        double auc = 0.0d;
-
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        int[] numDroppedArray = getConf().getInts("rec.eval.auc.dropped.num");
+    private int[] numDroppedArray;
 
-        if (numDroppedArray == null || numDroppedArray.length != numContext){
-            throw new LibrecRuntimeException("please set rec.eval.auc.dropped.num arrays, length of numDroppedArray must be cardinality of groundTruthList.");
+    /**
+     * Read the number of dropped items of each context.
+     *
+     * @param evalContext evaluate context
+     */
+    @Override
+    public void prepare(EvalContext evalContext) {
+        super.prepare(evalContext);
+        numDroppedArray = getStatistic(EvalStatistics.NUM_DROPPED_ITEMS);
+        if (numDroppedArray == null || numDroppedArray.length != evalContext.getGroundTruthIndex().size()) {
+            throw new LibrecRuntimeException("please put the number of dropped items in the statistics or set rec.eval.auc.dropped.num arrays, length of numDroppedArray must be cardinality of groundTruthList.");
         }
+    }
 
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            Set<Integer> groudTruthSetByContext = groundTruthList.getKeySetByContext(contextIdx);
-            if (groudTruthSetByContext.size() > 0) {
-                nonZeroContext++;
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                int numDroppedItems = numDroppedArray[contextIdx] - topK;
-                Set<Integer> recommendSetByContext = new HashSet<>();
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    recommendSetByContext.add(recommendListByContext.get(indexOfKey).getKey());
-                }
+    /**
+     * Evaluate the recommended list of a context.
+     *
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
+     */
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (ranking.getNumDistinctTruth() == 0) {
+            return;
+        }
+        int topK = ranking.getTopK(this.topN);
+        int numDroppedItems = numDroppedArray[ranking.getContextIdx()] - topK;
+        int[] recommendKeys = ranking.getSortedRecommendedKeys(topK);
 
-                int numRelevantKeys = 0, numMissKeys = 0;
-                for (Integer testKey : recommendSetByContext) {
-                    if (groudTruthSetByContext.contains(testKey)) {
-                        numRelevantKeys++;
-                    } else {
-                        numMissKeys++;
-                    }
-                }
+        int numRelevantKeys = 0, numMissKeys = 0;
+        for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+            if (indexOfKey > 0 && recommendKeys[indexOfKey] == recommendKeys[indexOfKey - 1]) {
+                continue;
+            }
+            if (ranking.containsTruth(recommendKeys[indexOfKey])) {
+                numRelevantKeys++;
+            } else {
+                numMissKeys++;
+            }
+        }
 
-                int numEvaluatingItems =  numDroppedItems + topK;
-                int numEvaluatingPairs = (numEvaluatingItems - numRelevantKeys) * numRelevantKeys;
+        int numEvaluatingItems = numDroppedItems + topK;
+        int numEvaluatingPairs = (numEvaluatingItems - numRelevantKeys) * numRelevantKeys;
 
-                if (numEvaluatingPairs < 0) {
-                    throw new IndexOutOfBoundsException("numEvaluatingPairs cannot be less than 0.");
-                }
+        if (numEvaluatingPairs < 0) {
+            throw new IndexOutOfBoundsException("numEvaluatingPairs cannot be less than 0.");
+        }
 
-                if (numEvaluatingPairs == 0) {
-                    auc += 0.5;
-                    continue;
-                }
+        if (numEvaluatingPairs == 0) {
+            sum.add(0.5);
+            return;
+        }
 
-                int numCorrectPairs = 0;
-                int hits = 0;
-                for (Integer itemIdx : groudTruthSetByContext) {
-                    if (!recommendSetByContext.contains(itemIdx)) {
-                        numCorrectPairs += hits;
-                    } else {
-                        hits++;
-                    }
+        int numCorrectPairs = 0;
+        // a ground truth key out of the top-N counts the hits before it in the set of ground truth keys,
+        // so there is nothing to count without hits or without such keys
+        if (numRelevantKeys > 0 && numRelevantKeys < ranking.getNumDistinctTruth()) {
+            Set<Integer> truthKeySet = new HashSet<>();
+            for (int index = 0; index < ranking.getTruthSize(); index++) {
+                truthKeySet.add(ranking.getTruthKey(index));
+            }
+            int hits = 0;
+            for (Integer truthKey : truthKeySet) {
+                if (Arrays.binarySearch(recommendKeys, 0, topK, truthKey) < 0) {
+                    numCorrectPairs += hits;
+                } else {
+                    hits++;
                 }
-
-                numCorrectPairs += hits * (numDroppedItems - numMissKeys);
-
-                auc += (numCorrectPairs + 0.0) / numEvaluatingPairs;
             }
         }
 
-        return nonZeroContext > 0 ? auc / nonZeroContext : 0.0d;
+        numCorrectPairs += numRelevantKeys * (numDroppedItems - numMissKeys);
+
+        sum.add((numCorrectPairs + 0.0) / numEvaluatingPairs);
     }
 }
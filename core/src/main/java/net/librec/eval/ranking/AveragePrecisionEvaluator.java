@@ -17,12 +17,9 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
-import java.util.Set;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 
 /**
  * AveragePrecisionEvaluator, calculate the MAP@n, if you want get MAP, please set top-n = number of items
@@ -32,41 +29,28 @@ import java.util.Set;
  *
  * @author Keqiang Wang
  */
-public class AveragePrecisionEvaluator extends AbstractRecommenderEvaluator {
+public class AveragePrecisionEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-        double totalPrecision = 0.0;
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            Set<Integer> testSetByContext = groundTruthList.getKeySetByContext(contextIdx);
-            if (testSetByContext.size() > 0) {
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-
-                int numHits = 0;
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                double tempPrecision = 0.0d;
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    int key = recommendListByContext.get(indexOfKey).getKey();
-                    if (testSetByContext.contains(key)) {
-                        numHits++;
-                        tempPrecision += 1.0 * numHits / (indexOfKey + 1);
-                    }
-                }
-                if(topK != 0) {
-                    totalPrecision += tempPrecision / (testSetByContext.size() < topK ? testSetByContext.size() : topK); //$$ap@n = \sum_{k=1}^n P(k) / min(m, n)$$ advised by WuBin
-                    nonZeroContext++;
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        int numTruth = ranking.getNumDistinctTruth();
+        int topK = ranking.getTopK(this.topN);
+        if (numTruth > 0 && topK != 0) {
+            int numHits = 0;
+            double tempPrecision = 0.0d;
+            for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+                if (ranking.containsTruth(ranking.getRecommendedKey(indexOfKey))) {
+                    numHits++;
+                    tempPrecision += 1.0 * numHits / (indexOfKey + 1);
                 }
             }
+            sum.add(tempPrecision / (numTruth < topK ? numTruth : topK));
         }
-        return nonZeroContext > 0 ? totalPrecision / nonZeroContext : 0.0d;
     }
 }
@@ -1,10 +1,8 @@
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 
 /**
  * HitRateEvaluator
@@ -18,36 +16,27 @@ import java.util.List;
  * @author Keqiang Wang
  */
 
-public class AverageReciprocalHitRankEvaluator extends AbstractRecommenderEvaluator {
+public class AverageReciprocalHitRankEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-        double reciprocalRank = 0.0;
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            List<KeyValue<Integer, Double>> testListByContext = groundTruthList.getKeyValueListByContext(contextIdx);
-            if (testListByContext.size() > 0) {
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-
-                int trueKeyIdx = testListByContext.get(0).getKey();
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    if (recommendListByContext.get(indexOfKey).getKey() == trueKeyIdx) {
-                        reciprocalRank += 1.0 / (indexOfKey + 1.0);
-                        break;
-                    }
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (ranking.getTruthSize() > 0) {
+            double reciprocalRank = 0.0;
+            int trueKeyIdx = ranking.getTruthKey(0);
+            int topK = ranking.getTopK(this.topN);
+            for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+                if (ranking.getRecommendedKey(indexOfKey) == trueKeyIdx) {
+                    reciprocalRank = 1.0 / (indexOfKey + 1.0);
+                    break;
                 }
-                nonZeroContext++;
             }
+            sum.add(reciprocalRank);
         }
-
-        return nonZeroContext > 0 ? reciprocalRank / nonZeroContext : 0.0d;
     }
 }
@@ -17,12 +17,11 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalContext;
+import net.librec.eval.EvalSum;
 import net.librec.math.structure.SymmMatrix;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
 
 /**
  * DiversityEvaluator, average dissimilarity of all pairs of items in the
@@ -31,47 +30,47 @@ import java.util.List;
  *
  * @author Keqiang Wang
  */
-public class DiversityEvaluator extends AbstractRecommenderEvaluator {
+public class DiversityEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
-     *
-     * @param groundTruthList
-     *            the given ground truth list
-     * @param recommendedList
-     *            the list of recommended items
-     * @return evaluate result
+     * the item similarity matrix, read by {@link #prepare(EvalContext)}
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
+    private SymmMatrix itemSimilarity;
 
-        double totalDiversity = 0.0;
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
+    /**
+     * Take the item similarity matrix of the evaluate context.
+     *
+     * @param evalContext evaluate context
+     */
+    @Override
+    public void prepare(EvalContext evalContext) {
+        super.prepare(evalContext);
+        itemSimilarity = similarities.containsKey("item") ? similarities.get("item").getSimilarityMatrix() : null;
+    }
 
-        if (similarities.containsKey("item")) {
-            SymmMatrix itemSimilarity = similarities.get("item").getSimilarityMatrix();
-            for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-                List<KeyValue<Integer, Double>> recommendArrayListByContext= recommendedList.getKeyValueListByContext(contextIdx);
-                if (recommendArrayListByContext.size() > 1) {
-                    // calculate the sum of dissimilarities for each pair of items per user
-                    double totalDisSimilarityPerContext = 0.0;
-                    int topK = this.topN <= recommendArrayListByContext.size() ? this.topN : recommendArrayListByContext.size();
-                    for (int indexOut = 0; indexOut < topK; ++indexOut) {
-                        for (int indexIn = 0; indexIn < topK; ++indexIn) {
-                            if (indexOut == indexIn) {
-                                continue;
-                            }
-                            int keyOut = recommendArrayListByContext.get(indexOut).getKey();
-                            int keyIn = recommendArrayListByContext.get(indexIn).getKey();
-                            totalDisSimilarityPerContext += 1.0 - itemSimilarity.get(keyOut, keyIn);
-                        }
+    /**
+     * Evaluate the recommended list of a context.
+     *
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
+     */
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (itemSimilarity != null && ranking.getRecommendedSize() > 1) {
+            // calculate the sum of dissimilarities for each pair of items per user
+            double totalDisSimilarityPerContext = 0.0;
+            int topK = ranking.getTopK(this.topN);
+            for (int indexOut = 0; indexOut < topK; ++indexOut) {
+                for (int indexIn = 0; indexIn < topK; ++indexIn) {
+                    if (indexOut == indexIn) {
+                        continue;
                     }
-                    totalDiversity += totalDisSimilarityPerContext / (topK * (topK - 1));
-                    nonZeroContext++;
+                    int keyOut = ranking.getRecommendedKey(indexOut);
+                    int keyIn = ranking.getRecommendedKey(indexIn);
+                    totalDisSimilarityPerContext += 1.0 - itemSimilarity.get(keyOut, keyIn);
                 }
             }
+            sum.add(totalDisSimilarityPerContext / (topK * (topK - 1)));
         }
-
-        return nonZeroContext > 0 ? totalDiversity / nonZeroContext : 0.0d;
     }
 }
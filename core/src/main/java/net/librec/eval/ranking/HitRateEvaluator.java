@@ -1,10 +1,8 @@
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 
 /**
  * HitRateEvaluator
@@ -18,44 +16,29 @@ import java.util.List;
  * @author Keqiang Wang
  */
 
-public class HitRateEvaluator extends AbstractRecommenderEvaluator {
+public class HitRateEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-
-        if (groundTruthList.size() == 0) {
-            return 0.0;
-        }
-
-        int totalHits = 0;
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            List<KeyValue<Integer, Double>> testListByContext = groundTruthList.getKeyValueListByContext(contextIdx);
-            if (testListByContext.size() == 1) {
-                int keyTest = testListByContext.get(0).getKey();
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    int keyRec = recommendListByContext.get(indexOfKey).getKey();
-                    if (keyRec == keyTest) {
-                        totalHits++;
-                        break;
-                    }
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (ranking.getTruthSize() == 1) {
+            int keyTest = ranking.getTruthKey(0);
+            int hit = 0;
+            int topK = ranking.getTopK(this.topN);
+            for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+                if (ranking.getRecommendedKey(indexOfKey) == keyTest) {
+                    hit = 1;
+                    break;
                 }
-
-                ++nonZeroContext;
-            } else if (testListByContext.size() > 1) {
-                throw new IndexOutOfBoundsException("It is not a leave-one-out validation method! Please use leave-one-out validation method");
             }
+            sum.add(hit);
+        } else if (ranking.getTruthSize() > 1) {
+            throw new IndexOutOfBoundsException("It is not a leave-one-out validation method! Please use leave-one-out validation method");
         }
-
-        return nonZeroContext > 0 ? 1.0 * totalHits / nonZeroContext : 0.0d;
     }
 }
@@ -17,45 +17,33 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 import net.librec.math.algorithm.Maths;
-import net.librec.recommender.item.RecommendedList;
 
 /**
  * IdealDCGEvaluator
  *<a href=https://en.wikipedia.org/wiki/Discounted_cumulative_gain>wikipedia, ideal dcg</a>
  * @author WangYuFeng and Keqiang Wang
  */
-public class IdealDCGEvaluator extends AbstractRecommenderEvaluator {
+public class IdealDCGEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-
-        double iDCG = 0.0;
-
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        int sizeByContext = ranking.getTruthSize();
+        if (sizeByContext > 0) {
             double idcg = 0.0;
-
-            int sizeByContext = groundTruthList.getKeyValueListByContext(contextIdx).size();
-            if (sizeByContext > 0) {
-                // calculate the IDCG
-                for (int i = 0; i < sizeByContext; i++) {
-                    idcg += 1 / Maths.log(i + 2.0, 2);
-                }
-                iDCG += idcg;
-                ++nonZeroContext;
+            for (int i = 0; i < sizeByContext; i++) {
+                idcg += 1 / Maths.log(i + 2.0, 2);
             }
+            sum.add(idcg);
         }
-
-        return nonZeroContext > 0 ? iDCG / nonZeroContext : 0.0d;
     }
-
 }
@@ -17,15 +17,12 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 import net.librec.math.algorithm.Maths;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * NormalizedDCGEvaluator @topN
@@ -33,106 +30,67 @@ import java.util.Set;
  *
  * @author Shilin Qu
  */
-public class NormalizedDCGEvaluator extends AbstractRecommenderEvaluator {
+public class NormalizedDCGEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context. The gain of a hit is the
+     * value of the first entry of its key in the ground truth that is not
+     * hit yet, and the ideal DCG is computed from the gains of the hits.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-
-        double nDCG = 0.0;
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            Set<Integer> testSetByContext = groundTruthList.getKeySetByContext(contextIdx);
-            if (testSetByContext.size() > 0) {
-
-                List<KeyValue<Integer, Double>> groundTruthTestSetByContext = groundTruthList.getKeyValueListByContext(contextIdx);
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-                boolean hasdcgsValue = false;
-
-                List<RankRate> groundTruthTestSet = new ArrayList<>();
-                for(int i=0; i<groundTruthTestSetByContext.size(); i++) {
-                    groundTruthTestSet.add(new RankRate(groundTruthTestSetByContext.get(i).getKey(), groundTruthTestSetByContext.get(i).getValue()));
-                }
-                // calculate DCG
-                double dcg = 0.0;
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    int itemID = recommendListByContext.get(indexOfKey).getKey();
-                    if (!testSetByContext.contains(itemID)) {
-                        continue;
-                    }
-                    double rankvalue = getValueByKey(groundTruthTestSet, itemID);
-                    hasdcgsValue = true;
-                    dcg += rankvalue / Maths.log(indexOfKey + 2, 2);
-                }
-
-                if(!hasdcgsValue||dcg == 0) {
-                    ++nonZeroContext;
-                    continue;
-                }
-
-                // calculate iDCG
-                double idcg = 0.0d;
-                ArrayList idcgsValue = new ArrayList();
-                for(int i=0; i<groundTruthTestSet.size(); i++){
-                    if(groundTruthTestSet.get(i).getIndexId() == -1) {
-                        idcgsValue.add(groundTruthTestSet.get(i).getValue());
-                    }
-                }
-
-                Collections.sort(idcgsValue, Collections.reverseOrder());
-
-                for(int i=0; i<idcgsValue.size(); i++) {
-                    idcg += (double)idcgsValue.get(i) / Maths.log(i + 2, 2);
-                }
-
-                if(idcg==0){
-                    ++nonZeroContext;
-                    continue;
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (ranking.getNumDistinctTruth() == 0) {
+            return;
+        }
+        int truthSize = ranking.getTruthSize();
+        boolean[] hitMarks = ranking.getTruthMarks();
+        boolean hasdcgsValue = false;
+
+        // calculate DCG
+        double dcg = 0.0;
+        int topK = ranking.getTopK(this.topN);
+        for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+            int itemID = ranking.getRecommendedKey(indexOfKey);
+            int sortedIndex = ranking.findTruth(itemID);
+            if (sortedIndex < 0) {
+                continue;
+            }
+            double rankvalue = 0.0d;
+            for (; sortedIndex < truthSize && ranking.getSortedTruthKey(sortedIndex) == itemID; sortedIndex++) {
+                int position = ranking.getSortedTruthPosition(sortedIndex);
+                if (!hitMarks[position]) {
+                    hitMarks[position] = true;
+                    rankvalue = ranking.getTruthValue(position);
+                    break;
                 }
-                nDCG += dcg / idcg;
-                ++nonZeroContext;
             }
+            hasdcgsValue = true;
+            dcg += rankvalue / Maths.log(indexOfKey + 2, 2);
         }
 
-        return nonZeroContext > 0 ? nDCG / nonZeroContext : 0.0d;
-    }
+        if (!hasdcgsValue || dcg == 0) {
+            sum.add(0.0d);
+            return;
+        }
 
-    public double getValueByKey(List<RankRate> list,int key){
-        for(RankRate keyValue: list ){
-            if(key==keyValue.getIndexId()){
-                keyValue.setIndexId(-1);
-                return keyValue.getValue();
+        // calculate iDCG
+        double[] idcgsValue = ranking.getValueBuffer(truthSize);
+        int numIdcgsValue = 0;
+        for (int i = 0; i < truthSize; i++) {
+            if (hitMarks[i]) {
+                idcgsValue[numIdcgsValue++] = ranking.getTruthValue(i);
             }
         }
-        return 0.0d;
-    }
+        Arrays.sort(idcgsValue, 0, numIdcgsValue);
 
-    public class RankRate{
-        int indexId;
-        double value;
-        public int getIndexId() {
-            return indexId;
+        double idcg = 0.0d;
+        for (int i = 0; i < numIdcgsValue; i++) {
+            idcg += idcgsValue[numIdcgsValue - 1 - i] / Maths.log(i + 2, 2);
         }
-        public void setIndexId(int indexId) {
-            this.indexId = indexId;
-        }
-        public double getValue() {
-            return value;
-        }
-        public void setValue(double value) {
-            this.value = value;
-        }
-        public RankRate(int indexId,double value){
-            setIndexId(indexId);
-            setValue(value);
-        }
-    }
 
+        sum.add(idcg == 0 ? 0.0d : dcg / idcg);
+    }
 }
@@ -17,11 +17,11 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalContext;
+import net.librec.eval.EvalStatistics;
+import net.librec.eval.EvalSum;
 
 /**
  * NoveltyEvaluator
@@ -47,41 +47,59 @@ import java.util.List;
  *
  * @author Daniel Velten, Karlsruhe, Germany, SunYatong
  */
-public class NoveltyEvaluator extends AbstractRecommenderEvaluator {
+public class NoveltyEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
-     *
-     * @param groundTruthList
-     *            the given test set
-     * @param recommendedList
-     *            the list of recommended items
-     * @return evaluate result
+     * the purchase count of each item, read by {@link #prepare(EvalContext)}
      */
-    @Override
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
+    private int[] itemCounts;
 
-        int numUsers = groundTruthList.size();
+    /**
+     * the number of users, read by {@link #prepare(EvalContext)}
+     */
+    private int numUsers;
 
-        // First collect item counts needed for estimating probabilities of the items
-        int[] itemCounts = conf.getInts("rec.eval.item.purchase.num");
+    /**
+     * Read the purchase counts of the items and the number of users.
+     *
+     * @param evalContext evaluate context
+     */
+    @Override
+    public void prepare(EvalContext evalContext) {
+        super.prepare(evalContext);
+        itemCounts = getStatistic(EvalStatistics.ITEM_PURCHASE_COUNTS);
+        numUsers = evalContext.getGroundTruthIndex().size();
+    }
 
-        double sumInformation = 0;
-        for (int contextIdx = 0; contextIdx < numUsers; contextIdx++) {
-            List<KeyValue<Integer, Double>> recoList = recommendedList.getKeyValueListByContext(contextIdx);
-            int topK = this.topN <= recoList.size() ? this.topN : recoList.size();
-            for (int recoIdx = 0; recoIdx < topK; recoIdx++) {
-                int itemIdx = recoList.get(recoIdx).getKey();
-                int count = itemCounts[itemIdx];
-                if (count>0) {
-                    double estmProbability = ((double)count)/numUsers;
-                    double selfInformation = -Math.log(estmProbability);
-                    sumInformation += selfInformation;
-                }
+    /**
+     * Add the self-information of the recommended items of a context.
+     *
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the self-information to
+     */
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        int topK = ranking.getTopK(this.topN);
+        for (int recoIdx = 0; recoIdx < topK; recoIdx++) {
+            int count = itemCounts[ranking.getRecommendedKey(recoIdx)];
+            if (count>0) {
+                double estmProbability = ((double)count)/numUsers;
+                double selfInformation = -Math.log(estmProbability);
+                sum.addTerm(selfInformation);
             }
         }
-        return sumInformation/(numUsers * Math.log(2));
     }
 
-
-}
\ No newline at end of file
+    /**
+     * Return the mean self-information of the contexts in bits.
+     *
+     * @param sum                  the sum of the self-information of all contexts
+     * @param numEvaluatedContexts the number of evaluated contexts
+     * @param numContexts          the number of contexts
+     * @return evaluate result
+     */
+    @Override
+    public double aggregate(double sum, int numEvaluatedContexts, int numContexts) {
+        return sum/(numContexts * Math.log(2));
+    }
+}
@@ -1,11 +1,8 @@
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
-import java.util.Set;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 
 /**
  * PrecisionEvaluator, calculate precision@n
@@ -13,35 +10,24 @@ import java.util.Set;
  *
  * @author Keqiang Wang
  */
-public class PrecisionEvaluator extends AbstractRecommenderEvaluator {
+public class PrecisionEvaluator extends AbstractContextRecommenderEvaluator {
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-        double totalPrecision = 0.0;
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            Set<Integer> testSetByContext = groundTruthList.getKeySetByContext(contextIdx);
-            if (testSetByContext.size() > 0) {
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-
-                int numHits = 0;
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    int key = recommendListByContext.get(indexOfKey).getKey();
-                    if (testSetByContext.contains(key)) {
-                        numHits++;
-                    }
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (ranking.getNumDistinctTruth() > 0) {
+            int numHits = 0;
+            int topK = ranking.getTopK(this.topN);
+            for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+                if (ranking.containsTruth(ranking.getRecommendedKey(indexOfKey))) {
+                    numHits++;
                 }
-                totalPrecision += numHits / (this.topN + 0.0);
-                nonZeroContext++;
             }
+            sum.add(numHits / (this.topN + 0.0));
         }
-        return nonZeroContext > 0 ? totalPrecision / nonZeroContext : 0.0d;
     }
 }
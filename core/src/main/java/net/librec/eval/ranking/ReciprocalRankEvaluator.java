@@ -17,12 +17,9 @@
  */
 package net.librec.eval.ranking;
 
-import net.librec.eval.AbstractRecommenderEvaluator;
-import net.librec.recommender.item.KeyValue;
-import net.librec.recommender.item.RecommendedList;
-
-import java.util.List;
-import java.util.Set;
+import net.librec.eval.AbstractContextRecommenderEvaluator;
+import net.librec.eval.ContextRanking;
+import net.librec.eval.EvalSum;
 
 /**
  * ReciprocalRankEvaluator, calculate the MRR@n, if you want get MRR, please set top-n = number of items
@@ -31,36 +28,26 @@ import java.util.Set;
  *
  * @author WangYuFeng and Keqiang Wang
  */
-public class ReciprocalRankEvaluator extends AbstractRecommenderEvaluator {
+public class ReciprocalRankEvaluator extends AbstractContextRecommenderEvaluator {
 
     /**
-     * Evaluate on the test set with the the list of recommended items.
+     * Evaluate the recommended list of a context.
      *
-     * @param groundTruthList the given ground truth list
-     * @param recommendedList the list of recommended items
-     * @return evaluate result
+     * @param ranking the ground truth and the recommended list of the context
+     * @param sum     the sum to add the value of the context to
      */
-    public double evaluate(RecommendedList groundTruthList, RecommendedList recommendedList) {
-        double reciprocalRank = 0.0;
-
-        int numContext = groundTruthList.size();
-        int nonZeroContext = 0;
-        for (int contextIdx = 0; contextIdx < numContext; ++contextIdx) {
-            Set<Integer> testSetByContext = groundTruthList.getKeySetByContext(contextIdx);
-            if (testSetByContext.size() > 0) {
-                List<KeyValue<Integer, Double>> recommendListByContext = recommendedList.getKeyValueListByContext(contextIdx);
-
-                int topK = this.topN <= recommendListByContext.size() ? this.topN : recommendListByContext.size();
-                for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
-                    int key = recommendListByContext.get(indexOfKey).getKey();
-                    if (testSetByContext.contains(key)) {
-                        reciprocalRank += 1.0d / (indexOfKey + 1.0d);
-                        break;
-                    }
+    @Override
+    public void evaluate(ContextRanking ranking, EvalSum sum) {
+        if (ranking.getNumDistinctTruth() > 0) {
+            double reciprocalRank = 0.0d;
+            int topK = ranking.getTopK(this.topN);
+            for (int indexOfKey = 0; indexOfKey < topK; ++indexOfKey) {
+                if (ranking.containsTruth(ranking.getRecommendedKey(indexOfKey))) {
+                    reciprocalRank = 1.0d / (indexOfKey + 1.0d);
+                    break;
                 }
-                nonZeroContext++;
             }
+            sum.add(reciprocalRank);
         }
-        return nonZeroContext > 0 ? reciprocalRank / nonZeroContext : 0.0d;
     }
 }
@@ -21,19 +21,27 @@ import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.data.DataModel;
 import net.librec.data.DataSplitter;
+import net.librec.data.model.AbstractDataModel;
+import net.librec.data.model.ArffDataModel;
+import net.librec.data.model.FoldDataModel;
+import net.librec.data.splitter.AbstractDataSplitter;
 import net.librec.data.splitter.KCVDataSplitter;
 import net.librec.data.splitter.LOOCVDataSplitter;
+import net.librec.eval.ContextRecommenderEvaluator;
 import net.librec.eval.EvalContext;
+import net.librec.eval.EvaluationSweep;
 import net.librec.eval.Measure;
 import net.librec.eval.Measure.MeasureValue;
 import net.librec.eval.RecommenderEvaluator;
 import net.librec.filter.RecommendedFilter;
+import net.librec.math.algorithm.RandomStream;
 import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DataSet;
-import net.librec.math.structure.SymmMatrix;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.recommender.Recommender;
 import net.librec.recommender.RecommenderContext;
 import net.librec.recommender.item.RecommendedItem;
+import net.librec.recommender.item.RecommendedList;
 import net.librec.similarity.RecommenderSimilarity;
 import net.librec.util.DriverClassUtil;
 import net.librec.util.FileUtil;
@@ -43,10 +51,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * RecommenderJob
@@ -120,26 +126,150 @@ public class RecommenderJob {
     @SuppressWarnings("unchecked")
     private void executeRecommenderJob() throws ClassNotFoundException, LibrecException, IOException {
         generateDataModel();
-        recommender = ReflectionUtil.newInstance((Class<Recommender>) getRecommenderClass(), conf);
-        RecommenderContext context = new RecommenderContext(conf);
+        RecommenderContext context;
+        RecommendedList recommendedList = null;
         cvEvalResults = new HashMap<>();
-        while(dataModel.hasNextFold()) {
-            dataModel.nextFold();
-            context.setDataModel(dataModel);
-            generateSimilarity(context);
-            recommender.train(context);
-            executeEvaluator(recommender, context);
+        Integer foldThreads = conf.getInt("data.splitter.cv.threads");
+        if (foldThreads != null && foldThreads > 0 && dataModel.getDataSplitter() instanceof AbstractDataSplitter
+                && !(dataModel instanceof ArffDataModel)) {
+            FoldResult lastFold = executeFolds(foldThreads);
+            context = lastFold.context;
+            recommendedList = lastFold.recommendedList;
+        } else {
+            recommender = ReflectionUtil.newInstance((Class<Recommender>) getRecommenderClass(), conf);
+            context = new RecommenderContext(conf);
+            while (dataModel.hasNextFold()) {
+                dataModel.nextFold();
+                context.setDataModel(dataModel);
+                generateSimilarity(context);
+                recommender.train(context);
+                recommendedList = executeEvaluator(recommender, context);
+            }
         }
         printCVAverageResult();
-        boolean isRanking = conf.getBoolean("rec.recommender.isranking");
-        List<RecommendedItem> recommendedList = null;
-        if (isRanking){
-            recommendedList = recommender.getRecommendedList(recommender.recommendRank());
+        // the list evaluated on the last fold is saved, recommend only when it is not evaluated
+        if (recommendedList == null) {
+            recommendedList = recommend(recommender, context);
+        }
+        List<RecommendedItem> recommendedItems = recommender.getRecommendedList(recommendedList);
+        recommendedItems = filterResult(recommendedItems);
+        saveResult(recommendedItems);
+    }
+
+    /**
+     * Recommend for the test set of the context, by ranking or by rating.
+     *
+     * @param recommender the trained recommender
+     * @param context     the context the recommender is trained in
+     * @return the recommended list
+     * @throws LibrecException if error occurs
+     */
+    private RecommendedList recommend(Recommender recommender, RecommenderContext context) throws LibrecException {
+        if (context.getConf().getBoolean("rec.recommender.isranking")) {
+            return recommender.recommendRank();
         } else {
-            recommendedList = recommender.getRecommendedList(recommender.recommendRating(context.getDataModel().getTestDataSet()));
+            return recommender.recommendRating(context.getDataModel().getTestDataSet());
+        }
+    }
+
+    /**
+     * Train and evaluate the remaining folds of the splitter on up to
+     * {@code numThreads} folds at the same time. Each fold has its own copy of
+     * the configuration, recommender, context and random stream, the latter
+     * seeded from the job seed and the index of the fold, so the results do
+     * not depend on the number of threads. They are collected in the order of
+     * the folds.
+     *
+     * @param numThreads the maximum number of folds run at the same time
+     * @return the result of the last fold, whose recommender is kept
+     * @throws LibrecException if error occurs
+     */
+    @SuppressWarnings("unchecked")
+    private FoldResult executeFolds(int numThreads) throws LibrecException {
+        final AbstractDataSplitter splitter = (AbstractDataSplitter) dataModel.getDataSplitter();
+        int numFolds = splitter.getNumRemainingFolds();
+        Long seed = conf.getLong("rec.random.seed");
+        final long jobSeed = seed != null ? seed : System.currentTimeMillis();
+        final Class<Recommender> recommenderClass;
+        try {
+            recommenderClass = (Class<Recommender>) getRecommenderClass();
+        } catch (ClassNotFoundException | IOException e) {
+            throw new LibrecException(e);
+        }
+
+        List<Callable<FoldResult>> foldTasks = new ArrayList<>(numFolds);
+        for (int foldIndex = 0; foldIndex < numFolds; foldIndex++) {
+            final int fold = foldIndex;
+            foldTasks.add(() -> {
+                Randoms.seedThread(RandomStream.of(jobSeed, fold));
+                try {
+                    Configuration foldConf = new Configuration(conf);
+                    SequentialAccessSparseMatrix[] foldData = splitter.getFold(fold);
+                    RecommenderContext foldContext = new RecommenderContext(foldConf,
+                            new FoldDataModel(dataModel, AbstractDataModel.mapTrainDataSet(foldConf, foldData[0]),
+                                    foldData[1]));
+                    generateSimilarity(foldContext);
+                    Recommender foldRecommender = ReflectionUtil.newInstance(recommenderClass, foldConf);
+                    foldRecommender.train(foldContext);
+                    FoldResult foldResult = new FoldResult(foldRecommender, foldContext);
+                    if (foldConf.getBoolean("rec.eval.enable")) {
+                        foldResult.recommendedList = recommend(foldRecommender, foldContext);
+                        foldResult.evalResults = evaluate(foldRecommender, foldContext, foldResult.recommendedList,
+                                foldResult.evaluatedMap);
+                    }
+                    return foldResult;
+                } finally {
+                    Randoms.clearThreadSeed();
+                }
+            });
+        }
+
+        List<FoldResult> foldResults = new ArrayList<>(numFolds);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, numFolds)));
+        try {
+            for (Future<FoldResult> foldResult : executor.invokeAll(foldTasks)) {
+                foldResults.add(foldResult.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LibrecException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof LibrecException ? (LibrecException) e.getCause()
+                    : new LibrecException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        while (splitter.nextFold()) {
+            // the folds are done, skip them in the splitter as well
+        }
+
+        FoldResult lastFold = null;
+        for (FoldResult foldResult : foldResults) {
+            for (Map.Entry<String, Double> evalResult : foldResult.evalResults.entrySet()) {
+                collectCVResults(evalResult.getKey(), evalResult.getValue());
+            }
+            evaluatedMap = foldResult.evaluatedMap;
+            recommender = foldResult.recommender;
+            lastFold = foldResult;
+        }
+        return lastFold;
+    }
+
+    /**
+     * The trained recommender, the evaluated recommended list and the
+     * evaluation results of a fold.
+     */
+    private static class FoldResult {
+        private final Recommender recommender;
+        private final RecommenderContext context;
+        private final Map<MeasureValue, Double> evaluatedMap = new HashMap<>();
+        private Map<String, Double> evalResults = new LinkedHashMap<>();
+        private RecommendedList recommendedList;
+
+        private FoldResult(Recommender recommender, RecommenderContext context) {
+            this.recommender = recommender;
+            this.context = context;
         }
-        recommendedList = filterResult(recommendedList);
-        saveResult(recommendedList);
     }
 
     /**
@@ -163,13 +293,14 @@ public class RecommenderJob {
      * @param context recommender context
      */
     private void generateSimilarity(RecommenderContext context) {
+        Configuration conf = context.getConf();
         String[] similarityKeys = conf.getStrings("rec.recommender.similarities");
         if (similarityKeys != null && similarityKeys.length > 0) {
             for (int i = 0; i < similarityKeys.length; i++) {
                 if (getSimilarityClass() != null) {
                     RecommenderSimilarity similarity = ReflectionUtil.newInstance(getSimilarityClass(), conf);
                     conf.set("rec.recommender.similarity.key", similarityKeys[i]);
-                    similarity.buildSimilarityMatrix(dataModel);
+                    similarity.buildSimilarityMatrix(context.getDataModel());
                     if (i == 0) {
                         context.setSimilarity(similarity);
                     }
@@ -198,76 +329,141 @@ public class RecommenderJob {
     /**
      * Execute evaluator.
      *
+     * @return the evaluated recommended list, or null if the evaluation is
+     * not enabled
      * @throws LibrecException        if error occurs
      * @throws IOException            if I/O error occurs
      * @throws ClassNotFoundException if class not found error occurs
      */
-    private void executeEvaluator(Recommender recommender, RecommenderContext context) throws ClassNotFoundException, IOException, LibrecException {
-        if (conf.getBoolean("rec.eval.enable")) {
-            DataSet dataSet =  dataModel.getTestDataSet();
-            String[] similarityKeys = conf.getStrings("rec.recommender.similarities");
-            EvalContext evalContext = null;
-            if (similarityKeys != null && similarityKeys.length > 0) {
-                SymmMatrix similarityMatrix = context.getSimilarity().getSimilarityMatrix();
-                Map<String, RecommenderSimilarity> similarities = context.getSimilarities();
-                evalContext = new EvalContext(conf, recommender, dataSet, similarityMatrix, similarities);
-            } else {
-                evalContext = new EvalContext(conf, recommender, dataSet);
-            }
-
+    private RecommendedList executeEvaluator(Recommender recommender, RecommenderContext context) throws ClassNotFoundException, IOException, LibrecException {
+        if (!context.getConf().getBoolean("rec.eval.enable")) {
+            return null;
+        }
+        RecommendedList recommendedList = recommend(recommender, context);
+        Map<MeasureValue, Double> measureValues = new HashMap<>();
+        Map<String, Double> evalResults = evaluate(recommender, context, recommendedList, measureValues);
+        if (!measureValues.isEmpty()) {
+            evaluatedMap = measureValues;
+        }
+        for (Map.Entry<String, Double> evalResult : evalResults.entrySet()) {
+            collectCVResults(evalResult.getKey(), evalResult.getValue());
+        }
+        return recommendedList;
+    }
 
-            String[] evalClassKeys = conf.getStrings("rec.eval.classes");
-            if (evalClassKeys != null && evalClassKeys.length > 0) {// Run the evaluator which is
-                // designated.
-                for (int classIdx = 0; classIdx < evalClassKeys.length; ++classIdx) {
-                    RecommenderEvaluator evaluator = ReflectionUtil.newInstance(getEvaluatorClass(evalClassKeys[classIdx]), null);
-                    evaluator.setTopN(conf.getInt("rec.recommender.ranking.topn", 10));
+    /**
+     * Evaluate the recommended list on the test set of the context. The
+     * evaluators that add up the contexts one by one are run together in one
+     * {@link EvaluationSweep}, the others each on their own.
+     *
+     * @param recommender     the trained recommender
+     * @param context         the context the recommender is trained in
+     * @param recommendedList the list recommended for the test set
+     * @param measureValues   the map to put the values of the measures in when
+     *                        all evaluators are run
+     * @return the evaluate results by the names of the evaluators, in the
+     * order they are run
+     * @throws LibrecException        if error occurs
+     * @throws IOException            if I/O error occurs
+     * @throws ClassNotFoundException if class not found error occurs
+     */
+    private Map<String, Double> evaluate(Recommender recommender, RecommenderContext context, RecommendedList recommendedList,
+                                         Map<MeasureValue, Double> measureValues) throws ClassNotFoundException, IOException, LibrecException {
+        Map<String, Double> evalResults = new LinkedHashMap<>();
+        Configuration conf = context.getConf();
+        DataSet dataSet = context.getDataModel().getTestDataSet();
+        EvalContext evalContext = new EvalContext(conf, recommender, recommendedList, dataSet);
+        evalContext.setStatistics(context.getStatistics());
+        String[] similarityKeys = conf.getStrings("rec.recommender.similarities");
+        if (similarityKeys != null && similarityKeys.length > 0) {
+            evalContext.setSimilarityMatrix(context.getSimilarity().getSimilarityMatrix());
+            evalContext.setSimilarities(context.getSimilarities());
+        }
 
-                    double evalValue = evaluator.evaluate(evalContext);
-                    LOG.info("Evaluator info:" + evaluator.getClass().getSimpleName() + " is " + evalValue);
-                    collectCVResults(evaluator.getClass().getSimpleName(), evalValue);
+        String[] evalClassKeys = conf.getStrings("rec.eval.classes");
+        if (evalClassKeys != null && evalClassKeys.length > 0) {// Run the evaluator which is
+            // designated.
+            List<RecommenderEvaluator> evaluators = new ArrayList<>(evalClassKeys.length);
+            for (int classIdx = 0; classIdx < evalClassKeys.length; ++classIdx) {
+                RecommenderEvaluator evaluator = ReflectionUtil.newInstance(getEvaluatorClass(evalClassKeys[classIdx]), null);
+                evaluator.setTopN(conf.getInt("rec.recommender.ranking.topn", 10));
+                evaluators.add(evaluator);
+            }
+            double[] evalValues = evaluate(evalContext, evaluators);
+            for (int classIdx = 0; classIdx < evaluators.size(); ++classIdx) {
+                RecommenderEvaluator evaluator = evaluators.get(classIdx);
+                LOG.info("Evaluator info:" + evaluator.getClass().getSimpleName() + " is " + evalValues[classIdx]);
+                evalResults.put(evaluator.getClass().getSimpleName(), evalValues[classIdx]);
+            }
+        } else {// Run all evaluators
+            boolean isRanking = conf.getBoolean("rec.recommender.isranking");
+            int topN = 10;
+            if (isRanking) {
+                topN = conf.getInt("rec.recommender.ranking.topn", 10);
+                if (topN <= 0) {
+                    throw new IndexOutOfBoundsException("rec.recommender.ranking.topn should be more than 0!");
                 }
-            } else {// Run all evaluators
-                evaluatedMap = new HashMap<>();
-                boolean isRanking = conf.getBoolean("rec.recommender.isranking");
-                int topN = 10;
-                if (isRanking) {
-                    topN = conf.getInt("rec.recommender.ranking.topn", 10);
-                    if (topN <= 0) {
-                        throw new IndexOutOfBoundsException("rec.recommender.ranking.topn should be more than 0!");
+            }
+            List<MeasureValue> measureValueList = Measure.getMeasureEnumList(isRanking, topN);
+            if (measureValueList != null) {
+                List<RecommenderEvaluator> evaluators = new ArrayList<>(measureValueList.size());
+                for (MeasureValue measureValue : measureValueList) {
+                    RecommenderEvaluator evaluator = ReflectionUtil
+                            .newInstance(measureValue.getMeasure().getEvaluatorClass());
+                    if (isRanking && measureValue.getTopN() != null && measureValue.getTopN() > 0) {
+                        evaluator.setTopN(measureValue.getTopN());
                     }
+                    evaluators.add(evaluator);
                 }
-                List<MeasureValue> measureValueList = Measure.getMeasureEnumList(isRanking, topN);
-                if (measureValueList != null) {
-                    for (MeasureValue measureValue : measureValueList) {
-                        RecommenderEvaluator evaluator = ReflectionUtil
-                                .newInstance(measureValue.getMeasure().getEvaluatorClass());
-                        if (isRanking && measureValue.getTopN() != null && measureValue.getTopN() > 0) {
-                            evaluator.setTopN(measureValue.getTopN());
-                        }
-                        double evaluatedValue = evaluator.evaluate(evalContext);
-                        evaluatedMap.put(measureValue, evaluatedValue);
-                    }
+                double[] evaluatedValues = evaluate(evalContext, evaluators);
+                for (int measureIdx = 0; measureIdx < measureValueList.size(); ++measureIdx) {
+                    measureValues.put(measureValueList.get(measureIdx), evaluatedValues[measureIdx]);
                 }
-                if (evaluatedMap.size() > 0) {
-                    for (Map.Entry<MeasureValue, Double> entry : evaluatedMap.entrySet()) {
-                        String evalName = null;
-                        if (entry != null && entry.getKey() != null) {
-                            if (entry.getKey().getTopN() != null && entry.getKey().getTopN() > 0) {
-                                LOG.info("Evaluator value:" + entry.getKey().getMeasure() + " top " + entry.getKey().getTopN() + " is " + entry.getValue());
-                                evalName = entry.getKey().getMeasure() + " top " + entry.getKey().getTopN();
-                            } else {
-                                LOG.info("Evaluator value:" + entry.getKey().getMeasure() + " is " + entry.getValue());
-                                evalName = entry.getKey().getMeasure() + "";
-                            }
-                            if (null != cvEvalResults) {
-                                collectCVResults(evalName, entry.getValue());
-                            }
+            }
+            if (measureValues.size() > 0) {
+                for (Map.Entry<MeasureValue, Double> entry : measureValues.entrySet()) {
+                    String evalName = null;
+                    if (entry != null && entry.getKey() != null) {
+                        if (entry.getKey().getTopN() != null && entry.getKey().getTopN() > 0) {
+                            LOG.info("Evaluator value:" + entry.getKey().getMeasure() + " top " + entry.getKey().getTopN() + " is " + entry.getValue());
+                            evalName = entry.getKey().getMeasure() + " top " + entry.getKey().getTopN();
+                        } else {
+                            LOG.info("Evaluator value:" + entry.getKey().getMeasure() + " is " + entry.getValue());
+                            evalName = entry.getKey().getMeasure() + "";
                         }
+                        evalResults.put(evalName, entry.getValue());
                     }
                 }
             }
         }
+        return evalResults;
+    }
+
+    /**
+     * Run the evaluators on the evaluate context.
+     *
+     * @param evalContext evaluate context
+     * @param evaluators  the evaluators
+     * @return the values of the evaluators, in their order
+     */
+    private double[] evaluate(EvalContext evalContext, List<RecommenderEvaluator> evaluators) {
+        List<ContextRecommenderEvaluator> contextEvaluators = new ArrayList<>(evaluators.size());
+        for (RecommenderEvaluator evaluator : evaluators) {
+            if (evaluator instanceof ContextRecommenderEvaluator) {
+                contextEvaluators.add((ContextRecommenderEvaluator) evaluator);
+            }
+        }
+        double[] contextValues = contextEvaluators.isEmpty() ? new double[0]
+                : EvaluationSweep.evaluate(evalContext, contextEvaluators);
+
+        double[] evalValues = new double[evaluators.size()];
+        int contextEvaluatorIdx = 0;
+        for (int evaluatorIdx = 0; evaluatorIdx < evaluators.size(); ++evaluatorIdx) {
+            RecommenderEvaluator evaluator = evaluators.get(evaluatorIdx);
+            evalValues[evaluatorIdx] = evaluator instanceof ContextRecommenderEvaluator
+                    ? contextValues[contextEvaluatorIdx++] : evaluator.evaluate(evalContext);
+        }
+        return evalValues;
     }
 
     /**
@@ -422,4 +618,13 @@ public class RecommenderJob {
     public Map<MeasureValue, Double> getEvaluatedMap() {
         return evaluatedMap;
     }
+
+    /**
+     * Get the evaluate results of the folds when using cross validation.
+     *
+     * @return the values of each evaluator in the order of the folds
+     */
+    public Map<String, List<Double>> getCVEvalResults() {
+        return cvEvalResults;
+    }
 }
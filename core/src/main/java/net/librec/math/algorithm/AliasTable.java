@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import java.util.Random;
+
+/**
+ * An alias table of a discrete distribution (Vose's method): built in linear
+ * time, then sampled in constant time by one uniform number, instead of the
+ * linear scan of the cumulative probabilities done by
+ * {@link Randoms#discrete(double[])}.
+ */
+public class AliasTable {
+    /**
+     * the probability of each bucket to return its own outcome
+     */
+    private final double[] probabilities;
+    /**
+     * the outcome each bucket returns otherwise
+     */
+    private final int[] aliases;
+
+    /**
+     * Build the alias table of the outcomes {@code 0, ..., weights.length-1}
+     * with probabilities proportional to the weights.
+     *
+     * @param weights the non-negative weights of the outcomes, not all zero
+     */
+    public AliasTable(double[] weights) {
+        int size = weights.length;
+        double sum = 0.0D;
+        for (int outcome = 0; outcome < size; outcome++) {
+            if (weights[outcome] < 0.0D) {
+                throw new IllegalArgumentException("weight " + outcome + " is negative: " + weights[outcome]);
+            }
+            sum += weights[outcome];
+        }
+        if (!(sum > 0.0D)) {
+            throw new IllegalArgumentException("the sum of the weights is not positive: " + sum);
+        }
+
+        probabilities = new double[size];
+        aliases = new int[size];
+        double[] scaled = new double[size];
+        // the outcomes under and over the average, as two stacks in one array
+        int[] work = new int[size];
+        int numSmall = 0, largeStart = size;
+        for (int outcome = 0; outcome < size; outcome++) {
+            scaled[outcome] = weights[outcome] * size / sum;
+            if (scaled[outcome] < 1.0D) {
+                work[numSmall++] = outcome;
+            } else {
+                work[--largeStart] = outcome;
+            }
+        }
+        while (numSmall > 0 && largeStart < size) {
+            int small = work[--numSmall];
+            int large = work[largeStart++];
+            probabilities[small] = scaled[small];
+            aliases[small] = large;
+            scaled[large] = (scaled[large] + scaled[small]) - 1.0D;
+            if (scaled[large] < 1.0D) {
+                work[numSmall++] = large;
+            } else {
+                work[--largeStart] = large;
+            }
+        }
+        // what is left is 1 up to rounding errors
+        while (largeStart < size) {
+            probabilities[work[largeStart++]] = 1.0D;
+        }
+        while (numSmall > 0) {
+            probabilities[work[--numSmall]] = 1.0D;
+        }
+    }
+
+    /**
+     * @return the number of outcomes
+     */
+    public int size() {
+        return probabilities.length;
+    }
+
+    /**
+     * Sample an outcome by the given random stream.
+     *
+     * @param random the random stream
+     * @return the outcome
+     */
+    public int sample(Random random) {
+        double uniform = random.nextDouble() * probabilities.length;
+        int bucket = (int) uniform;
+        return uniform - bucket < probabilities[bucket] ? bucket : aliases[bucket];
+    }
+
+    /**
+     * Sample an outcome by the stream of {@link Randoms}.
+     *
+     * @return the outcome
+     */
+    public int sample() {
+        return sample(Randoms.stream());
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import net.librec.common.LibrecException;
+import net.librec.math.structure.DenseMatrix;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialSparseVector;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The solver of the half-iterations of alternating least squares: the rows
+ * of one factor matrix are solved in parallel with the other one fixed, every
+ * thread reusing its own {@link Scratch}.
+ * <p>
+ * A model creates one solver at the beginning of trainModel and calls
+ * {@link #shutdown()} in a finally block, so that all half-iterations share
+ * its threads.
+ */
+public class LeastSquaresSolver {
+    /**
+     * the number of factors of the solved rows
+     */
+    private final int numFactors;
+
+    /**
+     * the number of threads solving the rows
+     */
+    private final int numThreads;
+
+    /**
+     * the pool solving the rows, null on a single thread
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * the buffers of the threads solving the rows
+     */
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Create a solver of rows of numFactors factors on numThreads threads.
+     *
+     * @param numFactors the number of factors
+     * @param numThreads the number of threads
+     */
+    public LeastSquaresSolver(int numFactors, int numThreads) {
+        this.numFactors = numFactors;
+        this.numThreads = Math.max(1, numThreads);
+        if (this.numThreads > 1) {
+            pool = new ForkJoinPool(this.numThreads);
+        }
+        scratch = ThreadLocal.withInitial(() -> new Scratch(numFactors));
+    }
+
+    /**
+     * The loss of a row solved by {@link #solve}. With the observed values v
+     * and the fixed factors y_j the solved factors x satisfy the normal equations
+     * <pre>
+     *     (G + sum_j confidence(v) y_j y_j' + regularization I) x = sum_j target(v) y_j
+     * </pre>
+     * G being the Gram matrix of the fixed factors, if any.
+     */
+    public interface Loss {
+        /**
+         * @param value the value of an observed entry
+         * @return the weight of the outer product y_j y_j of the entry
+         */
+        double confidence(double value);
+
+        /**
+         * @param value the value of an observed entry
+         * @return the weight of y_j in the right hand side of the entry
+         */
+        double target(double value);
+
+        /**
+         * @param rowIdx     the index of the solved row
+         * @param numEntries the number of observed entries of the row
+         * @return the weight of the identity added to the normal equations
+         */
+        double regularization(int rowIdx, int numEntries);
+    }
+
+    /**
+     * Update of one row of a half-iteration, see {@link #forEachRow(int, RowStep)}.
+     */
+    public interface RowStep {
+        /**
+         * @param rowIdx  the index of the row
+         * @param scratch the buffers of the calling thread
+         */
+        void update(int rowIdx, Scratch scratch);
+    }
+
+    /**
+     * The buffers of a thread solving rows of a half-iteration, reused by all
+     * rows the thread solves.
+     */
+    public static final class Scratch {
+        /**
+         * the normal equations, only the lower triangle is used
+         */
+        public final double[][] matrix;
+
+        /**
+         * the right hand side of the normal equations
+         */
+        public final double[] vector;
+
+        private double[] buffer = new double[0];
+
+        public Scratch(int numFactors) {
+            matrix = new double[numFactors][numFactors];
+            vector = new double[numFactors];
+        }
+
+        /**
+         * @param size the minimum length
+         * @return a buffer of at least the given length with undefined content
+         */
+        public double[] buffer(int size) {
+            if (buffer.length < size) {
+                buffer = new double[Math.max(size, buffer.length * 2)];
+            }
+            return buffer;
+        }
+
+        /**
+         * Solve the symmetric positive semi-definite system in {@link #matrix}
+         * and {@link #vector} by Cholesky decomposition, both are overwritten.
+         * Directions without curvature are left at zero.
+         *
+         * @param solution array receiving the solution
+         */
+        public void solve(double[] solution) {
+            int size = vector.length;
+            for (int column = 0; column < size; column++) {
+                double[] columnRow = matrix[column];
+                double pivot = columnRow[column];
+                for (int index = 0; index < column; index++) {
+                    pivot -= columnRow[index] * columnRow[index];
+                }
+                pivot = pivot > 0.0D ? Math.sqrt(pivot) : 0.0D;
+                columnRow[column] = pivot;
+                for (int row = column + 1; row < size; row++) {
+                    double[] lowerRow = matrix[row];
+                    double value = lowerRow[column];
+                    for (int index = 0; index < column; index++) {
+                        value -= lowerRow[index] * columnRow[index];
+                    }
+                    lowerRow[column] = pivot > 0.0D ? value / pivot : 0.0D;
+                }
+            }
+            // L z = b, then L' x = z
+            for (int row = 0; row < size; row++) {
+                double value = vector[row];
+                for (int index = 0; index < row; index++) {
+                    value -= matrix[row][index] * vector[index];
+                }
+                vector[row] = matrix[row][row] > 0.0D ? value / matrix[row][row] : 0.0D;
+            }
+            for (int row = size - 1; row >= 0; row--) {
+                double value = vector[row];
+                for (int index = row + 1; index < size; index++) {
+                    value -= matrix[index][row] * vector[index];
+                }
+                vector[row] = matrix[row][row] > 0.0D ? value / matrix[row][row] : 0.0D;
+            }
+            System.arraycopy(vector, 0, solution, 0, size);
+        }
+    }
+
+    /**
+     * Shut down the threads of the solver.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Run the step for all rows of a half-iteration. The rows are partitioned
+     * over the threads of the solver, every thread reusing its own
+     * {@link Scratch}.
+     *
+     * @param numRows the number of rows
+     * @param step    the update of a row
+     * @throws LibrecException if error occurs during training
+     */
+    public void forEachRow(int numRows, RowStep step) throws LibrecException {
+        int grainSize = Math.max(1, numRows / (8 * numThreads));
+        if (pool == null || numRows <= grainSize) {
+            Scratch threadScratch = scratch.get();
+            for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
+                step.update(rowIdx, threadScratch);
+            }
+            return;
+        }
+
+        try {
+            pool.invoke(new RowRangeAction(0, numRows, grainSize, step, scratch));
+        } catch (RuntimeException e) {
+            throw new LibrecException(e);
+        }
+    }
+
+    /**
+     * The rows from fromRowIdx to toRowIdx - 1, split in halves down to the
+     * grain size.
+     */
+    private static final class RowRangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromRowIdx, toRowIdx, grainSize;
+        private final RowStep step;
+        private final ThreadLocal<Scratch> scratch;
+
+        private RowRangeAction(int fromRowIdx, int toRowIdx, int grainSize, RowStep step,
+                               ThreadLocal<Scratch> scratch) {
+            this.fromRowIdx = fromRowIdx;
+            this.toRowIdx = toRowIdx;
+            this.grainSize = grainSize;
+            this.step = step;
+            this.scratch = scratch;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRowIdx - fromRowIdx <= grainSize) {
+                Scratch threadScratch = scratch.get();
+                for (int rowIdx = fromRowIdx; rowIdx < toRowIdx; rowIdx++) {
+                    step.update(rowIdx, threadScratch);
+                }
+            } else {
+                int middleRowIdx = (fromRowIdx + toRowIdx) >>> 1;
+                invokeAll(new RowRangeAction(fromRowIdx, middleRowIdx, grainSize, step, scratch),
+                        new RowRangeAction(middleRowIdx, toRowIdx, grainSize, step, scratch));
+            }
+        }
+    }
+
+    /**
+     * Compute the weighted Gram matrix F' diag(w) F of the factors in parallel.
+     *
+     * @param factors the factors F
+     * @param weights the weights w of the rows of F, null for all ones
+     * @return the symmetric Gram matrix
+     * @throws LibrecException if error occurs during training
+     */
+    public DenseMatrix gramMatrix(DenseMatrix factors, double[] weights) throws LibrecException {
+        double[][] factorValues = factors.getValues();
+        int numRows = factors.rowSize();
+        int size = factors.columnSize();
+        int numBlocks = Math.max(1, Math.min(numRows / 64, 8 * numThreads));
+        double[][][] blockGrams = new double[numBlocks][size][size];
+        forEachRow(numBlocks, (blockIdx, threadScratch) -> {
+            double[][] blockGram = blockGrams[blockIdx];
+            int toRowIdx = (int) ((long) numRows * (blockIdx + 1) / numBlocks);
+            for (int rowIdx = (int) ((long) numRows * blockIdx / numBlocks); rowIdx < toRowIdx; rowIdx++) {
+                double[] rowValues = factorValues[rowIdx];
+                double weight = weights == null ? 1.0D : weights[rowIdx];
+                for (int row = 0; row < size; row++) {
+                    double value = weight * rowValues[row];
+                    double[] gramRow = blockGram[row];
+                    for (int column = 0; column <= row; column++) {
+                        gramRow[column] += value * rowValues[column];
+                    }
+                }
+            }
+        });
+
+        double[][] gram = new double[size][size];
+        for (double[][] blockGram : blockGrams) {
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column <= row; column++) {
+                    gram[row][column] += blockGram[row][column];
+                }
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < row; column++) {
+                gram[column][row] = gram[row][column];
+            }
+        }
+        return new DenseMatrix(gram, true);
+    }
+
+    /**
+     * Solve the factors of all rows, or all columns, of the observed matrix
+     * with the other factors fixed, see {@link Loss}. The normal equations of
+     * a row are built on the given Gram matrix and solved by Cholesky
+     * decomposition.
+     *
+     * @param observedMatrix the observed values, users by items
+     * @param byColumn       true to solve the column (item) factors, false for the row (user) factors
+     * @param fixedFactors   the fixed factors
+     * @param gram           the Gram matrix of the fixed factors, null for none
+     * @param solvedFactors  the factors to solve
+     * @param lossFunction   the loss of a row
+     * @throws LibrecException if error occurs during training
+     */
+    public void solve(SequentialAccessSparseMatrix observedMatrix, boolean byColumn, DenseMatrix fixedFactors,
+                      DenseMatrix gram, DenseMatrix solvedFactors, Loss lossFunction) throws LibrecException {
+        double[][] fixedValues = fixedFactors.getValues();
+        double[][] solvedValues = solvedFactors.getValues();
+        double[][] gramValues = gram == null ? null : gram.getValues();
+        int size = numFactors;
+        int numRows = byColumn ? observedMatrix.columnSize() : observedMatrix.rowSize();
+        forEachRow(numRows, (rowIdx, threadScratch) -> {
+            SequentialSparseVector entries = byColumn ? observedMatrix.viewColumn(rowIdx) : observedMatrix.row(rowIdx);
+            double[][] matrix = threadScratch.matrix;
+            double[] vector = threadScratch.vector;
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column <= row; column++) {
+                    matrix[row][column] = gramValues == null ? 0.0D : gramValues[row][column];
+                }
+                vector[row] = 0.0D;
+            }
+
+            int numEntries = entries.getNumEntries();
+            for (int position = 0; position < numEntries; position++) {
+                double[] fixedVector = fixedValues[entries.getIndexAtPosition(position)];
+                double value = entries.getAtPosition(position);
+                double confidence = lossFunction.confidence(value);
+                double target = lossFunction.target(value);
+                for (int row = 0; row < size; row++) {
+                    double weightedFactor = confidence * fixedVector[row];
+                    double[] matrixRow = matrix[row];
+                    for (int column = 0; column <= row; column++) {
+                        matrixRow[column] += weightedFactor * fixedVector[column];
+                    }
+                    vector[row] += target * fixedVector[row];
+                }
+            }
+
+            double regularization = lossFunction.regularization(rowIdx, numEntries);
+            for (int row = 0; row < size; row++) {
+                matrix[row][row] += regularization;
+            }
+            threadScratch.solve(solvedValues[rowIdx]);
+        });
+    }
+}
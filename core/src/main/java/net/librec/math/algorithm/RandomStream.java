@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * A stream of random numbers for the use of a single thread or task, backed
+ * by a {@link SplittableRandom}. Unlike a shared {@link Random} there is no
+ * atomic seed to update, and streams derived from the same job seed by
+ * {@link #of(long, long)} or {@link #split()} are reproducible whichever
+ * thread uses them.
+ * <p>
+ * The stream is a {@link Random}, so it can stand in for the shared stream of
+ * {@link Randoms}, see {@link Randoms#seedThread(RandomStream)}. It is not
+ * safe for concurrent use, give each thread a stream of its own.
+ * <p>
+ * A {@link SplittableRandom} is not serializable, so a serialized stream
+ * carries a seed drawn from it instead. The deserialized stream continues
+ * from that seed, independent of the original one.
+ */
+public class RandomStream extends Random {
+    private static final long serialVersionUID = -4155434578306547632L;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private transient SplittableRandom random;
+
+    private double nextGaussian;
+    private boolean haveNextGaussian;
+
+    /**
+     * Create a stream with the given seed.
+     *
+     * @param seed the seed of the stream
+     */
+    public RandomStream(long seed) {
+        super(seed);
+        this.random = new SplittableRandom(seed);
+    }
+
+    private RandomStream(SplittableRandom random) {
+        super(0L);
+        this.random = random;
+    }
+
+    /**
+     * Derive the stream of a task, e.g. a thread index, a fold or a block of
+     * a sampler, from a job seed. The same seed and task always give the same
+     * stream, and the streams of different tasks are independent.
+     *
+     * @param seed the job seed
+     * @param task the index of the task
+     * @return the stream of the task
+     */
+    public static RandomStream of(long seed, long task) {
+        return new RandomStream(mix64(seed + GOLDEN_GAMMA * (task + 1)));
+    }
+
+    /**
+     * Split off a new stream, independent of this one, e.g. for a sub task.
+     *
+     * @return the new stream
+     */
+    public RandomStream split() {
+        return new RandomStream(random.split());
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        // called by the constructor of Random before the stream exists
+        if (random != null) {
+            random = new SplittableRandom(seed);
+            haveNextGaussian = false;
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        return random.nextInt() >>> (32 - bits);
+    }
+
+    @Override
+    public int nextInt() {
+        return random.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * Return an integer uniformly in [origin, bound).
+     *
+     * @param origin the least value returned
+     * @param bound  the upper bound, exclusive
+     * @return an integer in [origin, bound)
+     */
+    public int nextInt(int origin, int bound) {
+        return random.nextInt(origin, bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return random.nextBoolean();
+    }
+
+    /**
+     * Return a standard Gaussian number by the polar method, keeping the
+     * second number of each pair for the next call.
+     *
+     * @return a Gaussian number of mean 0 and standard deviation 1
+     */
+    @Override
+    public double nextGaussian() {
+        if (haveNextGaussian) {
+            haveNextGaussian = false;
+            return nextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * random.nextDouble() - 1;
+            v2 = 2 * random.nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextGaussian = v2 * multiplier;
+        haveNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    /**
+     * Fill a range of an array with Gaussian numbers.
+     *
+     * @param values the array to fill
+     * @param from   the first index to fill
+     * @param to     the index after the last one to fill
+     * @param mu     the mean
+     * @param sigma  the standard deviation
+     */
+    public void fillGaussian(double[] values, int from, int to, double mu, double sigma) {
+        int index = from;
+        if (haveNextGaussian && index < to) {
+            values[index++] = mu + sigma * nextGaussian();
+        }
+        // both numbers of a pair go to the array directly
+        while (index + 1 < to) {
+            double v1, v2, s;
+            do {
+                v1 = 2 * random.nextDouble() - 1;
+                v2 = 2 * random.nextDouble() - 1;
+                s = v1 * v1 + v2 * v2;
+            } while (s >= 1 || s == 0);
+            double multiplier = sigma * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+            values[index++] = mu + v1 * multiplier;
+            values[index++] = mu + v2 * multiplier;
+        }
+        if (index < to) {
+            values[index] = mu + sigma * nextGaussian();
+        }
+    }
+
+    /**
+     * Fill a range of an array with numbers uniformly in [min, max).
+     *
+     * @param values the array to fill
+     * @param from   the first index to fill
+     * @param to     the index after the last one to fill
+     * @param min    the least value
+     * @param max    the upper bound, exclusive
+     */
+    public void fillUniform(double[] values, int from, int to, double min, double max) {
+        double range = max - min;
+        for (int index = from; index < to; index++) {
+            values[index] = min + range * random.nextDouble();
+        }
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeLong(random.nextLong());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        random = new SplittableRandom(in.readLong());
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading the bits of a seed.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
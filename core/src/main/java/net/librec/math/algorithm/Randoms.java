@@ -18,6 +18,8 @@
 
 package net.librec.math.algorithm;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.VectorBasedDenseVector;
@@ -25,12 +27,38 @@ import net.librec.math.structure.VectorBasedDenseVector;
 import java.util.*;
 
 /**
+ * Random numbers of LibRec. The static methods draw from one stream shared by
+ * the threads, seeded by {@link #seed(long)} with the job seed, so that a
+ * single threaded run is reproducible.
+ * <p>
+ * Code running in several threads should not share that stream: the draws
+ * contend on its atomic seed and their order depends on the scheduling. It
+ * should rather give each task a stream of its own derived from the job seed,
+ * either
+ * <ul>
+ * <li>by {@link #stream(long)}, and draw from the returned
+ * {@link RandomStream} directly, e.g. {@code random.nextInt(bound)} instead of
+ * {@code Randoms.uniform(bound)} and {@code random.nextDouble()} instead of
+ * {@code Randoms.uniform()}, or</li>
+ * <li>by {@link #seedThread(RandomStream)} when the task calls code using the
+ * static methods, which then draw from the stream of the thread until
+ * {@link #clearThreadSeed()}.</li>
+ * </ul>
+ *
  * @author Guo Guibing and Keqiang Wang
  */
 public class Randoms {
-    private static Random r = new Random(System.currentTimeMillis());
+    private static long jobSeed = System.currentTimeMillis();
 
-    private static List<Object> _tempList = new ArrayList<>();
+    private static Random r = new Random(jobSeed);
+
+    private static final ThreadLocal<Random> threadRandom = new ThreadLocal<>();
+
+    /**
+     * the integers drawn by {@link #nextInt(int, int, int...)} since the last
+     * {@link #clearCache()}, for each thread
+     */
+    private static final ThreadLocal<IntOpenHashSet> drawnInts = ThreadLocal.withInitial(IntOpenHashSet::new);
 
     /**
      * Random generate an integer in [0, range)
@@ -43,9 +71,68 @@ public class Randoms {
     }
 
     public static void seed(long seed) {
+        jobSeed = seed;
         r = new Random(seed);
     }
 
+    /**
+     * Get the stream of a task derived from the job seed, see
+     * {@link RandomStream#of(long, long)}. The stream does not depend on the
+     * draws made so far nor on the thread asking for it.
+     *
+     * @param task the index of the task
+     * @return the stream of the task
+     */
+    public static RandomStream stream(long task) {
+        return RandomStream.of(jobSeed, task);
+    }
+
+    /**
+     * Get the stream the static methods draw from in the calling thread, to
+     * draw many numbers from it without looking it up each time.
+     *
+     * @return the stream of the calling thread
+     */
+    public static Random stream() {
+        return r();
+    }
+
+    /**
+     * Give the calling thread its own random stream seeded by {@code seed},
+     * e.g. for a task which has to reproduce the same draws whichever thread
+     * runs it. Until {@link #clearThreadSeed()}, all the methods of this class
+     * called by the thread draw from that stream instead of the shared one.
+     *
+     * @param seed the seed of the stream of the calling thread
+     */
+    public static void seedThread(long seed) {
+        seedThread(new RandomStream(seed));
+    }
+
+    /**
+     * Give the calling thread a stream of its own, e.g. one of
+     * {@link #stream(long)}. Until {@link #clearThreadSeed()}, all the methods
+     * of this class called by the thread draw from that stream instead of the
+     * shared one.
+     *
+     * @param stream the stream of the calling thread
+     */
+    public static void seedThread(RandomStream stream) {
+        threadRandom.set(stream);
+    }
+
+    /**
+     * Make the calling thread draw from the shared stream again.
+     */
+    public static void clearThreadSeed() {
+        threadRandom.remove();
+    }
+
+    private static Random r() {
+        Random threadR = threadRandom.get();
+        return threadR != null ? threadR : r;
+    }
+
     /**
      * Random generate an integer in [min, max)
      *
@@ -54,7 +141,7 @@ public class Randoms {
      * @return an integer random generated in [min, max)
      */
     public static int uniform(int min, int max) {
-        return min + r.nextInt(max - min);
+        return min + r().nextInt(max - min);
     }
 
     /**
@@ -126,7 +213,7 @@ public class Randoms {
      * @return Random (uniformly distributed) double in [min, max)
      */
     public static double uniform(double min, double max) {
-        return min + (max - min) * r.nextDouble();
+        return min + (max - min) * r().nextDouble();
     }
 
     /**
@@ -156,7 +243,45 @@ public class Randoms {
      * @return a real number from a Gaussian distribution with given mean and stddev
      */
     public static double gaussian(double mu, double sigma) {
-        return mu + sigma * r.nextGaussian();
+        return mu + sigma * r().nextGaussian();
+    }
+
+    /**
+     * Fill an array with Gaussian numbers, the same as calling
+     * {@link #gaussian(double, double)} for each element in turn.
+     *
+     * @param values the array to fill
+     * @param mu     mean
+     * @param sigma  standard deviation
+     */
+    public static void gaussians(double[] values, double mu, double sigma) {
+        Random random = r();
+        if (random instanceof RandomStream) {
+            ((RandomStream) random).fillGaussian(values, 0, values.length, mu, sigma);
+        } else {
+            for (int index = 0; index < values.length; index++) {
+                values[index] = mu + sigma * random.nextGaussian();
+            }
+        }
+    }
+
+    /**
+     * Fill an array with numbers uniformly in [min, max), the same as calling
+     * {@link #uniform(double, double)} for each element in turn.
+     *
+     * @param values the array to fill
+     * @param min    min of the range
+     * @param max    max of the range
+     */
+    public static void uniforms(double[] values, double min, double max) {
+        Random random = r();
+        if (random instanceof RandomStream) {
+            ((RandomStream) random).fillUniform(values, 0, values.length, min, max);
+        } else {
+            for (int index = 0; index < values.length; index++) {
+                values[index] = min + (max - min) * random.nextDouble();
+            }
+        }
     }
 
     /**
@@ -181,18 +306,18 @@ public class Randoms {
         if (alpha < 1.0) {
             b = 1.0 + 0.36788794412 * alpha; // Step 1
             while (true) {
-                double p = b * r.nextDouble();
+                double p = b * r().nextDouble();
                 // Step 2. Case gds <= 1
                 if (p <= 1.0) {
                     gds = Math.exp(Math.log(p) / alpha);
-                    if (Math.log(r.nextDouble()) <= -gds) {
+                    if (Math.log(r().nextDouble()) <= -gds) {
                         return gds / rate;
                     }
                 }
                 // Step 3. Case gds > 1
                 else {
                     gds = -Math.log((b - p) / alpha);
-                    if (Math.log(r.nextDouble()) <= ((alpha - 1.0) * Math.log(gds))) {
+                    if (Math.log(r().nextDouble()) <= ((alpha - 1.0) * Math.log(gds))) {
                         return gds / rate;
                     }
                 }
@@ -217,8 +342,8 @@ public class Randoms {
             double v1;
 
             do {
-                v1 = 2.0 * r.nextDouble() - 1.0;
-                double v2 = 2.0 * r.nextDouble() - 1.0;
+                v1 = 2.0 * r().nextDouble() - 1.0;
+                double v2 = 2.0 * r().nextDouble() - 1.0;
                 v12 = v1 * v1 + v2 * v2;
             } while (v12 > 1.0);
 
@@ -230,7 +355,7 @@ public class Randoms {
                 return gds / rate;
             }
 
-            double u = r.nextDouble();
+            double u = r().nextDouble();
             if (d * u <= t * t * t) { // Squeeze acceptance
                 return gds / rate;
             }
@@ -317,8 +442,8 @@ public class Randoms {
                 double sign_u;
                 double e;
                 do { // Step 9. Rejection of t
-                    e = -Math.log(r.nextDouble());
-                    u = r.nextDouble();
+                    e = -Math.log(r().nextDouble());
+                    u = r().nextDouble();
                     u = u + u - 1.0;
                     sign_u = (u > 0) ? 1.0 : -1.0;
                     t = b + (e * si) * sign_u;
@@ -417,7 +542,7 @@ public class Randoms {
             }
         }
 
-        return A.transpose().times(B).times(A);
+        return A.transposeTimes(B).times(A);
     }
 
     /**
@@ -518,16 +643,15 @@ public class Randoms {
      * @return next no-repeated random integer
      */
     public static int nextInt(int min, int max, int... exceptions) {
+        Random random = r();
+        IntOpenHashSet drawn = drawnInts.get();
         int next;
         while (true) {
-            next = min + r.nextInt(max - min);
+            next = min + random.nextInt(max - min);
             if (exceptions != null && exceptions.length > 0 && Arrays.binarySearch(exceptions, next) >= 0) {
                 continue;
             }
-            if (_tempList.contains(next))
-                continue;
-            else {
-                _tempList.add(next);
+            if (drawn.add(next)) {
                 break;
             }
         }
@@ -543,16 +667,15 @@ public class Randoms {
      * @return no repeat {@code cardinality} indexes from {@code min} to {@code max}
      */
     public static int[] indexs(int size, int min, int max) {
-        Set<Integer> used = new HashSet();
+        IntOpenHashSet used = new IntOpenHashSet(size);
         int[] index = new int[size];
 
         for (int i = 0; i < index.length; i++) {
             while (true) {
                 int ind = uniform(min, max);
 
-                if (!used.contains(ind)) {
+                if (used.add(ind)) {
                     index[i] = ind;
-                    used.add(ind);
                     break;
                 }
             }
@@ -562,7 +685,7 @@ public class Randoms {
     }
 
     public static void clearCache() {
-        _tempList.clear();
+        drawnInts.get().clear();
     }
 
     /**
@@ -617,20 +740,16 @@ public class Randoms {
         if (len < length)
             throw new Exception("The range is less than legth");
 
-        Set<Integer> ints = new HashSet();
+        Random random = r();
+        IntOpenHashSet ints = new IntOpenHashSet(length);
 
-        while (true) {
-            int rand = min + r.nextInt(max - min);
-            ints.add(rand);
-
-            if (ints.size() >= length)
-                break;
+        while (ints.size() < length) {
+            ints.add(min + random.nextInt(max - min));
         }
 
-        List<Integer> res = new ArrayList(ints);
-        Collections.sort(res);
-
-        return res;
+        int[] sorted = ints.toIntArray();
+        Arrays.sort(sorted);
+        return new IntArrayList(sorted);
     }
 
     /**
@@ -648,7 +767,7 @@ public class Randoms {
         int sum = 0;
         for (int i = 0; i < pros.length; i++) {
             //avoid zero
-            pros[i] = r.nextInt(size) + 1;
+            pros[i] = r().nextInt(size) + 1;
             sum += pros[i];
         }
 
@@ -706,14 +825,16 @@ public class Randoms {
      * @return a permutation
      */
     public static List<Integer> permute(int min, int max) {
-        List<Integer> list = new ArrayList();
-
         int len = max - min + 1;
+        IntArrayList list = new IntArrayList(len);
+        boolean[] used = new boolean[len];
+
         for (int i = 0; i < len; i++) {
             while (true) {
                 int index = uniform(min, max + 1);
 
-                if (!list.contains(index)) {
+                if (!used[index - min]) {
+                    used[index - min] = true;
                     list.add(index);
                     break;
                 }
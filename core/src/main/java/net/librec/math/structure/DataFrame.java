@@ -18,12 +18,7 @@
 
 package net.librec.math.structure;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashBiMap;
-import com.google.common.collect.Table;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleOpenHashSet;
 import net.librec.conf.Configuration;
 import org.apache.commons.logging.LogFactory;
 import net.librec.math.structure.DataFrameIndex;
@@ -33,6 +28,10 @@ import java.util.*;
 
 /**
  * Data Structure: DataFrame
+ * <p>
+ * Cells are stored column by column in primitive chunks: the inner ids of
+ * STRING and NOMINAL attributes as {@code int}, NUMERIC attributes as
+ * {@code double} and DATE attributes as {@code long}.
  *
  * @author Liuxz
  */
@@ -45,17 +44,50 @@ public class DataFrame implements Serializable, DataSet{
         List<String>  levels;
     }
 
-    private static Map<String, BiMap<String, Integer>> featuresInnerMapping;
+    /**
+     * the dictionaries of the data frames constructed without their own
+     */
+    private static volatile IdDictionaries defaultIdDictionaries = new IdDictionaries();
+
+    /**
+     * {raw id, inner id} dictionaries of the STRING and NOMINAL attributes
+     */
+    private IdDictionaries idDictionaries;
     private String name;
     private List<String> header;
     private List<String> attrType;
 
-    private List<List<Object>> data;
+    /**
+     * rows per column chunk, a column grows chunk by chunk instead of copying
+     * all of its cells
+     */
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MIN_CHUNK_LENGTH = 16;
+
+    private List<Column> columns;
+
+    /**
+     * the expected number of rows, see {@link #ensureCapacity(int)}
+     */
+    private int capacity;
 
     private List<Double> ratingScale;
 
     public DataFrame(){
-        this.data = new ArrayList<>();
+        this(defaultIdDictionaries);
+    }
+
+    /**
+     * Construct a dataFrame assigning inner ids with the given dictionaries,
+     * which may be shared with other dataFrames of the same data.
+     *
+     * @param idDictionaries the {raw id, inner id} dictionaries
+     */
+    public DataFrame(IdDictionaries idDictionaries){
+        this.columns = new ArrayList<>();
+        this.idDictionaries = idDictionaries;
     }
 
     /**
@@ -64,18 +96,34 @@ public class DataFrame implements Serializable, DataSet{
      * @param df the original dataFrame
      */
     public DataFrame(DataFrame df){
-        this.data = df.getData();
+        this.columns = df.columns;
         this.name = df.getName();
         this.header = df.getHeader();
         this.attrType = df.getAttrType();
+        this.idDictionaries = df.idDictionaries;
     }
 
     @Override
     public int size() {
-        if (data == null){
+        if (columns == null || columns.size() == 0){
             return 0;
         }
-        return data.get(0).size();
+        return columns.get(0).size();
+    }
+
+    /**
+     * Reserve room for the given number of rows, e.g. estimated from the size
+     * of the input files, so that the columns do not grow more than needed.
+     *
+     * @param numRows the expected number of rows
+     */
+    public void ensureCapacity(int numRows){
+        capacity = Math.max(capacity, numRows);
+        if (columns != null){
+            for (Column column : columns){
+                column.ensureCapacity(capacity);
+            }
+        }
     }
 
     /**
@@ -84,16 +132,49 @@ public class DataFrame implements Serializable, DataSet{
      * @param input
      */
     public void add(String[] input){
-        if (data == null){
-            data = new ArrayList<>(input.length);
+        initColumns(input.length);
+        for(int i =0; i < input.length; i++){
+            addData(i, input[i]);
         }
-        if (data.size() == 0){
-            for (int i =0; i < input.length; i++){
-                data.add(new ArrayList<>());
+    }
+
+    /**
+     * plus a block of parsed rows on the end of the dataFrame, column by column.
+     * The cells of the i-th column are given by columnValues[i]: an int[] of inner
+     * ids for STRING and NOMINAL attributes, a double[] for NUMERIC attributes,
+     * a long[] for DATE attributes and null for the others.
+     *
+     * @param columnValues the cells of every column
+     * @param numRows      the number of rows in the block
+     */
+    public void addRows(Object[] columnValues, int numRows){
+        initColumns(columnValues.length);
+        for (int i = 0; i < columnValues.length; i++){
+            Column column = columns.get(i);
+            if (column instanceof IntColumn){
+                ((IntColumn) column).addAll((int[]) columnValues[i], numRows);
+            }else if (column instanceof DoubleColumn){
+                ((DoubleColumn) column).addAll((double[]) columnValues[i], numRows);
+            }else if (column instanceof LongColumn){
+                ((LongColumn) column).addAll((long[]) columnValues[i], numRows);
+            }else{
+                for (int row = 0; row < numRows; row++){
+                    ((NullColumn) column).add();
+                }
             }
         }
-        for(int i =0; i < input.length; i++){
-            getData().get(i).add(addData(i, input[i]));
+    }
+
+    private void initColumns(int numColumns){
+        if (columns == null){
+            columns = new ArrayList<>(numColumns);
+        }
+        if (columns.size() == 0){
+            for (int i =0; i < numColumns; i++){
+                Column column = newColumn(attrType.get(i));
+                column.ensureCapacity(capacity);
+                columns.add(column);
+            }
         }
     }
 
@@ -102,17 +183,30 @@ public class DataFrame implements Serializable, DataSet{
      *
      * @param input
      */
-    private Object addData(int columnIndex, String input){
+    private void addData(int columnIndex, String input){
+        Column column = columns.get(columnIndex);
         if (Objects.equals(attrType.get(columnIndex), "STRING")) {
-            return getId(input, header.get(columnIndex));
+            ((IntColumn) column).add(getIdDictionary(header.get(columnIndex)).intern(input));
         }else if (Objects.equals(attrType.get(columnIndex), "NOMINAL")){
-            return getId(input, header.get(columnIndex));
+            ((IntColumn) column).add(getId(input, header.get(columnIndex)));
         }else if (Objects.equals(attrType.get(columnIndex), "NUMERIC")){
-            return Double.valueOf(input);
+            ((DoubleColumn) column).add(Double.parseDouble(input));
         }else if (Objects.equals(attrType.get(columnIndex), "DATE")){
-            return Long.parseLong(input);
+            ((LongColumn) column).add(Long.parseLong(input));
         }else{
-            return null;
+            ((NullColumn) column).add();
+        }
+    }
+
+    private static Column newColumn(String attrType){
+        if (Objects.equals(attrType, "STRING") || Objects.equals(attrType, "NOMINAL")) {
+            return new IntColumn();
+        }else if (Objects.equals(attrType, "NUMERIC")){
+            return new DoubleColumn();
+        }else if (Objects.equals(attrType, "DATE")){
+            return new LongColumn();
+        }else{
+            return new NullColumn();
         }
     }
 
@@ -236,48 +330,82 @@ public class DataFrame implements Serializable, DataSet{
      */
     public SequentialAccessSparseMatrix toSparseMatrix(int indexColumn1, int indexColumn2,
                                                        int valueColumn, double binThold ){
-        if ((data.size() == 0) || data.size() <= valueColumn){
+        if ((columns == null) || (columns.size() == 0) || columns.size() <= valueColumn){
             return null;
         }
 
-        if (Objects.equals(attrType.get(valueColumn), "NUMERIC")){
-            Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-            for (int i = getData().get(0).size()-1; i >=0 ; i--){
-                int row = (int)getData().get(indexColumn1).get(i);
-                int col = (int)getData().get(indexColumn2).get(i);
-                Double rate;
-                rate = valueColumn == -1 ? 1.0 : (Double) getData().get(valueColumn).get(i);
+        String valueType = valueColumn == -1 ? "NUMERIC" : attrType.get(valueColumn);
+        if (!Objects.equals(valueType, "NUMERIC") && !Objects.equals(valueType, "DATE")){
+            LOG.info("fail to create sparseMatrix, please check attributes type");
+            return null;
+        }
+        boolean binarize = Objects.equals(valueType, "NUMERIC") && binThold >= 0;
+
+        int numRows = getIdDictionary(header.get(indexColumn1)).size();
+        int numColumns = getIdDictionary(header.get(indexColumn2)).size();
+        IntColumn rowColumn = (IntColumn) columns.get(indexColumn1);
+        IntColumn columnColumn = (IntColumn) columns.get(indexColumn2);
+        Column values = valueColumn == -1 ? null : columns.get(valueColumn);
+        int size = size();
+
+        // counting sort of the cells by column, then a stable counting sort by row,
+        // leaving the cells of every row sorted by column and duplicates in input order
+        int[] rowCounts = new int[numRows];
+        int[] columnPointers = new int[numColumns + 1];
+        for (int i = 0; i < size; i++){
+            rowCounts[rowColumn.getInt(i)]++;
+            columnPointers[columnColumn.getInt(i) + 1]++;
+        }
+        for (int col = 0; col < numColumns; col++){
+            columnPointers[col + 1] += columnPointers[col];
+        }
+        int[] columnOrder = new int[size];
+        for (int i = 0; i < size; i++){
+            columnOrder[columnPointers[columnColumn.getInt(i)]++] = i;
+        }
 
-                if (binThold >= 0) {
-                    rate = rate > binThold ?  1.0: -1.0;
+        int[][] rowIndices = new int[numRows][];
+        double[][] rowValues = new double[numRows][];
+        for (int row = 0; row < numRows; row++){
+            rowIndices[row] = new int[rowCounts[row]];
+            rowValues[row] = new double[rowCounts[row]];
+        }
+        int[] rowPositions = new int[numRows];
+        for (int i : columnOrder){
+            int row = rowColumn.getInt(i);
+            int position = rowPositions[row]++;
+            double rate = values == null ? 1.0 : values.getDouble(i);
+            if (binarize) {
+                rate = rate > binThold ?  1.0: -1.0;
+            }
+            rowIndices[row][position] = columnColumn.getInt(i);
+            rowValues[row][position] = rate;
+        }
+        columnOrder = null;
+
+        // the first occurrence of a duplicated (row, column) cell wins
+        VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[numRows];
+        for (int row = 0; row < numRows; row++){
+            int[] indices = rowIndices[row];
+            double[] doubleValues = rowValues[row];
+            int numEntries = 0;
+            for (int position = 0; position < indices.length; position++){
+                if (numEntries == 0 || indices[position] != indices[numEntries - 1]){
+                    indices[numEntries] = indices[position];
+                    doubleValues[numEntries] = doubleValues[position];
+                    numEntries++;
                 }
-                dataTable.put(row, col, rate);
             }
-            flushCache(Arrays.asList(indexColumn1, indexColumn2));
-            SequentialAccessSparseMatrix matrix = new SequentialAccessSparseMatrix(
-                    featuresInnerMapping.get(header.get(indexColumn1)).size(),
-                    featuresInnerMapping.get(header.get(indexColumn2)).size(),
-                    dataTable);
-            return matrix;
-        }else if (Objects.equals(attrType.get(valueColumn), "DATE")){
-            Table<Integer, Integer, Long> dataTable = HashBasedTable.create();
-            for (int i = getData().get(0).size()-1; i >=0; i--) {
-                int row = (int) getData().get(indexColumn1).get(i);
-                int col = (int) getData().get(indexColumn2).get(i);
-                Long mms = 0L;
-                mms = (Long)getData().get(valueColumn).get(i);
-                dataTable.put(row, col, mms);
+            if (numEntries < indices.length){
+                indices = Arrays.copyOf(indices, numEntries);
+                doubleValues = Arrays.copyOf(doubleValues, numEntries);
             }
-            flushCache(Arrays.asList(indexColumn1, indexColumn2));
-            SequentialAccessSparseMatrix matrix = new SequentialAccessSparseMatrix(
-                    featuresInnerMapping.get(header.get(indexColumn1)).size(),
-                    featuresInnerMapping.get(header.get(indexColumn2)).size(),
-                    dataTable);
-            return matrix;
-        }else{
-            LOG.info("fail to create sparseMatrix, please check attributes type");
-            return null;
+            rowIndices[row] = null;
+            rowValues[row] = null;
+            rowVectors[row] = new VectorBasedSequentialSparseVector(numColumns, indices, doubleValues);
         }
+        flushCache(Arrays.asList(indexColumn1, indexColumn2));
+        return new SequentialAccessSparseMatrix(numRows, numColumns, rowVectors);
     }
 
     /**
@@ -288,8 +416,8 @@ public class DataFrame implements Serializable, DataSet{
         List<Integer> _indexColumn = new ArrayList<>();
         int valueColumn = -1;
         for(int i =0; i < header.size(); i ++){
-            if (featuresInnerMapping.containsKey(header.get(i))
-                    && featuresInnerMapping.get(header.get(i)).size()!=0){
+            if (idDictionaries.contains(header.get(i))
+                    && idDictionaries.get(header.get(i)).size()!=0){
                 _indexColumn.add(i);
             }
             if (header.get(i).toLowerCase().equals("rating")){
@@ -322,15 +450,15 @@ public class DataFrame implements Serializable, DataSet{
      * @param valueColumn String
      * @return SparseTensor
      */
+    @SuppressWarnings("unchecked")
     public SparseTensor toSparseTensor(int[] indicesColumn, int valueColumn){
-        List<Double> rating = new ArrayList<>();
         List<Integer>[] nDKeys = (List<Integer>[]) new List<?>[indicesColumn.length];
         int[] dims = new int[indicesColumn.length];
         int userDimension = -1;
         int itemDimension = -1;
         for (int d = 0; d < indicesColumn.length ; d ++){
-            nDKeys[d] = new ArrayList<>(getData().get(indicesColumn[d]).size());
-            dims[d] = getInnerMapping(header.get(indicesColumn[d])).size();
+            nDKeys[d] = (List<Integer>) (List<?>) columns.get(indicesColumn[d]).asList();
+            dims[d] = getIdDictionary(header.get(indicesColumn[d])).size();
 
             if (Objects.equals(header.get(indicesColumn[d]), "user")){
                 userDimension = d;
@@ -340,15 +468,7 @@ public class DataFrame implements Serializable, DataSet{
             }
         }
 
-        for (int d = 0; d<indicesColumn.length; d++){
-            for (Object s: getData().get(indicesColumn[d])){
-                nDKeys[d].add((Integer)s);
-            }
-        }
-
-        for (Object s: getData().get(valueColumn)){
-            rating.add((Double) s);
-        }
+        List<Double> rating = (List<Double>) (List<?>) columns.get(valueColumn).asList();
 
         SparseTensor tensor = new SparseTensor(dims, nDKeys, rating);
         if (userDimension != -1){
@@ -361,23 +481,6 @@ public class DataFrame implements Serializable, DataSet{
     }
 
 
-    /**
-     * plus a key to the corresponding map and return the value.
-     * @param input value
-     * @param attrName attribute name
-     * @return inner value
-     */
-    public static int setId(String input, String attrName){
-        BiMap<String, Integer> innerMap = getInnerMapping(attrName);
-        if (innerMap.containsKey(input)){
-            return innerMap.get(input);
-        }else{
-            int cur = innerMap.size();
-            innerMap.put(input, cur);
-            return cur;
-        }
-    }
-
 //    public static void setId(String input, char select){
 //        if (select =='U'){
 //            setId(input, "user");
@@ -387,25 +490,49 @@ public class DataFrame implements Serializable, DataSet{
 //    }
 
     private int getId(String input, String attrName){
-        if (featuresInnerMapping.keySet().contains(attrName)){
-            return featuresInnerMapping.get(attrName).get(input);
+        if (idDictionaries.contains(attrName)){
+            return idDictionaries.get(attrName).getId(input);
         }else{
             return -1;
         }
     }
 
-    public static BiMap<String, Integer> getInnerMapping(String attrName){
-        if (featuresInnerMapping == null){
-            featuresInnerMapping = new HashMap<>();
-        }
-        if (!featuresInnerMapping.keySet().contains(attrName)) {
-            featuresInnerMapping.put(attrName, HashBiMap.create());
-        }
-        return featuresInnerMapping.get(attrName);
+    /**
+     * @return the {raw id, inner id} dictionaries of this dataFrame
+     */
+    public IdDictionaries getIdDictionaries(){
+        return idDictionaries;
+    }
+
+    /**
+     * @param attrName attribute name
+     * @return the {raw id, inner id} dictionary of the attribute in this dataFrame
+     */
+    public IdDictionary getIdDictionary(String attrName){
+        return idDictionaries.get(attrName);
+    }
+
+    /**
+     * @return the dictionaries of the dataFrames constructed without their own
+     */
+    public static IdDictionaries getDefaultIdDictionaries(){
+        return defaultIdDictionaries;
     }
 
+    /**
+     * @param attrName attribute name
+     * @return the {raw id, inner id} dictionary of the attribute in the default dictionaries
+     */
+    public static IdDictionary getInnerMapping(String attrName){
+        return defaultIdDictionaries.get(attrName);
+    }
+
+    /**
+     * Replace the default dictionaries by empty ones. DataFrames constructed
+     * before keep the dictionaries they have got.
+     */
     public static void clearInnerMapping(){
-        DataFrame.featuresInnerMapping = new HashMap<>();
+        DataFrame.defaultIdDictionaries = new IdDictionaries();
     }
 
     public void addHeader(String attrName){
@@ -428,42 +555,30 @@ public class DataFrame implements Serializable, DataSet{
     }
 
     public Object get(int index1, int index2){
-        return getData().get(index2).get(index1);
+        return columns.get(index2).get(index1);
     }
 
     private int getUserId(String user){
-        return getInnerMapping("user").get(user);
+        return getIdDictionary("user").getId(user);
     }
 
     private int getItemId(String item){
-        return getInnerMapping("item").get(item);
+        return getIdDictionary("item").getId(item);
     }
 
     private void flushCache(List<Integer> index){
         boolean clean = true;
-        for (int i = 0; i < getData().size(); i ++){
+        for (int i = 0; i < columns.size(); i ++){
             if (index.contains(i)){continue;}
-            if (getData().get(i).size()!=0){
+            if (columns.get(i).size()!=0){
                 clean = false;
             }
         }
         if (clean){
-            data = null;
+            columns = null;
         }
     }
 
-    public static BiMap<String, Integer> getUserIds() {
-        return getInnerMapping("user");
-    }
-
-    public static BiMap<String, Integer> getItemIds() {
-        return getInnerMapping("item");
-    }
-
-    public static BiMap<String, Integer> getTagIds() {
-        return getInnerMapping("rating");
-    }
-
     public static DataFrame merge(DataFrame a, DataFrame b){
         return new DataFrame();
     }
@@ -480,14 +595,20 @@ public class DataFrame implements Serializable, DataSet{
         this.header = header;
     }
 
+    /**
+     * @return a read-only view of the columns, cells are boxed when accessed
+     */
     public List<List<Object>> getData(){
+        if (columns == null){
+            return null;
+        }
+        List<List<Object>> data = new ArrayList<>(columns.size());
+        for (Column column : columns){
+            data.add(column.asList());
+        }
         return data;
     }
 
-    private void setData(List<List<Object>> data) {
-        this.data = data;
-    }
-
     public String getName() {
         return name;
     }
@@ -505,11 +626,11 @@ public class DataFrame implements Serializable, DataSet{
     }
 
     public int numUsers(){
-        return getUserIds().size();
+        return getIdDictionary("user").size();
     }
 
     public int numItems(){
-        return getItemIds().size();
+        return getIdDictionary("item").size();
     }
 
     public List<Double> getRatingScale(){
@@ -517,19 +638,18 @@ public class DataFrame implements Serializable, DataSet{
         if (index == -1){
             return null;
         }
-        Set<Object> scale = new HashSet<>(getData().get(index));
-        List<Double> ratingScale = new ArrayList<>(scale.size());
-        for (Object o: scale){
-            ratingScale.add((Double) o);
+        Column column = columns.get(index);
+        DoubleOpenHashSet scale = new DoubleOpenHashSet();
+        for (int i = 0; i < column.size(); i++){
+            scale.add(column.getDouble(i));
         }
-        ratingScale.sort((o1, o2) -> {
-            if (o1 > o2){
-                return 1;
-            }else{
-                return -1;
-            }
-        });
-        return new ArrayList<>(ratingScale);
+        double[] sortedScale = scale.toDoubleArray();
+        Arrays.sort(sortedScale);
+        List<Double> ratingScale = new ArrayList<>(sortedScale.length);
+        for (double value: sortedScale){
+            ratingScale.add(value);
+        }
+        return ratingScale;
     }
 
     @Override
@@ -540,12 +660,201 @@ public class DataFrame implements Serializable, DataSet{
         }
         sb.append("\n");
 
-        for (int i =0; i < getData().get(0).size(); i ++){
+        for (int i =0; i < size(); i ++){
             for (int j =0; j< header.size(); j ++ ){
-                sb.append(' '+ Double.parseDouble(getData().get(j).get(i).toString()));
+                sb.append(' '+ Double.parseDouble(get(i, j).toString()));
             }
             sb.append('\n');
         }
         return sb.toString();
     }
+
+    /**
+     * A column of primitive cells, stored in chunks of {@link #CHUNK_SIZE}
+     * rows. The last chunk starts small and doubles until it is full, or is
+     * sized by the capacity hint.
+     */
+    private abstract static class Column implements Serializable {
+        private static final long serialVersionUID = 5221446025223702190L;
+
+        protected int size;
+        protected int capacity;
+
+        int size(){
+            return size;
+        }
+
+        void ensureCapacity(int numRows){
+            capacity = Math.max(capacity, numRows);
+        }
+
+        /**
+         * @param chunkIndex    index of the chunk
+         * @param currentLength current length of the chunk
+         * @return the length of the chunk after it grows
+         */
+        int chunkLength(int chunkIndex, int currentLength){
+            int hintedLength = capacity - (chunkIndex << CHUNK_SHIFT);
+            int length = hintedLength > currentLength ? hintedLength : currentLength << 1;
+            return Math.min(CHUNK_SIZE, Math.max(MIN_CHUNK_LENGTH, length));
+        }
+
+        abstract Object get(int rowIndex);
+
+        abstract double getDouble(int rowIndex);
+
+        List<Object> asList(){
+            return new AbstractList<Object>() {
+                @Override
+                public Object get(int index) {
+                    return Column.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
+    private static class IntColumn extends Column {
+        private static final long serialVersionUID = -3145805974268433960L;
+
+        private int[][] chunks = new int[0][];
+
+        void add(int value){
+            int chunkIndex = size >>> CHUNK_SHIFT;
+            int offset = size & CHUNK_MASK;
+            if (chunkIndex == chunks.length){
+                chunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length << 1));
+            }
+            if (chunks[chunkIndex] == null){
+                chunks[chunkIndex] = new int[chunkLength(chunkIndex, 0)];
+            }else if (offset == chunks[chunkIndex].length){
+                chunks[chunkIndex] = Arrays.copyOf(chunks[chunkIndex], chunkLength(chunkIndex, offset));
+            }
+            chunks[chunkIndex][offset] = value;
+            size++;
+        }
+
+        void addAll(int[] values, int length){
+            for (int i = 0; i < length; i++){
+                add(values[i]);
+            }
+        }
+
+        int getInt(int rowIndex){
+            return chunks[rowIndex >>> CHUNK_SHIFT][rowIndex & CHUNK_MASK];
+        }
+
+        @Override
+        Object get(int rowIndex){
+            return getInt(rowIndex);
+        }
+
+        @Override
+        double getDouble(int rowIndex){
+            return getInt(rowIndex);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private static final long serialVersionUID = -8047026284067541870L;
+
+        private double[][] chunks = new double[0][];
+
+        void add(double value){
+            int chunkIndex = size >>> CHUNK_SHIFT;
+            int offset = size & CHUNK_MASK;
+            if (chunkIndex == chunks.length){
+                chunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length << 1));
+            }
+            if (chunks[chunkIndex] == null){
+                chunks[chunkIndex] = new double[chunkLength(chunkIndex, 0)];
+            }else if (offset == chunks[chunkIndex].length){
+                chunks[chunkIndex] = Arrays.copyOf(chunks[chunkIndex], chunkLength(chunkIndex, offset));
+            }
+            chunks[chunkIndex][offset] = value;
+            size++;
+        }
+
+        void addAll(double[] values, int length){
+            for (int i = 0; i < length; i++){
+                add(values[i]);
+            }
+        }
+
+        @Override
+        Object get(int rowIndex){
+            return getDouble(rowIndex);
+        }
+
+        @Override
+        double getDouble(int rowIndex){
+            return chunks[rowIndex >>> CHUNK_SHIFT][rowIndex & CHUNK_MASK];
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private static final long serialVersionUID = -787076989783652192L;
+
+        private long[][] chunks = new long[0][];
+
+        void add(long value){
+            int chunkIndex = size >>> CHUNK_SHIFT;
+            int offset = size & CHUNK_MASK;
+            if (chunkIndex == chunks.length){
+                chunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length << 1));
+            }
+            if (chunks[chunkIndex] == null){
+                chunks[chunkIndex] = new long[chunkLength(chunkIndex, 0)];
+            }else if (offset == chunks[chunkIndex].length){
+                chunks[chunkIndex] = Arrays.copyOf(chunks[chunkIndex], chunkLength(chunkIndex, offset));
+            }
+            chunks[chunkIndex][offset] = value;
+            size++;
+        }
+
+        void addAll(long[] values, int length){
+            for (int i = 0; i < length; i++){
+                add(values[i]);
+            }
+        }
+
+        long getLong(int rowIndex){
+            return chunks[rowIndex >>> CHUNK_SHIFT][rowIndex & CHUNK_MASK];
+        }
+
+        @Override
+        Object get(int rowIndex){
+            return getLong(rowIndex);
+        }
+
+        @Override
+        double getDouble(int rowIndex){
+            return getLong(rowIndex);
+        }
+    }
+
+    /**
+     * column of an attribute type that is not parsed, every cell is null
+     */
+    private static class NullColumn extends Column {
+        private static final long serialVersionUID = 8343762900000206307L;
+
+        void add(){
+            size++;
+        }
+
+        @Override
+        Object get(int rowIndex){
+            return null;
+        }
+
+        @Override
+        double getDouble(int rowIndex){
+            throw new UnsupportedOperationException("the cells of this column are not parsed");
+        }
+    }
 }
@@ -20,7 +20,7 @@ public class DataFrameIndex {
     }
 
     public void generateDataFrameIndex() {
-        for (int i = 0; i < df.getData().get(index).size(); i++) {
+        for (int i = 0; i < df.size(); i++) {
             if (!dataTable.containsKey((int) df.get(i, index))) {
                 dataTable.put((int) df.get(i, index), new IntArrayList());
             }
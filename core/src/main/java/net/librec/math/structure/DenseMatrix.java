@@ -4,10 +4,9 @@ import net.librec.common.CardinalityException;
 import net.librec.math.algorithm.Randoms;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
 
 /**
  * Matrix of doubles implemented using a 2-d array
@@ -17,6 +16,21 @@ import java.util.NoSuchElementException;
 public class DenseMatrix extends AbstractMatrix implements Serializable {
     private static final long serialVersionUID = -2069621030647530185L;
 
+    /**
+     * rows, columns and inner indices of a tile of the kernels, and indices of a block run by one task
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * columns of a tile of the product kernels
+     */
+    private static final int COLUMN_BLOCK_SIZE = 256;
+
+    /**
+     * multiply-adds from which the kernels run in parallel
+     */
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
     private double[][] values;
 
     /**
@@ -93,7 +107,9 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
      * @param sigma sigma of the gaussian function
      */
     public void init(double mean, double sigma) {
-        this.assign((row, column, value) -> Randoms.gaussian(mean, sigma));
+        for (double[] rowValues : values) {
+            Randoms.gaussians(rowValues, mean, sigma);
+        }
     }
 
     /**
@@ -102,7 +118,9 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
      * @param range max of the range
      */
     public void init(double range) {
-        this.assign((row, column, value) -> Randoms.uniform(0.0D, range));
+        for (double[] rowValues : values) {
+            Randoms.uniforms(rowValues, 0.0D, range);
+        }
     }
 
     /**
@@ -230,24 +248,54 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
         if (columnSize() != otherMatrix.rowSize()) {
             throw new CardinalityException(columnSize(), otherMatrix.rowSize());
         }
-        int tempRows = this.rowSize();
-        int tempColumns = otherMatrix.columnSize();
-        DenseMatrix denseMatrix = new DenseMatrix(tempRows, tempColumns);
-        List<Integer> columnList = new ArrayList<>(denseMatrix.columnSize());
-        for (int columnIndex = 0; columnIndex < denseMatrix.columnSize(); columnIndex++) {
-            columnList.add(columnIndex);
+        DenseMatrix denseMatrix = new DenseMatrix(rowSize(), otherMatrix.columnSize());
+        if (otherMatrix instanceof DenseMatrix) {
+            double[][] otherValues = ((DenseMatrix) otherMatrix).values;
+            forEachBlock(rowSize(), (long) rowSize() * columnSize() * otherMatrix.columnSize(),
+                    (fromRow, toRow) -> multiply(values, otherValues, denseMatrix.values, fromRow, toRow));
+            return denseMatrix;
         }
 
-        columnList.parallelStream().forEach(columnIndex->{
+        IntStream.range(0, denseMatrix.columnSize()).parallel().forEach(columnIndex -> {
             Vector colVector = otherMatrix.viewColumn(columnIndex);
             for (int rowIndex = 0; rowIndex < denseMatrix.rowSize(); rowIndex++) {
-                denseMatrix.set(rowIndex, columnIndex, row(rowIndex).dot(colVector));
+                denseMatrix.values[rowIndex][columnIndex] = dot(values[rowIndex], colVector);
             }
         });
+        return denseMatrix;
+    }
 
+    /**
+     * Return a new matrix containing the product of the transpose of the recipient and the argument, without
+     * building the transpose.
+     *
+     * @param otherMatrix a DenseMatrix argument
+     * @return a new Matrix, equal to {@code transpose().times(otherMatrix)}
+     * @throws CardinalityException if the cardinalities are incompatible
+     */
+    public DenseMatrix transposeTimes(DenseMatrix otherMatrix) {
+        if (rowSize() != otherMatrix.rowSize()) {
+            throw new CardinalityException(rowSize(), otherMatrix.rowSize());
+        }
+        DenseMatrix denseMatrix = new DenseMatrix(columnSize(), otherMatrix.columnSize());
+        forEachBlock(columnSize(), (long) rowSize() * columnSize() * otherMatrix.columnSize(),
+                (fromRow, toRow) -> multiplyTransposed(values, otherMatrix.values, denseMatrix.values,
+                        fromRow, toRow, false));
         return denseMatrix;
     }
 
+    /**
+     * Return the Gram matrix of the columns of the recipient, computing one triangle of the symmetric result.
+     *
+     * @return a new Matrix, equal to {@code transpose().times(this)}
+     */
+    public DenseMatrix gram() {
+        DenseMatrix denseMatrix = new DenseMatrix(columnSize(), columnSize());
+        forEachBlock(columnSize(), (long) rowSize() * columnSize() * columnSize() / 2,
+                (fromRow, toRow) -> multiplyTransposed(values, values, denseMatrix.values, fromRow, toRow, true));
+        symmetrize(denseMatrix.values);
+        return denseMatrix;
+    }
 
     /**
      * Do {@code matrix x vector} between current matrix and a given vector
@@ -261,13 +309,49 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
             throw new CardinalityException(columnSize(), vector.cardinality());
         }
 
-        DenseVector resultVector = new VectorBasedDenseVector(rowSize());
+        double[] resultValues = new double[rowSize()];
+        if (vector instanceof VectorBasedDenseVector) {
+            double[] vectorValues = ((VectorBasedDenseVector) vector).getValues();
+            forEachBlock(rowSize(), (long) rowSize() * columnSize(), (fromRow, toRow) -> {
+                for (int rowIndex = fromRow; rowIndex < toRow; rowIndex++) {
+                    double[] rowValues = values[rowIndex];
+                    double sum = 0.0D;
+                    for (int columnIndex = 0; columnIndex < rowValues.length; columnIndex++) {
+                        sum += vectorValues[columnIndex] * rowValues[columnIndex];
+                    }
+                    resultValues[rowIndex] = sum;
+                }
+            });
+        } else {
+            for (int rowIndex = 0; rowIndex < rowSize(); rowIndex++) {
+                resultValues[rowIndex] = dot(values[rowIndex], vector);
+            }
+        }
+        return new VectorBasedDenseVector(resultValues, true);
+    }
 
-        for (int rowIndex = 0; rowIndex < rowSize(); rowIndex++) {
-            resultVector.set(rowIndex, row(rowIndex).dot(vector));
+    /**
+     * Do {@code matrix^T x vector} between the transpose of current matrix and a given vector, without building
+     * the transpose
+     *
+     * @param vector a given vector
+     * @return a dense vector equal to {@code transpose().times(vector)}
+     * @throws CardinalityException if {@code rowSize() != vector.cardinality()}
+     */
+    public DenseVector transposeTimes(Vector vector) {
+        if (rowSize() != vector.cardinality()) {
+            throw new CardinalityException(rowSize(), vector.cardinality());
         }
 
-        return resultVector;
+        double[] resultValues = new double[columnSize()];
+        for (Vector.VectorEntry vectorEntry : vector) {
+            double vectorValue = vectorEntry.get();
+            double[] rowValues = values[vectorEntry.index()];
+            for (int columnIndex = 0; columnIndex < resultValues.length; columnIndex++) {
+                resultValues[columnIndex] += vectorValue * rowValues[columnIndex];
+            }
+        }
+        return new VectorBasedDenseVector(resultValues, true);
     }
 
     /**
@@ -275,12 +359,20 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
      */
     public DenseMatrix transpose() {
         DenseMatrix transposeMatrix = new DenseMatrix(columnSize(), rowSize());
-
-        for (int transposeRowIndex = 0; transposeRowIndex < transposeMatrix.rowSize(); transposeRowIndex++) {
-            for (int transposeColumnIndex = 0; transposeColumnIndex < transposeMatrix.columnSize(); transposeColumnIndex++) {
-                transposeMatrix.set(transposeRowIndex, transposeColumnIndex, values[transposeColumnIndex][transposeRowIndex]);
+        double[][] transposeValues = transposeMatrix.values;
+
+        forEachBlock(columnSize(), (long) rowSize() * columnSize(), (fromRow, toRow) -> {
+            // copy tile by tile, so that the rows written stay in cache
+            for (int fromColumn = 0; fromColumn < rowSize(); fromColumn += BLOCK_SIZE) {
+                int toColumn = Math.min(fromColumn + BLOCK_SIZE, rowSize());
+                for (int transposeRowIndex = fromRow; transposeRowIndex < toRow; transposeRowIndex++) {
+                    double[] transposeRowValues = transposeValues[transposeRowIndex];
+                    for (int transposeColumnIndex = fromColumn; transposeColumnIndex < toColumn; transposeColumnIndex++) {
+                        transposeRowValues[transposeColumnIndex] = values[transposeColumnIndex][transposeRowIndex];
+                    }
+                }
             }
-        }
+        });
 
         return transposeMatrix;
     }
@@ -304,24 +396,35 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
      * @return a covariance matrix of the current matrix
      */
     public DenseMatrix covariance() {
-        DenseMatrix resultMatrix = new DenseMatrix(columnSize(), columnSize());
-
-        for (int resultRowIndex = 0; resultRowIndex < columnSize(); resultRowIndex++) {
-            DenseVector columnVector = column(resultRowIndex);
-            DenseVector columnDenseVector = columnVector.plus(-columnVector.mean());
-
-            resultMatrix.set(resultRowIndex, resultRowIndex,
-                    columnDenseVector.dot(columnDenseVector) / (columnDenseVector.cardinality() - 1));
+        int numRows = rowSize();
+        int numColumns = columnSize();
+        double[] means = new double[numColumns];
+        for (double[] rowValues : values) {
+            for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+                means[columnIndex] += rowValues[columnIndex];
+            }
+        }
+        for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+            means[columnIndex] /= numRows;
+        }
 
-            for (int resultColumnIndex = resultRowIndex + 1; resultColumnIndex < columnSize(); resultColumnIndex++) {
-                DenseVector columnVector_2 = column(resultColumnIndex);
-                double value = columnDenseVector.dot(columnVector_2.plus(-columnVector_2.mean()))
-                        / (columnDenseVector.cardinality() - 1);
+        double[][] centeredValues = new double[numRows][numColumns];
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+                centeredValues[rowIndex][columnIndex] = values[rowIndex][columnIndex] + -means[columnIndex];
+            }
+        }
 
-                resultMatrix.set(resultRowIndex, resultColumnIndex, value);
-                resultMatrix.set(resultColumnIndex, resultRowIndex, value);
+        DenseMatrix resultMatrix = new DenseMatrix(numColumns, numColumns);
+        forEachBlock(numColumns, (long) numRows * numColumns * numColumns / 2, (fromRow, toRow) ->
+                multiplyTransposed(centeredValues, centeredValues, resultMatrix.values, fromRow, toRow, true));
+        for (int resultRowIndex = 0; resultRowIndex < numColumns; resultRowIndex++) {
+            double[] resultRowValues = resultMatrix.values[resultRowIndex];
+            for (int resultColumnIndex = resultRowIndex; resultColumnIndex < numColumns; resultColumnIndex++) {
+                resultRowValues[resultColumnIndex] /= (numRows - 1);
             }
         }
+        symmetrize(resultMatrix.values);
 
         return resultMatrix;
     }
@@ -334,24 +437,55 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
             throw new CardinalityException(rowSize(), columnSize());
         }
 
+        DenseMatrix choleskyMatrix = new DenseMatrix(rowSize(), rowSize());
+        if (!decomposeCholesky(values, choleskyMatrix.values)) {
+            return null;
+        }
+
+        return choleskyMatrix.transpose();
+    }
+
+    /**
+     * Solve {@code matrix x = vector} for a symmetric positive definite matrix by its Cholesky decomposition,
+     * without building the inverse. Current matrix is not changed.
+     *
+     * @param vector a given vector
+     * @return the solution x, or null if the matrix is not positive definite
+     * @throws CardinalityException if the matrix is not square or {@code rowSize() != vector.cardinality()}
+     */
+    public DenseVector choleskySolve(DenseVector vector) {
+        if (rowSize() != columnSize()) {
+            throw new CardinalityException(rowSize(), columnSize());
+        }
+        if (rowSize() != vector.cardinality()) {
+            throw new CardinalityException(rowSize(), vector.cardinality());
+        }
+
         int size = rowSize();
-        DenseMatrix choleskyMatrix = new DenseMatrix(size, size);
+        double[][] lowerValues = new double[size][size];
+        if (!decomposeCholesky(values, lowerValues)) {
+            return null;
+        }
 
+        // forward substitution of L y = b, then back substitution of L^T x = y, both in place
+        double[] solution = new double[size];
         for (int rowIndex = 0; rowIndex < size; rowIndex++) {
-            for (int rowIndex_2 = 0; rowIndex_2 <= rowIndex; rowIndex_2++) {
-                double sum = 0.0D;
-                for (int columnIndex = 0; columnIndex < rowIndex_2; columnIndex++)
-                    sum += choleskyMatrix.get(rowIndex, columnIndex) * choleskyMatrix.get(rowIndex_2, columnIndex);
-
-                double val = rowIndex == rowIndex_2 ? Math.sqrt(values[rowIndex][rowIndex] - sum)
-                        : (values[rowIndex][rowIndex_2] - sum) / choleskyMatrix.get(rowIndex_2, rowIndex_2);
-                choleskyMatrix.set(rowIndex, rowIndex_2, val);
+            double[] lowerRowValues = lowerValues[rowIndex];
+            double sum = vector.get(rowIndex);
+            for (int columnIndex = 0; columnIndex < rowIndex; columnIndex++) {
+                sum -= lowerRowValues[columnIndex] * solution[columnIndex];
             }
-            if (Double.isNaN(choleskyMatrix.get(rowIndex, rowIndex)))
-                return null;
+            solution[rowIndex] = sum / lowerRowValues[rowIndex];
         }
-
-        return choleskyMatrix.transpose();
+        for (int rowIndex = size - 1; rowIndex >= 0; rowIndex--) {
+            double value = solution[rowIndex] / lowerValues[rowIndex][rowIndex];
+            solution[rowIndex] = value;
+            double[] lowerRowValues = lowerValues[rowIndex];
+            for (int columnIndex = 0; columnIndex < rowIndex; columnIndex++) {
+                solution[columnIndex] -= lowerRowValues[columnIndex] * value;
+            }
+        }
+        return new VectorBasedDenseVector(solution, true);
     }
 
     /**
@@ -366,23 +500,24 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
 
         int size = rowSize();
         DenseMatrix inverseMatrix = new DenseMatrix(size, size);
+        double[][] inverseValues = inverseMatrix.values;
         for (int index = 0; index < size; index++) {
-            inverseMatrix.set(index, index, 1.0D);
+            inverseValues[index][index] = 1.0D;
         }
 
         if (size == 1) {
-            inverseMatrix.set(0, 0, 1.0D / this.get(0, 0));
+            inverseValues[0][0] = 1.0D / values[0][0];
             return inverseMatrix;
         }
 
-        DenseMatrix copyMatrix = this.clone();
+        double[][] copyValues = this.clone().values;
         for (int rowIndex = 0; rowIndex < size; rowIndex++) {
             // find pivot:
             double mag = 0.0D;
             int pivot = -1;
 
             for (int columnIndex = rowIndex; columnIndex < size; columnIndex++) {
-                double mag2 = Math.abs(copyMatrix.get(columnIndex, rowIndex));
+                double mag2 = Math.abs(copyValues[columnIndex][rowIndex]);
                 if (mag2 > mag) {
                     mag = mag2;
                     pivot = columnIndex;
@@ -393,50 +528,168 @@ public class DenseMatrix extends AbstractMatrix implements Serializable {
             if (pivot == -1 || mag == 0)
                 return inverseMatrix;
 
-            // move pivot row into position:
+            // move pivot row into position, the columns before rowIndex of both rows are zeros:
             if (pivot != rowIndex) {
-                double temp;
-                for (int columnIndex = rowIndex; columnIndex < size; columnIndex++) {
-                    temp = copyMatrix.get(rowIndex, columnIndex);
-                    copyMatrix.set(rowIndex, columnIndex, copyMatrix.get(pivot, columnIndex));
-                    copyMatrix.set(pivot, columnIndex, temp);
-                }
+                double[] temp = copyValues[rowIndex];
+                copyValues[rowIndex] = copyValues[pivot];
+                copyValues[pivot] = temp;
 
-                for (int columnIndex = 0; columnIndex < size; columnIndex++) {
-                    temp = inverseMatrix.get(rowIndex, columnIndex);
-                    inverseMatrix.set(rowIndex, columnIndex, inverseMatrix.get(pivot, columnIndex));
-                    inverseMatrix.set(pivot, columnIndex, temp);
-                }
+                temp = inverseValues[rowIndex];
+                inverseValues[rowIndex] = inverseValues[pivot];
+                inverseValues[pivot] = temp;
             }
 
             // normalize pivot row:
-            mag = copyMatrix.get(rowIndex, rowIndex);
+            double[] pivotValues = copyValues[rowIndex];
+            double[] pivotInverseValues = inverseValues[rowIndex];
+            mag = pivotValues[rowIndex];
             for (int columnIndex = rowIndex; columnIndex < size; columnIndex++)
-                copyMatrix.set(rowIndex, columnIndex, copyMatrix.get(rowIndex, columnIndex) / mag);
+                pivotValues[columnIndex] /= mag;
 
             for (int columnIndex = 0; columnIndex < size; columnIndex++)
-                inverseMatrix.set(rowIndex, columnIndex, inverseMatrix.get(rowIndex, columnIndex) / mag);
+                pivotInverseValues[columnIndex] /= mag;
 
             // eliminate pivot row component from other rows:
-            for (int rowIndex_2 = 0; rowIndex_2 < size; rowIndex_2++) {
-                if (rowIndex == rowIndex_2)
-                    continue;
+            int pivotIndex = rowIndex;
+            forEachBlock(size, (long) size * size, (fromRow, toRow) -> {
+                for (int rowIndex_2 = fromRow; rowIndex_2 < toRow; rowIndex_2++) {
+                    if (pivotIndex == rowIndex_2)
+                        continue;
 
-                double mag2 = copyMatrix.get(rowIndex_2, rowIndex);
+                    double[] rowValues = copyValues[rowIndex_2];
+                    double[] rowInverseValues = inverseValues[rowIndex_2];
+                    double mag2 = rowValues[pivotIndex];
 
-                for (int columnIndex = rowIndex; columnIndex < size; columnIndex++)
-                    copyMatrix.set(rowIndex_2, columnIndex, copyMatrix.get(rowIndex_2, columnIndex)
-                            - mag2 * copyMatrix.get(rowIndex, columnIndex));
+                    for (int columnIndex = pivotIndex; columnIndex < size; columnIndex++)
+                        rowValues[columnIndex] -= mag2 * pivotValues[columnIndex];
 
-                for (int columnIndex = 0; columnIndex < size; columnIndex++)
-                    inverseMatrix.set(rowIndex_2, columnIndex, inverseMatrix.get(rowIndex_2, columnIndex)
-                            - mag2 * inverseMatrix.get(rowIndex, columnIndex));
-            }
+                    for (int columnIndex = 0; columnIndex < size; columnIndex++)
+                        rowInverseValues[columnIndex] -= mag2 * pivotInverseValues[columnIndex];
+                }
+            });
         }
 
         return inverseMatrix;
     }
 
+    /**
+     * Add {@code left[fromRow..toRow) x right} to the same rows of result, tile by tile: a tile of right is
+     * reused by all the rows before moving to the next one. Every entry sums the products in the order of the
+     * inner index, as a row by column dot product does.
+     */
+    private static void multiply(double[][] left, double[][] right, double[][] result, int fromRow, int toRow) {
+        int innerSize = right.length;
+        int numColumns = innerSize == 0 ? 0 : right[0].length;
+        for (int fromInner = 0; fromInner < innerSize; fromInner += BLOCK_SIZE) {
+            int toInner = Math.min(fromInner + BLOCK_SIZE, innerSize);
+            for (int fromColumn = 0; fromColumn < numColumns; fromColumn += COLUMN_BLOCK_SIZE) {
+                int toColumn = Math.min(fromColumn + COLUMN_BLOCK_SIZE, numColumns);
+                for (int rowIndex = fromRow; rowIndex < toRow; rowIndex++) {
+                    double[] leftRowValues = left[rowIndex];
+                    double[] resultRowValues = result[rowIndex];
+                    for (int innerIndex = fromInner; innerIndex < toInner; innerIndex++) {
+                        double leftValue = leftRowValues[innerIndex];
+                        double[] rightRowValues = right[innerIndex];
+                        for (int columnIndex = fromColumn; columnIndex < toColumn; columnIndex++) {
+                            resultRowValues[columnIndex] += leftValue * rightRowValues[columnIndex];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add {@code left^T x right} to the rows [fromRow, toRow) of result by rank-one updates of the rows of left
+     * and right, tile by tile. With upper only the entries on and above the diagonal are computed.
+     */
+    private static void multiplyTransposed(double[][] left, double[][] right, double[][] result,
+                                           int fromRow, int toRow, boolean upper) {
+        int numColumns = result.length == 0 ? 0 : result[0].length;
+        for (int fromColumn = upper ? fromRow : 0; fromColumn < numColumns; fromColumn += COLUMN_BLOCK_SIZE) {
+            int toColumn = Math.min(fromColumn + COLUMN_BLOCK_SIZE, numColumns);
+            for (int innerIndex = 0; innerIndex < left.length; innerIndex++) {
+                double[] leftRowValues = left[innerIndex];
+                double[] rightRowValues = right[innerIndex];
+                for (int rowIndex = fromRow; rowIndex < toRow; rowIndex++) {
+                    double leftValue = leftRowValues[rowIndex];
+                    double[] resultRowValues = result[rowIndex];
+                    for (int columnIndex = upper ? Math.max(fromColumn, rowIndex) : fromColumn;
+                         columnIndex < toColumn; columnIndex++) {
+                        resultRowValues[columnIndex] += leftValue * rightRowValues[columnIndex];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the entries above the diagonal to the ones below it.
+     */
+    private static void symmetrize(double[][] values) {
+        for (int rowIndex = 0; rowIndex < values.length; rowIndex++) {
+            for (int columnIndex = rowIndex + 1; columnIndex < values.length; columnIndex++) {
+                values[columnIndex][rowIndex] = values[rowIndex][columnIndex];
+            }
+        }
+    }
+
+    /**
+     * Write the lower triangular Cholesky factor of values into lower, row by row.
+     *
+     * @return false if values is not positive definite
+     */
+    private static boolean decomposeCholesky(double[][] values, double[][] lower) {
+        int size = values.length;
+        for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+            double[] lowerRowValues = lower[rowIndex];
+            for (int rowIndex_2 = 0; rowIndex_2 <= rowIndex; rowIndex_2++) {
+                double[] lowerRowValues_2 = lower[rowIndex_2];
+                double sum = 0.0D;
+                for (int columnIndex = 0; columnIndex < rowIndex_2; columnIndex++)
+                    sum += lowerRowValues[columnIndex] * lowerRowValues_2[columnIndex];
+
+                lowerRowValues[rowIndex_2] = rowIndex == rowIndex_2 ? Math.sqrt(values[rowIndex][rowIndex] - sum)
+                        : (values[rowIndex][rowIndex_2] - sum) / lowerRowValues_2[rowIndex_2];
+            }
+            if (Double.isNaN(lowerRowValues[rowIndex]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the dot product of a row and a vector, in the iteration order of the vector
+     */
+    private static double dot(double[] rowValues, Vector vector) {
+        double resultValue = 0.0D;
+        for (Vector.VectorEntry vectorEntry : vector) {
+            resultValue += vectorEntry.get() * rowValues[vectorEntry.index()];
+        }
+        return resultValue;
+    }
+
+    /**
+     * Run a task over blocks of [0, size) of {@link #BLOCK_SIZE} indices, in parallel on the common fork-join
+     * pool if there are at least {@link #PARALLEL_THRESHOLD} multiply-adds of work.
+     */
+    private static void forEachBlock(int size, long work, BlockTask task) {
+        int numBlocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (numBlocks <= 1 || work < PARALLEL_THRESHOLD) {
+            task.run(0, size);
+            return;
+        }
+        IntStream.range(0, numBlocks).parallel().forEach(blockIndex ->
+                task.run(blockIndex * BLOCK_SIZE, Math.min((blockIndex + 1) * BLOCK_SIZE, size)));
+    }
+
+    /**
+     * A task over the indices [from, to) of a block.
+     */
+    private interface BlockTask {
+        void run(int from, int to);
+    }
+
     @Override
     public boolean isRandomAccess() {
         return true;
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link IdDictionary} of every attribute of a data set, e.g. "user" and
+ * "item". The data frames of the convertors of one data model share an
+ * instance, so that the training and the test data get the same inner ids,
+ * while the data models of other jobs in the same process keep theirs apart.
+ */
+public class IdDictionaries implements Serializable {
+    private static final long serialVersionUID = -3027616346508207785L;
+
+    private final ConcurrentMap<String, IdDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * Get the dictionary of an attribute, creating an empty one if it is not
+     * there yet.
+     *
+     * @param attrName the name of the attribute
+     * @return the dictionary of the attribute
+     */
+    public IdDictionary get(String attrName) {
+        return dictionaries.computeIfAbsent(attrName, name -> new IdDictionary());
+    }
+
+    /**
+     * @param attrName the name of the attribute
+     * @return true if the attribute has got a dictionary
+     */
+    public boolean contains(String attrName) {
+        return dictionaries.containsKey(attrName);
+    }
+}
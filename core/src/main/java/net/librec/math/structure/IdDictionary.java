@@ -0,0 +1,480 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import com.google.common.collect.BiMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {raw id, inner id} dictionary assigning the inner ids 0, 1, 2, ... to raw
+ * ids in order of first appearance.
+ * <p>
+ * Raw ids are found through an open addressing table of inner ids and inner
+ * ids are resolved by an array of the raw ids, so an id costs a reference and
+ * two table slots instead of the entries of a {@code HashBiMap}, and
+ * {@link #getRawId(int)} and {@link #inverse()} need no hashing at all.
+ * Lookups take no lock and {@link #intern(String)} may be called from several
+ * threads. Raw ids can not be removed.
+ * <p>
+ * The dictionary is a {@link BiMap}, so it can be handed to the code taking
+ * the mapping data of a data model, whose {@code put} appends raw ids with the
+ * next inner id only.
+ */
+public class IdDictionary extends AbstractMap<String, Integer> implements BiMap<String, Integer>, Serializable {
+    private static final long serialVersionUID = 5247413946521707426L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * the raw ids by inner id
+     */
+    private volatile String[] rawIds;
+
+    /**
+     * open addressing table of inner ids plus one, 0 marks an empty slot. At
+     * most half of the slots are used.
+     */
+    private volatile int[] slots;
+
+    private volatile int size;
+
+    private transient Inverse inverse;
+
+    /**
+     * Construct an empty dictionary.
+     */
+    public IdDictionary() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Construct an empty dictionary with room for the given number of raw ids.
+     *
+     * @param expectedSize the expected number of raw ids
+     */
+    public IdDictionary(int expectedSize) {
+        int capacity = Math.max(expectedSize, MIN_CAPACITY);
+        rawIds = new String[capacity];
+        slots = new int[tableSize(capacity)];
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Get the inner id of a raw id.
+     *
+     * @param rawId the raw id
+     * @return the inner id, or -1 if the dictionary has not got the raw id
+     */
+    public int getId(String rawId) {
+        int[] table = slots;
+        int mask = table.length - 1;
+        for (int slot = spread(rawId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int innerId = table[slot] - 1;
+            if (innerId < 0) {
+                return -1;
+            }
+            String[] keys = rawIds;
+            String key = innerId < keys.length ? keys[innerId] : null;
+            if (key == null) {
+                // the raw id is being added by another thread
+                synchronized (this) {
+                    return find(rawId);
+                }
+            }
+            if (key.equals(rawId)) {
+                return innerId;
+            }
+        }
+    }
+
+    /**
+     * Get the raw id of an inner id.
+     *
+     * @param innerId the inner id
+     * @return the raw id, or null if the inner id is not assigned
+     */
+    public String getRawId(int innerId) {
+        if (innerId < 0 || innerId >= size) {
+            return null;
+        }
+        return rawIds[innerId];
+    }
+
+    /**
+     * Get the inner id of a raw id, assigning the next one if the dictionary
+     * has not got the raw id yet.
+     *
+     * @param rawId the raw id
+     * @return the inner id
+     */
+    public int intern(String rawId) {
+        int innerId = getId(rawId);
+        if (innerId >= 0) {
+            return innerId;
+        }
+        synchronized (this) {
+            innerId = find(rawId);
+            return innerId >= 0 ? innerId : append(rawId);
+        }
+    }
+
+    /**
+     * Look up a raw id holding the lock, when the table is complete.
+     */
+    private int find(String rawId) {
+        int[] table = slots;
+        int mask = table.length - 1;
+        for (int slot = spread(rawId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int innerId = table[slot] - 1;
+            if (innerId < 0 || rawIds[innerId].equals(rawId)) {
+                return innerId;
+            }
+        }
+    }
+
+    /**
+     * Add a raw id holding the lock. The raw id is stored before its slot and
+     * grown arrays are complete before they are published, so that lookups
+     * without the lock see a consistent table.
+     */
+    private int append(String rawId) {
+        int innerId = size;
+        if (innerId == rawIds.length) {
+            rawIds = Arrays.copyOf(rawIds, innerId + (innerId >> 1));
+        }
+        rawIds[innerId] = rawId;
+        int[] table = slots;
+        if ((innerId + 1) * 2 > table.length) {
+            table = new int[table.length * 2];
+            for (int id = 0; id < innerId; id++) {
+                insert(table, rawIds[id], id);
+            }
+            insert(table, rawId, innerId);
+            slots = table;
+        } else {
+            insert(table, rawId, innerId);
+        }
+        size = innerId + 1;
+        return innerId;
+    }
+
+    private static void insert(int[] table, String rawId, int innerId) {
+        int mask = table.length - 1;
+        int slot = spread(rawId.hashCode()) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = innerId + 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && getId((String) key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return value instanceof Integer && (Integer) value >= 0 && (Integer) value < size;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int innerId = getId((String) key);
+        return innerId >= 0 ? innerId : null;
+    }
+
+    /**
+     * Add a raw id with the next inner id. As the inner ids are dense, a raw
+     * id can neither be given another inner id nor take a used one.
+     *
+     * @param key   the raw id
+     * @param value the inner id, which has to be the size of the dictionary
+     *              unless the raw id has got it already
+     * @return the inner id the raw id had, or null if it is new
+     * @throws IllegalArgumentException if the raw id can not take the inner id
+     */
+    @Override
+    public synchronized Integer put(String key, Integer value) {
+        int innerId = find(key);
+        if (innerId >= 0) {
+            if (innerId != value) {
+                throw new IllegalArgumentException("raw id " + key + " has got inner id " + innerId);
+            }
+            return innerId;
+        }
+        if (value != size) {
+            throw new IllegalArgumentException("the next inner id is " + size + ", not " + value);
+        }
+        append(key);
+        return null;
+    }
+
+    @Override
+    public Integer forcePut(String key, Integer value) {
+        return put(key, value);
+    }
+
+    /**
+     * Remove all raw ids.
+     */
+    @Override
+    public synchronized void clear() {
+        rawIds = new String[MIN_CAPACITY];
+        slots = new int[tableSize(MIN_CAPACITY)];
+        size = 0;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new IdIterator<String>() {
+                    @Override
+                    String get(int innerId) {
+                        return rawIds[innerId];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Integer> values() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new IdIterator<Integer>() {
+                    @Override
+                    Integer get(int innerId) {
+                        return innerId;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsValue(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, Integer>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Integer>>() {
+            @Override
+            public Iterator<Map.Entry<String, Integer>> iterator() {
+                return new IdIterator<Map.Entry<String, Integer>>() {
+                    @Override
+                    Map.Entry<String, Integer> get(int innerId) {
+                        return new SimpleImmutableEntry<>(rawIds[innerId], innerId);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return the {inner id, raw id} view of the dictionary
+     */
+    @Override
+    public BiMap<Integer, String> inverse() {
+        if (inverse == null) {
+            inverse = new Inverse();
+        }
+        return inverse;
+    }
+
+    /**
+     * Write the raw ids in order of their inner ids, each as the length of
+     * its UTF-8 bytes followed by them.
+     *
+     * @param out the output to write to
+     * @throws IOException if I/O error occurs during writing
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        int numIds = size;
+        out.writeInt(numIds);
+        for (int innerId = 0; innerId < numIds; innerId++) {
+            byte[] bytes = rawIds[innerId].getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Read a dictionary written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the dictionary
+     * @throws IOException if I/O error occurs during reading
+     */
+    public static IdDictionary readFrom(DataInput in) throws IOException {
+        int numIds = in.readInt();
+        IdDictionary dictionary = new IdDictionary(numIds);
+        for (int innerId = 0; innerId < numIds; innerId++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            dictionary.intern(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return dictionary;
+    }
+
+    /**
+     * Iterator over the inner ids assigned when it was created.
+     */
+    private abstract class IdIterator<E> implements Iterator<E> {
+        private final int end = size;
+        private int innerId;
+
+        abstract E get(int innerId);
+
+        @Override
+        public boolean hasNext() {
+            return innerId < end;
+        }
+
+        @Override
+        public E next() {
+            if (innerId >= end) {
+                throw new NoSuchElementException();
+            }
+            return get(innerId++);
+        }
+    }
+
+    /**
+     * The {inner id, raw id} view, backed by the array of raw ids.
+     */
+    private class Inverse extends AbstractMap<Integer, String> implements BiMap<Integer, String> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return IdDictionary.this.containsValue(key);
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            return IdDictionary.this.containsKey(value);
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof Integer ? getRawId((Integer) key) : null;
+        }
+
+        @Override
+        public String put(Integer key, String value) {
+            String rawId = getRawId(key);
+            IdDictionary.this.put(value, key);
+            return rawId;
+        }
+
+        @Override
+        public String forcePut(Integer key, String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Set<Integer> keySet() {
+            return IdDictionary.this.values();
+        }
+
+        @Override
+        public Set<String> values() {
+            return IdDictionary.this.keySet();
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, String>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, String>>() {
+                @Override
+                public Iterator<Map.Entry<Integer, String>> iterator() {
+                    return new IdIterator<Map.Entry<Integer, String>>() {
+                        @Override
+                        Map.Entry<Integer, String> get(int innerId) {
+                            return new SimpleImmutableEntry<>(innerId, rawIds[innerId]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public BiMap<String, Integer> inverse() {
+            return IdDictionary.this;
+        }
+    }
+}
@@ -0,0 +1,639 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A read-only {@link SequentialAccessSparseMatrix} whose Compressed Row
+ * Storage (CRS) and Compressed Col Storage (CCS) are flat arrays in a
+ * memory-mapped file instead of per row and per column arrays on the heap.
+ * The matrix may be larger than the heap, adds nothing for the garbage
+ * collector to trace, and one instance returned by {@link #open(File)} is
+ * shared by all of the jobs of a JVM reading the same file.
+ * <p>
+ * Rows and columns are views on the file. Setting a value throws an
+ * {@link UnsupportedOperationException}; {@link #clone()} and the copy
+ * constructors of {@link SequentialAccessSparseMatrix} return a mutable copy on
+ * the heap.
+ * <p>
+ * The file holds, after a header of {@link #HEADER_BYTES} bytes, in little
+ * endian order and each array starting at a multiple of 8 bytes:
+ * <pre>
+ * int[rows + 1]    rowPointers
+ * int[entries]     columns of the entries, row by row
+ * double[entries]  values of the entries, row by row
+ * int[entries]     positions of the entries in their columns, row by row
+ * int[columns + 1] columnPointers
+ * int[entries]     rows of the entries, column by column
+ * int[entries]     positions of the entries in their rows, column by column
+ * </pre>
+ * The train matrix of a data model is mapped when
+ * {@code data.model.mapped.dir} is set, see
+ * {@link net.librec.data.model.AbstractDataModel#mapTrainDataSet}.
+ */
+public class MappedSequentialAccessSparseMatrix extends SequentialAccessSparseMatrix {
+    private static final long serialVersionUID = -2786064195380476127L;
+
+    private static final long MAGIC = 0x4c69625265634353L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    /**
+     * the matrices opened in this JVM by the canonical path of their files
+     */
+    private static final Map<String, WeakReference<MappedSequentialAccessSparseMatrix>> OPENED_MATRICES = new HashMap<>();
+
+    private final transient MappedRegion region;
+    private final File file;
+    private final long lastModified;
+    private final int numEntries;
+
+    private final long rowPointersOffset;
+    private final long rowColumnsOffset;
+    private final long valuesOffset;
+    private final long rowColumnPositionsOffset;
+    private final long columnPointersOffset;
+    private final long columnRowsOffset;
+    private final long columnRowPositionsOffset;
+
+    private MappedSequentialAccessSparseMatrix(File file) throws IOException {
+        this(file, MappedRegion.map(file, false));
+    }
+
+    private MappedSequentialAccessSparseMatrix(File file, MappedRegion region) throws IOException {
+        super(region.getInt(12), region.getInt(16));
+        if (region.getLong(0) != MAGIC || region.getInt(8) != FORMAT_VERSION) {
+            throw new IOException(file + " is not a sparse matrix file of version " + FORMAT_VERSION);
+        }
+        this.region = region;
+        this.file = file;
+        this.lastModified = file.lastModified();
+        this.numEntries = region.getInt(20);
+
+        long[] offsets = layout(rowSize(), columnSize(), numEntries);
+        rowPointersOffset = offsets[0];
+        rowColumnsOffset = offsets[1];
+        valuesOffset = offsets[2];
+        rowColumnPositionsOffset = offsets[3];
+        columnPointersOffset = offsets[4];
+        columnRowsOffset = offsets[5];
+        columnRowPositionsOffset = offsets[6];
+        if (region.size() < offsets[7]) {
+            throw new IOException(file + " is truncated");
+        }
+    }
+
+    /**
+     * Open a matrix file written by {@link #write}. A file opened already in
+     * this JVM and not modified since returns the same instance.
+     *
+     * @param file the matrix file
+     * @return the matrix in the file
+     * @throws IOException if the file can not be read or is not a matrix file
+     */
+    public static MappedSequentialAccessSparseMatrix open(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        if (file.length() < HEADER_BYTES) {
+            throw new IOException(file + " is not a sparse matrix file");
+        }
+        synchronized (OPENED_MATRICES) {
+            WeakReference<MappedSequentialAccessSparseMatrix> reference = OPENED_MATRICES.get(path);
+            MappedSequentialAccessSparseMatrix matrix = reference == null ? null : reference.get();
+            if (matrix == null || matrix.lastModified != file.lastModified()) {
+                matrix = new MappedSequentialAccessSparseMatrix(new File(path));
+                OPENED_MATRICES.put(path, new WeakReference<>(matrix));
+            }
+            return matrix;
+        }
+    }
+
+    /**
+     * Write a matrix to a file and open it. Only the row pointers and the
+     * column counts are held on the heap while writing, so the matrix may be
+     * another mapped matrix larger than the heap.
+     *
+     * @param matrix the matrix to write
+     * @param file   the matrix file, replaced if it exists
+     * @return the matrix in the file
+     * @throws IOException if the file can not be written
+     */
+    public static MappedSequentialAccessSparseMatrix write(SequentialAccessSparseMatrix matrix, File file)
+            throws IOException {
+        long size = layout(matrix.rowSize(), matrix.columnSize(), matrix.getNumEntries())[7];
+
+        // written aside and moved, so that the readers of a replaced file keep their mapping
+        File temporaryFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw")) {
+                randomAccessFile.setLength(size);
+            }
+            writeEntries(matrix, MappedRegion.map(temporaryFile, true));
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temporaryFile.delete();
+        }
+        synchronized (OPENED_MATRICES) {
+            OPENED_MATRICES.remove(file.getCanonicalPath());
+        }
+        return open(file);
+    }
+
+    private static void writeEntries(SequentialAccessSparseMatrix matrix, MappedRegion region) {
+        int rows = matrix.rowSize();
+        int columns = matrix.columnSize();
+        int numEntries = matrix.getNumEntries();
+        long[] offsets = layout(rows, columns, numEntries);
+        long rowPointersOffset = offsets[0];
+        long rowColumnsOffset = offsets[1];
+        long valuesOffset = offsets[2];
+        long rowColumnPositionsOffset = offsets[3];
+        long columnPointersOffset = offsets[4];
+        long columnRowsOffset = offsets[5];
+        long columnRowPositionsOffset = offsets[6];
+
+        // compressed rows, counting the entries of each column
+        int[] columnPointers = new int[columns + 1];
+        int entry = 0;
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            region.putInt(rowPointersOffset + 4L * rowIndex, entry);
+            SequentialSparseVector rowVector = matrix.row(rowIndex);
+            for (int position = 0; position < rowVector.getNumEntries(); position++, entry++) {
+                int columnIndex = rowVector.getIndexAtPosition(position);
+                region.putInt(rowColumnsOffset + 4L * entry, columnIndex);
+                region.putDouble(valuesOffset + 8L * entry, rowVector.getAtPosition(position));
+                columnPointers[columnIndex + 1]++;
+            }
+        }
+        if (entry != numEntries) {
+            throw new IllegalArgumentException("the matrix has " + entry + " entries in its rows, but "
+                    + numEntries + " in total");
+        }
+        region.putInt(rowPointersOffset + 4L * rows, entry);
+
+        // compressed columns by a counting sort over the rows, as in SequentialAccessSparseMatrix
+        for (int columnIndex = 0; columnIndex < columns; columnIndex++) {
+            columnPointers[columnIndex + 1] += columnPointers[columnIndex];
+        }
+        for (int columnIndex = 0; columnIndex <= columns; columnIndex++) {
+            region.putInt(columnPointersOffset + 4L * columnIndex, columnPointers[columnIndex]);
+        }
+        int[] columnCounts = new int[columns];
+        entry = 0;
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            int rowLength = region.getInt(rowPointersOffset + 4L * (rowIndex + 1)) - entry;
+            for (int position = 0; position < rowLength; position++, entry++) {
+                int columnIndex = region.getInt(rowColumnsOffset + 4L * entry);
+                int columnPosition = columnCounts[columnIndex]++;
+                int columnEntry = columnPointers[columnIndex] + columnPosition;
+                region.putInt(rowColumnPositionsOffset + 4L * entry, columnPosition);
+                region.putInt(columnRowsOffset + 4L * columnEntry, rowIndex);
+                region.putInt(columnRowPositionsOffset + 4L * columnEntry, position);
+            }
+        }
+
+        region.putLong(0, MAGIC);
+        region.putInt(8, FORMAT_VERSION);
+        region.putInt(12, rows);
+        region.putInt(16, columns);
+        region.putInt(20, numEntries);
+        region.force();
+    }
+
+    /**
+     * @return the offsets of the arrays in the file, in the order of the
+     * class comment, followed by the size of the file
+     */
+    private static long[] layout(int rows, int columns, int numEntries) {
+        long[] offsets = new long[8];
+        offsets[0] = HEADER_BYTES;
+        offsets[1] = offsets[0] + alignedSize(rows + 1, 4);
+        offsets[2] = offsets[1] + alignedSize(numEntries, 4);
+        offsets[3] = offsets[2] + alignedSize(numEntries, 8);
+        offsets[4] = offsets[3] + alignedSize(numEntries, 4);
+        offsets[5] = offsets[4] + alignedSize(columns + 1, 4);
+        offsets[6] = offsets[5] + alignedSize(numEntries, 4);
+        offsets[7] = offsets[6] + alignedSize(numEntries, 4);
+        return offsets;
+    }
+
+    private static long alignedSize(int length, int elementBytes) {
+        return ((long) length * elementBytes + 7L) & ~7L;
+    }
+
+    /**
+     * @return the matrix file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private int rowPointer(int row) {
+        return region.getInt(rowPointersOffset + 4L * row);
+    }
+
+    private int columnPointer(int column) {
+        return region.getInt(columnPointersOffset + 4L * column);
+    }
+
+    private double valueAt(int entry) {
+        return region.getDouble(valuesOffset + 8L * entry);
+    }
+
+    /**
+     * @return the mean of all entries in the sparse matrix
+     */
+    @Override
+    public double mean() {
+        double sum = 0.0D;
+        for (int entry = 0; entry < numEntries; entry++) {
+            sum += valueAt(entry);
+        }
+        return sum / numEntries;
+    }
+
+    @Override
+    public SequentialSparseVector row(int row) {
+        return new MappedSparseVector(columnSize(), rowPointer(row), rowPointer(row + 1), -1);
+    }
+
+    @Override
+    public SequentialSparseVector column(int column) {
+        return new MappedSparseVector(rowSize(), columnPointer(column), columnPointer(column + 1), column);
+    }
+
+    @Override
+    public SequentialSparseVector viewRow(int row) {
+        return row(row).clone();
+    }
+
+    @Override
+    public SequentialSparseVector viewColumn(int column) {
+        return column(column).clone();
+    }
+
+    /**
+     * @throws UnsupportedOperationException always, the matrix being read-only
+     */
+    @Override
+    public void reshape() {
+        throw new UnsupportedOperationException("the mapped matrix is read-only");
+    }
+
+    @Override
+    protected int[][] columnBasedRowIndices() {
+        throw new UnsupportedOperationException("the mapped matrix has no column arrays on the heap");
+    }
+
+    /**
+     * @return a mutable copy of this matrix on the heap
+     */
+    @Override
+    public SequentialAccessSparseMatrix clone() {
+        return new SequentialAccessSparseMatrix(this);
+    }
+
+    /**
+     * @return a copy of the rows of this matrix on the heap
+     */
+    @Override
+    public RowSequentialAccessSparseMatrix getRowMatrix() {
+        VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[rowSize()];
+        for (int rowIndex = 0; rowIndex < rowSize(); rowIndex++) {
+            rowVectors[rowIndex] = (VectorBasedSequentialSparseVector) viewRow(rowIndex);
+        }
+        return new RowSequentialAccessSparseMatrix(rowSize(), columnSize(), rowVectors, true);
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return row(row).get(column);
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("the mapped matrix is read-only");
+    }
+
+    @Override
+    public void setAtColumnPosition(int row, int columnPosition, double value) {
+        throw new UnsupportedOperationException("the mapped matrix is read-only");
+    }
+
+    @Override
+    public double getAtColumnPosition(int row, int columnPosition) {
+        return valueAt(rowPointer(row) + columnPosition);
+    }
+
+    @Override
+    public void setAtRowPosition(int rowPosition, int column, double value) {
+        throw new UnsupportedOperationException("the mapped matrix is read-only");
+    }
+
+    @Override
+    public double getAtRowPosition(int rowPosition, int column) {
+        int columnEntry = columnPointer(column) + rowPosition;
+        int row = region.getInt(columnRowsOffset + 4L * columnEntry);
+        return valueAt(rowPointer(row) + region.getInt(columnRowPositionsOffset + 4L * columnEntry));
+    }
+
+    @Override
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    @Override
+    public Iterator<MatrixEntry> iterator() {
+        return new MappedMatrixIterator();
+    }
+
+    /**
+     * Written as a matrix on the heap.
+     */
+    private Object writeReplace() {
+        return new SequentialAccessSparseMatrix(this);
+    }
+
+    private final class MappedMatrixIterator implements Iterator<MatrixEntry>, MatrixEntry {
+        private int row = 0;
+        private int rowEnd = rowPointer(1);
+        private int entry = -1;
+
+        @Override
+        public boolean hasNext() {
+            return entry + 1 < numEntries;
+        }
+
+        @Override
+        public MatrixEntry next() {
+            entry++;
+            while (entry >= rowEnd) {
+                row++;
+                rowEnd = rowPointer(row + 1);
+            }
+            return this;
+        }
+
+        @Override
+        public int row() {
+            return row;
+        }
+
+        @Override
+        public int column() {
+            return region.getInt(rowColumnsOffset + 4L * entry);
+        }
+
+        @Override
+        public double get() {
+            return valueAt(entry);
+        }
+
+        @Override
+        public void set(double value) {
+            throw new UnsupportedOperationException("the mapped matrix is read-only");
+        }
+
+        @Override
+        public int rowPosition() {
+            return region.getInt(rowColumnPositionsOffset + 4L * entry);
+        }
+
+        @Override
+        public int columnPosition() {
+            return entry - rowPointer(row);
+        }
+    }
+
+    /**
+     * A row, or a column if column is not negative, of the mapped matrix.
+     */
+    private final class MappedSparseVector extends SequentialSparseVector {
+        private static final long serialVersionUID = 7381590328415563162L;
+
+        private final int start;
+        private final int length;
+        private final int column;
+
+        MappedSparseVector(int cardinality, int start, int end, int column) {
+            super(cardinality);
+            this.start = start;
+            this.length = end - start;
+            this.column = column;
+        }
+
+        @Override
+        public void setAtPosition(int position, double value) {
+            throw new UnsupportedOperationException("the mapped matrix is read-only");
+        }
+
+        @Override
+        public double getAtPosition(int position) {
+            if (column < 0) {
+                return valueAt(start + position);
+            }
+            return getAtRowPosition(position, column);
+        }
+
+        @Override
+        public int getIndexAtPosition(int position) {
+            return region.getInt((column < 0 ? rowColumnsOffset : columnRowsOffset) + 4L * (start + position));
+        }
+
+        @Override
+        protected void reshape() {
+            throw new UnsupportedOperationException("the mapped matrix is read-only");
+        }
+
+        @Override
+        public int[] getIndices() {
+            int[] indices = new int[length];
+            for (int position = 0; position < length; position++) {
+                indices[position] = getIndexAtPosition(position);
+            }
+            return indices;
+        }
+
+        @Override
+        public VectorEntry getVectorEntryAtPosition(int position) {
+            MappedVectorEntry vectorEntry = new MappedVectorEntry();
+            vectorEntry.position = position;
+            return vectorEntry;
+        }
+
+        @Override
+        public int getNumEntries() {
+            return length;
+        }
+
+        @Override
+        public void set(int index, double value) {
+            throw new UnsupportedOperationException("the mapped matrix is read-only");
+        }
+
+        @Override
+        public double get(int index) {
+            int low = 0;
+            int high = length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middleIndex = getIndexAtPosition(middle);
+                if (middleIndex < index) {
+                    low = middle + 1;
+                } else if (middleIndex > index) {
+                    high = middle - 1;
+                } else {
+                    return getAtPosition(middle);
+                }
+            }
+            return 0.0D;
+        }
+
+        /**
+         * @return a mutable copy of this vector on the heap
+         */
+        @Override
+        public SequentialSparseVector clone() {
+            double[] values = new double[length];
+            for (int position = 0; position < length; position++) {
+                values[position] = getAtPosition(position);
+            }
+            return new VectorBasedSequentialSparseVector(cardinality(), getIndices(), values);
+        }
+
+        @Override
+        public Iterator<VectorEntry> iterator() {
+            return new Iterator<VectorEntry>() {
+                private final MappedVectorEntry vectorEntry = new MappedVectorEntry();
+
+                @Override
+                public boolean hasNext() {
+                    return vectorEntry.position + 1 < length;
+                }
+
+                @Override
+                public VectorEntry next() {
+                    vectorEntry.position++;
+                    return vectorEntry;
+                }
+            };
+        }
+
+        private final class MappedVectorEntry implements VectorEntry {
+            private int position = -1;
+
+            @Override
+            public double get() {
+                return getAtPosition(position);
+            }
+
+            @Override
+            public int index() {
+                return getIndexAtPosition(position);
+            }
+
+            @Override
+            public int position() {
+                return position;
+            }
+
+            @Override
+            public void set(double value) {
+                throw new UnsupportedOperationException("the mapped matrix is read-only");
+            }
+        }
+    }
+
+    /**
+     * A file mapped in regions of 1GB. Arrays start at multiples of 8 bytes,
+     * so no element crosses two regions, and reads are absolute, so the
+     * regions are shared by concurrent readers.
+     */
+    private static final class MappedRegion {
+        private static final int REGION_SHIFT = 30;
+        private static final long REGION_MASK = (1L << REGION_SHIFT) - 1L;
+
+        private final MappedByteBuffer[] buffers;
+        private final long size;
+
+        private MappedRegion(MappedByteBuffer[] buffers, long size) {
+            this.buffers = buffers;
+            this.size = size;
+        }
+
+        static MappedRegion map(File file, boolean writable) throws IOException {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, writable ? "rw" : "r")) {
+                FileChannel channel = randomAccessFile.getChannel();
+                long size = channel.size();
+                MappedByteBuffer[] buffers = new MappedByteBuffer[(int) ((size + REGION_MASK) >>> REGION_SHIFT)];
+                for (int index = 0; index < buffers.length; index++) {
+                    long position = (long) index << REGION_SHIFT;
+                    buffers[index] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                            position, Math.min(size - position, 1L << REGION_SHIFT));
+                    buffers[index].order(ByteOrder.LITTLE_ENDIAN);
+                }
+                return new MappedRegion(buffers, size);
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        int getInt(long offset) {
+            return buffers[(int) (offset >>> REGION_SHIFT)].getInt((int) (offset & REGION_MASK));
+        }
+
+        long getLong(long offset) {
+            return buffers[(int) (offset >>> REGION_SHIFT)].getLong((int) (offset & REGION_MASK));
+        }
+
+        double getDouble(long offset) {
+            return buffers[(int) (offset >>> REGION_SHIFT)].getDouble((int) (offset & REGION_MASK));
+        }
+
+        void putInt(long offset, int value) {
+            buffers[(int) (offset >>> REGION_SHIFT)].putInt((int) (offset & REGION_MASK), value);
+        }
+
+        void putLong(long offset, long value) {
+            buffers[(int) (offset >>> REGION_SHIFT)].putLong((int) (offset & REGION_MASK), value);
+        }
+
+        void putDouble(long offset, double value) {
+            buffers[(int) (offset >>> REGION_SHIFT)].putDouble((int) (offset & REGION_MASK), value);
+        }
+
+        void force() {
+            for (MappedByteBuffer buffer : buffers) {
+                buffer.force();
+            }
+        }
+    }
+}
@@ -5,9 +5,6 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.librec.util.ArrayUtils;
 
 import java.io.Serializable;
@@ -28,7 +25,7 @@ public class SequentialAccessSparseMatrix extends AbstractMatrix implements Seri
 
     private int[][] columnIndices;
 
-    private SequentialAccessSparseMatrix(int rows, int columns) {
+    protected SequentialAccessSparseMatrix(int rows, int columns) {
         super(rows, columns);
     }
 
@@ -38,18 +35,38 @@ public class SequentialAccessSparseMatrix extends AbstractMatrix implements Seri
         this(rows, columns);
         rowMatrix = new RowSequentialAccessSparseMatrix(rows, columns, dataTable, false);
         constructColumnIndices(rowMatrix);
-        constructMap();
+    }
+
+    /**
+     * Construct a sparse matrix on the given row vectors without copying
+     * them. The index arrays of the rows should be sorted.
+     *
+     * @param rows       the number of rows
+     * @param columns    the number of columns
+     * @param rowVectors the row vectors
+     */
+    public SequentialAccessSparseMatrix(int rows,
+                                        int columns,
+                                        VectorBasedSequentialSparseVector[] rowVectors) {
+        this(rows, columns);
+        rowMatrix = new RowSequentialAccessSparseMatrix(rows, columns, rowVectors, true);
+        constructColumnIndices(rowMatrix);
     }
 
     public SequentialAccessSparseMatrix(RowSequentialAccessSparseMatrix rowMatrix) {
         this(rowMatrix.rowSize(), rowMatrix.columnSize());
         this.rowMatrix = rowMatrix.clone();
         constructColumnIndices(rowMatrix);
-        constructMap();
     }
 
     public SequentialAccessSparseMatrix(SequentialAccessSparseMatrix otherMatrix) {
         this(otherMatrix.rowSize(), otherMatrix.columnSize());
+        if (otherMatrix.columnIndices == null) {
+            // the entries are kept off the heap, getRowMatrix() returns a copy already
+            this.rowMatrix = otherMatrix.getRowMatrix();
+            constructColumnIndices(rowMatrix);
+            return;
+        }
         this.rowMatrix = otherMatrix.getRowMatrix().clone();
         columnIndices = ArrayUtils.copy(otherMatrix.columnIndices);
         rowToColumnPositionMap = ArrayUtils.copy(otherMatrix.rowToColumnPositionMap);
@@ -72,92 +89,69 @@ public class SequentialAccessSparseMatrix extends AbstractMatrix implements Seri
                 itemColumn,
                 valueColumn);
         constructColumnIndices(rowMatrix);
-        constructMap();
     }
 
     public SequentialAccessSparseMatrix(RowSequentialAccessSparseMatrix rowMatrix, boolean shallowIndicesCopy) {
         this(rowMatrix.rowSize(), rowMatrix.columnSize());
         this.rowMatrix = new RowSequentialAccessSparseMatrix(rowMatrix, shallowIndicesCopy);
         constructColumnIndices(rowMatrix);
-        constructMap();
     }
 
     public SequentialAccessSparseMatrix(SequentialAccessSparseMatrix otherMatrix, boolean shallowIndicesCopy) {
         this(otherMatrix.rowSize(), otherMatrix.columnSize());
         this.rowMatrix = new RowSequentialAccessSparseMatrix(otherMatrix, shallowIndicesCopy);
+        if (otherMatrix.columnIndices == null) {
+            // the entries are kept off the heap
+            constructColumnIndices(rowMatrix);
+            return;
+        }
         columnIndices = shallowIndicesCopy ? otherMatrix.columnIndices : ArrayUtils.copy(otherMatrix.columnIndices);
         rowToColumnPositionMap = shallowIndicesCopy ? otherMatrix.rowToColumnPositionMap : ArrayUtils.copy(otherMatrix.rowToColumnPositionMap);
         columnToRowPositionMap = shallowIndicesCopy ? otherMatrix.columnToRowPositionMap : ArrayUtils.copy(otherMatrix.columnToRowPositionMap);
     }
 
 
-    private void constructColumnIndices(RowSequentialAccessSparseMatrix rowMatrix) {
-        IntArrayList[] columnIndicesList = new IntArrayList[rowMatrix.columnSize()];
-        for (int columnIndex = 0; columnIndex < rowMatrix.columnSize(); columnIndex++) {
-            columnIndicesList[columnIndex] = new IntArrayList();
-        }
-
-        for (MatrixEntry matrixEntry : rowMatrix) {
-            int rowIndex = matrixEntry.row();
-            int columnIndex = matrixEntry.column();
-            columnIndicesList[columnIndex].add(rowIndex);
-        }
-
-        columnIndices = new int[rowMatrix.columnSize()][];
-        for (int columnIndex = 0; columnIndex < rowMatrix.columnSize(); columnIndex++) {
-            int size = columnIndicesList[columnIndex].size();
-            columnIndices[columnIndex] = new int[size];
-            Collections.sort(columnIndicesList[columnIndex]);
-            for (int position = 0; position < size; position++) {
-                columnIndices[columnIndex][position] = columnIndicesList[columnIndex].getInt(position);
-            }
-        }
-    }
-
     /**
-     * construct the index map between row matrix and column matrix
+     * Construct the compressed column indices and the position maps between
+     * the row matrix and the column matrix by a counting sort over the rows.
+     * Rows are visited in ascending order, so the row indices of each column
+     * come out sorted.
+     *
+     * @param rowMatrix row matrix
      */
-    private void constructMap() {
-        Int2ObjectOpenHashMap<Int2IntOpenHashMap> rowPositionMap = new Int2ObjectOpenHashMap<>();
-        for (int rowIndex = 0; rowIndex < rowSize(); rowIndex++) {
-            SequentialSparseVector tempRowVector = row(rowIndex);
-            Int2IntOpenHashMap tempPositionMap = new Int2IntOpenHashMap();
-            for (Vector.VectorEntry vectorEntry : tempRowVector) {
-                tempPositionMap.put(vectorEntry.index(), vectorEntry.position());
-            }
-            rowPositionMap.put(rowIndex, tempPositionMap);
-        }
-
-        columnToRowPositionMap = new int[columnSize()][];
-        for (int columnIndex = 0; columnIndex < columnSize(); columnIndex++) {
-            SequentialSparseVector tempRowVector = column(columnIndex);
-            columnToRowPositionMap[columnIndex] = new int[tempRowVector.getNumEntries()];
-            for (Vector.VectorEntry vectorEntry : tempRowVector) {
-                columnToRowPositionMap[columnIndex][vectorEntry.position()]
-                        = rowPositionMap.get(vectorEntry.index()).get(columnIndex);
+    private void constructColumnIndices(RowSequentialAccessSparseMatrix rowMatrix) {
+        int rows = rowMatrix.rowSize();
+        int columns = rowMatrix.columnSize();
+        int[] columnCounts = new int[columns];
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            SequentialSparseVector rowVector = rowMatrix.row(rowIndex);
+            for (int position = 0; position < rowVector.getNumEntries(); position++) {
+                columnCounts[rowVector.getIndexAtPosition(position)]++;
             }
         }
 
-        Int2ObjectOpenHashMap<Int2IntOpenHashMap> columnPositionMap = new Int2ObjectOpenHashMap<>();
-        for (int columnIndex = 0; columnIndex < columnSize(); columnIndex++) {
-            SequentialSparseVector tempColumnVector = column(columnIndex);
-            Int2IntOpenHashMap tempPositionMap = new Int2IntOpenHashMap();
-            for (Vector.VectorEntry vectorEntry : tempColumnVector) {
-                tempPositionMap.put(vectorEntry.index(), vectorEntry.position());
-            }
-            columnPositionMap.put(columnIndex, tempPositionMap);
+        columnIndices = new int[columns][];
+        columnToRowPositionMap = new int[columns][];
+        for (int columnIndex = 0; columnIndex < columns; columnIndex++) {
+            columnIndices[columnIndex] = new int[columnCounts[columnIndex]];
+            columnToRowPositionMap[columnIndex] = new int[columnCounts[columnIndex]];
         }
 
-        rowToColumnPositionMap = new int[rowSize()][];
-        for (int rowIndex = 0; rowIndex < rowSize(); rowIndex++) {
-            SequentialSparseVector tempRowVector = row(rowIndex);
-            rowToColumnPositionMap[rowIndex] = new int[tempRowVector.getNumEntries()];
-            for (Vector.VectorEntry vectorEntry : tempRowVector) {
-                rowToColumnPositionMap[rowIndex][vectorEntry.position()]
-                        = columnPositionMap.get(vectorEntry.index()).get(rowIndex);
+        // reuse the counts as the next free position of each column
+        Arrays.fill(columnCounts, 0);
+        rowToColumnPositionMap = new int[rows][];
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            SequentialSparseVector rowVector = rowMatrix.row(rowIndex);
+            int numEntries = rowVector.getNumEntries();
+            rowToColumnPositionMap[rowIndex] = new int[numEntries];
+            for (int position = 0; position < numEntries; position++) {
+                int columnIndex = rowVector.getIndexAtPosition(position);
+                int columnPosition = columnCounts[columnIndex]++;
+                columnIndices[columnIndex][columnPosition] = rowIndex;
+                columnToRowPositionMap[columnIndex][columnPosition] = position;
+                rowToColumnPositionMap[rowIndex][position] = columnPosition;
             }
         }
-
     }
 
     /**
@@ -203,7 +197,6 @@ public class SequentialAccessSparseMatrix extends AbstractMatrix implements Seri
     public void reshape() {
         rowMatrix.reshape();
         constructColumnIndices(rowMatrix);
-        constructMap();
     }
 
     protected int[][] columnBasedRowIndices() {
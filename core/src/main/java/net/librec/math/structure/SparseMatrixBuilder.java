@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import java.util.Arrays;
+
+/**
+ * Collects the entries of a sparse matrix as coordinate (row, column, value)
+ * triples on chunked primitive arrays and builds a
+ * {@link SequentialAccessSparseMatrix} of them, without boxing an entry into a
+ * {@code Table} first. As with {@code Table.put}, the value added last wins
+ * when an entry is added more than once.
+ */
+public class SparseMatrixBuilder {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private int[][] rowChunks = new int[16][];
+    private int[][] columnChunks = new int[16][];
+    private double[][] valueChunks = new double[16][];
+    private int size;
+
+    /**
+     * Add an entry.
+     *
+     * @param row    the row of the entry
+     * @param column the column of the entry
+     * @param value  the value of the entry
+     */
+    public void add(int row, int column, double value) {
+        if (row < 0 || column < 0) {
+            throw new IndexOutOfBoundsException("entry (" + row + ", " + column + ") out of bounds");
+        }
+        int chunk = size >>> CHUNK_BITS;
+        int offset = size & (CHUNK_SIZE - 1);
+        if (offset == 0) {
+            if (chunk == rowChunks.length) {
+                rowChunks = Arrays.copyOf(rowChunks, chunk * 2);
+                columnChunks = Arrays.copyOf(columnChunks, chunk * 2);
+                valueChunks = Arrays.copyOf(valueChunks, chunk * 2);
+            }
+            rowChunks[chunk] = new int[CHUNK_SIZE];
+            columnChunks[chunk] = new int[CHUNK_SIZE];
+            valueChunks[chunk] = new double[CHUNK_SIZE];
+        }
+        rowChunks[chunk][offset] = row;
+        columnChunks[chunk][offset] = column;
+        valueChunks[chunk][offset] = value;
+        size++;
+    }
+
+    /**
+     * @return the number of entries added, duplicates included
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Build the matrix of the entries added so far. The entries are bucketed
+     * by row in the order they were added, then each row is sorted by column
+     * and duplicates keep the last value.
+     *
+     * @param numRows    the number of rows
+     * @param numColumns the number of columns
+     * @return the sparse matrix of the entries
+     */
+    public SequentialAccessSparseMatrix build(int numRows, int numColumns) {
+        int[] rowPointers = new int[numRows + 1];
+        for (int index = 0; index < size; index++) {
+            int row = rowChunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+            int column = columnChunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+            if (row >= numRows || column >= numColumns) {
+                throw new IndexOutOfBoundsException("entry (" + row + ", " + column + ") out of bounds of a "
+                        + numRows + " x " + numColumns + " matrix");
+            }
+            rowPointers[row + 1]++;
+        }
+        int maxRowSize = 0;
+        for (int row = 0; row < numRows; row++) {
+            maxRowSize = Math.max(maxRowSize, rowPointers[row + 1]);
+            rowPointers[row + 1] += rowPointers[row];
+        }
+
+        int[] columns = new int[size];
+        double[] values = new double[size];
+        int[] positions = Arrays.copyOf(rowPointers, numRows);
+        for (int index = 0; index < size; index++) {
+            int chunk = index >>> CHUNK_BITS;
+            int offset = index & (CHUNK_SIZE - 1);
+            int position = positions[rowChunks[chunk][offset]]++;
+            columns[position] = columnChunks[chunk][offset];
+            values[position] = valueChunks[chunk][offset];
+        }
+
+        // sort keys of (column, position within the row), so that the last
+        // one of equal columns is the entry added last
+        long[] keys = new long[maxRowSize];
+        VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[numRows];
+        for (int row = 0; row < numRows; row++) {
+            int start = rowPointers[row];
+            int rowSize = rowPointers[row + 1] - start;
+            for (int position = 0; position < rowSize; position++) {
+                keys[position] = ((long) columns[start + position] << 32) | position;
+            }
+            Arrays.sort(keys, 0, rowSize);
+            int numEntries = 0;
+            for (int position = 0; position < rowSize; position++) {
+                if (position + 1 < rowSize && keys[position] >>> 32 == keys[position + 1] >>> 32) {
+                    continue;
+                }
+                keys[numEntries++] = keys[position];
+            }
+            int[] rowIndices = new int[numEntries];
+            double[] rowValues = new double[numEntries];
+            for (int entry = 0; entry < numEntries; entry++) {
+                rowIndices[entry] = (int) (keys[entry] >>> 32);
+                rowValues[entry] = values[start + (int) keys[entry]];
+            }
+            rowVectors[row] = new VectorBasedSequentialSparseVector(numColumns, rowIndices, rowValues);
+        }
+        return new SequentialAccessSparseMatrix(numRows, numColumns, rowVectors);
+    }
+}
@@ -17,21 +17,51 @@
  */
 package net.librec.math.structure;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *
+ * Symmetric matrix, e.g. a similarity matrix.
+ * <p>
+ * Only the upper triangle {@code (row <= col)} is stored. Small matrices
+ * (dimension not larger than {@link #DENSE_MAX_DIM}) use a packed dense
+ * {@code double[]}, larger ones keep one primitive hash map per row. Writes
+ * of both modes are guarded by striped locks, so different rows can be filled
+ * concurrently without contention. Reads of whole rows go through a symmetric
+ * compressed row cache which is built lazily. Every write bumps the version of
+ * the matrix after it is done, and a cache built from an older version is
+ * built again, so a write concurrent with the building of the cache is never
+ * lost.
+ * <p>
+ * {@code NaN} is used internally as the "absent" marker, so setting an entry
+ * to {@code NaN} removes it.
  */
 public class SymmMatrix {
 
+    /**
+     * largest dimension stored in packed dense mode by default
+     */
+    public static final int DENSE_MAX_DIM = 2048;
+
+    private static final int NUM_LOCKS = 64;
+
     // matrix dimension
     protected int dim;
-    // matrix data
-    Table<Integer, Integer, Double> data;
+
+    // packed upper triangle, dense mode only
+    private double[] packedData;
+    // upper triangle rows, sparse mode only
+    private Int2DoubleOpenHashMap[] rowData;
+
+    private final Object[] locks;
+
+    // number of writes, see invalidate()
+    private final AtomicLong version = new AtomicLong();
+    // symmetric compressed rows, built on demand
+    private volatile CompressedRows compressedRows;
 
     /**
      * Construct a symmetric matrix
@@ -39,9 +69,27 @@ public class SymmMatrix {
      * @param dim matrix dimension
      */
     public SymmMatrix(int dim) {
+        this(dim, dim <= DENSE_MAX_DIM);
+    }
+
+    /**
+     * Construct a symmetric matrix
+     *
+     * @param dim   matrix dimension
+     * @param dense whether to store the upper triangle in a packed dense array
+     */
+    public SymmMatrix(int dim, boolean dense) {
         this.dim = dim;
-        data = HashBasedTable.create(); // do not specify the cardinality here as a
-        // sparse matrix
+        this.locks = new Object[NUM_LOCKS];
+        for (int i = 0; i < NUM_LOCKS; i++) {
+            locks[i] = new Object();
+        }
+        if (dense) {
+            packedData = new double[(int) packedSize(dim)];
+            Arrays.fill(packedData, Double.NaN);
+        } else {
+            rowData = new Int2DoubleOpenHashMap[dim];
+        }
     }
 
     /**
@@ -50,8 +98,19 @@ public class SymmMatrix {
      * @param mat a given matrix
      */
     public SymmMatrix(SymmMatrix mat) {
-        dim = mat.dim;
-        data = HashBasedTable.create(mat.data);
+        this(mat.dim, mat.isDense());
+        if (mat.isDense()) {
+            System.arraycopy(mat.packedData, 0, packedData, 0, packedData.length);
+        } else {
+            for (int row = 0; row < dim; row++) {
+                Int2DoubleOpenHashMap rowMap = mat.rowData[row];
+                if (rowMap != null) {
+                    synchronized (mat.lock(row)) {
+                        rowData[row] = rowMap.clone();
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -61,6 +120,13 @@ public class SymmMatrix {
         return new SymmMatrix(this);
     }
 
+    /**
+     * @return true if the matrix is stored in packed dense mode
+     */
+    public boolean isDense() {
+        return packedData != null;
+    }
+
     /**
      * Get a value at entry (row, col)
      *
@@ -69,13 +135,8 @@ public class SymmMatrix {
      * @return value at entry (row, col)
      */
     public double get(int row, int col) {
-
-        if (data.contains(row, col))
-            return data.get(row, col);
-        else if (data.contains(col, row))
-            return data.get(col, row);
-
-        return 0.0d;
+        double val = lookup(row, col);
+        return Double.isNaN(val) ? 0.0d : val;
     }
 
     /**
@@ -86,7 +147,7 @@ public class SymmMatrix {
      * @return value at entry (row, col)
      */
     public boolean contains(int row, int col) {
-        return data.contains(row, col) || data.contains(col, row);
+        return !Double.isNaN(lookup(row, col));
     }
 
     /**
@@ -97,10 +158,21 @@ public class SymmMatrix {
      * @param val value to set
      */
     public void set(int row, int col, double val) {
-        if (row >= col)
-            data.put(row, col, val);
-        else
-            data.put(col, row, val);
+        int upperRow = Math.min(row, col);
+        int upperCol = Math.max(row, col);
+        synchronized (lock(upperRow)) {
+            if (isDense()) {
+                packedData[packedIndex(upperRow, upperCol)] = val;
+            } else {
+                Int2DoubleOpenHashMap rowMap = rowMap(upperRow);
+                if (Double.isNaN(val)) {
+                    rowMap.remove(upperCol);
+                } else {
+                    rowMap.put(upperCol, val);
+                }
+            }
+        }
+        invalidate();
     }
 
     /**
@@ -111,27 +183,32 @@ public class SymmMatrix {
      * @param val value to plus
      */
     public void add(int row, int col, double val) {
-        if (row >= col)
-            data.put(row, col, val + get(row, col));
-        else
-            data.put(col, row, val + get(col, row));
+        int upperRow = Math.min(row, col);
+        int upperCol = Math.max(row, col);
+        synchronized (lock(upperRow)) {
+            if (isDense()) {
+                int index = packedIndex(upperRow, upperCol);
+                double oldVal = packedData[index];
+                packedData[index] = Double.isNaN(oldVal) ? val : oldVal + val;
+            } else {
+                Int2DoubleOpenHashMap rowMap = rowMap(upperRow);
+                double oldVal = rowMap.get(upperCol);
+                rowMap.put(upperCol, Double.isNaN(oldVal) ? val : oldVal + val);
+            }
+        }
+        invalidate();
     }
 
     /**
-     * Retrieve a complete row of similar items
+     * Retrieve a complete row of similar items. The returned vector is a
+     * read-only view over the cached symmetric rows and is sorted by index.
      *
      * @param row row index
      * @return a complete row of similar items
      */
-    public Map<Integer, Double> row(int row) {
-        Map<Integer, Double> map = new HashMap<>();
-        for (int col = 0; col < dim; col++) {
-            double val = get(row, col);
-            if (val != 0)
-                map.put(col, val);
-        }
-
-        return map;
+    public SequentialSparseVector row(int row) {
+        CompressedRows rows = compile();
+        return new VectorBasedSequentialSparseVector(dim, rows.indices[row], rows.values[row]);
     }
 
     /**
@@ -142,24 +219,232 @@ public class SymmMatrix {
     }
 
     /**
-     * @return the data
+     * @return the number of stored entries in the upper triangle
      */
-    public Table<Integer, Integer, Double> getData() {
-        return data;
+    public int size() {
+        int size = 0;
+        if (isDense()) {
+            for (double val : packedData) {
+                if (!Double.isNaN(val)) {
+                    size++;
+                }
+            }
+        } else {
+            for (Int2DoubleOpenHashMap rowMap : rowData) {
+                if (rowMap != null) {
+                    size += rowMap.size();
+                }
+            }
+        }
+        return size;
     }
 
     @Override
     public String toString() {
-        return "Dimension: " + dim + " x " + dim + "\n" + data.toString();
+        StringBuilder sb = new StringBuilder("Dimension: " + dim + " x " + dim + "\n");
+        for (int row = 0; row < dim; row++) {
+            for (int col = row; col < dim; col++) {
+                double val = lookup(row, col);
+                if (!Double.isNaN(val)) {
+                    sb.append(row).append("\t").append(col).append("\t").append(val).append("\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Convert to a full (both triangles) sparse matrix, built directly from
+     * the compressed rows.
+     *
+     * @return a sparse matrix with the same entries
+     */
+    public SequentialAccessSparseMatrix toSparseMatrix() {
+        CompressedRows rows = compile();
+        VectorBasedSequentialSparseVector[] rowVectors = new VectorBasedSequentialSparseVector[dim];
+        for (int row = 0; row < dim; row++) {
+            rowVectors[row] = new VectorBasedSequentialSparseVector(dim, rows.indices[row], rows.values[row]);
+        }
+        RowSequentialAccessSparseMatrix rowMatrix = new RowSequentialAccessSparseMatrix(dim, dim, rowVectors, true);
+        return new SequentialAccessSparseMatrix(rowMatrix, true);
+    }
+
+    private double lookup(int row, int col) {
+        int upperRow = Math.min(row, col);
+        int upperCol = Math.max(row, col);
+        if (isDense()) {
+            return packedData[packedIndex(upperRow, upperCol)];
+        }
+        Int2DoubleOpenHashMap rowMap = rowData[upperRow];
+        if (rowMap == null) {
+            return Double.NaN;
+        }
+        synchronized (lock(upperRow)) {
+            return rowMap.get(upperCol);
+        }
     }
 
-    public SequentialAccessSparseMatrix toSparseMatrix(){
-        Table<Integer, Integer, Double> tempData = HashBasedTable.create();
-        for(Table.Cell<Integer, Integer, Double> cell: this.data.cellSet()){
-            tempData.put(cell.getRowKey(),cell.getColumnKey(), cell.getValue());
-            tempData.put(cell.getColumnKey(), cell.getRowKey(), cell.getValue());
+    private Int2DoubleOpenHashMap rowMap(int upperRow) {
+        Int2DoubleOpenHashMap rowMap = rowData[upperRow];
+        if (rowMap == null) {
+            rowMap = new Int2DoubleOpenHashMap();
+            rowMap.defaultReturnValue(Double.NaN);
+            rowData[upperRow] = rowMap;
         }
-        return new SequentialAccessSparseMatrix(this.dim, this.dim, tempData);
+        return rowMap;
+    }
+
+    private Object lock(int upperRow) {
+        return locks[upperRow & (NUM_LOCKS - 1)];
+    }
+
+    /**
+     * Called after each write, the compressed rows built before the write are
+     * out of date.
+     */
+    private void invalidate() {
+        version.incrementAndGet();
     }
 
+    private int packedIndex(int upperRow, int upperCol) {
+        return (int) ((long) upperRow * (2L * dim - upperRow + 1) / 2 + (upperCol - upperRow));
+    }
+
+    private static long packedSize(int dim) {
+        return (long) dim * (dim + 1) / 2;
+    }
+
+    /**
+     * Get the symmetric compressed rows of the current version, building them
+     * from the upper triangle if the cached ones are out of date. The version
+     * is read before the upper triangle, so the rows built during a concurrent
+     * write carry an older version and are built again by the next read.
+     * <p>
+     * The lower part of each row is filled in ascending order while scanning
+     * the upper rows, so no per-row sort of the merged row is needed.
+     *
+     * @return the compressed rows
+     */
+    private CompressedRows compile() {
+        CompressedRows rows = compressedRows;
+        if (rows != null && rows.version == version.get()) {
+            return rows;
+        }
+        synchronized (this) {
+            long currentVersion = version.get();
+            rows = compressedRows;
+            if (rows != null && rows.version == currentVersion) {
+                return rows;
+            }
+            rows = buildCompressedRows(currentVersion);
+            compressedRows = rows;
+            return rows;
+        }
+    }
+
+    private CompressedRows buildCompressedRows(long currentVersion) {
+        int[][] upperIndices = new int[dim][];
+        double[][] upperValues = new double[dim][];
+        int[] lowerCounts = new int[dim];
+        for (int row = 0; row < dim; row++) {
+            collectUpperRow(row, upperIndices, upperValues);
+            for (int col : upperIndices[row]) {
+                if (col != row) {
+                    lowerCounts[col]++;
+                }
+            }
+        }
+
+        int[][] indices = new int[dim][];
+        double[][] values = new double[dim][];
+        for (int row = 0; row < dim; row++) {
+            int length = lowerCounts[row] + upperIndices[row].length;
+            indices[row] = new int[length];
+            values[row] = new double[length];
+        }
+
+        int[] lowerFill = new int[dim];
+        for (int row = 0; row < dim; row++) {
+            int[] upperRowIndices = upperIndices[row];
+            double[] upperRowValues = upperValues[row];
+            System.arraycopy(upperRowIndices, 0, indices[row], lowerCounts[row], upperRowIndices.length);
+            System.arraycopy(upperRowValues, 0, values[row], lowerCounts[row], upperRowValues.length);
+            for (int position = 0; position < upperRowIndices.length; position++) {
+                int col = upperRowIndices[position];
+                if (col != row) {
+                    indices[col][lowerFill[col]] = row;
+                    values[col][lowerFill[col]] = upperRowValues[position];
+                    lowerFill[col]++;
+                }
+            }
+            upperIndices[row] = null;
+            upperValues[row] = null;
+        }
+
+        return new CompressedRows(currentVersion, indices, values);
+    }
+
+    /**
+     * The symmetric compressed rows of a version of the matrix.
+     */
+    private static final class CompressedRows {
+        private final long version;
+        private final int[][] indices;
+        private final double[][] values;
+
+        private CompressedRows(long version, int[][] indices, double[][] values) {
+            this.version = version;
+            this.indices = indices;
+            this.values = values;
+        }
+    }
+
+    private void collectUpperRow(int row, int[][] upperIndices, double[][] upperValues) {
+        if (isDense()) {
+            int offset = packedIndex(row, row);
+            int count = 0;
+            for (int col = row; col < dim; col++) {
+                double val = packedData[offset + col - row];
+                if (!Double.isNaN(val) && val != 0.0d) {
+                    count++;
+                }
+            }
+            int[] rowIdx = new int[count];
+            double[] rowVal = new double[count];
+            int position = 0;
+            for (int col = row; col < dim; col++) {
+                double val = packedData[offset + col - row];
+                if (!Double.isNaN(val) && val != 0.0d) {
+                    rowIdx[position] = col;
+                    rowVal[position++] = val;
+                }
+            }
+            upperIndices[row] = rowIdx;
+            upperValues[row] = rowVal;
+        } else {
+            Int2DoubleOpenHashMap rowMap = rowData[row];
+            if (rowMap == null || rowMap.isEmpty()) {
+                upperIndices[row] = new int[0];
+                upperValues[row] = new double[0];
+                return;
+            }
+            synchronized (lock(row)) {
+                int count = 0;
+                int[] rowIdx = new int[rowMap.size()];
+                for (Int2DoubleMap.Entry entry : rowMap.int2DoubleEntrySet()) {
+                    if (entry.getDoubleValue() != 0.0d) {
+                        rowIdx[count++] = entry.getIntKey();
+                    }
+                }
+                rowIdx = count == rowIdx.length ? rowIdx : Arrays.copyOf(rowIdx, count);
+                Arrays.sort(rowIdx);
+                double[] rowVal = new double[count];
+                for (int position = 0; position < count; position++) {
+                    rowVal[position] = rowMap.get(rowIdx[position]);
+                }
+                upperIndices[row] = rowIdx;
+                upperValues[row] = rowVal;
+            }
+        }
+    }
 }
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+/**
+ * Bounded min-heap of (index, value) pairs on primitive arrays, keeping the
+ * k entries with the largest values. The heap can be cleared and reused, so a
+ * single instance per thread serves any number of top-k selections.
+ */
+public class TopKHeap {
+
+    private final int capacity;
+    private final int[] indices;
+    private final double[] values;
+    private int size;
+
+    /**
+     * Construct a heap keeping at most {@code capacity} entries.
+     *
+     * @param capacity the number of entries to keep
+     */
+    public TopKHeap(int capacity) {
+        this.capacity = capacity;
+        this.indices = new int[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Offer an entry to the heap. When the heap is full the entry replaces the
+     * current minimum only if its value is strictly larger, so that among equal
+     * values the earlier offered entries are kept.
+     *
+     * @param index entry index
+     * @param value entry value
+     * @return true if the entry is kept
+     */
+    public boolean offer(int index, double value) {
+        if (size < capacity) {
+            int position = size++;
+            // sift up
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!less(value, index, values[parent], indices[parent])) {
+                    break;
+                }
+                indices[position] = indices[parent];
+                values[position] = values[parent];
+                position = parent;
+            }
+            indices[position] = index;
+            values[position] = value;
+            return true;
+        }
+        if (capacity == 0 || !(value > values[0])) {
+            return false;
+        }
+        siftDown(index, value);
+        return true;
+    }
+
+    /**
+     * @return the smallest kept value, or {@code Double.NEGATIVE_INFINITY} if
+     * the heap is not yet full
+     */
+    public double threshold() {
+        return size < capacity ? Double.NEGATIVE_INFINITY : values[0];
+    }
+
+    /**
+     * @return the number of kept entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of kept entries
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Get the index stored at a heap position (heap order, not sorted).
+     *
+     * @param position heap position in [0, size)
+     * @return the index at the position
+     */
+    public int getIndex(int position) {
+        return indices[position];
+    }
+
+    /**
+     * Get the value stored at a heap position (heap order, not sorted).
+     *
+     * @param position heap position in [0, size)
+     * @return the value at the position
+     */
+    public double getValue(int position) {
+        return values[position];
+    }
+
+    /**
+     * Drain the heap into the given arrays sorted by value in descending
+     * order. Equal values are ordered by ascending index. The heap is empty
+     * afterwards.
+     *
+     * @param outIndices array receiving the indices, length at least size()
+     * @param outValues  array receiving the values, length at least size()
+     * @return the number of drained entries
+     */
+    public int drainDescending(int[] outIndices, double[] outValues) {
+        int count = size;
+        for (int position = count - 1; position >= 0; position--) {
+            outIndices[position] = indices[0];
+            outValues[position] = values[0];
+            size--;
+            if (size > 0) {
+                siftDown(indices[size], values[size]);
+            }
+        }
+        return count;
+    }
+
+    private void siftDown(int index, double value) {
+        int position = 0;
+        int half = size >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            int right = child + 1;
+            if (right < size && less(values[right], indices[right], values[child], indices[child])) {
+                child = right;
+            }
+            if (!less(values[child], indices[child], value, index)) {
+                break;
+            }
+            indices[position] = indices[child];
+            values[position] = values[child];
+            position = child;
+        }
+        indices[position] = index;
+        values[position] = value;
+    }
+
+    /**
+     * Heap order: smaller value first, and for equal values the larger index
+     * first, so that the drained order is ascending by index among ties.
+     */
+    private static boolean less(double value, int index, double otherValue, int otherIndex) {
+        return value < otherValue || (value == otherValue && index > otherIndex);
+    }
+}
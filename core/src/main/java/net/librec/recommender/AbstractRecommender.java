@@ -22,6 +22,7 @@ import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.data.DataModel;
 import net.librec.job.progress.ProgressBar;
+import net.librec.math.structure.IdDictionary;
 import net.librec.recommender.item.*;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -30,6 +31,7 @@ import org.apache.commons.logging.LogFactory;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.IntFunction;
 
 /**
  * Abstract Recommender Methods
@@ -216,13 +218,13 @@ public abstract class AbstractRecommender implements Recommender {
             List<RecommendedItem> userItemList = new ArrayList<>();
             Iterator<ContextKeyValueEntry> recommendedEntryIter = recommendedList.iterator();
             if (userMappingData != null && userMappingData.size() > 0 && itemMappingData != null && itemMappingData.size() > 0) {
-                BiMap<Integer, String> userMappingInverse = userMappingData.inverse();
-                BiMap<Integer, String> itemMappingInverse = itemMappingData.inverse();
+                IntFunction<String> userRawIds = rawIds(userMappingData);
+                IntFunction<String> itemRawIds = rawIds(itemMappingData);
                 while (recommendedEntryIter.hasNext()) {
                     ContextKeyValueEntry contextKeyValueEntry = recommendedEntryIter.next();
                     if (contextKeyValueEntry != null) {
-                        String userId = userMappingInverse.get(contextKeyValueEntry.getContextIdx());
-                        String itemId = itemMappingInverse.get(contextKeyValueEntry.getKey());
+                        String userId = userRawIds.apply(contextKeyValueEntry.getContextIdx());
+                        String itemId = itemRawIds.apply(contextKeyValueEntry.getKey());
                         if (StringUtils.isNotBlank(userId) && StringUtils.isNotBlank(itemId)) {
                             userItemList.add(new GenericRecommendedItem(userId, itemId, contextKeyValueEntry.getValue()));
                         }
@@ -234,6 +236,18 @@ public abstract class AbstractRecommender implements Recommender {
         return null;
     }
 
+    /**
+     * Resolve inner ids to raw ids through the array of an {@link IdDictionary},
+     * other maps through their inverse.
+     */
+    private static IntFunction<String> rawIds(BiMap<String, Integer> mappingData) {
+        if (mappingData instanceof IdDictionary) {
+            return ((IdDictionary) mappingData)::getRawId;
+        }
+        BiMap<Integer, String> mappingInverse = mappingData.inverse();
+        return mappingInverse::get;
+    }
+
     /**
      * Post each iteration, we do things:
      * <ol>
@@ -268,8 +282,7 @@ public abstract class AbstractRecommender implements Recommender {
 
     public void updateProgress(int currentPoint) {
         if (verbose) {
-            conf.setInt("train.current.progress", currentPoint);
-            progressBar.showBarByPoint(conf.getInt("train.current.progress"));
+            progressBar.showBarByPoint(currentPoint);
         }
     }
 }
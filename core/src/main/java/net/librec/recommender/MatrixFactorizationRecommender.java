@@ -1,7 +1,28 @@
 package net.librec.recommender;
 
 import net.librec.common.LibrecException;
+import net.librec.conf.ConfigurationSnapshot;
+import net.librec.data.structure.AbstractBaseDataEntry;
+import net.librec.data.structure.BaseRankingDataEntry;
+import net.librec.data.structure.LibrecDataList;
+import net.librec.math.algorithm.LeastSquaresSolver;
+import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DenseMatrix;
+import net.librec.math.structure.TopKHeap;
+import net.librec.recommender.item.KeyValueArrayList;
+import net.librec.recommender.item.RecommendedList;
+import net.librec.recommender.mips.HNSWSearch;
+import net.librec.recommender.mips.IVFSearch;
+import net.librec.recommender.mips.MaximumInnerProductSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 /**
  * Matrix Factorization Recommender
@@ -10,6 +31,29 @@ import net.librec.math.structure.DenseMatrix;
  * Created by Keqiang Wang
  */
 public abstract class MatrixFactorizationRecommender extends MatrixRecommender {
+    /**
+     * the number of items per block of the batched scoring kernel
+     */
+    private static final int SCORING_ITEM_BLOCK_SIZE = 256;
+
+    /**
+     * approximate top-N retrieval index over the item factors, built on the first
+     * ranking after training
+     */
+    private volatile MaximumInnerProductSearch itemIndex;
+    private String itemIndexRetrieval;
+
+    /**
+     * rec.recommender.ranking.retrieval and the parameters of the retrieval
+     * indexes, rec.mips.hnsw.*, rec.mips.ivf.* and their seed rec.random.seed, resolved from the version
+     * {@link #retrievalConfVersion} of {@link #conf}
+     */
+    private String rankingRetrieval;
+    private int hnswM, hnswEfConstruction, hnswEfSearch;
+    private int ivfClusters, ivfProbes, ivfIterations;
+    private long retrievalSeed;
+    private long retrievalConfVersion;
+
     /**
      * learn rate, maximum learning rate
      */
@@ -58,6 +102,31 @@ public abstract class MatrixFactorizationRecommender extends MatrixRecommender {
      */
     protected float regItem;
 
+    /**
+     * the number of threads of the lock-free stochastic gradient descent in
+     * {@link #trainSamples(int, SampleStep)} and of the alternating least
+     * squares solver, see {@link LeastSquaresSolver}
+     */
+    protected int numTrainThreads;
+
+    /**
+     * the generator the per thread generators of {@link #trainSamples} are
+     * split from, seeded by {@link Randoms} on the first use
+     */
+    private SplittableRandom trainRandom;
+
+    /**
+     * the number of samples trained and the time spent on them in the current
+     * iteration, reported by {@link #isConverged(int)}
+     */
+    private long numIterationSamples, iterationSampleNanos;
+
+    /**
+     * the pool training the samples of {@link #trainSamples}, see
+     * {@link #openSamplerPool()}
+     */
+    private ExecutorService samplerPool;
+
     /**
      * setup
      * init member method
@@ -74,6 +143,7 @@ public abstract class MatrixFactorizationRecommender extends MatrixRecommender {
         regItem = conf.getFloat("rec.item.regularization", 0.01f);
 
         numFactors = conf.getInt("rec.factor.number", 10);
+        numTrainThreads = conf.getInt("rec.train.threads", 1);
         isBoldDriver = conf.getBoolean("rec.learnrate.bolddriver", false);
         decay = conf.getFloat("rec.learnrate.decay", 1.0f);
 
@@ -91,6 +161,139 @@ public abstract class MatrixFactorizationRecommender extends MatrixRecommender {
         itemFactors.init(initMean, initStd);
         impUserFactors.init(initMean, initStd);
         impItemFactors.init(initMean, initStd);
+        resolveRetrievalParameters();
+        trainRandom = null;
+        numIterationSamples = 0L;
+        iterationSampleNanos = 0L;
+    }
+
+    /**
+     * One step of stochastic gradient descent, see
+     * {@link #trainSamples(int, SampleStep)}.
+     */
+    protected interface SampleStep {
+        /**
+         * Draw a sample and update the parameters by it.
+         *
+         * @param random the generator of the calling thread
+         * @return the loss of the sample
+         * @throws LibrecException if error occurs during training
+         */
+        double train(SplittableRandom random) throws LibrecException;
+    }
+
+    /**
+     * Train numSamples samples on {@link #numTrainThreads} threads updating the
+     * shared parameters without locks (Niu et al., Hogwild!: A lock-free
+     * approach to parallelizing stochastic gradient descent, NIPS 2011), and
+     * add their loss to {@link #loss}.
+     * <p>
+     * Every thread draws its samples from its own generator. The generators
+     * are split in thread order from one seeded by {@link Randoms}, so that a
+     * run on one thread is reproducible with {@code rec.random.seed}. The threads
+     * are those of {@link #openSamplerPool()}, or of a pool created for this
+     * call if it is not open.
+     *
+     * @param numSamples the number of samples
+     * @param step       the step training one sample
+     * @throws LibrecException if error occurs during training
+     */
+    protected void trainSamples(int numSamples, SampleStep step) throws LibrecException {
+        if (trainRandom == null) {
+            trainRandom = new SplittableRandom(((long) Randoms.uniform(Integer.MAX_VALUE) << 31)
+                    ^ Randoms.uniform(Integer.MAX_VALUE));
+        }
+        int numThreads = Math.max(1, Math.min(numTrainThreads, numSamples));
+        SplittableRandom[] randoms = new SplittableRandom[numThreads];
+        for (int threadIdx = 0; threadIdx < numThreads; threadIdx++) {
+            randoms[threadIdx] = trainRandom.split();
+        }
+
+        long startTime = System.nanoTime();
+        if (numThreads == 1) {
+            for (int sampleCount = 0; sampleCount < numSamples; sampleCount++) {
+                loss += step.train(randoms[0]);
+            }
+        } else {
+            ExecutorService executor = samplerPool != null ? samplerPool : Executors.newFixedThreadPool(numThreads);
+            List<Future<Double>> losses = new ArrayList<>(numThreads);
+            try {
+                for (int threadIdx = 0; threadIdx < numThreads; threadIdx++) {
+                    SplittableRandom random = randoms[threadIdx];
+                    int threadSamples = (int) ((long) numSamples * (threadIdx + 1) / numThreads)
+                            - (int) ((long) numSamples * threadIdx / numThreads);
+                    losses.add(executor.submit(() -> {
+                        double threadLoss = 0.0D;
+                        for (int sampleCount = 0; sampleCount < threadSamples; sampleCount++) {
+                            threadLoss += step.train(random);
+                        }
+                        return threadLoss;
+                    }));
+                }
+                for (Future<Double> threadLoss : losses) {
+                    loss += threadLoss.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LibrecException(e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof LibrecException ? (LibrecException) e.getCause()
+                        : new LibrecException(e.getCause());
+            } finally {
+                if (executor != samplerPool) {
+                    executor.shutdownNow();
+                } else {
+                    // stop the threads of a failed call before the pool is reused
+                    for (Future<Double> threadLoss : losses) {
+                        threadLoss.cancel(true);
+                    }
+                }
+            }
+        }
+        numIterationSamples += numSamples;
+        iterationSampleNanos += System.nanoTime() - startTime;
+    }
+
+    /**
+     * Create the pool of {@link #numTrainThreads} threads training the samples
+     * of {@link #trainSamples}. Models calling it many times per iteration call
+     * this once at the beginning of trainModel and {@link #closeSamplerPool()}
+     * in a finally block.
+     */
+    protected void openSamplerPool() {
+        if (numTrainThreads > 1) {
+            samplerPool = Executors.newFixedThreadPool(numTrainThreads);
+        }
+    }
+
+    /**
+     * Shut down the pool created by {@link #openSamplerPool()}.
+     */
+    protected void closeSamplerPool() {
+        if (samplerPool != null) {
+            samplerPool.shutdownNow();
+            samplerPool = null;
+        }
+    }
+
+    /**
+     * Report the throughput of {@link #trainSamples} in the iteration, then
+     * check the convergence.
+     *
+     * @param iter current iteration
+     * @return true if converged
+     * @throws LibrecException if error occurs
+     */
+    @Override
+    protected boolean isConverged(int iter) throws LibrecException {
+        if (verbose && numIterationSamples > 0) {
+            LOG.info(String.format("%s iter %d: %d samples on %d threads, %.0f samples/sec",
+                    getClass().getSimpleName(), iter, numIterationSamples, Math.max(1, numTrainThreads),
+                    numIterationSamples * 1e9 / Math.max(1L, iterationSampleNanos)));
+        }
+        numIterationSamples = 0L;
+        iterationSampleNanos = 0L;
+        return super.isConverged(iter);
     }
 
     /**
@@ -105,6 +308,253 @@ public abstract class MatrixFactorizationRecommender extends MatrixRecommender {
         return userFactors.row(userIdx).dot(itemFactors.row(itemIdx));
     }
 
+    /**
+     * Get the user vector used by batched scoring. A prediction is scored as
+     * {@code userVector . itemFactors(itemIdx) + userBias + itemBias}, see
+     * {@link #getUserScoringBias(int)} and {@link #getItemScoringBias(int)}.
+     * Subclasses whose {@link #predict(int, int)} has this form override the hooks
+     * as needed and return true from {@link #isBatchScoringSupported()}, otherwise
+     * batched scoring falls back to predict.
+     *
+     * @param userIdx user index
+     * @param out     array of length numFactors receiving the user vector
+     */
+    protected void getUserScoringFactors(int userIdx, double[] out) {
+        System.arraycopy(userFactors.getValues()[userIdx], 0, out, 0, out.length);
+    }
+
+    /**
+     * @param userIdx user index
+     * @return the user dependent offset added to every score of the user
+     */
+    protected double getUserScoringBias(int userIdx) {
+        return 0.0D;
+    }
+
+    /**
+     * @param itemIdx item index
+     * @return the item dependent offset added to every score of the item
+     */
+    protected double getItemScoringBias(int itemIdx) {
+        return 0.0D;
+    }
+
+    @Override
+    public void predictBatch(int userIdx, int[] items, double[] out) throws LibrecException {
+        if (!isBatchScoringSupported()) {
+            super.predictBatch(userIdx, items, out);
+            return;
+        }
+        double[][] itemValues = itemFactors.getValues();
+        double[] userVector = new double[itemFactors.columnSize()];
+        getUserScoringFactors(userIdx, userVector);
+        double userBias = getUserScoringBias(userIdx);
+        for (int position = 0; position < items.length; position++) {
+            double[] itemVector = itemValues[items[position]];
+            double score = 0.0D;
+            for (int factorIdx = 0; factorIdx < userVector.length; factorIdx++) {
+                score += userVector[factorIdx] * itemVector[factorIdx];
+            }
+            out[position] = score + userBias + getItemScoringBias(items[position]);
+        }
+    }
+
+    /**
+     * Score a block of users against all items as a user-block by item-block
+     * product, so that every block of item factors is loaded into cache once and
+     * reused for all users of the block.
+     */
+    @Override
+    public void predictAllItems(int[] userIndices, double[][] out) throws LibrecException {
+        if (!isBatchScoringSupported()) {
+            super.predictAllItems(userIndices, out);
+            return;
+        }
+        int numBlockUsers = userIndices.length;
+        int numItemFactors = itemFactors.columnSize();
+        double[][] itemValues = itemFactors.getValues();
+        double[][] userVectors = new double[numBlockUsers][numItemFactors];
+        double[] userBiases = new double[numBlockUsers];
+        for (int blockUserIdx = 0; blockUserIdx < numBlockUsers; blockUserIdx++) {
+            getUserScoringFactors(userIndices[blockUserIdx], userVectors[blockUserIdx]);
+            userBiases[blockUserIdx] = getUserScoringBias(userIndices[blockUserIdx]);
+        }
+
+        double[] itemBiases = new double[SCORING_ITEM_BLOCK_SIZE];
+        for (int fromItemIdx = 0; fromItemIdx < numItems; fromItemIdx += SCORING_ITEM_BLOCK_SIZE) {
+            int toItemIdx = Math.min(numItems, fromItemIdx + SCORING_ITEM_BLOCK_SIZE);
+            for (int itemIdx = fromItemIdx; itemIdx < toItemIdx; itemIdx++) {
+                itemBiases[itemIdx - fromItemIdx] = getItemScoringBias(itemIdx);
+            }
+
+            int blockUserIdx = 0;
+            // four users at a time share every load of an item vector
+            for (; blockUserIdx + 4 <= numBlockUsers; blockUserIdx += 4) {
+                double[] userVector0 = userVectors[blockUserIdx];
+                double[] userVector1 = userVectors[blockUserIdx + 1];
+                double[] userVector2 = userVectors[blockUserIdx + 2];
+                double[] userVector3 = userVectors[blockUserIdx + 3];
+                double[] scores0 = out[blockUserIdx];
+                double[] scores1 = out[blockUserIdx + 1];
+                double[] scores2 = out[blockUserIdx + 2];
+                double[] scores3 = out[blockUserIdx + 3];
+                for (int itemIdx = fromItemIdx; itemIdx < toItemIdx; itemIdx++) {
+                    double[] itemVector = itemValues[itemIdx];
+                    double score0 = 0.0D, score1 = 0.0D, score2 = 0.0D, score3 = 0.0D;
+                    for (int factorIdx = 0; factorIdx < numItemFactors; factorIdx++) {
+                        double itemFactor = itemVector[factorIdx];
+                        score0 += userVector0[factorIdx] * itemFactor;
+                        score1 += userVector1[factorIdx] * itemFactor;
+                        score2 += userVector2[factorIdx] * itemFactor;
+                        score3 += userVector3[factorIdx] * itemFactor;
+                    }
+                    double itemBias = itemBiases[itemIdx - fromItemIdx];
+                    scores0[itemIdx] = score0 + userBiases[blockUserIdx] + itemBias;
+                    scores1[itemIdx] = score1 + userBiases[blockUserIdx + 1] + itemBias;
+                    scores2[itemIdx] = score2 + userBiases[blockUserIdx + 2] + itemBias;
+                    scores3[itemIdx] = score3 + userBiases[blockUserIdx + 3] + itemBias;
+                }
+            }
+            for (; blockUserIdx < numBlockUsers; blockUserIdx++) {
+                double[] userVector = userVectors[blockUserIdx];
+                double[] scores = out[blockUserIdx];
+                for (int itemIdx = fromItemIdx; itemIdx < toItemIdx; itemIdx++) {
+                    double[] itemVector = itemValues[itemIdx];
+                    double score = 0.0D;
+                    for (int factorIdx = 0; factorIdx < numItemFactors; factorIdx++) {
+                        score += userVector[factorIdx] * itemVector[factorIdx];
+                    }
+                    scores[itemIdx] = score + userBiases[blockUserIdx] + itemBiases[itemIdx - fromItemIdx];
+                }
+            }
+        }
+    }
+
+    /**
+     * Rank items for the given users. With the configuration key
+     * {@code rec.recommender.ranking.retrieval} set to {@code hnsw} or {@code ivf},
+     * the top-N items are retrieved from an approximate maximum inner product
+     * search index over the item factors instead of scoring all items; the
+     * default {@code exact} scores all items.
+     *
+     * @param dataList the users to recommend items to
+     * @return recommended list
+     * @throws LibrecException if error occurs during recommending
+     */
+    @Override
+    public RecommendedList recommendRank(LibrecDataList<AbstractBaseDataEntry> dataList) throws LibrecException {
+        if (conf.getVersion() != retrievalConfVersion) {
+            resolveRetrievalParameters();
+        }
+        String retrieval = rankingRetrieval;
+        if ("exact".equalsIgnoreCase(retrieval)) {
+            return super.recommendRank(dataList);
+        }
+        if (!isBatchScoringSupported()) {
+            LOG.warn(getClass().getSimpleName() + " does not predict by factor products, "
+                    + "retrieval " + retrieval + " falls back to exact ranking");
+            return super.recommendRank(dataList);
+        }
+        MaximumInnerProductSearch index = getItemIndex(retrieval);
+
+        LOG.info("begin recommend with " + retrieval + " retrieval");
+        int numDataEntries = dataList.size();
+        RecommendedList recommendedList = new RecommendedList(numUsers);
+        for (int contextIdx = 0; contextIdx < numDataEntries; ++contextIdx) {
+            recommendedList.addList(new ArrayList<>());
+        }
+
+        int numItemFactors = itemFactors.columnSize();
+        int heapCapacity = Math.min(topN, numItems);
+        ThreadLocal<TopKHeap> topKHeapBuffer = ThreadLocal.withInitial(() -> new TopKHeap(heapCapacity));
+        IntStream.range(0, numDataEntries).parallel().forEach(contextIdx -> {
+            BaseRankingDataEntry baseRankingDataEntry = (BaseRankingDataEntry) dataList.getDataEntry(contextIdx);
+            int userIdx = baseRankingDataEntry.getUserId();
+
+            // the query is the user vector extended by 1, matching the item bias coordinate
+            double[] query = new double[numItemFactors + 1];
+            double[] userVector = new double[numItemFactors];
+            getUserScoringFactors(userIdx, userVector);
+            System.arraycopy(userVector, 0, query, 0, numItemFactors);
+            query[numItemFactors] = 1.0D;
+
+            TopKHeap topKHeap = topKHeapBuffer.get();
+            topKHeap.clear();
+            index.search(query, trainMatrix.row(userIdx).getIndices(), topKHeap);
+
+            int size = topKHeap.size();
+            int[] items = new int[size];
+            double[] scores = new double[size];
+            topKHeap.drainDescending(items, scores);
+            double userBias = getUserScoringBias(userIdx);
+            for (int position = 0; position < size; position++) {
+                scores[position] += userBias;
+            }
+            recommendedList.setList(contextIdx, new KeyValueArrayList(items, scores, size));
+        });
+        LOG.info("end recommend");
+        return recommendedList;
+    }
+
+    /**
+     * Resolve the retrieval parameters from the current version of
+     * {@link #conf}, and drop the retrieval index built with the previous ones.
+     */
+    private synchronized void resolveRetrievalParameters() {
+        ConfigurationSnapshot settings = conf.snapshot();
+        rankingRetrieval = settings.get("rec.recommender.ranking.retrieval", "exact");
+        hnswM = settings.getInt("rec.mips.hnsw.m", 16);
+        hnswEfConstruction = settings.getInt("rec.mips.hnsw.ef.construction", 200);
+        hnswEfSearch = settings.getInt("rec.mips.hnsw.ef.search", 100);
+        ivfClusters = settings.getInt("rec.mips.ivf.clusters", (int) Math.ceil(Math.sqrt(numItems)));
+        ivfProbes = settings.getInt("rec.mips.ivf.probes", 8);
+        ivfIterations = settings.getInt("rec.mips.ivf.iterations", 10);
+        retrievalSeed = settings.getLong("rec.random.seed", 0L);
+        retrievalConfVersion = settings.getVersion();
+        itemIndex = null;
+    }
+
+    /**
+     * Get the retrieval index over the item factors, building it on first use. Each
+     * item is indexed as its factors extended by its scoring bias.
+     *
+     * @param retrieval retrieval method, {@code hnsw} or {@code ivf}
+     * @return the item index
+     * @throws LibrecException if the retrieval method is unknown
+     */
+    protected MaximumInnerProductSearch getItemIndex(String retrieval) throws LibrecException {
+        if (itemIndex == null || !retrieval.equalsIgnoreCase(itemIndexRetrieval)) {
+            synchronized (this) {
+                if (itemIndex == null || !retrieval.equalsIgnoreCase(itemIndexRetrieval)) {
+                    MaximumInnerProductSearch index;
+                    if ("hnsw".equalsIgnoreCase(retrieval)) {
+                        index = new HNSWSearch(hnswM, hnswEfConstruction, hnswEfSearch, retrievalSeed);
+                    } else if ("ivf".equalsIgnoreCase(retrieval)) {
+                        index = new IVFSearch(ivfClusters, ivfProbes, ivfIterations, retrievalSeed);
+                    } else {
+                        throw new LibrecException("unknown ranking retrieval: " + retrieval
+                                + ", it should be one of exact, hnsw and ivf");
+                    }
+
+                    int numItemFactors = itemFactors.columnSize();
+                    double[][] itemValues = itemFactors.getValues();
+                    double[][] itemVectors = new double[numItems][numItemFactors + 1];
+                    for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+                        System.arraycopy(itemValues[itemIdx], 0, itemVectors[itemIdx], 0, numItemFactors);
+                        itemVectors[itemIdx][numItemFactors] = getItemScoringBias(itemIdx);
+                    }
+                    long startTime = System.currentTimeMillis();
+                    index.build(itemVectors);
+                    LOG.info("built " + retrieval + " index over " + numItems + " items in "
+                            + (System.currentTimeMillis() - startTime) + " ms");
+                    itemIndexRetrieval = retrieval;
+                    itemIndex = index;
+                }
+            }
+        }
+        return itemIndex;
+    }
+
     /**
      * Update current learning rate after each epoch <br>
      * <ol>
@@ -19,13 +19,17 @@ package net.librec.recommender;
 
 import net.librec.common.LibrecException;
 import net.librec.data.structure.*;
+import net.librec.eval.EvalStatistics;
 import net.librec.math.structure.DataSet;
+import net.librec.math.structure.MappedSequentialAccessSparseMatrix;
 import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
-import net.librec.recommender.item.KeyValue;
+import net.librec.math.structure.TopKHeap;
 import net.librec.recommender.item.RecommendedList;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Matrix Recommender
@@ -33,6 +37,16 @@ import java.util.*;
  * @author Keqiang Wang (sei.wkq2008@gmail.com)
  */
 public abstract class MatrixRecommender extends AbstractRecommender {
+    /**
+     * the maximum number of users scored together while ranking
+     */
+    private static final int RANKING_USER_BLOCK_SIZE = 32;
+
+    /**
+     * the number of scores buffered per ranking thread
+     */
+    private static final int RANKING_BUFFER_SIZE = 1 << 20;
+
     /**
      * trainMatrix
      */
@@ -88,6 +102,10 @@ public abstract class MatrixRecommender extends AbstractRecommender {
     protected void setup() throws LibrecException{
         super.setup();
         trainMatrix = (SequentialAccessSparseMatrix) getDataModel().getTrainDataSet();
+        if (trainMatrix instanceof MappedSequentialAccessSparseMatrix && isTrainMatrixModified()) {
+            LOG.info(getClass().getSimpleName() + " modifies the train matrix, the mapped train matrix is copied to the heap");
+            trainMatrix = trainMatrix.clone();
+        }
         testMatrix = (SequentialAccessSparseMatrix) getDataModel().getTestDataSet();
         validMatrix = (SequentialAccessSparseMatrix) getDataModel().getValidDataSet();
 
@@ -107,24 +125,33 @@ public abstract class MatrixRecommender extends AbstractRecommender {
         }
         globalMean = trainMatrix.mean();
 
-        int[] numDroppedItemsArray = new int[numUsers]; // for AUCEvaluator
         int maxNumTestItemsByUser = 0; //for idcg
         for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
-            numDroppedItemsArray[userIdx] = numItems - trainMatrix.row(userIdx).getNumEntries();
             int numTestItemsByUser = testMatrix.row(userIdx).getNumEntries();
             maxNumTestItemsByUser = maxNumTestItemsByUser < numTestItemsByUser ? numTestItemsByUser : maxNumTestItemsByUser;
         }
 
-        int[] itemPurchasedCount = new int[numItems]; // for NoveltyEvaluator
-        for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
-            itemPurchasedCount[itemIdx] = trainMatrix.column(itemIdx).getNumEntries()
-                    + testMatrix.column(itemIdx).getNumEntries();
-        }
-
-        conf.setInts("rec.eval.auc.dropped.num", numDroppedItemsArray);
         conf.setInt("rec.eval.key.test.max.num", maxNumTestItemsByUser); //for nDCGEvaluator
         conf.setInt("rec.eval.item.num", testMatrix.columnSize()); // for EntropyEvaluator
-        conf.setInts("rec.eval.item.purchase.num", itemPurchasedCount); // for NoveltyEvaluator
+
+        // for AUCEvaluator and NoveltyEvaluator, computed when they first ask for them
+        final SequentialAccessSparseMatrix trainSet = trainMatrix, testSet = testMatrix;
+        EvalStatistics statistics = context.getStatistics();
+        statistics.putLazy(EvalStatistics.NUM_DROPPED_ITEMS, () -> {
+            int[] numDroppedItemsArray = new int[numUsers];
+            for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
+                numDroppedItemsArray[userIdx] = numItems - trainSet.row(userIdx).getNumEntries();
+            }
+            return numDroppedItemsArray;
+        });
+        statistics.putLazy(EvalStatistics.ITEM_PURCHASE_COUNTS, () -> {
+            int[] itemPurchasedCount = new int[numItems];
+            for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
+                itemPurchasedCount[itemIdx] = trainSet.column(itemIdx).getNumEntries()
+                        + testSet.column(itemIdx).getNumEntries();
+            }
+            return itemPurchasedCount;
+        });
     }
 
     /**
@@ -155,42 +182,70 @@ public abstract class MatrixRecommender extends AbstractRecommender {
 
         int numDataEntries = dataList.size();
         RecommendedList recommendedList = new RecommendedList(numUsers);
-        List<Integer> contextList = new ArrayList<>();
         for (int contextIdx = 0; contextIdx < numDataEntries; ++contextIdx) {
-            contextList.add(contextIdx);
             recommendedList.addList(new ArrayList<>());
         }
 
-        contextList.parallelStream().forEach((Integer contextIdx) -> {
-            BaseRankingDataEntry baseRankingDataEntry = (BaseRankingDataEntry) dataList.getDataEntry(contextIdx);
-            int userIdx = baseRankingDataEntry.getUserId();
+        // every worker thread reuses one score buffer for a block of users and one bounded
+        // heap, so that only the topN selected items of a user are kept
+        boolean batchRanking = isBatchScoringSupported();
+        int blockSize = getRankingUserBlockSize(numDataEntries);
+        int numBlocks = (numDataEntries + blockSize - 1) / blockSize;
+        int heapCapacity = Math.min(topN, numItems);
+        ThreadLocal<double[][]> scoresBuffer = ThreadLocal.withInitial(() -> new double[blockSize][numItems]);
+        ThreadLocal<TopKHeap> topKHeapBuffer = ThreadLocal.withInitial(() -> new TopKHeap(heapCapacity));
+
+        try {
+            IntStream.range(0, numBlocks).parallel().forEach(blockIdx -> {
+                int fromContextIdx = blockIdx * blockSize;
+                int toContextIdx = Math.min(numDataEntries, fromContextIdx + blockSize);
+                int[] userIndices = new int[toContextIdx - fromContextIdx];
+                for (int contextIdx = fromContextIdx; contextIdx < toContextIdx; ++contextIdx) {
+                    BaseRankingDataEntry baseRankingDataEntry = (BaseRankingDataEntry) dataList.getDataEntry(contextIdx);
+                    userIndices[contextIdx - fromContextIdx] = baseRankingDataEntry.getUserId();
+                }
 
-            int[] items = trainMatrix.row(userIdx).getIndices();
-            List<KeyValue<Integer, Double>> itemValueList = new ArrayList<>(numItems);
-            for (int itemIdx = 0, trainItemIndex = 0; itemIdx < numItems; ++itemIdx) {
-                if (trainItemIndex < items.length && items[trainItemIndex] == itemIdx) {
-                    trainItemIndex++;
-                    continue;
+                double[][] scores = scoresBuffer.get();
+                if (batchRanking) {
+                    try {
+                        predictAllItems(userIndices, scores);
+                    } catch (LibrecException e) {
+                        LOG.error("failed to predict the scores of users " + Arrays.toString(userIndices), e);
+                        throw new IllegalStateException(e);
+                    }
                 }
 
-                double predictRating = 0;
-                try {
-                    predictRating = predict(userIdx, itemIdx);
-                } catch (LibrecException e) {
-                    System.out.println(userIdx + ", " + itemIdx + ": "+ predictRating);
-                    e.printStackTrace();
-                } catch (Exception e) {
-                    System.out.println(userIdx + ", " + itemIdx + ": "+ predictRating);
-                    e.printStackTrace();
+                TopKHeap topKHeap = topKHeapBuffer.get();
+                for (int contextIdx = fromContextIdx; contextIdx < toContextIdx; ++contextIdx) {
+                    int userIdx = userIndices[contextIdx - fromContextIdx];
+                    double[] userScores = scores[contextIdx - fromContextIdx];
+                    if (batchRanking) {
+                        for (int trainItemIdx : trainMatrix.row(userIdx).getIndices()) {
+                            userScores[trainItemIdx] = Double.NaN;
+                        }
+                    } else {
+                        predictUnratedItems(userIdx, userScores);
+                    }
+
+                    topKHeap.clear();
+                    for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
+                        double score = userScores[itemIdx];
+                        if (!Double.isNaN(score)) {
+                            topKHeap.offer(itemIdx, score);
+                        }
+                    }
+                    recommendedList.setTopNList(contextIdx, topKHeap);
                 }
-                if (Double.isNaN(predictRating)) {
-                    continue;
+            });
+        } catch (IllegalStateException e) {
+            // rethrow the failure of a prediction
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof LibrecException) {
+                    throw (LibrecException) cause;
                 }
-                itemValueList.add(new KeyValue<>(itemIdx, predictRating));
             }
-            recommendedList.setList(contextIdx, itemValueList);
-            recommendedList.topNRankByIndex(contextIdx, topN);
-        });
+            throw e;
+        }
 
         if (recommendedList.size() == 0) {
             throw new IndexOutOfBoundsException("No item is recommended, " +
@@ -230,17 +285,30 @@ public abstract class MatrixRecommender extends AbstractRecommender {
     public RecommendedList recommendRating(LibrecDataList<AbstractBaseDataEntry> dataList) throws LibrecException {
         int numDataEntries = dataList.size();
         RecommendedList recommendedList = new RecommendedList(numDataEntries);
+        boolean batchRating = isBatchScoringSupported();
         for (int contextIdx = 0; contextIdx < numDataEntries; ++contextIdx) {
             recommendedList.addList(new ArrayList<>());
             BaseRatingDataEntry baseRatingDataEntry = (BaseRatingDataEntry) dataList.getDataEntry(contextIdx);
             int userIdx = baseRatingDataEntry.getUserId();
             int[] itemIdsArray = baseRatingDataEntry.getItemIdsArray();
-            for (int itemIdx : itemIdsArray) {
-                double predictRating = predict(userIdx, itemIdx, true);
-                if (Double.isNaN(predictRating)) {
-                    predictRating = globalMean;
+            if (batchRating) {
+                double[] predictRatings = new double[itemIdsArray.length];
+                predictBatch(userIdx, itemIdsArray, predictRatings);
+                for (int position = 0; position < itemIdsArray.length; position++) {
+                    double predictRating = bound(predictRatings[position]);
+                    if (Double.isNaN(predictRating)) {
+                        predictRating = globalMean;
+                    }
+                    recommendedList.add(contextIdx, itemIdsArray[position], predictRating);
+                }
+            } else {
+                for (int itemIdx : itemIdsArray) {
+                    double predictRating = predict(userIdx, itemIdx, true);
+                    if (Double.isNaN(predictRating)) {
+                        predictRating = globalMean;
+                    }
+                    recommendedList.add(contextIdx, itemIdx, predictRating);
                 }
-                recommendedList.add(contextIdx, itemIdx, predictRating);
             }
         }
 
@@ -273,13 +341,131 @@ public abstract class MatrixRecommender extends AbstractRecommender {
         double predictRating = predict(userIdx, itemIdx);
 
         if (bound) {
-            if (predictRating > maxRate) {
-                predictRating = maxRate;
-            } else if (predictRating < minRate) {
-                predictRating = minRate;
-            }
+            predictRating = bound(predictRating);
         }
 
         return predictRating;
     }
+
+    /**
+     * bound a prediction to the rating range [minRate, maxRate].
+     *
+     * @param predictRating predictive rating
+     * @return bounded predictive rating
+     */
+    protected double bound(double predictRating) {
+        if (predictRating > maxRate) {
+            return maxRate;
+        } else if (predictRating < minRate) {
+            return minRate;
+        }
+        return predictRating;
+    }
+
+    /**
+     * predict the scores of user userIdx on the given items, the batched form of
+     * {@link #predict(int, int)}. The default implementation calls
+     * {@link #predict(int, int)} for each item; recommenders with a faster kernel
+     * override it.
+     *
+     * @param userIdx user index
+     * @param items   item indices
+     * @param out     array receiving the predictions, {@code out[i]} for {@code items[i]}
+     * @throws LibrecException if error occurs during predicting
+     */
+    public void predictBatch(int userIdx, int[] items, double[] out) throws LibrecException {
+        for (int position = 0; position < items.length; position++) {
+            out[position] = predict(userIdx, items[position]);
+        }
+    }
+
+    /**
+     * predict the scores of user userIdx on all items.
+     *
+     * @param userIdx user index
+     * @param out     array of length at least numItems receiving the predictions
+     * @throws LibrecException if error occurs during predicting
+     */
+    public void predictAllItems(int userIdx, double[] out) throws LibrecException {
+        predictAllItems(new int[]{userIdx}, new double[][]{out});
+    }
+
+    /**
+     * predict the scores of a block of users on all items. Scoring several users at
+     * once lets implementations reuse each item block while it is in cache.
+     *
+     * @param userIndices user indices
+     * @param out         {@code out[k]} receives the predictions of {@code userIndices[k]}
+     * @throws LibrecException if error occurs during predicting
+     */
+    public void predictAllItems(int[] userIndices, double[][] out) throws LibrecException {
+        for (int blockUserIdx = 0; blockUserIdx < userIndices.length; ++blockUserIdx) {
+            int userIdx = userIndices[blockUserIdx];
+            double[] scores = out[blockUserIdx];
+            for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
+                scores[itemIdx] = predict(userIdx, itemIdx);
+            }
+        }
+    }
+
+    /**
+     * predict the scores of user userIdx on the items out of the train set, one by one.
+     * The train items are left NaN without being predicted, and an item whose prediction
+     * fails scores 0, so that one failure does not abort the ranking.
+     *
+     * @param userIdx user index
+     * @param scores  array of length at least numItems receiving the scores
+     */
+    private void predictUnratedItems(int userIdx, double[] scores) {
+        int[] trainItems = trainMatrix.row(userIdx).getIndices();
+        int trainPosition = 0;
+        for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
+            if (trainPosition < trainItems.length && trainItems[trainPosition] == itemIdx) {
+                scores[itemIdx] = Double.NaN;
+                trainPosition++;
+                continue;
+            }
+            try {
+                scores[itemIdx] = predict(userIdx, itemIdx);
+            } catch (LibrecException | RuntimeException e) {
+                LOG.warn("failed to predict the score of user " + userIdx + " on item " + itemIdx, e);
+                scores[itemIdx] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * the number of users scored together while ranking: bounded by the score buffer
+     * size, and small enough to leave every worker thread several blocks.
+     */
+    private int getRankingUserBlockSize(int numDataEntries) {
+        int blockSize = Math.min(RANKING_USER_BLOCK_SIZE, RANKING_BUFFER_SIZE / Math.max(numItems, 1));
+        blockSize = Math.min(blockSize, numDataEntries / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        return Math.max(1, blockSize);
+    }
+
+    /**
+     * whether {@link #predictBatch(int, int[], double[])} and
+     * {@link #predictAllItems(int[], double[][])} agree with {@link #predict(int, int)},
+     * and {@link #predict(int, int, boolean)} bounds predictions by {@link #bound(double)}.
+     * Recommenders with a batched scoring kernel satisfying both return true, then
+     * ratings are predicted and items ranked through the kernel. By default they are
+     * predicted one by one, skipping the train items of a user while ranking.
+     *
+     * @return true if batched scoring may be used
+     */
+    protected boolean isBatchScoringSupported() {
+        return false;
+    }
+
+    /**
+     * whether the recommender sets the entries of {@link #trainMatrix}. Recommenders
+     * returning true train on a copy on the heap of a train matrix mapped by
+     * {@code data.model.mapped.dir}, which is read-only.
+     *
+     * @return true if the train matrix is modified
+     */
+    protected boolean isTrainMatrixModified() {
+        return false;
+    }
 }
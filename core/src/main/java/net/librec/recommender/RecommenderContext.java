@@ -20,6 +20,7 @@ package net.librec.recommender;
 import net.librec.common.AbstractContext;
 import net.librec.conf.Configuration;
 import net.librec.data.DataModel;
+import net.librec.eval.EvalStatistics;
 import net.librec.similarity.RecommenderSimilarity;
 
 import java.util.HashMap;
@@ -38,6 +39,11 @@ public class RecommenderContext extends AbstractContext {
 
     protected Map<String, RecommenderSimilarity> similarities;
 
+    /**
+     * statistics of the train and test sets for the evaluators
+     */
+    protected EvalStatistics statistics = new EvalStatistics();
+
     public RecommenderContext(Configuration conf) {
         this.conf = conf;
     }
@@ -76,6 +82,13 @@ public class RecommenderContext extends AbstractContext {
         return similarities;
     }
 
+    /**
+     * @return the statistics of the train and test sets for the evaluators
+     */
+    public EvalStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * @param similarityKey the similarities to plus
      * @param similarity    the similarities to plus
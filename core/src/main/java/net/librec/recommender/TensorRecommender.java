@@ -19,16 +19,17 @@ package net.librec.recommender;
 
 import net.librec.common.LibrecException;
 import net.librec.data.structure.*;
+import net.librec.eval.EvalStatistics;
 import net.librec.job.progress.ProgressBar;
 import net.librec.math.structure.DataSet;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.math.structure.SparseTensor;
 import net.librec.math.structure.TensorEntry;
-import net.librec.recommender.item.KeyValue;
+import net.librec.math.structure.TopKHeap;
 import net.librec.recommender.item.RecommendedList;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Tensor Recommender
@@ -173,27 +174,36 @@ public abstract class TensorRecommender extends AbstractRecommender {
 
 
 
-        int[] numDroppedItemsArray = new int[numUsers]; // for AUCEvaluator
         int maxNumTestItemsByUser = 0; //for idcg
         for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
-            numDroppedItemsArray[userIdx] = numItems - trainMatrix.row(userIdx).getNumEntries();
             int numTestItemsByUser = testMatrix.row(userIdx).getNumEntries();
             maxNumTestItemsByUser = maxNumTestItemsByUser < numTestItemsByUser ? numTestItemsByUser : maxNumTestItemsByUser;
         }
 
-        int[] itemPurchasedCount = new int[numItems]; // for NoveltyEvaluator
-        for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
-            itemPurchasedCount[itemIdx] = trainMatrix.column(itemIdx).getNumEntries()
-                    + testMatrix.column(itemIdx).getNumEntries();
-        }
-
-        conf.setInts("rec.eval.auc.dropped.num", numDroppedItemsArray);
         conf.setInt("rec.eval.key.test.max.num", maxNumTestItemsByUser); //for nDCGEvaluator
         conf.setInt("rec.eval.item.num", testMatrix.columnSize()); // for EntropyEvaluator
-        conf.setInts("rec.eval.item.purchase.num", itemPurchasedCount); // for NoveltyEvaluator
+
+        // for AUCEvaluator and NoveltyEvaluator, computed when they first ask for them
+        final SequentialAccessSparseMatrix trainSet = trainMatrix, testSet = testMatrix;
+        EvalStatistics statistics = context.getStatistics();
+        statistics.putLazy(EvalStatistics.NUM_DROPPED_ITEMS, () -> {
+            int[] numDroppedItemsArray = new int[numUsers];
+            for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
+                numDroppedItemsArray[userIdx] = numItems - trainSet.row(userIdx).getNumEntries();
+            }
+            return numDroppedItemsArray;
+        });
+        statistics.putLazy(EvalStatistics.ITEM_PURCHASE_COUNTS, () -> {
+            int[] itemPurchasedCount = new int[numItems];
+            for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
+                itemPurchasedCount[itemIdx] = trainSet.column(itemIdx).getNumEntries()
+                        + testSet.column(itemIdx).getNumEntries();
+            }
+            return itemPurchasedCount;
+        });
 
         /**
-         * if you want to use and AUCEvaluator and nDCGEvaluator, please set rec.eval.auc.dropped.num arrays and rec.eval.key.test.max.num value like as AbstractRecommender.
+         * if you want to use and AUCEvaluator and nDCGEvaluator, please put the statistics of EvalStatistics and set rec.eval.key.test.max.num value like as MatrixRecommender.
          */
     }
 
@@ -229,23 +239,29 @@ public abstract class TensorRecommender extends AbstractRecommender {
      * @throws LibrecException if error occurs during recommending
      */
     public RecommendedList recommendRank(LibrecDataList<AbstractBaseDataEntry> dataList) throws LibrecException {
+
         int numDataEntries = dataList.size();
         RecommendedList recommendedList = new RecommendedList(numUsers);
-        List<Integer> contextList = new ArrayList<>();
         for (int contextIdx = 0; contextIdx < numDataEntries; ++contextIdx) {
-            contextList.add(contextIdx);
             recommendedList.addList(new ArrayList<>());
         }
 
-        contextList.parallelStream().forEach((Integer contextIdx) -> {
+        // every worker thread reuses one score buffer and one bounded heap, so that
+        // only the topN selected items of a user are kept
+        int heapCapacity = Math.min(topN, numItems);
+        ThreadLocal<double[]> scoresBuffer = ThreadLocal.withInitial(() -> new double[numItems]);
+        ThreadLocal<TopKHeap> topKHeapBuffer = ThreadLocal.withInitial(() -> new TopKHeap(heapCapacity));
+
+        IntStream.range(0, numDataEntries).parallel().forEach(contextIdx -> {
             BaseRankingDataEntry baseRankingDataEntry = (BaseRankingDataEntry) dataList.getDataEntry(contextIdx);
             int userIdx = baseRankingDataEntry.getUserId();
 
+            double[] scores = scoresBuffer.get();
             int[] items = trainMatrix.row(userIdx).getIndices();
-            List<KeyValue<Integer, Double>> itemValueList = new ArrayList<>();
             for (int itemIdx = 0, trainItemIndex = 0; itemIdx < numItems; ++itemIdx) {
                 if (trainItemIndex < items.length && items[trainItemIndex] == itemIdx) {
                     trainItemIndex++;
+                    scores[itemIdx] = Double.NaN;
                     continue;
                 }
 
@@ -255,13 +271,18 @@ public abstract class TensorRecommender extends AbstractRecommender {
                 } catch (LibrecException e) {
                     e.printStackTrace();
                 }
-                if (Double.isNaN(predictRating)) {
-                    continue;
+                scores[itemIdx] = predictRating;
+            }
+
+            TopKHeap topKHeap = topKHeapBuffer.get();
+            topKHeap.clear();
+            for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
+                double score = scores[itemIdx];
+                if (!Double.isNaN(score)) {
+                    topKHeap.offer(itemIdx, score);
                 }
-                itemValueList.add(new KeyValue<>(itemIdx, predictRating));
             }
-            recommendedList.setList(contextIdx, itemValueList);
-            recommendedList.topNRankByIndex(contextIdx, topN);
+            recommendedList.setTopNList(contextIdx, topKHeap);
         });
 
         if (recommendedList.size() == 0) {
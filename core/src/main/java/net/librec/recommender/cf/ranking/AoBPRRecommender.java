@@ -20,7 +20,6 @@ package net.librec.recommender.cf.ranking;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Maths;
-import net.librec.math.algorithm.Randoms;
 import net.librec.math.algorithm.Stats;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.MatrixEntry;
@@ -54,6 +53,11 @@ public class AoBPRRecommender extends MatrixFactorizationRecommender {
     private int[][] factorRanking;
     private double[] RankingPro;
 
+    /**
+     * cumulative sums of RankingPro, for drawing by binary search
+     */
+    private double[] rankingCumulativePro;
+
     private List<Set<Integer>> userItemsSet;
 
     @Override
@@ -73,106 +77,137 @@ public class AoBPRRecommender extends MatrixFactorizationRecommender {
             RankingPro[i] = Math.exp(-(i + 1) / lambdaItem);
             sum += RankingPro[i];
         }
+        rankingCumulativePro = new double[numItems];
+        double cumulativeSum = 0;
         for (int i = 0; i < numItems; i++) {
             RankingPro[i] /= sum;
+            cumulativeSum += RankingPro[i];
+            rankingCumulativePro[i] = cumulativeSum;
         }
     }
 
     @Override
     protected void trainModel() throws LibrecException {
-        userItemsSet = getUserItemsSet(trainMatrix);
-        List<Integer>[] dataLists = getTrainList(trainMatrix);
-        List<Integer> userTrainList = dataLists[0];
-        List<Integer> itemTrainList = dataLists[1];
-        int countIter = 0;
-
-        int maxSample = trainMatrix.size();
-
-        for (int iter = 1; iter <= numIterations; iter++) {
-
-            loss = 0.0d;
-            for (int s = 0; s < maxSample; s++) {
-                //update Ranking every |I|log|I|
-                if (countIter % loopNumber == 0) {
-                    updateRankingInFactor();
-                    countIter = 0;
-                }
-                countIter++;
-
-                // randomly draw (u, i, j)
-                int userIdx, posItemIdx, negItemIdx;
-                while (true) {
-                    int dataIdx = Randoms.uniform(numRates);
-                    userIdx = userTrainList.get(dataIdx);
-                    Set<Integer> itemSet = userItemsSet.get(userIdx);
-                    if (itemSet.size() == 0 || itemSet.size() == numItems)
-                        continue;
-
-                    posItemIdx = itemTrainList.get(dataIdx);
-
-                    do {
-                        //randoms get a r by exp(-r/lamda)
-                        int randomNegItemIndex = 0;
-                        do {
-                            randomNegItemIndex = Randoms.discrete(RankingPro);
-                        } while (randomNegItemIndex > numItems);
-
-                        //randoms get a f by p(f|c)
-                        double[] pfc = new double[numFactors];
-                        double sumfc = 0;
-                        for (int pfcFactprIdx = 0; pfcFactprIdx < numFactors; pfcFactprIdx++) {
-                            double tempAbsValue = Math.abs(userFactors.get(userIdx, pfcFactprIdx));
-                            sumfc += tempAbsValue * var[pfcFactprIdx];
-                            pfc[pfcFactprIdx] = tempAbsValue * var[pfcFactprIdx];
-                        }
-                        //normalization
-                        for (int pfcFactprIdx = 0; pfcFactprIdx < numFactors; pfcFactprIdx++) {
-                            pfc[pfcFactprIdx] /= sumfc;
+        openSamplerPool();
+        try {
+            userItemsSet = getUserItemsSet(trainMatrix);
+            List<Integer>[] dataLists = getTrainList(trainMatrix);
+            List<Integer> userTrainList = dataLists[0];
+            List<Integer> itemTrainList = dataLists[1];
+            int countIter = 0;
+
+            int maxSample = trainMatrix.size();
+
+            for (int iter = 1; iter <= numIterations; iter++) {
+
+                loss = 0.0d;
+                for (int s = 0; s < maxSample; ) {
+                    //update Ranking every |I|log|I|, between the samples trained in parallel
+                    if (countIter % loopNumber == 0) {
+                        updateRankingInFactor();
+                        countIter = 0;
+                    }
+                    int numSamples = Math.min(maxSample - s, loopNumber - countIter);
+                    countIter += numSamples;
+                    s += numSamples;
+
+                    trainSamples(numSamples, random -> {
+                        // randomly draw (u, i, j)
+                        int userIdx, posItemIdx, negItemIdx;
+                        while (true) {
+                            int dataIdx = random.nextInt(numRates);
+                            userIdx = userTrainList.get(dataIdx);
+                            Set<Integer> itemSet = userItemsSet.get(userIdx);
+                            if (itemSet.size() == 0 || itemSet.size() == numItems)
+                                continue;
+
+                            posItemIdx = itemTrainList.get(dataIdx);
+
+                            do {
+                                //randoms get a r by exp(-r/lamda)
+                                int randomNegItemIndex = 0;
+                                do {
+                                    randomNegItemIndex = discrete(rankingCumulativePro, random);
+                                } while (randomNegItemIndex > numItems);
+
+                                //randoms get a f by p(f|c)
+                                double[] pfc = new double[numFactors];
+                                double sumfc = 0;
+                                for (int pfcFactprIdx = 0; pfcFactprIdx < numFactors; pfcFactprIdx++) {
+                                    double tempAbsValue = Math.abs(userFactors.get(userIdx, pfcFactprIdx));
+                                    sumfc += tempAbsValue * var[pfcFactprIdx];
+                                    pfc[pfcFactprIdx] = sumfc;
+                                }
+                                int factorIdx = discrete(pfc, random);
+
+                                //get the r-1 in f item
+                                if (userFactors.get(userIdx, factorIdx) > 0) {
+                                    negItemIdx = factorRanking[factorIdx][randomNegItemIndex];
+                                } else {
+                                    negItemIdx = factorRanking[factorIdx][numItems - randomNegItemIndex - 1];
+                                }
+                            } while (itemSet.contains(negItemIdx));
+
+                            break;
                         }
-                        int factorIdx = Randoms.discrete(pfc);
 
-                        //get the r-1 in f item
-                        if (userFactors.get(userIdx, factorIdx) > 0) {
-                            negItemIdx = factorRanking[factorIdx][randomNegItemIndex];
-                        } else {
-                            negItemIdx = factorRanking[factorIdx][numItems - randomNegItemIndex - 1];
-                        }
-                    } while (itemSet.contains(negItemIdx));
+                        // update parameters
+                        double posPredictRating = predict(userIdx, posItemIdx);
+                        double negPredictRating = predict(userIdx, negItemIdx);
+                        double diffValue = posPredictRating - negPredictRating;
 
-                    break;
-                }
-
-                // update parameters
-                double posPredictRating = predict(userIdx, posItemIdx);
-                double negPredictRating = predict(userIdx, negItemIdx);
-                double diffValue = posPredictRating - negPredictRating;
+                        double sampleLoss = -Math.log(Maths.logistic(diffValue));
+                        double deriValue = logistic(-diffValue);
 
-                double lossValue = -Math.log(Maths.logistic(diffValue));
-                loss += lossValue;
+                        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                            double userFactorValue = userFactors.get(userIdx, factorIdx);
+                            double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
+                            double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
 
-                double deriValue = logistic(-diffValue);
+                            userFactors.plus(userIdx, factorIdx, learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
+                            itemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue));
+                            itemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue));
 
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    double userFactorValue = userFactors.get(userIdx, factorIdx);
-                    double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                    double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
-
-                    userFactors.plus(userIdx, factorIdx, learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
-                    itemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue));
-                    itemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue));
+                            sampleLoss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
+                        }
+                        return sampleLoss;
+                    });
+                }
 
-                    loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
+                if (isConverged(iter) && earlyStop) {
+                    break;
                 }
+                updateLRate(iter);
             }
+        } finally {
+            closeSamplerPool();
+        }
+    }
 
-            if (isConverged(iter) && earlyStop) {
-                break;
+    /**
+     * Draw i with probability cumulative[i] - cumulative[i - 1], as
+     * {@link net.librec.math.algorithm.Randoms#discrete(double[])} does for
+     * the probabilities, scaled by the last cumulative value.
+     *
+     * @param cumulative the cumulative unnormalized probabilities
+     * @param random     the generator
+     * @return a number from the discrete distribution
+     */
+    private static int discrete(double[] cumulative, SplittableRandom random) {
+        double r = random.nextDouble() * cumulative[cumulative.length - 1];
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] > r) {
+                high = middle;
+            } else {
+                low = middle + 1;
             }
-            updateLRate(iter);
         }
+        return low;
     }
 
-
     public List<Map.Entry<Integer, Double>> sortByDenseVectorValue(DenseVector vector) {
         List<Map.Entry<Integer, Double>> sortList = new ArrayList<>();
         for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
@@ -220,4 +255,9 @@ public class AoBPRRecommender extends MatrixFactorizationRecommender {
         }
         return new List[]{userTrainList, itemTrainList};
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
@@ -564,4 +564,9 @@ public class BNPPFRecommeder extends MatrixFactorizationRecommender {
             }
         }
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
@@ -21,12 +21,8 @@ import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Maths;
-import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.recommender.MatrixFactorizationRecommender;
-import org.apache.commons.lang.ArrayUtils;
-
-import java.util.*;
 
 /**
  * Rendle et al., <strong>BPR: Bayesian Personalized Ranking from Implicit Feedback</strong>, UAI 2009.
@@ -43,58 +39,70 @@ public class BPRRecommender extends MatrixFactorizationRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-
-        IntOpenHashSet[] userItemsSet = getUserItemsSet(trainMatrix);
-        int maxSample = trainMatrix.size();
-
-        for (int iter = 1; iter <= numIterations; iter++) {
-
-            loss = 0.0d;
-            for (int sampleCount = 0; sampleCount < maxSample; sampleCount++) {
-
-                // randomly draw (userIdx, posItemIdx, negItemIdx)
-                int userIdx, posItemIdx, negItemIdx;
-                while (true) {
-                    userIdx = Randoms.uniform(numUsers);
-                    Set<Integer> itemSet = userItemsSet[userIdx];
-                    if (itemSet.size() == 0 || itemSet.size() == numItems)
-                        continue;
-
-                    int[] itemIndices = trainMatrix.row(userIdx).getIndices();
-                    posItemIdx = itemIndices[Randoms.uniform(itemIndices.length)];
-                    do {
-                        negItemIdx = Randoms.uniform(numItems);
-                    } while (itemSet.contains(negItemIdx));
-
+        openSamplerPool();
+        try {
+            IntOpenHashSet[] userItemsSet = getUserItemsSet(trainMatrix);
+            int[][] userItemIndices = new int[numUsers][];
+            for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+                userItemIndices[userIdx] = trainMatrix.row(userIdx).getIndices();
+            }
+            double[][] userFactorValues = userFactors.getValues();
+            double[][] itemFactorValues = itemFactors.getValues();
+            int maxSample = trainMatrix.size();
+
+            for (int iter = 1; iter <= numIterations; iter++) {
+
+                loss = 0.0d;
+                trainSamples(maxSample, random -> {
+                    // randomly draw (userIdx, posItemIdx, negItemIdx)
+                    int userIdx, posItemIdx, negItemIdx;
+                    while (true) {
+                        userIdx = random.nextInt(numUsers);
+                        IntOpenHashSet itemSet = userItemsSet[userIdx];
+                        if (itemSet.size() == 0 || itemSet.size() == numItems)
+                            continue;
+
+                        int[] itemIndices = userItemIndices[userIdx];
+                        posItemIdx = itemIndices[random.nextInt(itemIndices.length)];
+                        do {
+                            negItemIdx = random.nextInt(numItems);
+                        } while (itemSet.contains(negItemIdx));
+
+                        break;
+                    }
+
+                    // update parameters
+                    double[] userFactorValue = userFactorValues[userIdx];
+                    double[] posItemFactorValue = itemFactorValues[posItemIdx];
+                    double[] negItemFactorValue = itemFactorValues[negItemIdx];
+                    double diffValue = 0.0d;
+                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                        diffValue += userFactorValue[factorIdx] * (posItemFactorValue[factorIdx] - negItemFactorValue[factorIdx]);
+                    }
+
+                    double sampleLoss = -Math.log(Maths.logistic(diffValue));
+                    double deriValue = Maths.logistic(-diffValue);
+
+                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                        double userValue = userFactorValue[factorIdx];
+                        double posItemValue = posItemFactorValue[factorIdx];
+                        double negItemValue = negItemFactorValue[factorIdx];
+
+                        userFactorValue[factorIdx] += learnRate * (deriValue * (posItemValue - negItemValue) - regUser * userValue);
+                        posItemFactorValue[factorIdx] += learnRate * (deriValue * userValue - regItem * posItemValue);
+                        negItemFactorValue[factorIdx] += learnRate * (deriValue * (-userValue) - regItem * negItemValue);
+
+                        sampleLoss += regUser * userValue * userValue + regItem * posItemValue * posItemValue + regItem * negItemValue * negItemValue;
+                    }
+                    return sampleLoss;
+                });
+                if (isConverged(iter) && earlyStop) {
                     break;
                 }
-
-                // update parameters
-                double posPredictRating = predict(userIdx, posItemIdx);
-                double negPredictRating = predict(userIdx, negItemIdx);
-                double diffValue = posPredictRating - negPredictRating;
-
-                double lossValue = -Math.log(Maths.logistic(diffValue));
-                loss += lossValue;
-
-                double deriValue = Maths.logistic(-diffValue);
-
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    double userFactorValue = userFactors.get(userIdx, factorIdx);
-                    double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                    double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
-
-                    userFactors.plus(userIdx, factorIdx, learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
-                    itemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue));
-                    itemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue));
-
-                    loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
-                }
+                updateLRate(iter);
             }
-            if (isConverged(iter) && earlyStop) {
-                break;
-            }
-            updateLRate(iter);
+        } finally {
+            closeSamplerPool();
         }
     }
 
@@ -110,4 +118,9 @@ public class BPRRecommender extends MatrixFactorizationRecommender {
         }
         return tempUserItemsSet;
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
@@ -258,4 +258,8 @@ public class BPoissMFRecommender extends MatrixFactorizationRecommender {
         }
     }
 
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
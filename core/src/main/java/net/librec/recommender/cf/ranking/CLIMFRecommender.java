@@ -160,4 +160,9 @@ public class CLIMFRecommender extends MatrixFactorizationRecommender {
         }
         return userItemsSet;
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
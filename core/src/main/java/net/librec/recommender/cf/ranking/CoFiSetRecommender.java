@@ -189,4 +189,14 @@ public class CoFiSetRecommender extends MatrixFactorizationRecommender {
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
         return super.predict(userIdx, itemIdx) + itemBiases.get(itemIdx);
     }
+
+    @Override
+    protected double getItemScoringBias(int itemIdx) {
+        return itemBiases.get(itemIdx);
+    }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
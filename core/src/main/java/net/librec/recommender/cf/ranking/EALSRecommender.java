@@ -3,10 +3,10 @@ package net.librec.recommender.cf.ranking;
 import it.unimi.dsi.fastutil.doubles.Double2DoubleOpenHashMap;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
+import net.librec.math.algorithm.LeastSquaresSolver;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SequentialSparseVector;
-import net.librec.math.structure.Vector;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
 import java.util.Date;
@@ -108,106 +108,114 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-        double[] usersPredictions = new double[numUsers];
-        double[] itemsPredictions = new double[numItems];
-        double weight;
-
-        // Init item factors cache Sq
-        DenseMatrix itemFactorsCache = new DenseMatrix(numFactors, numFactors);
-        //Init user factors cache Sp
-        DenseMatrix userFactorsCache;
-
-        userFactors = new DenseMatrix(numUsers, numFactors);
-        for (int iter = 1; iter <= numIterations; iter++) {
-            // Update the Sq cache
-            for (int factorIdx1 = 0; factorIdx1 < numFactors; factorIdx1++) {
-                for (int factorIdx2 = 0; factorIdx2 <= factorIdx1; factorIdx2++) {
-                    double value = 0;
-                    for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
-                        value += confidences[itemIdx] * itemFactors.get(itemIdx, factorIdx1) * itemFactors.get(itemIdx, factorIdx2);
+        LeastSquaresSolver solver = new LeastSquaresSolver(numFactors, numTrainThreads);
+        try {
+            userFactors = new DenseMatrix(numUsers, numFactors);
+            double[][] userValues = userFactors.getValues();
+            double[][] itemValues = itemFactors.getValues();
+            for (int iter = 1; iter <= numIterations; iter++) {
+                // Update the Sq cache
+                double[][] itemFactorsCache = solver.gramMatrix(itemFactors, confidences).getValues();
+                // Step 1: update user factors;
+                solver.forEachRow(numUsers, (userIdx, scratch) -> {
+                    SequentialSparseVector itemVector = trainMatrix.row(userIdx);
+                    int numEntries = itemVector.getNumEntries();
+                    // predictions of the rated items, by position in the row
+                    double[] itemsPredictions = scratch.buffer(numEntries);
+                    double[] userVector = userValues[userIdx];
+                    for (int position = 0; position < numEntries; position++) {
+                        itemsPredictions[position] = dot(userVector, itemValues[itemVector.getIndexAtPosition(position)]);
                     }
-                    itemFactorsCache.set(factorIdx1, factorIdx2, value);
-                    itemFactorsCache.set(factorIdx2, factorIdx1, value);
-                }
-            }
-            // Step 1: update user factors;
-            for (int userIdx = 0; userIdx < numUsers; userIdx++) {
-                SequentialSparseVector itemVector = trainMatrix.row(userIdx);
-                int itemIdx;
-                for (Vector.VectorEntry vectorEntry : itemVector) {
-                    itemIdx = vectorEntry.index();
-                    itemsPredictions[itemIdx] = userFactors.row(userIdx).dot(itemFactors.row(itemIdx));
-                }
 
-                for (int factorCacheIdx = 0; factorCacheIdx < numFactors; factorCacheIdx++) {
-                    double numer = 0, denom = regUser + itemFactorsCache.get(factorCacheIdx, factorCacheIdx);
+                    for (int factorCacheIdx = 0; factorCacheIdx < numFactors; factorCacheIdx++) {
+                        double numer = 0, denom = regUser + itemFactorsCache[factorCacheIdx][factorCacheIdx];
 
-                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        if (factorCacheIdx != factorIdx) {
-                            numer -= userFactors.get(userIdx, factorIdx) * itemFactorsCache.get(factorCacheIdx, factorIdx);
+                        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                            if (factorCacheIdx != factorIdx) {
+                                numer -= userVector[factorIdx] * itemFactorsCache[factorCacheIdx][factorIdx];
+                            }
                         }
-                    }
 
-                    for (Vector.VectorEntry vectorEntry : itemVector) {
-                        itemIdx = vectorEntry.index();
-                        weight = vectorEntry.get();
-                        itemsPredictions[itemIdx] -= userFactors.get(userIdx, factorCacheIdx) * itemFactors.get(itemIdx, factorCacheIdx);
-                        numer += (weight - (weight - confidences[itemIdx]) * itemsPredictions[itemIdx])
-                                * itemFactors.get(itemIdx, factorCacheIdx);
-                        denom += (weight - confidences[itemIdx]) * itemFactors.get(itemIdx, factorCacheIdx)
-                                * itemFactors.get(itemIdx, factorCacheIdx);
-                    }
+                        for (int position = 0; position < numEntries; position++) {
+                            int itemIdx = itemVector.getIndexAtPosition(position);
+                            double weight = itemVector.getAtPosition(position);
+                            double itemFactor = itemValues[itemIdx][factorCacheIdx];
+                            itemsPredictions[position] -= userVector[factorCacheIdx] * itemFactor;
+                            numer += (weight - (weight - confidences[itemIdx]) * itemsPredictions[position]) * itemFactor;
+                            denom += (weight - confidences[itemIdx]) * itemFactor * itemFactor;
+                        }
 
-                    //update puf
-                    userFactors.set(userIdx, factorCacheIdx, numer / denom);
-                    for (Vector.VectorEntry vectorEntry : itemVector) {
-                        itemIdx = vectorEntry.index();
-                        itemsPredictions[itemIdx] += userFactors.get(userIdx, factorCacheIdx) * itemFactors.get(itemIdx, factorCacheIdx);
+                        //update puf
+                        userVector[factorCacheIdx] = numer / denom;
+                        for (int position = 0; position < numEntries; position++) {
+                            itemsPredictions[position] += userVector[factorCacheIdx]
+                                    * itemValues[itemVector.getIndexAtPosition(position)][factorCacheIdx];
+                        }
+                    }
+                });
+                // Update the Sp cache
+                double[][] userFactorsCache = solver.gramMatrix(userFactors, null).getValues();
+                // Step 2: update item factors;
+                solver.forEachRow(numItems, (itemIdx, scratch) -> {
+                    SequentialSparseVector userVector = trainMatrix.viewColumn(itemIdx);
+                    int numEntries = userVector.getNumEntries();
+                    // predictions of the rating users, by position in the column
+                    double[] usersPredictions = scratch.buffer(numEntries);
+                    double[] itemVector = itemValues[itemIdx];
+                    for (int position = 0; position < numEntries; position++) {
+                        usersPredictions[position] = dot(userValues[userVector.getIndexAtPosition(position)], itemVector);
                     }
-                }
-            }
-            // Update the Sp cache
-            userFactorsCache = userFactors.transpose().times(userFactors);
-            // Step 2: update item factors;
-            for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
-                SequentialSparseVector userVector = trainMatrix.viewColumn(itemIdx);
-                int userIdx;
-                for (Vector.VectorEntry vectorEntry : userVector) {
-                    userIdx = vectorEntry.index();
-                    usersPredictions[userIdx] = userFactors.row(userIdx).dot(itemFactors.row(itemIdx));
-                }
 
-                for (int factorCacheIdx = 0; factorCacheIdx < numFactors; factorCacheIdx++) {
-                    double numer = 0, denom = confidences[itemIdx] * userFactorsCache.get(factorCacheIdx, factorCacheIdx) + regItem;
+                    for (int factorCacheIdx = 0; factorCacheIdx < numFactors; factorCacheIdx++) {
+                        double numer = 0, denom = confidences[itemIdx] * userFactorsCache[factorCacheIdx][factorCacheIdx] + regItem;
 
-                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        if (factorCacheIdx != factorIdx) {
-                            numer -= itemFactors.get(itemIdx, factorIdx) * userFactorsCache.get(factorIdx, factorCacheIdx);
+                        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                            if (factorCacheIdx != factorIdx) {
+                                numer -= itemVector[factorIdx] * userFactorsCache[factorIdx][factorCacheIdx];
+                            }
+                        }
+                        numer *= confidences[itemIdx];
+
+                        for (int position = 0; position < numEntries; position++) {
+                            double weight = userVector.getAtPosition(position);
+                            double userFactor = userValues[userVector.getIndexAtPosition(position)][factorCacheIdx];
+                            usersPredictions[position] -= userFactor * itemVector[factorCacheIdx];
+                            numer += (weight - (weight - confidences[itemIdx]) * usersPredictions[position]) * userFactor;
+                            denom += (weight - confidences[itemIdx]) * userFactor * userFactor;
                         }
-                    }
-                    numer *= confidences[itemIdx];
-
-                    for (Vector.VectorEntry vectorEntry : userVector) {
-                        userIdx = vectorEntry.index();
-                        weight = vectorEntry.get();
-                        usersPredictions[userIdx] -= userFactors.get(userIdx, factorCacheIdx) * itemFactors.get(itemIdx, factorCacheIdx);
-                        numer += (weight - (weight - confidences[itemIdx]) * usersPredictions[userIdx])
-                                * userFactors.get(userIdx, factorCacheIdx);
-                        denom += (weight - confidences[itemIdx]) * userFactors.get(userIdx, factorCacheIdx)
-                                * userFactors.get(userIdx, factorCacheIdx);
-                    }
 
-                    //update qif
-                    itemFactors.set(itemIdx, factorCacheIdx, numer / denom);
-                    for (Vector.VectorEntry vectorEntry : userVector) {
-                        userIdx = vectorEntry.index();
-                        usersPredictions[userIdx] += userFactors.get(userIdx, factorCacheIdx) * itemFactors.get(itemIdx, factorCacheIdx);
+                        //update qif
+                        itemVector[factorCacheIdx] = numer / denom;
+                        for (int position = 0; position < numEntries; position++) {
+                            usersPredictions[position] += userValues[userVector.getIndexAtPosition(position)][factorCacheIdx]
+                                    * itemVector[factorCacheIdx];
+                        }
                     }
+                });
+                if (verbose) {
+                    LOG.info(getClass() + " runs at iteration = " + iter + " " + new Date());
                 }
             }
-            if (verbose) {
-                LOG.info(getClass() + " runs at iteration = " + iter + " " + new Date());
-            }
+        } finally {
+            solver.shutdown();
+        }
+    }
+
+    private static double dot(double[] userVector, double[] itemVector) {
+        double sum = 0.0D;
+        for (int factorIdx = 0; factorIdx < userVector.length; factorIdx++) {
+            sum += userVector[factorIdx] * itemVector[factorIdx];
         }
+        return sum;
+    }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
+
+    @Override
+    protected boolean isTrainMatrixModified() {
+        return true;
     }
 }
@@ -21,7 +21,6 @@ import com.google.common.cache.LoadingCache;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Maths;
-import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.VectorBasedDenseVector;
 import net.librec.recommender.MatrixFactorizationRecommender;
@@ -80,112 +79,117 @@ public class GBPRRecommender extends MatrixFactorizationRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-        int maxSample = trainMatrix.size();
-        for (int iter = 1; iter <= numIterations; iter++) {
-            loss = 0.0d;
-            DenseMatrix tempUserFactors = new DenseMatrix(numUsers, numFactors);
-            DenseMatrix tempItemFactors = new DenseMatrix(numItems, numFactors);
-
-            for (int sample = 0; sample < maxSample; sample++) {
-                // uniformly draw (userIdx, posItemIdx, userGroupSet, negItemIdx)
-                int userIdx, posItemIdx, negItemIdx;
-                // userIdx
-                List<Integer> ratedItems = null; // row userIdx itemList
-                do {
-                    userIdx = Randoms.uniform(numUsers);
+        openSamplerPool();
+        try {
+            int maxSample = trainMatrix.size();
+            for (int iter = 1; iter <= numIterations; iter++) {
+                loss = 0.0d;
+                DenseMatrix tempUserFactors = new DenseMatrix(numUsers, numFactors);
+                DenseMatrix tempItemFactors = new DenseMatrix(numItems, numFactors);
+
+                trainSamples(maxSample, random -> {
+                    // uniformly draw (userIdx, posItemIdx, userGroupSet, negItemIdx)
+                    int userIdx, posItemIdx, negItemIdx;
+                    // userIdx
+                    List<Integer> ratedItems = null; // row userIdx itemList
+                    do {
+                        userIdx = random.nextInt(numUsers);
+                        try {
+                            ratedItems = userItemsCache.get(userIdx);
+                        } catch (ExecutionException e) {
+                            e.printStackTrace();
+                        }
+                    } while (ratedItems.size() == 0);
+
+                    // positive item
+                    posItemIdx = ratedItems.get(random.nextInt(ratedItems.size()));
+
+                    // users group Set
+                    List<Integer> posRatedUserList = null; // column i
                     try {
-                        ratedItems = userItemsCache.get(userIdx);
+                        posRatedUserList = itemUsersCache.get(posItemIdx);
                     } catch (ExecutionException e) {
                         e.printStackTrace();
                     }
-                } while (ratedItems.size() == 0);
+                    Set<Integer> groupSet = new HashSet<>();
+                    if (posRatedUserList.size() <= gLen) {
+                        groupSet.addAll(posRatedUserList);
+                    } else {
+                        groupSet.add(userIdx); // u in G
+                        while (groupSet.size() < gLen) {
+                            int tempUserIdx = posRatedUserList.get(random.nextInt(posRatedUserList.size()));
+                            if (!groupSet.contains(tempUserIdx))
+                                groupSet.add(tempUserIdx);
+                        }
+                    }
 
-                // positive item
-                posItemIdx = Randoms.random(ratedItems);
+                    double posPredictRating = predict(userIdx, posItemIdx, groupSet);
 
-                // users group Set
-                List<Integer> posRatedUserList = null; // column i
-                try {
-                    posRatedUserList = itemUsersCache.get(posItemIdx);
-                } catch (ExecutionException e) {
-                    e.printStackTrace();
-                }
-                Set<Integer> groupSet = new HashSet<>();
-                if (posRatedUserList.size() <= gLen) {
-                    groupSet.addAll(posRatedUserList);
-                } else {
-                    groupSet.add(userIdx); // u in G
-                    while (groupSet.size() < gLen) {
-                        int tempUserIdx = Randoms.random(posRatedUserList);
-                        if (!groupSet.contains(tempUserIdx))
-                            groupSet.add(tempUserIdx);
-                    }
-                }
+                    // negative item index
+                    do {
+                        negItemIdx = random.nextInt(numItems);
+                    } while (ratedItems.contains(negItemIdx));
 
-                double posPredictRating = predict(userIdx, posItemIdx, groupSet);
+                    double negPredictRating = predict(userIdx, negItemIdx);
 
-                // negative item index
-                do {
-                    negItemIdx = Randoms.uniform(numItems);
-                } while (ratedItems.contains(negItemIdx));
+                    double diffValue = posPredictRating - negPredictRating;
 
-                double negPredictRating = predict(userIdx, negItemIdx);
+                    double sampleLoss = -Math.log(Maths.logistic(diffValue));
 
-                double diffValue = posPredictRating - negPredictRating;
+                    double deriValue = Maths.logistic(-diffValue);
 
-                double lossValue = -Math.log(Maths.logistic(diffValue));
-                loss += lossValue;
+                    // update bi, bj
+                    double posBiasValue = itemBiases.get(posItemIdx);
+                    itemBiases.plus(posItemIdx, learnRate * (deriValue - regBias * posBiasValue));
+                    sampleLoss += regBias * posBiasValue * posBiasValue;
 
-                double deriValue = Maths.logistic(-diffValue);
+                    double negBiasValue = itemBiases.get(negItemIdx);
+                    itemBiases.plus(negItemIdx, learnRate * (-deriValue - regBias * negBiasValue));
+                    sampleLoss += regBias * negBiasValue * negBiasValue;
 
-                // update bi, bj
-                double posBiasValue = itemBiases.get(posItemIdx);
-                itemBiases.plus(posItemIdx, learnRate * (deriValue - regBias * posBiasValue));
-                loss += regBias * posBiasValue * posBiasValue;
+                    // update Pw
+                    double averageWeight = 1.0 / groupSet.size();
+                    double sumGroup[] = new double[numFactors];
+                    for (int groupUserIdx : groupSet) {
+                        double delta = groupUserIdx == userIdx ? 1 : 0;
+                        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                            double groupUserFactorValue = userFactors.get(groupUserIdx, factorIdx);
+                            double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
+                            double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
 
-                double negBiasValue = itemBiases.get(negItemIdx);
-                itemBiases.plus(negItemIdx, learnRate * (-deriValue - regBias * negBiasValue));
-                loss += regBias * negBiasValue * negBiasValue;
+                            double deltaGroup = rho * averageWeight * posItemFactorValue + (1 - rho) * delta * posItemFactorValue - delta * negItemFactorValue;
+                            tempUserFactors.plus(groupUserIdx, factorIdx, learnRate * (deriValue * deltaGroup - regUser * groupUserFactorValue));
+                            sampleLoss += regUser * groupUserFactorValue * groupUserFactorValue;
+                            sumGroup[factorIdx] += groupUserFactorValue;
+                        }
+                    }
 
-                // update Pw
-                double averageWeight = 1.0 / groupSet.size();
-                double sumGroup[] = new double[numFactors];
-                for (int groupUserIdx : groupSet) {
-                    double delta = groupUserIdx == userIdx ? 1 : 0;
+                    // update itemFactors
                     for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        double groupUserFactorValue = userFactors.get(groupUserIdx, factorIdx);
+                        double userFactorValue = userFactors.get(userIdx, factorIdx);
                         double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
                         double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
 
-                        double deltaGroup = rho * averageWeight * posItemFactorValue + (1 - rho) * delta * posItemFactorValue - delta * negItemFactorValue;
-                        tempUserFactors.plus(groupUserIdx, factorIdx, learnRate * (deriValue * deltaGroup - regUser * groupUserFactorValue));
-                        loss += regUser * groupUserFactorValue * groupUserFactorValue;
-                        sumGroup[factorIdx] += groupUserFactorValue;
+                        double posDelta = rho * averageWeight * sumGroup[factorIdx] + (1 - rho) * userFactorValue;
+                        tempItemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * posDelta - regItem * posItemFactorValue));
+                        sampleLoss += regItem * posItemFactorValue * posItemFactorValue;
+                        sampleLoss += regItem * negItemFactorValue * negItemFactorValue;
+                        double negDelta = -userFactorValue;
+                        tempItemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * negDelta - regItem * negItemFactorValue));
                     }
-                }
-
-                // update itemFactors
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    double userFactorValue = userFactors.get(userIdx, factorIdx);
-                    double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                    double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
-
-                    double posDelta = rho * averageWeight * sumGroup[factorIdx] + (1 - rho) * userFactorValue;
-                    tempItemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * posDelta - regItem * posItemFactorValue));
-                    loss += regItem * posItemFactorValue * posItemFactorValue;
-                    loss += regItem * negItemFactorValue * negItemFactorValue;
-                    double negDelta = -userFactorValue;
-                    tempItemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * negDelta - regItem * negItemFactorValue));
-                }
-            }
+                    return sampleLoss;
+                });
 
-            userFactors.assign(userFactors.plus(tempUserFactors));
-            itemFactors.assign(itemFactors.plus(tempItemFactors));
+                userFactors.assign(userFactors.plus(tempUserFactors));
+                itemFactors.assign(itemFactors.plus(tempItemFactors));
 
-            if (isConverged(iter) && earlyStop) {
-                break;
+                if (isConverged(iter) && earlyStop) {
+                    break;
+                }
+                updateLRate(iter);
             }
-            updateLRate(iter);
+        } finally {
+            closeSamplerPool();
         }
     }
 
@@ -205,4 +209,14 @@ public class GBPRRecommender extends MatrixFactorizationRecommender {
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
         return itemBiases.get(itemIdx) + super.predict(userIdx, itemIdx);
     }
+
+    @Override
+    protected double getItemScoringBias(int itemIdx) {
+        return itemBiases.get(itemIdx);
+    }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
@@ -19,13 +19,22 @@ package net.librec.recommender.cf.ranking;
 
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
+import net.librec.math.algorithm.AliasTable;
 import net.librec.math.algorithm.Gamma;
+import net.librec.math.algorithm.RandomStream;
 import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.VectorBasedDenseVector;
 import net.librec.recommender.MatrixProbabilisticGraphicalRecommender;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 
 /**
  * Latent Dirichlet Allocation for implicit feedback: Tom Griffiths, <strong>Gibbs sampling in the generative model of
@@ -36,11 +45,25 @@ import net.librec.recommender.MatrixProbabilisticGraphicalRecommender;
  * mentioned that, one way is to treat items as documents and ratings as words. We did not provide such an LDA
  * implementation for explicit ratings. Instead, we provide recommender {@code URP} as an alternative LDA model for
  * explicit ratings.
+ * <p>
+ * By default the topic of every token is sampled by the cumulative method, in O(K) per token. With
+ * {@code rec.topic.sampler=alias} it is sampled by the Metropolis-Hastings cycle of LightLDA: Jinhui Yuan et al.,
+ * <strong>LightLDA: Big Topic Models on Modest Computer Clusters</strong>, WWW 2015, in amortized O(1) per token,
+ * and the users are sampled on {@code rec.train.threads} threads.
  *
  * @author guoguibing and Keqiang Wang
  */
 @ModelData({"isRanking", "lda", "userTopicProbs", "topicItemProbs", "trainMatrix"})
 public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
+    /**
+     * sampler of the full conditional distribution by its cumulative probabilities
+     */
+    public static final String CUMULATIVE_SAMPLER = "cumulative";
+
+    /**
+     * Metropolis-Hastings sampler by proposals from alias tables
+     */
+    public static final String ALIAS_SAMPLER = "alias";
 
     /**
      * Dirichlet hyper-parameters of user-topic distribution: typical value is 50/K
@@ -101,6 +124,51 @@ public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
      */
     protected int numStats = 0;
 
+    /**
+     * sampler of the topics: {@link #CUMULATIVE_SAMPLER} or {@link #ALIAS_SAMPLER}
+     */
+    protected String sampler;
+
+    /**
+     * number of Metropolis-Hastings steps of each proposal per token
+     */
+    protected int numMHSteps;
+
+    /**
+     * number of threads of the alias sampler
+     */
+    protected int numSamplerThreads;
+
+    /**
+     * entry[u]: index of the first token of user u, entry[numUsers]: number of tokens
+     */
+    protected int[] userTokenStarts;
+
+    /**
+     * entry[n]: item of the n-th token
+     */
+    protected int[] tokenItems;
+
+    /**
+     * entry[i]: first slot of item i in the word proposals, entry[numItems]: number of tokens
+     */
+    protected int[] itemSlotStarts;
+
+    /**
+     * entry[n]: slot of the n-th token in the word proposals
+     */
+    protected int[] tokenSlots;
+
+    /**
+     * word proposals of the current sweep, numMHSteps per slot
+     */
+    protected int[] wordProposals;
+
+    /**
+     * generator the random streams of the sampler threads are split from
+     */
+    private RandomStream samplerRandom;
+
     /**
      * setup
      * init member method
@@ -133,8 +201,22 @@ public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
         beta = new VectorBasedDenseVector(numItems);
         beta.assign((index, value) -> initBeta);
 
+        sampler = conf.get("rec.topic.sampler", CUMULATIVE_SAMPLER);
+        if (!CUMULATIVE_SAMPLER.equals(sampler) && !ALIAS_SAMPLER.equals(sampler)) {
+            throw new LibrecException("unknown topic sampler: " + sampler);
+        }
+        numMHSteps = conf.getInt("rec.topic.mh.steps", 2);
+        numSamplerThreads = conf.getInt("rec.train.threads", 1);
+
+        int numTokens = 0;
+        for (MatrixEntry matrixEntry : trainMatrix) {
+            numTokens += (int) (matrixEntry.get());
+        }
+
         // The z_u,i are initialized to values in [0, K-1] to determine the initial state of the Markov chain.
-        topicAssignments = new int[trainMatrix.size()];
+        topicAssignments = new int[numTokens];
+        tokenItems = new int[numTokens];
+        userTokenStarts = new int[numUsers + 1];
         int topicAssignmentsIndex = 0;
         for (MatrixEntry matrixEntry : trainMatrix) {
             int userIdx = matrixEntry.row();
@@ -144,6 +226,7 @@ public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
                 int topicIdx = Randoms.uniform(numTopics); // 0 ~ k-1
 
                 // assign a topic t to pair (u, i)
+                tokenItems[topicAssignmentsIndex] = itemIdx;
                 topicAssignments[topicAssignmentsIndex++] = topicIdx;
 
                 // number of items of user u assigned to topic t.
@@ -156,14 +239,49 @@ public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
                 topicTokenNumbers.plus(topicIdx, 1);
             }
         }
+        // the tokens of a user are consecutive, in the order of trainMatrix
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userTokenStarts[userIdx + 1] = userTokenStarts[userIdx] + (int) userTokenNumbers.get(userIdx);
+        }
+
+        if (ALIAS_SAMPLER.equals(sampler)) {
+            // the word proposals of the tokens of an item are drawn from its alias table in consecutive slots
+            itemSlotStarts = new int[numItems + 1];
+            for (int itemIdx : tokenItems) {
+                itemSlotStarts[itemIdx + 1]++;
+            }
+            for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+                itemSlotStarts[itemIdx + 1] += itemSlotStarts[itemIdx];
+            }
+            int[] itemSlotCursors = new int[numItems];
+            tokenSlots = new int[numTokens];
+            for (int tokenIdx = 0; tokenIdx < numTokens; tokenIdx++) {
+                int itemIdx = tokenItems[tokenIdx];
+                tokenSlots[tokenIdx] = itemSlotStarts[itemIdx] + itemSlotCursors[itemIdx]++;
+            }
+            wordProposals = new int[numTokens * numMHSteps];
+        }
+        samplerRandom = null;
     }
 
     @Override
     protected void eStep() {
+        if (ALIAS_SAMPLER.equals(sampler)) {
+            sampleByAlias();
+        } else {
+            sampleByCumulative();
+        }
+    }
+
+    /**
+     * Gibbs sampling of the topic of every token from its full conditional distribution, by the cumulative method.
+     */
+    protected void sampleByCumulative() {
         double sumAlpha = alpha.sum();
         double sumBeta = beta.sum();
 
         // Gibbs sampling from full conditional distribution
+        double[] p = new double[numTopics];
         int topicAssignmentsIdx = 0;
         for (MatrixEntry matrixEntry : trainMatrix) {
             int userIdx = matrixEntry.row();
@@ -179,7 +297,6 @@ public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
                 topicTokenNumbers.plus(topicIdx, -1);
 
                 // do multinomial sampling via cumulative method:
-                double[] p = new double[numTopics];
                 for (topicIdx = 0; topicIdx < numTopics; topicIdx++) {
                     p[topicIdx] = (userTopicNumbers.get(userIdx, topicIdx) + alpha.get(topicIdx)) / (userTokenNumbers.get(userIdx)
                             + sumAlpha) * (topicItemNumbers.get(topicIdx, itemIdx) + beta.get(itemIdx))
@@ -208,6 +325,244 @@ public class LDARecommender extends MatrixProbabilisticGraphicalRecommender {
         }
     }
 
+    /**
+     * Metropolis-Hastings sampling of the topic of every token by the cycle of LightLDA: numMHSteps times, a
+     * topic is proposed from the item of the token, by an alias table built once per sweep, then from the user of
+     * the token, by the topic of another token of the user or by alpha, and accepted or rejected against the full
+     * conditional distribution.
+     * <p>
+     * The topic-item counts are kept as they are at the start of the sweep and updated at its end, as in the
+     * approximate distributed LDA of Newman et al. (JMLR 2009), so that the users are sampled on
+     * {@link #numSamplerThreads} threads over partitions of the tokens. The user-topic counts of a user are only
+     * changed by the thread sampling the user.
+     */
+    protected void sampleByAlias() {
+        double sumAlpha = alpha.sum();
+        double sumBeta = beta.sum();
+        int numTokens = topicAssignments.length;
+
+        if (samplerRandom == null) {
+            samplerRandom = new RandomStream(((long) Randoms.uniform(Integer.MAX_VALUE) << 31)
+                    ^ Randoms.uniform(Integer.MAX_VALUE));
+        }
+        int numThreads = Math.max(1, Math.min(numSamplerThreads, numTokens));
+        RandomStream[] itemRandoms = new RandomStream[numThreads];
+        RandomStream[] userRandoms = new RandomStream[numThreads];
+        for (int threadIdx = 0; threadIdx < numThreads; threadIdx++) {
+            itemRandoms[threadIdx] = samplerRandom.split();
+            userRandoms[threadIdx] = samplerRandom.split();
+        }
+
+        double[] topicAlphas = new double[numTopics];
+        for (int topicIdx = 0; topicIdx < numTopics; topicIdx++) {
+            topicAlphas[topicIdx] = alpha.get(topicIdx);
+        }
+        AliasTable alphaTable = new AliasTable(topicAlphas);
+        int[] lastAssignments = topicAssignments.clone();
+
+        ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+        try {
+            runPartitions(executor, numThreads, threadIdx -> drawWordProposals(
+                    partitionStart(itemSlotStarts, numItems, threadIdx, numThreads),
+                    partitionStart(itemSlotStarts, numItems, threadIdx + 1, numThreads),
+                    sumBeta, itemRandoms[threadIdx]));
+            runPartitions(executor, numThreads, threadIdx -> sampleUsers(
+                    partitionStart(userTokenStarts, numUsers, threadIdx, numThreads),
+                    partitionStart(userTokenStarts, numUsers, threadIdx + 1, numThreads),
+                    alphaTable, sumAlpha, sumBeta, userRandoms[threadIdx]));
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        // move the tokens of the sweep in the topic-item counts
+        for (int tokenIdx = 0; tokenIdx < numTokens; tokenIdx++) {
+            int lastTopicIdx = lastAssignments[tokenIdx];
+            int topicIdx = topicAssignments[tokenIdx];
+            if (topicIdx != lastTopicIdx) {
+                int itemIdx = tokenItems[tokenIdx];
+                topicItemNumbers.plus(lastTopicIdx, itemIdx, -1);
+                topicTokenNumbers.plus(lastTopicIdx, -1);
+                topicItemNumbers.plus(topicIdx, itemIdx, 1);
+                topicTokenNumbers.plus(topicIdx, 1);
+            }
+        }
+    }
+
+    /**
+     * Draw the word proposals of the tokens of the items in [fromItem, toItem), proportional to
+     * (n_ki + beta_i) / (n_k + sumBeta).
+     *
+     * @param fromItem first item
+     * @param toItem   item after the last one
+     * @param sumBeta  sum of beta
+     * @param random   random stream of the thread
+     */
+    private void drawWordProposals(int fromItem, int toItem, double sumBeta, RandomStream random) {
+        double[] weights = new double[numTopics];
+        for (int itemIdx = fromItem; itemIdx < toItem; itemIdx++) {
+            int fromSlot = itemSlotStarts[itemIdx] * numMHSteps;
+            int toSlot = itemSlotStarts[itemIdx + 1] * numMHSteps;
+            if (fromSlot == toSlot) {
+                continue;
+            }
+            for (int topicIdx = 0; topicIdx < numTopics; topicIdx++) {
+                weights[topicIdx] = wordProposal(topicIdx, itemIdx, beta.get(itemIdx), sumBeta);
+            }
+            AliasTable itemTable = new AliasTable(weights);
+            for (int slot = fromSlot; slot < toSlot; slot++) {
+                wordProposals[slot] = itemTable.sample(random);
+            }
+        }
+    }
+
+    /**
+     * Sample the topics of the tokens of the users in [fromUser, toUser).
+     *
+     * @param fromUser   first user
+     * @param toUser     user after the last one
+     * @param alphaTable alias table of alpha
+     * @param sumAlpha   sum of alpha
+     * @param sumBeta    sum of beta
+     * @param random     random stream of the thread
+     */
+    private void sampleUsers(int fromUser, int toUser, AliasTable alphaTable, double sumAlpha, double sumBeta,
+                             RandomStream random) {
+        for (int userIdx = fromUser; userIdx < toUser; userIdx++) {
+            int fromToken = userTokenStarts[userIdx];
+            int numUserTokens = userTokenStarts[userIdx + 1] - fromToken;
+            for (int tokenIdx = fromToken; tokenIdx < fromToken + numUserTokens; tokenIdx++) {
+                int itemIdx = tokenItems[tokenIdx];
+                double itemBeta = beta.get(itemIdx);
+                // the topic of the token in the topic-item counts, and in the user proposals
+                int lastTopicIdx = topicAssignments[tokenIdx];
+                userTopicNumbers.plus(userIdx, lastTopicIdx, -1);
+
+                int topicIdx = lastTopicIdx;
+                double topicProb = conditional(userIdx, itemIdx, topicIdx, lastTopicIdx, itemBeta, sumBeta);
+                int proposalSlot = tokenSlots[tokenIdx] * numMHSteps;
+                for (int stepIdx = 0; stepIdx < numMHSteps; stepIdx++) {
+                    // word proposal
+                    int proposalIdx = wordProposals[proposalSlot + stepIdx];
+                    if (proposalIdx != topicIdx) {
+                        double proposalProb = conditional(userIdx, itemIdx, proposalIdx, lastTopicIdx, itemBeta, sumBeta);
+                        double acceptance = proposalProb * wordProposal(topicIdx, itemIdx, itemBeta, sumBeta)
+                                / (topicProb * wordProposal(proposalIdx, itemIdx, itemBeta, sumBeta));
+                        if (acceptance >= 1.0 || random.nextDouble() < acceptance) {
+                            topicIdx = proposalIdx;
+                            topicProb = proposalProb;
+                        }
+                    }
+
+                    // user proposal, proportional to n_uk + alpha_k
+                    if (random.nextDouble() * (numUserTokens + sumAlpha) < numUserTokens) {
+                        proposalIdx = topicAssignments[fromToken + random.nextInt(numUserTokens)];
+                    } else {
+                        proposalIdx = alphaTable.sample(random);
+                    }
+                    if (proposalIdx != topicIdx) {
+                        double proposalProb = conditional(userIdx, itemIdx, proposalIdx, lastTopicIdx, itemBeta, sumBeta);
+                        double acceptance = proposalProb * userProposal(userIdx, topicIdx, lastTopicIdx)
+                                / (topicProb * userProposal(userIdx, proposalIdx, lastTopicIdx));
+                        if (acceptance >= 1.0 || random.nextDouble() < acceptance) {
+                            topicIdx = proposalIdx;
+                            topicProb = proposalProb;
+                        }
+                    }
+                }
+
+                userTopicNumbers.plus(userIdx, topicIdx, 1);
+                topicAssignments[tokenIdx] = topicIdx;
+            }
+        }
+    }
+
+    /**
+     * @return the unnormalized full conditional probability of topic k for a token of user u and item i, without
+     * the token, which is counted in topic lastTopicIdx of the topic-item counts
+     */
+    private double conditional(int userIdx, int itemIdx, int topicIdx, int lastTopicIdx, double itemBeta,
+                               double sumBeta) {
+        int self = topicIdx == lastTopicIdx ? 1 : 0;
+        return (userTopicNumbers.get(userIdx, topicIdx) + alpha.get(topicIdx))
+                * (topicItemNumbers.get(topicIdx, itemIdx) - self + itemBeta)
+                / (topicTokenNumbers.get(topicIdx) - self + sumBeta);
+    }
+
+    /**
+     * @return the unnormalized word proposal probability of topic k for a token of item i
+     */
+    private double wordProposal(int topicIdx, int itemIdx, double itemBeta, double sumBeta) {
+        return (topicItemNumbers.get(topicIdx, itemIdx) + itemBeta) / (topicTokenNumbers.get(topicIdx) + sumBeta);
+    }
+
+    /**
+     * @return the unnormalized user proposal probability of topic k for a token of user u, counting the token in
+     * topic lastTopicIdx
+     */
+    private double userProposal(int userIdx, int topicIdx, int lastTopicIdx) {
+        return userTopicNumbers.get(userIdx, topicIdx) + (topicIdx == lastTopicIdx ? 1 : 0) + alpha.get(topicIdx);
+    }
+
+    /**
+     * Split the indices into partitions of about the same number of tokens.
+     *
+     * @param tokenStarts   entry[j]: first token of index j, entry[numIndices]: number of tokens
+     * @param numIndices    number of indices
+     * @param partitionIdx  partition
+     * @param numPartitions number of partitions
+     * @return the first index of the partition
+     */
+    private static int partitionStart(int[] tokenStarts, int numIndices, int partitionIdx, int numPartitions) {
+        if (partitionIdx == numPartitions) {
+            return numIndices;
+        }
+        long firstToken = (long) tokenStarts[numIndices] * partitionIdx / numPartitions;
+        int low = 0, high = numIndices;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokenStarts[mid] < firstToken) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Run a task for every partition, on the executor if there are several.
+     *
+     * @param executor      executor of the partitions, null if there is one
+     * @param numPartitions number of partitions
+     * @param task          task of a partition
+     */
+    private static void runPartitions(ExecutorService executor, int numPartitions, IntConsumer task) {
+        if (executor == null) {
+            for (int partitionIdx = 0; partitionIdx < numPartitions; partitionIdx++) {
+                task.accept(partitionIdx);
+            }
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(numPartitions);
+        for (int partitionIdx = 0; partitionIdx < numPartitions; partitionIdx++) {
+            int taskPartitionIdx = partitionIdx;
+            futures.add(executor.submit(() -> task.accept(taskPartitionIdx)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+    }
+
     @Override
     protected void mStep() {
         double sumAlpha = alpha.sum();
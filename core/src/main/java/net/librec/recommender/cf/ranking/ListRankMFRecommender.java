@@ -194,4 +194,9 @@ public class ListRankMFRecommender extends MatrixFactorizationRecommender {
 
         return loss;
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
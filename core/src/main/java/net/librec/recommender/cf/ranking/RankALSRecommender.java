@@ -204,4 +204,9 @@ public class RankALSRecommender extends MatrixFactorizationRecommender {
 
         return list;
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
@@ -158,4 +158,8 @@ public class RankPMFRecommender extends MatrixFactorizationRecommender {
         return new DenseMatrix(values);
     }
 
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
@@ -128,4 +128,9 @@ public class RankSGDRecommender extends MatrixFactorizationRecommender {
         }
         return userItemsSet;
     }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
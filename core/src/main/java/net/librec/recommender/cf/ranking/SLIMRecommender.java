@@ -250,12 +250,12 @@ public class SLIMRecommender extends MatrixFactorizationRecommender {
         List<Map.Entry<Integer, Double>> tempItemSimList;
         if (knn > 0) {
             for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
-                Map<Integer, Double> similarityVector = similarityMatrix.row(itemIdx);
-                int vecSize = similarityVector.size();
+                SequentialSparseVector similarityVector = similarityMatrix.row(itemIdx);
+                int vecSize = similarityVector.getNumEntries();
                 if (knn < vecSize) {
-                    tempItemSimList = new ArrayList<>(similarityVector.size() + 1);
-                    for (Map.Entry<Integer, Double> ve : similarityVector.entrySet()) {
-                        tempItemSimList.add(new AbstractMap.SimpleImmutableEntry<>(ve.getKey(), ve.getValue()));
+                    tempItemSimList = new ArrayList<>(vecSize + 1);
+                    for (Vector.VectorEntry ve : similarityVector) {
+                        tempItemSimList.add(new AbstractMap.SimpleImmutableEntry<>(ve.index(), ve.get()));
                     }
 
                     tempItemSimList = Lists.sortListTopK(tempItemSimList, true, knn);
@@ -265,8 +265,10 @@ public class SLIMRecommender extends MatrixFactorizationRecommender {
                     }
                 } else {
                     if (vecSize > 0) {
-                        Set<Integer> simSet = similarityVector.keySet();
-                        itemNNs[itemIdx] = new HashSet<>(simSet);
+                        itemNNs[itemIdx] = new HashSet<>((int) (vecSize / 0.5));
+                        for (int simItemIdx : similarityVector.getIndices()) {
+                            itemNNs[itemIdx].add(simItemIdx);
+                        }
                     } else {
                         itemNNs[itemIdx] = new HashSet<>();
                     }
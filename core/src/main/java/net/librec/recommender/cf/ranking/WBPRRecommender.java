@@ -17,19 +17,15 @@
  */
 package net.librec.recommender.cf.ranking;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Maths;
-import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.VectorBasedDenseVector;
 import net.librec.recommender.MatrixFactorizationRecommender;
 import net.librec.util.Lists;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Gantner et al., <strong>Bayesian Personalized Ranking for Non-Uniformly Sampled Items</strong>, JMLR, 2012.
@@ -41,22 +37,24 @@ public class WBPRRecommender extends MatrixFactorizationRecommender {
     /**
      * user items Set
      */
-    private LoadingCache<Integer, Set<Integer>> userItemsSet;
+    private IntOpenHashSet[] userItemsSet;
 
     /**
-     * pre-compute and sort by item's popularity
+     * user items, sorted by index
      */
-    private List<Map.Entry<Integer, Double>> sortedItemPops;
+    private int[][] userItemIndices;
 
     /**
-     * cache each user's candidate items with probabilities
+     * pre-compute and sort by item's popularity
      */
-    private LoadingCache<Integer, List<Map.Entry<Integer, Double>>> cacheItemProbs;
+    private int[] sortedItems;
+    private double[] sortedItemPops;
 
     /**
-     * user-items cache, item-users cache
+     * the popularity summed over each user's candidate items, i.e. the items
+     * not rated by the user
      */
-    protected LoadingCache<Integer, List<Integer>> userItemsCache;
+    private double[] userCandidatePops;
 
     /**
      * items biases
@@ -68,11 +66,6 @@ public class WBPRRecommender extends MatrixFactorizationRecommender {
      */
     protected float regBias;
 
-    /**
-     * Guava cache configuration
-     */
-    protected static String cacheSpec;
-
     @Override
     protected void setup() throws LibrecException {
         super.setup();
@@ -82,98 +75,114 @@ public class WBPRRecommender extends MatrixFactorizationRecommender {
         itemBiases = new VectorBasedDenseVector(numItems);
         itemBiases.init(0.01);
 
-        cacheSpec = conf.get("guava.cache.spec", "maximumSize=200,expireAfterAccess=2m");
-        userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-        userItemsSet = trainMatrix.rowColumnsSetCache(cacheSpec);
-
         // pre-compute and sort by item's popularity
-        sortedItemPops = new ArrayList<>();
+        List<Map.Entry<Integer, Double>> itemPops = new ArrayList<>();
+        double sumPops = 0;
         for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
-            sortedItemPops.add(new AbstractMap.SimpleEntry<>(itemIdx, Double.valueOf(trainMatrix.column(itemIdx).getNumEntries())));
+            double popularity = trainMatrix.column(itemIdx).getNumEntries();
+            itemPops.add(new AbstractMap.SimpleEntry<>(itemIdx, popularity));
+            sumPops += popularity;
+        }
+        Lists.sortList(itemPops, true);
+        sortedItems = new int[numItems];
+        sortedItemPops = new double[numItems];
+        for (int position = 0; position < numItems; position++) {
+            sortedItems[position] = itemPops.get(position).getKey();
+            sortedItemPops[position] = itemPops.get(position).getValue();
         }
-        Lists.sortList(sortedItemPops, true);
 
-        // cache each user's candidate items with probabilities
-        cacheItemProbs = getCacheItemProbs();
+        // the candidate items of each user are sampled with probabilities of their popularity over this sum
+        userItemsSet = new IntOpenHashSet[numUsers];
+        userItemIndices = new int[numUsers][];
+        userCandidatePops = new double[numUsers];
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userItemIndices[userIdx] = trainMatrix.row(userIdx).getIndices();
+            userItemsSet[userIdx] = new IntOpenHashSet(userItemIndices[userIdx]);
+            double ratedPops = 0;
+            for (int itemIdx : userItemIndices[userIdx]) {
+                ratedPops += trainMatrix.column(itemIdx).getNumEntries();
+            }
+            userCandidatePops[userIdx] = sumPops - ratedPops;
+        }
     }
 
     @Override
     protected void trainModel() throws LibrecException {
-        int maxSample = trainMatrix.size();
-        for (int iter = 1; iter <= numIterations; iter++) {
-
-            loss = 0.0d;
-            for (int sampleCount = 0; sampleCount < maxSample; sampleCount++) {
-                // randomly draw (userIdx, posItemIdx, negItemIdx)
-                int userIdx = 0, posItemIdx = 0, negItemIdx = 0;
-                List<Integer> ratedItems = null;
-                List<Map.Entry<Integer, Double>> itemProbs = null;
-
-                while (true) {
-                    userIdx = Randoms.uniform(numUsers);
-                    try {
-                        ratedItems = userItemsCache.get(userIdx);
-                    } catch (ExecutionException e) {
-                        e.printStackTrace();
-                    }
-
-                    if (ratedItems.size() == 0)
-                        continue;
-
-                    posItemIdx = Randoms.random(ratedItems);
-
-                    // sample j by popularity (probability)
-                    try {
-                        itemProbs = cacheItemProbs.get(userIdx);
-                    } catch (ExecutionException e) {
-                        e.printStackTrace();
-                    }
-
-                    double rand = Randoms.random();
-                    double sum = 0;
-                    for (Map.Entry<Integer, Double> itemProb : itemProbs) {
-                        sum += itemProb.getValue();
-                        if (sum >= rand) {
-                            negItemIdx = itemProb.getKey();
-                            break;
+        openSamplerPool();
+        try {
+            int maxSample = trainMatrix.size();
+            for (int iter = 1; iter <= numIterations; iter++) {
+
+                loss = 0.0d;
+                trainSamples(maxSample, random -> {
+                    // randomly draw (userIdx, posItemIdx, negItemIdx)
+                    int userIdx = 0, posItemIdx = 0, negItemIdx = 0;
+                    int[] ratedItems = null;
+
+                    while (true) {
+                        userIdx = random.nextInt(numUsers);
+                        ratedItems = userItemIndices[userIdx];
+
+                        if (ratedItems.length == 0)
+                            continue;
+
+                        posItemIdx = ratedItems[random.nextInt(ratedItems.length)];
+
+                        // sample j by popularity (probability) among the items not rated; if rounding
+                        // keeps the sum below rand, j is the last of these candidates
+                        IntOpenHashSet ratedItemsSet = userItemsSet[userIdx];
+                        double rand = random.nextDouble() * userCandidatePops[userIdx];
+                        double sum = 0;
+                        for (int position = 0; position < numItems; position++) {
+                            int itemIdx = sortedItems[position];
+                            double popularity = sortedItemPops[position];
+                            if (popularity > 0 && !ratedItemsSet.contains(itemIdx)) {
+                                negItemIdx = itemIdx;
+                                sum += popularity;
+                                if (sum >= rand) {
+                                    break;
+                                }
+                            }
                         }
-                    }
 
-                    break;
-                }
+                        break;
+                    }
 
-                // update parameters
-                double posPredictRating = predict(userIdx, posItemIdx);
-                double negPredictRating = predict(userIdx, negItemIdx);
-                double diffValue = posPredictRating - negPredictRating;
+                    // update parameters
+                    double posPredictRating = predict(userIdx, posItemIdx);
+                    double negPredictRating = predict(userIdx, negItemIdx);
+                    double diffValue = posPredictRating - negPredictRating;
 
-                double lossValue = -Math.log(Maths.logistic(diffValue));
-                loss += lossValue;
-                double deriValue = Maths.logistic(-diffValue);
+                    double sampleLoss = -Math.log(Maths.logistic(diffValue));
+                    double deriValue = Maths.logistic(-diffValue);
 
-                // update bias
-                double posItemBiasValue = itemBiases.get(posItemIdx), negItemBiasValue = itemBiases.get(negItemIdx);
-                itemBiases.plus(posItemIdx, learnRate * (deriValue - regBias * posItemBiasValue));
-                itemBiases.plus(negItemIdx, learnRate * (-deriValue - regBias * negItemBiasValue));
-                loss += regBias * (posItemBiasValue * posItemBiasValue + negItemBiasValue * negItemBiasValue);
+                    // update bias
+                    double posItemBiasValue = itemBiases.get(posItemIdx), negItemBiasValue = itemBiases.get(negItemIdx);
+                    itemBiases.plus(posItemIdx, learnRate * (deriValue - regBias * posItemBiasValue));
+                    itemBiases.plus(negItemIdx, learnRate * (-deriValue - regBias * negItemBiasValue));
+                    sampleLoss += regBias * (posItemBiasValue * posItemBiasValue + negItemBiasValue * negItemBiasValue);
 
-                // update user/item vectors
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    double userFactorValue = userFactors.get(userIdx, factorIdx);
-                    double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                    double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
+                    // update user/item vectors
+                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                        double userFactorValue = userFactors.get(userIdx, factorIdx);
+                        double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
+                        double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
 
-                    userFactors.plus(userIdx, factorIdx, learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
-                    itemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue));
-                    itemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue));
+                        userFactors.plus(userIdx, factorIdx, learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
+                        itemFactors.plus(posItemIdx, factorIdx, learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue));
+                        itemFactors.plus(negItemIdx, factorIdx, learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue));
 
-                    loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
+                        sampleLoss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
+                    }
+                    return sampleLoss;
+                });
+                if (isConverged(iter) && earlyStop) {
+                    break;
                 }
+                updateLRate(iter);
             }
-            if (isConverged(iter) && earlyStop) {
-                break;
-            }
-            updateLRate(iter);
+        } finally {
+            closeSamplerPool();
         }
     }
 
@@ -189,41 +198,13 @@ public class WBPRRecommender extends MatrixFactorizationRecommender {
         return itemBiases.get(itemIdx) + super.predict(userIdx, itemIdx);
     }
 
-    /**
-     * cache each user's candidate items with probabilities
-     *
-     * @return cache each user's candidate items with probabilities
-     */
-    private LoadingCache<Integer, List<Map.Entry<Integer, Double>>> getCacheItemProbs() {
-        LoadingCache<Integer, List<Map.Entry<Integer, Double>>> cache = CacheBuilder.from(cacheSpec).build(new CacheLoader<Integer, List<Map.Entry<Integer, Double>>>() {
-
-            @Override
-            public List<Map.Entry<Integer, Double>> load(Integer u) throws Exception {
-                List<Map.Entry<Integer, Double>> itemProbs = new ArrayList<>();
-
-                Set<Integer> ratedItemsSet = userItemsSet.get(u);
-
-                // filter candidate items
-                double sum = 0;
-                for (Map.Entry<Integer, Double> itemPop : sortedItemPops) {
-                    Integer itemIdx = itemPop.getKey();
-                    double popularity = itemPop.getValue();
-
-                    if (!ratedItemsSet.contains(itemIdx) && popularity > 0) {
-                        // make a clone to prevent bugs from normalization
-                        itemProbs.add(itemPop);
-                        sum += popularity;
-                    }
-                }
-
-                // normalization
-                for (Map.Entry<Integer, Double> itemProb : itemProbs) {
-                    itemProb.setValue(itemProb.getValue() / sum);
-                }
+    @Override
+    protected double getItemScoringBias(int itemIdx) {
+        return itemBiases.get(itemIdx);
+    }
 
-                return itemProbs;
-            }
-        });
-        return cache;
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
     }
 }
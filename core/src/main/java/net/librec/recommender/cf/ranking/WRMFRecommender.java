@@ -20,12 +20,11 @@ package net.librec.recommender.cf.ranking;
 import it.unimi.dsi.fastutil.doubles.Double2DoubleOpenHashMap;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
+import net.librec.math.algorithm.LeastSquaresSolver;
 import net.librec.math.structure.*;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 
 /**
  * <h3>WRMF: Weighted Regularized Matrix Factorization.</h3>
@@ -73,105 +72,62 @@ public class WRMFRecommender extends MatrixFactorizationRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-        // To be consistent with the symbols in the paper
-        DenseMatrix X = userFactors, Y = itemFactors;
+        LeastSquaresSolver solver = new LeastSquaresSolver(numFactors, numTrainThreads);
+        try {
+            // the train matrix holds c - 1, so that the normal equations of user u are
+            // (Y'Y + Y'(Cu - I)Y + lambda I) xu = Y'Cu pu
+            LeastSquaresSolver.Loss userLoss = new ConfidenceLoss(regUser);
+            LeastSquaresSolver.Loss itemLoss = new ConfidenceLoss(regItem);
+
+            for (int iter = 1; iter <= numIterations; iter++) {
+                // Step 1: update user factors;
+                solver.solve(trainMatrix, false, itemFactors, solver.gramMatrix(itemFactors, null), userFactors, userLoss);
+
+                // Step 2: update item factors;
+                solver.solve(trainMatrix, true, userFactors, solver.gramMatrix(userFactors, null), itemFactors, itemLoss);
+
+                if (verbose) {
+                    LOG.info(getClass() + " runs at iteration = " + iter + " " + new Date());
+                }
+            }
+        } finally {
+            solver.shutdown();
+        }
+    }
 
-//        DenseMatrix factorMatrix = new DenseMatrix(numFactors, numFactors);
-//        DenseVector userFactorVector;
-//        DenseVector itemFactorVector;
+    /**
+     * the loss weighting the observed entries by their confidence
+     */
+    private static class ConfidenceLoss implements LeastSquaresSolver.Loss {
+        private final double regularization;
 
-        List<Integer> userList = new ArrayList<>(numUsers);
-        List<Integer> itemList = new ArrayList<>(numItems);
-        for (int userIndex=0; userIndex <  numUsers; userIndex++){
-            userList.add(userIndex);
+        private ConfidenceLoss(double regularization) {
+            this.regularization = regularization;
         }
 
-        for (int itemIndex=0; itemIndex <  numItems; itemIndex++){
-            itemList.add(itemIndex);
+        @Override
+        public double confidence(double value) {
+            return value;
         }
 
-        for (int iter = 1; iter <= numIterations; iter++) {
-            // Step 1: update user factors;
-            DenseMatrix YtY = Y.transpose().times(Y);
-            userList.parallelStream().forEach(userIndex->{
-//            for (int userIndex = 0; userIndex < numUsers; userIndex++) {
-                DenseVector itemFactorVector;
-                SequentialSparseVector itemRatingVector = trainMatrix.row(userIndex);
-                DenseMatrix factorMatrix = new DenseMatrix(numFactors, numFactors);
-
-                DenseVector YtCuPu = new VectorBasedDenseVector(numFactors);
-                for (Vector.VectorEntry vectorEntry : itemRatingVector) {
-                    int itemIndex = vectorEntry.index();
-                    double weight = vectorEntry.get() + 1.0D;
-                    itemFactorVector = itemFactors.row(itemIndex);
-                    for (int factorIndex = 0; factorIndex < numFactors; factorIndex++) {
-                        YtCuPu.plus(factorIndex, itemFactorVector.get(factorIndex) * weight);
-                    }
-                }
-
-                factorMatrix.assign((rowIndex, columnIndex, value) -> YtY.get(rowIndex, columnIndex) + regUser);
-
-                for (Vector.VectorEntry vectorEntry : itemRatingVector) {
-                    int itemIndex = vectorEntry.index();
-                    double weight = vectorEntry.get();
-                    itemFactorVector = itemFactors.row(itemIndex);
-                    for (int rowIndex = 0; rowIndex < numFactors; rowIndex++) {
-                        double temp = itemFactorVector.get(rowIndex) * weight;
-                        for (int columnIndex = 0; columnIndex < numFactors; columnIndex++) {
-                            factorMatrix.plus(rowIndex, columnIndex, temp * itemFactorVector.get(columnIndex));
-                        }
-                    }
-                }
-
-                DenseMatrix Wu = factorMatrix.inverse();
-                DenseVector xu = Wu.times(YtCuPu);
-                // udpate user factors
-                X.set(userIndex, xu);
-            });
-
-            // Step 2: update item factors;
-            DenseMatrix XtX = X.transpose().times(X);
-
-            itemList.parallelStream().forEach(itemIndex->{
-//            for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
-
-                SequentialSparseVector userRatingVector = trainMatrix.viewColumn(itemIndex);
-                DenseVector XtCiPu = new VectorBasedDenseVector(numFactors);
-                DenseMatrix factorMatrix = new DenseMatrix(numFactors, numFactors);
-                DenseVector userFactorVector;
-                for (Vector.VectorEntry vectorEntry : userRatingVector) {
-                    int userIndex = vectorEntry.index();
-                    double weight = vectorEntry.get() + 1.0D;
-                    userFactorVector = userFactors.row(userIndex);
-                    for (int factorIndex = 0; factorIndex < numFactors; factorIndex++) {
-                        XtCiPu.plus(factorIndex, userFactorVector.get(factorIndex) * weight);
-                    }
-                }
-
-                factorMatrix.assign((rowIndex, columnIndex, value) -> XtX.get(rowIndex, columnIndex) + regItem);
-
-                for (Vector.VectorEntry vectorEntry : userRatingVector) {
-                    int userIndex = vectorEntry.index();
-                    double weight = vectorEntry.get();
-                    userFactorVector = userFactors.row(userIndex);
-                    for (int rowIndex = 0; rowIndex < numFactors; rowIndex++) {
-                        double temp = userFactorVector.get(rowIndex) * weight;
-                        for (int columnIndex = 0; columnIndex < numFactors; columnIndex++) {
-                            factorMatrix.plus(rowIndex, columnIndex, temp * userFactorVector.get(columnIndex));
-                        }
-                    }
-                }
+        @Override
+        public double target(double value) {
+            return value + 1.0D;
+        }
 
-                DenseMatrix Wi = factorMatrix.inverse();
+        @Override
+        public double regularization(int rowIdx, int numEntries) {
+            return regularization;
+        }
+    }
 
-                DenseVector yi = Wi.times(XtCiPu);
-                // udpate item factors
-                Y.set(itemIndex, yi);
-            });
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 
-            if (verbose) {
-                LOG.info(getClass() + " runs at iteration = " + iter + " " + new Date());
-            }
-        }
+    @Override
+    protected boolean isTrainMatrixModified() {
+        return true;
     }
 }
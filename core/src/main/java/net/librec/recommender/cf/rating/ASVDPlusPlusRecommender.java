@@ -151,4 +151,12 @@ public class ASVDPlusPlusRecommender extends BiasedMFRecommender {
         }
         return userItemsList;
     }
-}
\ No newline at end of file
+
+    /**
+     * predict(int, int) is not the factor product of BiasedMFRecommender
+     */
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return false;
+    }
+}
@@ -231,8 +231,8 @@ public class BPMFRecommender extends MatrixFactorizationRecommender {
             index++;
         }
 
-        DenseMatrix covar = hyperParameters.variance.plus((XX.transpose().times(XX)).times(ratingSigma)).inverse();
-        DenseVector mu = XX.transpose().times(ratingsReg).times(ratingSigma);
+        DenseMatrix covar = hyperParameters.variance.plus(XX.gram().times(ratingSigma)).inverse();
+        DenseVector mu = XX.transposeTimes(ratingsReg).times(ratingSigma);
         DenseVector result = mu.plus(hyperParameters.variance.times(hyperParameters.mu));
         mu.assign((index1, value) -> result.get(index1));
         mu = covar.times(mu);
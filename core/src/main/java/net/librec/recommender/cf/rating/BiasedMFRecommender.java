@@ -118,4 +118,19 @@ public class BiasedMFRecommender extends MatrixFactorizationRecommender {
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
         return userFactors.row(userIdx).dot(itemFactors.row(itemIdx)) + userBiases.get(userIdx) + itemBiases.get(itemIdx) + globalMean;
     }
+
+    @Override
+    protected double getUserScoringBias(int userIdx) {
+        return userBiases.get(userIdx) + globalMean;
+    }
+
+    @Override
+    protected double getItemScoringBias(int itemIdx) {
+        return itemBiases.get(itemIdx);
+    }
+
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
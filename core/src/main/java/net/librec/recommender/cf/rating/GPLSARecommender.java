@@ -267,4 +267,9 @@ public class GPLSARecommender extends MatrixProbabilisticGraphicalRecommender {
 
         return predictRating;
     }
+
+    @Override
+    protected boolean isTrainMatrixModified() {
+        return true;
+    }
 }
@@ -19,7 +19,7 @@ package net.librec.recommender.cf.rating;
 
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
-import net.librec.math.structure.*;
+import net.librec.math.algorithm.LeastSquaresSolver;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
 /**
@@ -38,57 +38,50 @@ import net.librec.recommender.MatrixFactorizationRecommender;
 public class MFALSRecommender extends MatrixFactorizationRecommender {
     @Override
     protected void trainModel() throws LibrecException {
-        DenseMatrix identify = BuildEyeMatrix(numFactors);
-        for (int iter = 1; iter <= numIterations; iter++) {
-            // fix item matrix M, solve user matrix U
-            for (int userIdx = 0; userIdx < numUsers; userIdx++) {
-                // number of items rated by user userIdx
-                SequentialSparseVector userRatingVec = trainMatrix.row(userIdx);
-                int numItemOfUser = userRatingVec.size();
-                DenseMatrix M = new DenseMatrix(numItemOfUser, numFactors);
-                DenseVector uservector = new VectorBasedDenseVector(numItemOfUser);
-                int index = 0;
-                for (Vector.VectorEntry ve : userRatingVec) {
-                    int itemIdx = ve.index();
-                    double rating = ve.get();
-                    M.set(index, itemFactors.row(itemIdx));
-                    uservector.set(index, rating);
-                    index += 1;
-                }
+        LeastSquaresSolver solver = new LeastSquaresSolver(numFactors, numTrainThreads);
+        try {
+            LeastSquaresSolver.Loss userLoss = new RatingLoss(regUser);
+            LeastSquaresSolver.Loss itemLoss = new RatingLoss(regItem);
+            for (int iter = 1; iter <= numIterations; iter++) {
+                // fix item matrix M, solve user matrix U
+                solver.solve(trainMatrix, false, itemFactors, null, userFactors, userLoss);
+                // fix user matrix U, solve item matrix M
+                solver.solve(trainMatrix, true, userFactors, null, itemFactors, itemLoss);
+            }
+        } finally {
+            solver.shutdown();
+        }
+    }
 
-                DenseMatrix A = M.transpose().times(M).plus(identify.times(regUser).times(numItemOfUser));
+    /**
+     * the squared loss of the observed ratings with weighted-lambda-regularization,
+     * the regularization growing with the number of ratings of a user or an item
+     */
+    private static class RatingLoss implements LeastSquaresSolver.Loss {
+        private final double regularization;
 
-                userFactors.set(userIdx, A.inverse().times(M.transpose().times(uservector)));
-            }
-            // fix user matrix U, solve item matrix M
-            for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
-                // latent factor of users that have rated item itemIdx
-                // number of users rate item j
-                SequentialSparseVector itemRatingVec = trainMatrix.column(itemIdx);
-                int numusers = itemRatingVec.size();
-                DenseMatrix U = new DenseMatrix(numusers, numFactors);
-                DenseVector itemvector = new VectorBasedDenseVector(numusers);
-                int index = 0;
-                for (Vector.VectorEntry ve : itemRatingVec) {
-                    int userIdx = ve.index();
-                    double rating = ve.get();
-                    U.set(index, userFactors.row(userIdx));
-                    itemvector.set(index, rating);
-                    index += 1;
-                }
+        private RatingLoss(double regularization) {
+            this.regularization = regularization;
+        }
 
-                DenseMatrix A = U.transpose().times(U).plus(identify.times(regItem).times(numusers));
-                itemFactors.set(itemIdx, A.inverse().times(U.transpose().times(itemvector)));
-            }
+        @Override
+        public double confidence(double value) {
+            return 1.0D;
+        }
+
+        @Override
+        public double target(double value) {
+            return value;
         }
-    }
 
-    protected DenseMatrix BuildEyeMatrix(int numDim) throws LibrecException {
-        double[][] values = new double[numDim][numDim];
-        for (int i=0; i<numDim; i++) {
-            values[i][i] = 1.0;
+        @Override
+        public double regularization(int rowIdx, int numEntries) {
+            return regularization * numEntries;
         }
-        return new DenseMatrix(values);
     }
 
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 }
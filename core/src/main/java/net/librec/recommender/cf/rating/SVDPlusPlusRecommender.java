@@ -21,6 +21,8 @@ import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.structure.*;
 
+import java.util.Arrays;
+
 /**
  * SVD++ Recommender
  * Yehuda Koren, <strong>Factorization Meets the Neighborhood: a Multifaceted Collaborative Filtering Model</strong>, KDD 2008.
@@ -132,17 +134,35 @@ public class SVDPlusPlusRecommender extends BiasedMFRecommender {
 
     @Override
     protected double predict(int userIndex, int itemIndex) {
+        double[] userFactorVector = new double[numFactors];
+        getUserScoringFactors(userIndex, userFactorVector);
+        double value = userBiases.get(userIndex) + itemBiases.get(itemIndex) + globalMean;
+        double[] itemFactorVector = itemFactors.getValues()[itemIndex];
+        for (int index = 0; index < numFactors; index++) {
+            value += userFactorVector[index] * itemFactorVector[index];
+        }
+        return value;
+    }
+
+    /**
+     * user factors plus the sum of implicit feedback factors of the user with
+     * weight Math.sqrt(1.0 / userItemsList.get(userIdx).cardinality())
+     */
+    @Override
+    protected void getUserScoringFactors(int userIndex, double[] out) {
         SequentialSparseVector userVector = trainMatrix.row(userIndex);
-        factorVector.assign((index, value) -> 0.0D);
-        // sum of implicit feedback factors of userIdx with weight Math.sqrt(1.0
-        // / userItemsList.get(userIdx).cardinality())
+        double[][] impItemValues = impItemFactors.getValues();
+        Arrays.fill(out, 0.0D);
         for (Vector.VectorEntry vectorEntry : userVector) {
-            factorVector.assign((index, value) -> impItemFactors.row(vectorEntry.index()).get(index) + value);
+            double[] impItemVector = impItemValues[vectorEntry.index()];
+            for (int index = 0; index < out.length; index++) {
+                out[index] += impItemVector[index];
+            }
         }
         double scale = Math.sqrt(userVector.getNumEntries());
-        if (scale > 0D) {
-            factorVector.assign((index, value) -> value / scale);
+        double[] userFactorVector = userFactors.getValues()[userIndex];
+        for (int index = 0; index < out.length; index++) {
+            out[index] = (scale > 0D ? out[index] / scale : out[index]) + userFactorVector[index];
         }
-        return predict(userIndex, itemIndex, factorVector);
     }
 }
@@ -112,7 +112,7 @@ public class ConvMFRecommender extends TensorRecommender {
     @Override
     protected void setup() throws LibrecException {
         super.setup();
-        reviewMappingData = DataFrame.getInnerMapping("review").inverse();
+        reviewMappingData = getDataModel().getMappingData("review").inverse();
         lambda_u = conf.getFloat("rec.user.regularization", 0.1f);
         lambda_v = conf.getFloat("rec.item.regularization", 0.1f);
         trainTensor = (SparseTensor) getDataModel().getTrainDataSet();
@@ -178,7 +178,7 @@ public class ConvMFRecommender extends TensorRecommender {
                     M.set(index++, itemFactors.row(itemIdx));
                 }
                 // step 1:
-                DenseMatrix A = M.transpose().times(M).plus(identify.times(lambda_u).times(u_numItems));
+                DenseMatrix A = M.gram().plus(identify.times(lambda_u).times(u_numItems));
                 // step 2:
                 // ratings of this userIdx
                 int index1 = 0;
@@ -189,7 +189,7 @@ public class ConvMFRecommender extends TensorRecommender {
                 }
 
                 // step 3: the updated user matrix wrt user j
-                userFactors.set(userIdx, A.inverse().times(M.transpose().times(userVector)));
+                userFactors.set(userIdx, A.inverse().times(M.transposeTimes(userVector)));
             }
 
             // fix user matrix userFactors, solve item matrix M
@@ -207,7 +207,7 @@ public class ConvMFRecommender extends TensorRecommender {
                 if (i_numUsers == 0)
                     continue;
                 // step 1:
-                DenseMatrix A = U.transpose().times(U).plus(identify.times(lambda_v).times(i_numUsers));
+                DenseMatrix A = U.gram().plus(identify.times(lambda_v).times(i_numUsers));
                 // step 2:
                 // ratings of this item
                 VectorBasedDenseVector itemVector = new VectorBasedDenseVector(i_numUsers);
@@ -217,7 +217,7 @@ public class ConvMFRecommender extends TensorRecommender {
                     itemVector.set(index1++, realRating);
                 }
                 // step 3: the updated item matrix wrt item j
-                itemFactors.set(itemIdx, A.inverse().times(U.transpose().times(itemVector).plus(cnn_module.getOutput(itemIdx2document.get(itemIdx).toString()).times(lambda_v))));
+                itemFactors.set(itemIdx, A.inverse().times(U.transposeTimes(itemVector).plus(cnn_module.getOutput(itemIdx2document.get(itemIdx).toString()).times(lambda_v))));
             }
 
             // compute rating loss
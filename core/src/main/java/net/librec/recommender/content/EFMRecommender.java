@@ -78,7 +78,7 @@ public class EFMRecommender extends TensorRecommender {
         lambdaH = conf.getDouble("rec.regularization.lambdah", 0.001);
         lambdaV = conf.getDouble("rec.regularization.lambdav", 0.001);
 
-        featureSentimemtPairsMappingData = DataFrame.getInnerMapping("sentiment").inverse();
+        featureSentimemtPairsMappingData = getDataModel().getMappingData("sentiment").inverse();
         trainMatrix = trainTensor.rateMatrix();
 
         featureDict = HashBiMap.create();
@@ -174,7 +174,7 @@ public class EFMRecommender extends TensorRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-        for (int iter = 1; iter <= conf.getInt("rec.iterator.maximum"); iter++) {
+        for (int iter = 1; iter <= numIterations; iter++) {
             loss = 0.0;
             updateProgress(0);
             // Update featureMatrix by fixing the others
@@ -97,7 +97,7 @@ public class HFTRecommender extends TensorRecommender {
     @Override
     protected void setup() throws LibrecException {
         super.setup();
-        reviewMappingData = DataFrame.getInnerMapping("review").inverse();
+        reviewMappingData = getDataModel().getMappingData("review").inverse();
         regBias = conf.getDouble("rec.bias.regularization", 0.01);
         regUser = conf.getFloat("rec.user.regularization", 0.01f);
         regItem = conf.getFloat("rec.item.regularization", 0.01f);
@@ -257,7 +257,7 @@ public class HFTRecommender extends TensorRecommender {
      */
     @Override
     protected void trainModel() {
-        for (int iter = 1; iter <= conf.getDouble("rec.iterator.maximum"); iter++) {
+        for (int iter = 1; iter <= numIterations; iter++) {
             // SGD training
             for (int sgditer = 1; sgditer <= 5; sgditer++) {
                 loss = 0.0;
@@ -4,7 +4,6 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import net.librec.common.LibrecException;
-import net.librec.math.structure.DataFrame;
 import net.librec.math.structure.TensorEntry;
 import net.librec.recommender.TensorRecommender;
 import net.librec.similarity.CosineSimilarity;
@@ -33,7 +32,7 @@ public class TFIDFRecommender extends TensorRecommender {
     protected void setup() throws LibrecException {
         super.setup();
         smooth = conf.getDouble("rec.tfidf.smooth", 1D);
-        reviewMappingData = DataFrame.getInnerMapping("review");
+        reviewMappingData = getDataModel().getMappingData("review");
         int numberOfWords = 0;
         // build review matrix and counting the number of words
         Table<Integer, Integer, String> res = HashBasedTable.create();
@@ -59,7 +59,7 @@ public class TopicMFMTRecommender extends TensorRecommender {
     @Override
     protected void setup() throws LibrecException {
         super.setup();
-        reviewMappingData = DataFrame.getInnerMapping("review").inverse();
+        reviewMappingData = getDataModel().getMappingData("review").inverse();
         // init hyper-parameters
         lambda = conf.getDouble("rec.regularization.lambda", 0.001);
         lambdaU = conf.getDouble("rec.regularization.lambdaU", 0.001);
@@ -197,7 +197,7 @@ public class TopicMFMTRecommender extends TensorRecommender {
 
             // update phi by NMF
             DenseMatrix thetaTW = theta.transpose().times(W);
-            DenseMatrix denominatorMatrix = theta.transpose().times(theta).times(phi);
+            DenseMatrix denominatorMatrix = theta.gram().times(phi);
             for (int i = 0; i < numTopics; i++) {
                 for (int j = 0; j < numWords; j++) {
                     double numerator = phi.get(i, j) * (thetaTW.get(i, j));
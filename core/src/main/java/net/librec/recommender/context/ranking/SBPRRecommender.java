@@ -21,7 +21,6 @@ import com.google.common.cache.LoadingCache;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Maths;
-import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.VectorBasedDenseVector;
 import net.librec.recommender.SocialRecommender;
 
@@ -116,136 +115,143 @@ public class SBPRRecommender extends SocialRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-        int maxSample = trainMatrix.size();
-        for (int iter = 1; iter <= numIterations; iter++) {
-
-            loss = 0.0d;
-
-            for (int sample = 0; sample < maxSample; sample++) {
-                // uniformly draw (userIdx, posItemIdx, k, negItemIdx)
-                int userIdx, posItemIdx, negItemIdx;
-                // userIdx
-                List<Integer> ratedItems = null;
-                do {
-                    userIdx = Randoms.uniform(numUsers);
-                    try {
-                        ratedItems = userItemsCache.get(userIdx);
-                    } catch (ExecutionException e) {
-                        e.printStackTrace();
-                    }
-                } while (ratedItems.size() == 0);
-
-                // positive item index
-                posItemIdx = Randoms.random(ratedItems);
-
-                double posPredictRating = predict(userIdx, posItemIdx);
-
-                // social Items List
-                List<Integer> socialItemsList = userSocialItemsSetList.get(userIdx);
-
-                // negative item index
-                do {
-                    negItemIdx = Randoms.uniform(numItems);
-                } while (ratedItems.contains(negItemIdx) || socialItemsList.contains(negItemIdx));
-
-                double negPredictRating = predict(userIdx, negItemIdx);
+        openSamplerPool();
+        try {
+            int maxSample = trainMatrix.size();
+            for (int iter = 1; iter <= numIterations; iter++) {
+
+                loss = 0.0d;
+
+                trainSamples(maxSample, random -> {
+                    // uniformly draw (userIdx, posItemIdx, k, negItemIdx)
+                    int userIdx, posItemIdx, negItemIdx;
+                    // userIdx
+                    List<Integer> ratedItems = null;
+                    do {
+                        userIdx = random.nextInt(numUsers);
+                        try {
+                            ratedItems = userItemsCache.get(userIdx);
+                        } catch (ExecutionException e) {
+                            e.printStackTrace();
+                        }
+                    } while (ratedItems.size() == 0);
+
+                    // positive item index
+                    posItemIdx = ratedItems.get(random.nextInt(ratedItems.size()));
+
+                    double posPredictRating = predict(userIdx, posItemIdx);
+
+                    // social Items List
+                    List<Integer> socialItemsList = userSocialItemsSetList.get(userIdx);
+
+                    // negative item index
+                    do {
+                        negItemIdx = random.nextInt(numItems);
+                    } while (ratedItems.contains(negItemIdx) || socialItemsList.contains(negItemIdx));
+
+                    double negPredictRating = predict(userIdx, negItemIdx);
+                    double sampleLoss = 0.0d;
+
+                    if (socialItemsList.size() > 0) {
+                        // if having social neighbors
+                        int socialItemIdx = socialItemsList.get(random.nextInt(socialItemsList.size()));
+                        double socialPredictRating = predict(userIdx, socialItemIdx);
+
+                        int[] trustedUserIdices = socialMatrix.row(userIdx).getIndices();
+                        double socialWeight = 0;
+                        for (int trustedUserIdx : trustedUserIdices) {
+
+                            int[] indices = trainMatrix.row(trustedUserIdx).getIndices();
+                            int socialRating = Arrays.binarySearch(indices, socialItemIdx);
+                            if (socialRating > 0)
+                                socialWeight += 1;
+
+                        }
+
+                        double posSocialDiffValue = (posPredictRating - socialPredictRating) / (1 + socialWeight);
+                        double socialNegDiffValue = socialPredictRating - negPredictRating;
+
+                        double error = -Math.log(Maths.logistic(posSocialDiffValue)) - Math.log(Maths.logistic(socialNegDiffValue));
+                        sampleLoss += error;
+
+                        double posSocialGradient = Maths.logistic(-posSocialDiffValue), socialNegGradient = Maths.logistic(-socialNegDiffValue);
+
+                        // update bi, bk, bj
+                        double posItemBiasValue = itemBiases.get(posItemIdx);
+                        itemBiases.plus(posItemIdx, learnRate * (posSocialGradient / (1 + socialWeight) - regBias * posItemBiasValue));
+                        sampleLoss += regBias * posItemBiasValue * posItemBiasValue;
+
+                        double socialItemBiasValue = itemBiases.get(socialItemIdx);
+                        itemBiases.plus(socialItemIdx, learnRate * (-posSocialGradient / (1 + socialWeight) + socialNegGradient - regBias * socialItemBiasValue));
+                        sampleLoss += regBias * socialItemBiasValue * socialItemBiasValue;
+
+                        double negItemBiasValue = itemBiases.get(negItemIdx);
+                        itemBiases.plus(negItemIdx, learnRate * (-socialNegGradient - regBias * negItemBiasValue));
+                        sampleLoss += regBias * negItemBiasValue * negItemBiasValue;
+
+                        // update P, Q
+                        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                            double userFactorValue = userFactors.get(userIdx, factorIdx);
+                            double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
+                            double socialItemFactorValue = itemFactors.get(socialItemIdx, factorIdx);
+                            double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
+
+                            double delta_puf = posSocialGradient * (posItemFactorValue - socialItemFactorValue) / (1 + socialWeight)
+                                    + socialNegGradient * (socialItemFactorValue - negItemFactorValue);
+                            userFactors.plus(userIdx, factorIdx, learnRate * (delta_puf - regUser * userFactorValue));
+
+                            itemFactors.plus(posItemIdx, factorIdx, learnRate * (posSocialGradient * userFactorValue / (1 + socialWeight)
+                                    - regItem * posItemFactorValue));
+
+                            double delta_qkf = posSocialGradient * (-userFactorValue / (1 + socialWeight)) + socialNegGradient * userFactorValue;
+                            itemFactors.plus(socialItemIdx, factorIdx, learnRate * (delta_qkf - regItem * socialItemFactorValue));
+
+                            itemFactors.plus(negItemIdx, factorIdx, learnRate * (socialNegGradient * (-userFactorValue) -
+                                    regItem * negItemFactorValue));
+
+                            sampleLoss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue +
+                                    regItem * negItemFactorValue * negItemFactorValue + regItem * socialItemFactorValue * socialItemFactorValue;
+                        }
+                    } else {
+                        // if no social neighbors, the same as BPR
+                        double posNegDiffValue = posPredictRating - negPredictRating;
+                        sampleLoss += posNegDiffValue;
+
+                        double posNegGradient = Maths.logistic(-posNegDiffValue);
+
+                        // update bi, bj
+                        double posItemBiasValue = itemBiases.get(posItemIdx);
+                        itemBiases.plus(posItemIdx, learnRate * (posNegGradient - regBias * posItemBiasValue));
+                        sampleLoss += regBias * posItemBiasValue * posItemBiasValue;
+
+                        double negItemBiasValue = itemBiases.get(negItemIdx);
+                        itemBiases.plus(negItemIdx, learnRate * (-posNegGradient - regBias * negItemBiasValue));
+                        sampleLoss += regBias * negItemBiasValue * negItemBiasValue;
+
+                        // update user factors, item factors
+                        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                            double userFactorValue = userFactors.get(userIdx, factorIdx);
+                            double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
+                            double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
 
-                if (socialItemsList.size() > 0) {
-                    // if having social neighbors
-                    int socialItemIdx = Randoms.random(socialItemsList);
-                    double socialPredictRating = predict(userIdx, socialItemIdx);
-
-                    int[] trustedUserIdices = socialMatrix.row(userIdx).getIndices();
-                    double socialWeight = 0;
-                    for (int trustedUserIdx : trustedUserIdices) {
-
-                        int[] indices = trainMatrix.row(trustedUserIdx).getIndices();
-                        int socialRating = Arrays.binarySearch(indices, socialItemIdx);
-                        if (socialRating > 0)
-                            socialWeight += 1;
+                            userFactors.plus(userIdx, factorIdx, learnRate * (posNegGradient * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
+                            itemFactors.plus(posItemIdx, factorIdx, learnRate * (posNegGradient * userFactorValue - regItem * posItemFactorValue));
+                            itemFactors.plus(negItemIdx, factorIdx, learnRate * (posNegGradient * (-userFactorValue) - regItem * negItemFactorValue));
 
+                            sampleLoss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue +
+                                    regItem * negItemFactorValue * negItemFactorValue;
+                        }
                     }
+                    return sampleLoss;
+                });
 
-                    double posSocialDiffValue = (posPredictRating - socialPredictRating) / (1 + socialWeight);
-                    double socialNegDiffValue = socialPredictRating - negPredictRating;
-
-                    double error = -Math.log(Maths.logistic(posSocialDiffValue)) - Math.log(Maths.logistic(socialNegDiffValue));
-                    loss += error;
-
-                    double posSocialGradient = Maths.logistic(-posSocialDiffValue), socialNegGradient = Maths.logistic(-socialNegDiffValue);
-
-                    // update bi, bk, bj
-                    double posItemBiasValue = itemBiases.get(posItemIdx);
-                    itemBiases.plus(posItemIdx, learnRate * (posSocialGradient / (1 + socialWeight) - regBias * posItemBiasValue));
-                    loss += regBias * posItemBiasValue * posItemBiasValue;
-
-                    double socialItemBiasValue = itemBiases.get(socialItemIdx);
-                    itemBiases.plus(socialItemIdx, learnRate * (-posSocialGradient / (1 + socialWeight) + socialNegGradient - regBias * socialItemBiasValue));
-                    loss += regBias * socialItemBiasValue * socialItemBiasValue;
-
-                    double negItemBiasValue = itemBiases.get(negItemIdx);
-                    itemBiases.plus(negItemIdx, learnRate * (-socialNegGradient - regBias * negItemBiasValue));
-                    loss += regBias * negItemBiasValue * negItemBiasValue;
-
-                    // update P, Q
-                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        double userFactorValue = userFactors.get(userIdx, factorIdx);
-                        double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                        double socialItemFactorValue = itemFactors.get(socialItemIdx, factorIdx);
-                        double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
-
-                        double delta_puf = posSocialGradient * (posItemFactorValue - socialItemFactorValue) / (1 + socialWeight)
-                                + socialNegGradient * (socialItemFactorValue - negItemFactorValue);
-                        userFactors.plus(userIdx, factorIdx, learnRate * (delta_puf - regUser * userFactorValue));
-
-                        itemFactors.plus(posItemIdx, factorIdx, learnRate * (posSocialGradient * userFactorValue / (1 + socialWeight)
-                                - regItem * posItemFactorValue));
-
-                        double delta_qkf = posSocialGradient * (-userFactorValue / (1 + socialWeight)) + socialNegGradient * userFactorValue;
-                        itemFactors.plus(socialItemIdx, factorIdx, learnRate * (delta_qkf - regItem * socialItemFactorValue));
-
-                        itemFactors.plus(negItemIdx, factorIdx, learnRate * (socialNegGradient * (-userFactorValue) -
-                                regItem * negItemFactorValue));
-
-                        loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue +
-                                regItem * negItemFactorValue * negItemFactorValue + regItem * socialItemFactorValue * socialItemFactorValue;
-                    }
-                } else {
-                    // if no social neighbors, the same as BPR
-                    double posNegDiffValue = posPredictRating - negPredictRating;
-                    loss += posNegDiffValue;
-
-                    double posNegGradient = Maths.logistic(-posNegDiffValue);
-
-                    // update bi, bj
-                    double posItemBiasValue = itemBiases.get(posItemIdx);
-                    itemBiases.plus(posItemIdx, learnRate * (posNegGradient - regBias * posItemBiasValue));
-                    loss += regBias * posItemBiasValue * posItemBiasValue;
-
-                    double negItemBiasValue = itemBiases.get(negItemIdx);
-                    itemBiases.plus(negItemIdx, learnRate * (-posNegGradient - regBias * negItemBiasValue));
-                    loss += regBias * negItemBiasValue * negItemBiasValue;
-
-                    // update user factors, item factors
-                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        double userFactorValue = userFactors.get(userIdx, factorIdx);
-                        double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                        double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
-
-                        userFactors.plus(userIdx, factorIdx, learnRate * (posNegGradient * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
-                        itemFactors.plus(posItemIdx, factorIdx, learnRate * (posNegGradient * userFactorValue - regItem * posItemFactorValue));
-                        itemFactors.plus(negItemIdx, factorIdx, learnRate * (posNegGradient * (-userFactorValue) - regItem * negItemFactorValue));
-
-                        loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue +
-                                regItem * negItemFactorValue * negItemFactorValue;
-                    }
+                if (isConverged(iter) && earlyStop) {
+                    break;
                 }
+                updateLRate(iter);
             }
-
-            if (isConverged(iter) && earlyStop) {
-                break;
-            }
-            updateLRate(iter);
+        } finally {
+            closeSamplerPool();
         }
     }
 
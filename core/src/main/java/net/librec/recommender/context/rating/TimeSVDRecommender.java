@@ -452,4 +452,12 @@ public class TimeSVDRecommender extends BiasedMFRecommender {
             }
         }
     }
+
+    /**
+     * predict(int, int) is not the factor product of BiasedMFRecommender
+     */
+    @Override
+    protected boolean isBatchScoringSupported() {
+        return false;
+    }
 }
@@ -17,30 +17,56 @@
  */
 package net.librec.recommender.hybrid;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
-import com.google.common.collect.Tables;
 import net.librec.common.LibrecException;
 import net.librec.math.structure.SequentialSparseVector;
 import net.librec.math.structure.Vector;
 import net.librec.recommender.MatrixRecommender;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * Zhou et al., <strong>Solving the apparent diversity-accuracy dilemma of recommender systems</strong>, Proceedings of
  * the National Academy of Sciences, 2010.
+ * <p>
+ * The scores of a user are computed by spreading the resources of the rated
+ * items to their users and back to the items, over the train matrix in
+ * compressed rows and columns, so only the users and items reachable from
+ * the user are visited. Every thread scores its users into its own buffers.
+ * Users whose resource is below {@code rec.hybrid.prune.threshold} (default
+ * 0, none) do not spread it back, which trades accuracy for speed on dense
+ * data.
  *
  * @author guoguibing and Keqiang Wang
  */
 public class HybridRecommender extends MatrixRecommender {
-    Table<Integer, Integer, Double> userItemRanks = HashBasedTable.create();
     protected float lambda;
 
-    Map<Integer, Integer> itemDegrees = new HashMap<>();
+    protected double pruneThreshold;
+
+    /**
+     * the items of each user in compressed rows, at [userItemStarts[u], userItemStarts[u + 1])
+     */
+    private int[] userItemStarts;
+    private int[] userItems;
+    private double[] userItemRatings;
+
+    /**
+     * the users of each item in compressed columns, at [itemUserStarts[i], itemUserStarts[i + 1])
+     */
+    private int[] itemUserStarts;
+    private int[] itemUsers;
+
+    /**
+     * 1 / degree^lambda, the resource an item gives to each of its users
+     */
+    private double[] itemResources;
+
+    /**
+     * degree^(1 - lambda), the normalization of the score of an item
+     */
+    private double[] itemNorms;
+
+    private ThreadLocal<SpreadBuffer> spreadBuffers;
 
     /**
      * initialization
@@ -52,10 +78,44 @@ public class HybridRecommender extends MatrixRecommender {
         super.setup();
 
         lambda = conf.getFloat("rec.hybrid.lambda");
+        pruneThreshold = conf.getDouble("rec.hybrid.prune.threshold", 0.0d);
+
+        userItemStarts = new int[numUsers + 1];
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userItemStarts[userIdx + 1] = userItemStarts[userIdx] + trainMatrix.row(userIdx).getNumEntries();
+        }
+        userItems = new int[userItemStarts[numUsers]];
+        userItemRatings = new double[userItemStarts[numUsers]];
+        itemUserStarts = new int[numItems + 1];
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            int position = userItemStarts[userIdx];
+            for (Vector.VectorEntry vectorEntry : trainMatrix.row(userIdx)) {
+                userItems[position] = vectorEntry.index();
+                userItemRatings[position++] = vectorEntry.get();
+                itemUserStarts[vectorEntry.index() + 1]++;
+            }
+        }
+        for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+            itemUserStarts[itemIdx + 1] += itemUserStarts[itemIdx];
+        }
+        // users are added in ascending order, so the users of every item are sorted
+        itemUsers = new int[itemUserStarts[numItems]];
+        int[] itemCursors = Arrays.copyOf(itemUserStarts, numItems);
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            for (int position = userItemStarts[userIdx]; position < userItemStarts[userIdx + 1]; position++) {
+                itemUsers[itemCursors[userItems[position]]++] = userIdx;
+            }
+        }
 
+        itemResources = new double[numItems];
+        itemNorms = new double[numItems];
         for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
-            itemDegrees.put(itemIdx, trainMatrix.column(itemIdx).size());
+            int itemDegree = itemUserStarts[itemIdx + 1] - itemUserStarts[itemIdx];
+            itemResources[itemIdx] = 1.0 / Math.pow(itemDegree, lambda);
+            itemNorms[itemIdx] = Math.pow(itemDegree, 1 - lambda);
         }
+
+        spreadBuffers = ThreadLocal.withInitial(() -> new SpreadBuffer(numUsers, numItems));
     }
 
     /**
@@ -68,53 +128,119 @@ public class HybridRecommender extends MatrixRecommender {
 
     }
 
+    @Override
+    protected double predict(int userIdx, int itemIdx) throws LibrecException {
+        // in rating, the items of a user are predicted one after another, so the
+        // scores of the last user of the thread are kept
+        SpreadBuffer spreadBuffer = spreadBuffers.get();
+        if (spreadBuffer.scoredUserIdx != userIdx) {
+            spreadBuffer.scoredUserIdx = -1;
+            spread(userIdx, spreadBuffer, spreadBuffer.userScores);
+            spreadBuffer.scoredUserIdx = userIdx;
+        }
+        return spreadBuffer.userScores[itemIdx];
+    }
+
+    @Override
+    public void predictAllItems(int[] userIndices, double[][] out) throws LibrecException {
+        SpreadBuffer spreadBuffer = spreadBuffers.get();
+        for (int blockUserIdx = 0; blockUserIdx < userIndices.length; blockUserIdx++) {
+            spread(userIndices[blockUserIdx], spreadBuffer, out[blockUserIdx]);
+        }
+    }
 
     @Override
-    protected synchronized double predict(int userIdx, int itemIdx) throws LibrecException {
-        // Note that in ranking, we first check a user u, and then check the
-        // ranking score of each candidate items
-        if (!userItemRanks.containsRow(userIdx)) {
-            // new user
-            userItemRanks.clear();
-
-            SequentialSparseVector itemRatingsVector = trainMatrix.row(userIdx);
-            Set<Integer> itemsSet = Sets.newHashSetWithExpectedSize((int) (itemRatingsVector.size() * 1.5));
-            for (Vector.VectorEntry vectorEntry : itemRatingsVector) {
-                if (vectorEntry.get() != 0.0) {
-                    itemsSet.add(vectorEntry.index());
-                }
-            }
+    protected boolean isBatchScoringSupported() {
+        return true;
+    }
 
-            // distribute resources to users, including user u
-            Map<Integer, Double> userResources = new HashMap<>();
-            for (int tempUserIdx = 0; tempUserIdx < numUsers; tempUserIdx++) {
-                SequentialSparseVector tempItemRatingsVector = trainMatrix.row(tempUserIdx);
-                double sum = 0;
-                int tempItemsCount = tempItemRatingsVector.size();
-                for (int tempItemIdx : tempItemRatingsVector.getIndices()) {
-                    if (itemsSet.contains(tempItemIdx))
-                        sum += 1.0 / Math.pow(itemDegrees.get(tempItemIdx), lambda);
+    /**
+     * Spread the resources of the items of a user to their users and back to
+     * the items. The rated items score 0.
+     *
+     * @param userIdx      user index
+     * @param spreadBuffer the buffers of the thread
+     * @param scores       array of length at least numItems receiving the scores
+     */
+    private void spread(int userIdx, SpreadBuffer spreadBuffer, double[] scores) {
+        double[] userResources = spreadBuffer.userResources;
+        int[] reachedUsers = spreadBuffer.reachedUsers;
+        boolean[] ratedItems = spreadBuffer.ratedItems;
+
+        // distribute resources to users, including user u, adding the items of each user in ascending order
+        int numReachedUsers = 0;
+        for (int position = userItemStarts[userIdx]; position < userItemStarts[userIdx + 1]; position++) {
+            if (userItemRatings[position] == 0.0) {
+                continue;
+            }
+            int itemIdx = userItems[position];
+            ratedItems[itemIdx] = true;
+            double itemResource = itemResources[itemIdx];
+            for (int userPosition = itemUserStarts[itemIdx]; userPosition < itemUserStarts[itemIdx + 1]; userPosition++) {
+                int reachedUserIdx = itemUsers[userPosition];
+                if (userResources[reachedUserIdx] == 0.0) {
+                    reachedUsers[numReachedUsers++] = reachedUserIdx;
                 }
-
-                if (tempItemsCount > 0)
-                    userResources.put(tempUserIdx, sum / tempItemsCount);
+                userResources[reachedUserIdx] += itemResource;
             }
+        }
 
-            // redistribute resources to items
-            for (int tempItemIdx = 0; tempItemIdx < numItems; tempItemIdx++) {
-                if (itemsSet.contains(tempItemIdx))
-                    continue;
-
-                SequentialSparseVector tempUserRatingsVector = trainMatrix.column(tempItemIdx);
-                double sum = 0;
-                for (int tempUserIdx : tempUserRatingsVector.getIndices())
-                    sum += userResources.containsKey(tempUserIdx) ? userResources.get(tempUserIdx) : 0.0;
+        // redistribute resources to items, adding the users of each item in ascending order
+        Arrays.fill(scores, 0, numItems, 0.0);
+        Arrays.sort(reachedUsers, 0, numReachedUsers);
+        for (int reachedIdx = 0; reachedIdx < numReachedUsers; reachedIdx++) {
+            int reachedUserIdx = reachedUsers[reachedIdx];
+            int userItemStart = userItemStarts[reachedUserIdx], userItemEnd = userItemStarts[reachedUserIdx + 1];
+            double userResource = userResources[reachedUserIdx] / (userItemEnd - userItemStart);
+            userResources[reachedUserIdx] = 0.0;
+            if (userResource < pruneThreshold) {
+                continue;
+            }
+            for (int position = userItemStart; position < userItemEnd; position++) {
+                scores[userItems[position]] += userResource;
+            }
+        }
 
-                double score = sum / Math.pow(itemDegrees.get(tempItemIdx), 1 - lambda);
-                userItemRanks.put(userIdx, tempItemIdx, score);
+        for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+            if (ratedItems[itemIdx]) {
+                scores[itemIdx] = 0.0;
+                ratedItems[itemIdx] = false;
+            } else {
+                scores[itemIdx] /= itemNorms[itemIdx];
             }
         }
+    }
 
-        return userItemRanks.contains(userIdx, itemIdx) ? userItemRanks.get(userIdx, itemIdx) : 0.0;
+    /**
+     * The buffers a thread spreads the resources of its users in.
+     */
+    private static class SpreadBuffer {
+        /**
+         * the resource of each user, zero outside of a spread
+         */
+        private final double[] userResources;
+
+        /**
+         * the users reached by a spread
+         */
+        private final int[] reachedUsers;
+
+        /**
+         * the rated items of the user, cleared after a spread
+         */
+        private final boolean[] ratedItems;
+
+        /**
+         * the scores of the last user predicted item by item
+         */
+        private final double[] userScores;
+        private int scoredUserIdx = -1;
+
+        private SpreadBuffer(int numUsers, int numItems) {
+            userResources = new double[numUsers];
+            reachedUsers = new int[numUsers];
+            ratedItems = new boolean[numItems];
+            userScores = new double[numItems];
+        }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.item;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Compact list of (key, value) pairs stored in an {@code int[]} and a
+ * {@code double[]}. Entries are materialized as {@link KeyValue} objects only
+ * when accessed through the {@link java.util.List} interface, so a ranked list
+ * of n items costs two primitive arrays instead of n boxed pairs. Changes made
+ * to a returned {@link KeyValue} are not written back; use {@link #set} or
+ * {@link #setValue} instead.
+ */
+public class KeyValueArrayList extends AbstractList<KeyValue<Integer, Double>> implements RandomAccess {
+    private int[] keys;
+    private double[] values;
+    private int size;
+
+    public KeyValueArrayList() {
+        this(10);
+    }
+
+    public KeyValueArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        }
+        this.keys = new int[initialCapacity];
+        this.values = new double[initialCapacity];
+    }
+
+    /**
+     * Construct a list backed by the given arrays, without copying them.
+     *
+     * @param keys   keys array
+     * @param values values array
+     * @param size   number of valid entries in the arrays
+     */
+    public KeyValueArrayList(int[] keys, double[] values, int size) {
+        if (size > keys.length || size > values.length) {
+            throw new IllegalArgumentException("size " + size + " exceeds the length of the arrays");
+        }
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    @Override
+    public KeyValue<Integer, Double> get(int index) {
+        rangeCheck(index);
+        return new KeyValue<>(keys[index], values[index]);
+    }
+
+    @Override
+    public KeyValue<Integer, Double> set(int index, KeyValue<Integer, Double> element) {
+        rangeCheck(index);
+        KeyValue<Integer, Double> oldElement = new KeyValue<>(keys[index], values[index]);
+        keys[index] = element.getKey();
+        values[index] = element.getValue();
+        return oldElement;
+    }
+
+    @Override
+    public void add(int index, KeyValue<Integer, Double> element) {
+        if (index > size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        keys[index] = element.getKey();
+        values[index] = element.getValue();
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Append a pair to the end of the list without boxing.
+     *
+     * @param key   key
+     * @param value value
+     */
+    public void addKeyValue(int key, double value) {
+        ensureCapacity(size + 1);
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public KeyValue<Integer, Double> remove(int index) {
+        rangeCheck(index);
+        KeyValue<Integer, Double> oldElement = new KeyValue<>(keys[index], values[index]);
+        int numMoved = size - index - 1;
+        if (numMoved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, numMoved);
+            System.arraycopy(values, index + 1, values, index, numMoved);
+        }
+        size--;
+        modCount++;
+        return oldElement;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index entry index
+     * @return the key at the index
+     */
+    public int getKey(int index) {
+        rangeCheck(index);
+        return keys[index];
+    }
+
+    /**
+     * @param index entry index
+     * @return the value at the index
+     */
+    public double getValue(int index) {
+        rangeCheck(index);
+        return values[index];
+    }
+
+    /**
+     * Replace the value at the index, keeping its key.
+     *
+     * @param index entry index
+     * @param value new value
+     */
+    public void setValue(int index, double value) {
+        rangeCheck(index);
+        values[index] = value;
+    }
+
+    /**
+     * @return a copy of the keys in list order
+     */
+    public int[] toKeyArray() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * @return a copy of the values in list order
+     */
+    public double[] toValueArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Trim the backing arrays to the size of the list.
+     */
+    public void trimToSize() {
+        if (keys.length > size) {
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > keys.length) {
+            int newCapacity = Math.max(minCapacity, keys.length + (keys.length >> 1) + 1);
+            keys = Arrays.copyOf(keys, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    private void rangeCheck(int index) {
+        if (index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.librec.recommender.item;
 
 import com.google.common.collect.TreeMultimap;
+import net.librec.math.structure.TopKHeap;
 import net.librec.util.Lists;
 
 import java.util.*;
@@ -126,12 +127,28 @@ public class RecommendedList {
         elementData.set(contextIdx, elementList);
     }
 
+    /**
+     * set the entries of a top-k heap, sorted by descending value, as the
+     * list at the context index. The list is stored in the compact
+     * {@link KeyValueArrayList} representation and the heap is empty afterwards.
+     *
+     * @param contextIdx context index
+     * @param topKHeap   heap holding the selected keys and values
+     */
+    public void setTopNList(int contextIdx, TopKHeap topKHeap) {
+        int size = topKHeap.size();
+        int[] keys = new int[size];
+        double[] values = new double[size];
+        topKHeap.drainDescending(keys, values);
+        setList(contextIdx, new KeyValueArrayList(keys, values, size));
+    }
+
     /**
      * append the specified element to the end of the  list.
      *
      * @param elementList element to be appended to this list
      */
-    public void addList(ArrayList<KeyValue<Integer, Double>> elementList) {
+    public void addList(List<KeyValue<Integer, Double>> elementList) {
         elementData.add(elementList);
     }
 
@@ -146,7 +163,12 @@ public class RecommendedList {
      */
     public boolean add(int contextIdx, int key, double score) {
         rangeCheck(contextIdx);
-        elementData.get(contextIdx).add(new KeyValue<>(key, score));
+        List<KeyValue<Integer, Double>> elementList = elementData.get(contextIdx);
+        if (elementList instanceof KeyValueArrayList) {
+            ((KeyValueArrayList) elementList).addKeyValue(key, score);
+        } else {
+            elementList.add(new KeyValue<>(key, score));
+        }
         return true;
     }
 
@@ -256,9 +278,17 @@ public class RecommendedList {
      */
     public Set<Integer> getKeySetByContext(int contextIdx) {
         rangeCheck(contextIdx);
+        List<KeyValue<Integer, Double>> elementList = elementData.get(contextIdx);
         Set<Integer> keySet = new HashSet<>();
-        for (KeyValue<Integer, Double> keyValue : elementData.get(contextIdx)) {
-            keySet.add(keyValue.getKey());
+        if (elementList instanceof KeyValueArrayList) {
+            KeyValueArrayList keyValueList = (KeyValueArrayList) elementList;
+            for (int index = 0; index < keyValueList.size(); index++) {
+                keySet.add(keyValueList.getKey(index));
+            }
+        } else {
+            for (KeyValue<Integer, Double> keyValue : elementList) {
+                keySet.add(keyValue.getKey());
+            }
         }
         return keySet;
     }
@@ -328,7 +358,12 @@ public class RecommendedList {
         }
 
         public void setValue(double value) {
-            elementData.get(contextIdx).get(keyIdx).setValue(value);
+            List<KeyValue<Integer, Double>> elementList = elementData.get(contextIdx);
+            if (elementList instanceof KeyValueArrayList) {
+                ((KeyValueArrayList) elementList).setValue(keyIdx, value);
+            } else {
+                elementList.get(keyIdx).setValue(value);
+            }
             entry.setValue(value);
         }
     }
@@ -0,0 +1,495 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.mips;
+
+import net.librec.math.algorithm.RandomStream;
+import net.librec.math.structure.TopKHeap;
+
+import java.util.Arrays;
+
+/**
+ * Graph based maximum inner product search with a Hierarchical Navigable Small
+ * World graph. Yu. A. Malkov and D. A. Yashunin, <strong>Efficient and robust
+ * approximate nearest neighbor search using Hierarchical Navigable Small World
+ * graphs</strong>, TPAMI 2018.
+ * <p>
+ * Every item vector x is extended by the coordinate sqrt(M^2 - |x|^2), where M
+ * is the largest item norm, and the query by 0. The L2 distance between the
+ * extended vectors is then |q|^2 + M^2 - 2 q.x, so the nearest neighbours of a
+ * query are exactly the items of largest inner product (Bachrach et al., RecSys
+ * 2014). The graph is built on the L2 distances between extended item vectors
+ * and searched with the equivalent distance -q.x.
+ */
+public class HNSWSearch implements MaximumInnerProductSearch {
+    /**
+     * the maximum number of neighbours per node on the upper levels, twice as
+     * many on level 0
+     */
+    private final int maxNeighbors;
+
+    /**
+     * the size of the dynamic candidate list while building
+     */
+    private final int efConstruction;
+
+    /**
+     * the size of the dynamic candidate list while searching
+     */
+    private final int efSearch;
+
+    /**
+     * the seed of the stream drawing the levels of the nodes, so that building
+     * the index leaves the stream of {@link net.librec.math.algorithm.Randoms} alone
+     */
+    private final long seed;
+
+    private int numItems;
+
+    /**
+     * dimension of the extended item vectors
+     */
+    private int dimension;
+
+    /**
+     * extended item vectors, item by item
+     */
+    private double[] vectors;
+
+    /**
+     * neighbors[node][level] holds the neighbours of the node on the level, the
+     * first numNeighbors[node][level] of them are valid
+     */
+    private int[][][] neighbors;
+    private int[][] numNeighbors;
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private ThreadLocal<SearchContext> searchContexts;
+
+    /**
+     * @param maxNeighbors   the maximum number of neighbours per node, M
+     * @param efConstruction the size of the candidate list while building
+     * @param efSearch       the size of the candidate list while searching
+     */
+    public HNSWSearch(int maxNeighbors, int efConstruction, int efSearch) {
+        this(maxNeighbors, efConstruction, efSearch, 0L);
+    }
+
+    /**
+     * @param maxNeighbors   the maximum number of neighbours per node, M
+     * @param efConstruction the size of the candidate list while building
+     * @param efSearch       the size of the candidate list while searching
+     * @param seed           the seed of the levels of the nodes
+     */
+    public HNSWSearch(int maxNeighbors, int efConstruction, int efSearch, long seed) {
+        if (maxNeighbors < 2) {
+            throw new IllegalArgumentException("the number of neighbors should be at least 2, but is " + maxNeighbors);
+        }
+        this.maxNeighbors = maxNeighbors;
+        this.efConstruction = Math.max(efConstruction, maxNeighbors);
+        this.efSearch = efSearch;
+        this.seed = seed;
+    }
+
+    @Override
+    public void build(double[][] itemVectors) {
+        numItems = itemVectors.length;
+        int queryDimension = numItems > 0 ? itemVectors[0].length : 0;
+        dimension = queryDimension + 1;
+        vectors = new double[numItems * dimension];
+
+        double maxNormSquared = 0.0D;
+        for (double[] itemVector : itemVectors) {
+            maxNormSquared = Math.max(maxNormSquared, dot(itemVector, itemVector));
+        }
+        for (int item = 0; item < numItems; item++) {
+            double[] itemVector = itemVectors[item];
+            System.arraycopy(itemVector, 0, vectors, item * dimension, queryDimension);
+            vectors[item * dimension + queryDimension] = Math.sqrt(Math.max(0.0D, maxNormSquared - dot(itemVector, itemVector)));
+        }
+
+        neighbors = new int[numItems][][];
+        numNeighbors = new int[numItems][];
+        entryPoint = -1;
+        maxLevel = -1;
+        searchContexts = ThreadLocal.withInitial(() -> new SearchContext(numItems));
+
+        RandomStream random = new RandomStream(seed);
+        double levelMultiplier = 1.0D / Math.log(maxNeighbors);
+        for (int item = 0; item < numItems; item++) {
+            int level = (int) (-Math.log(Math.max(random.nextDouble(), 1e-12)) * levelMultiplier);
+            insert(item, level);
+        }
+    }
+
+    @Override
+    public void search(double[] query, int[] excludedItems, TopKHeap topKHeap) {
+        if (entryPoint < 0 || topKHeap.capacity() == 0) {
+            return;
+        }
+        int current = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            current = greedySearch(query, 0, true, current, level);
+        }
+
+        SearchContext context = searchContexts.get();
+        int ef = Math.max(efSearch, topKHeap.capacity() + excludedItems.length);
+        context.entryPoints[0] = current;
+        NodeHeap results = searchLayer(context, query, 0, true, 1, ef, 0);
+        while (results.size() > 0) {
+            double distance = results.peekDistance();
+            int item = results.pop();
+            if (Arrays.binarySearch(excludedItems, item) < 0) {
+                topKHeap.offer(item, -distance);
+            }
+        }
+    }
+
+    private void insert(int node, int level) {
+        neighbors[node] = new int[level + 1][];
+        numNeighbors[node] = new int[level + 1];
+        for (int nodeLevel = 0; nodeLevel <= level; nodeLevel++) {
+            neighbors[node][nodeLevel] = new int[getCapacity(nodeLevel)];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int offset = node * dimension;
+        int current = entryPoint;
+        for (int nodeLevel = maxLevel; nodeLevel > level; nodeLevel--) {
+            current = greedySearch(vectors, offset, false, current, nodeLevel);
+        }
+
+        SearchContext context = searchContexts.get();
+        context.entryPoints[0] = current;
+        int numEntryPoints = 1;
+        for (int nodeLevel = Math.min(level, maxLevel); nodeLevel >= 0; nodeLevel--) {
+            NodeHeap results = searchLayer(context, vectors, offset, false, numEntryPoints, efConstruction, nodeLevel);
+            int numCandidates = results.size();
+            int[] candidates = new int[numCandidates];
+            double[] distances = new double[numCandidates];
+            // the result heap pops the farthest node first
+            for (int position = numCandidates - 1; position >= 0; position--) {
+                distances[position] = results.peekDistance();
+                candidates[position] = results.pop();
+            }
+
+            int numSelected = selectNeighbors(candidates, distances, numCandidates, maxNeighbors,
+                    neighbors[node][nodeLevel]);
+            numNeighbors[node][nodeLevel] = numSelected;
+            for (int position = 0; position < numSelected; position++) {
+                addLink(neighbors[node][nodeLevel][position], node, nodeLevel);
+            }
+
+            if (context.entryPoints.length < numCandidates) {
+                context.entryPoints = new int[numCandidates];
+            }
+            System.arraycopy(candidates, 0, context.entryPoints, 0, numCandidates);
+            numEntryPoints = numCandidates;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * add a link from node to newNeighbor, shrinking the neighbour list of node with
+     * the selection heuristic when it is full
+     */
+    private void addLink(int node, int newNeighbor, int level) {
+        int[] nodeNeighbors = neighbors[node][level];
+        int count = numNeighbors[node][level];
+        if (count < nodeNeighbors.length) {
+            nodeNeighbors[count] = newNeighbor;
+            numNeighbors[node][level] = count + 1;
+            return;
+        }
+
+        int offset = node * dimension;
+        int[] candidates = new int[count + 1];
+        double[] distances = new double[count + 1];
+        System.arraycopy(nodeNeighbors, 0, candidates, 0, count);
+        candidates[count] = newNeighbor;
+        Integer[] order = new Integer[count + 1];
+        for (int position = 0; position <= count; position++) {
+            distances[position] = distance(vectors, offset, false, candidates[position]);
+            order[position] = position;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+        int[] sortedCandidates = new int[count + 1];
+        double[] sortedDistances = new double[count + 1];
+        for (int position = 0; position <= count; position++) {
+            sortedCandidates[position] = candidates[order[position]];
+            sortedDistances[position] = distances[order[position]];
+        }
+        numNeighbors[node][level] = selectNeighbors(sortedCandidates, sortedDistances, count + 1,
+                nodeNeighbors.length, nodeNeighbors);
+    }
+
+    /**
+     * the neighbour selection heuristic: walking the candidates from the closest,
+     * keep a candidate only if it is closer to the base node than to every kept
+     * neighbour, then fill the remaining places with the closest pruned ones.
+     *
+     * @param candidates candidates sorted by ascending distance to the base node
+     * @param distances  distances of the candidates to the base node
+     * @param count      the number of candidates
+     * @param maxCount   the maximum number of selected neighbours
+     * @param out        array receiving the selected neighbours
+     * @return the number of selected neighbours
+     */
+    private int selectNeighbors(int[] candidates, double[] distances, int count, int maxCount, int[] out) {
+        int numSelected = 0;
+        boolean[] selected = new boolean[count];
+        for (int position = 0; position < count && numSelected < maxCount; position++) {
+            int candidateOffset = candidates[position] * dimension;
+            boolean isDiverse = true;
+            for (int selectedPosition = 0; selectedPosition < numSelected; selectedPosition++) {
+                if (distance(vectors, candidateOffset, false, out[selectedPosition]) < distances[position]) {
+                    isDiverse = false;
+                    break;
+                }
+            }
+            if (isDiverse) {
+                out[numSelected++] = candidates[position];
+                selected[position] = true;
+            }
+        }
+        for (int position = 0; position < count && numSelected < maxCount; position++) {
+            if (!selected[position]) {
+                out[numSelected++] = candidates[position];
+            }
+        }
+        return numSelected;
+    }
+
+    private int greedySearch(double[] target, int offset, boolean innerProduct, int start, int level) {
+        int current = start;
+        double currentDistance = distance(target, offset, innerProduct, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] currentNeighbors = neighbors[current][level];
+            int count = numNeighbors[current][level];
+            for (int position = 0; position < count; position++) {
+                int neighbor = currentNeighbors[position];
+                double neighborDistance = distance(target, offset, innerProduct, neighbor);
+                if (neighborDistance < currentDistance) {
+                    currentDistance = neighborDistance;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * best first search on one level, starting from the first numEntryPoints nodes
+     * of context.entryPoints.
+     *
+     * @return a max heap holding the ef closest nodes found
+     */
+    private NodeHeap searchLayer(SearchContext context, double[] target, int offset, boolean innerProduct,
+                                 int numEntryPoints, int ef, int level) {
+        int epoch = context.nextEpoch();
+        NodeHeap candidates = context.candidates;
+        NodeHeap results = context.results;
+        candidates.clear();
+        results.clear();
+        for (int position = 0; position < numEntryPoints; position++) {
+            int entry = context.entryPoints[position];
+            if (context.visited[entry] != epoch) {
+                context.visited[entry] = epoch;
+                double entryDistance = distance(target, offset, innerProduct, entry);
+                candidates.push(entry, entryDistance);
+                results.push(entry, entryDistance);
+                if (results.size() > ef) {
+                    results.pop();
+                }
+            }
+        }
+
+        while (candidates.size() > 0) {
+            if (results.size() >= ef && candidates.peekDistance() > results.peekDistance()) {
+                break;
+            }
+            int current = candidates.pop();
+            if (level >= neighbors[current].length) {
+                continue;
+            }
+            int[] currentNeighbors = neighbors[current][level];
+            int count = numNeighbors[current][level];
+            for (int position = 0; position < count; position++) {
+                int neighbor = currentNeighbors[position];
+                if (context.visited[neighbor] == epoch) {
+                    continue;
+                }
+                context.visited[neighbor] = epoch;
+                double neighborDistance = distance(target, offset, innerProduct, neighbor);
+                if (results.size() < ef || neighborDistance < results.peekDistance()) {
+                    candidates.push(neighbor, neighborDistance);
+                    results.push(neighbor, neighborDistance);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * distance from a target to a node: the negated inner product with the query
+     * if innerProduct is true, otherwise the squared L2 distance between extended
+     * vectors.
+     */
+    private double distance(double[] target, int offset, boolean innerProduct, int node) {
+        int nodeOffset = node * dimension;
+        if (innerProduct) {
+            double sum = 0.0D;
+            for (int index = 0; index < dimension - 1; index++) {
+                sum += target[offset + index] * vectors[nodeOffset + index];
+            }
+            return -sum;
+        }
+        double sum = 0.0D;
+        for (int index = 0; index < dimension; index++) {
+            double difference = target[offset + index] - vectors[nodeOffset + index];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+    private int getCapacity(int level) {
+        return level == 0 ? 2 * maxNeighbors : maxNeighbors;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0D;
+        for (int index = 0; index < a.length; index++) {
+            sum += a[index] * b[index];
+        }
+        return sum;
+    }
+
+    /**
+     * per thread buffers of the search
+     */
+    private static class SearchContext {
+        private final int[] visited;
+        private int epoch;
+        private int[] entryPoints = new int[1];
+        private final NodeHeap candidates = new NodeHeap(false);
+        private final NodeHeap results = new NodeHeap(true);
+
+        SearchContext(int numItems) {
+            visited = new int[numItems];
+        }
+
+        int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+
+    /**
+     * growable binary heap of (node, distance) pairs, ordered by distance
+     */
+    private static class NodeHeap {
+        private final boolean maxHeap;
+        private int[] nodes = new int[64];
+        private double[] distances = new double[64];
+        private int size;
+
+        NodeHeap(boolean maxHeap) {
+            this.maxHeap = maxHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double peekDistance() {
+            return distances[0];
+        }
+
+        void push(int node, double distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!above(distance, distances[parent])) {
+                    break;
+                }
+                nodes[position] = nodes[parent];
+                distances[position] = distances[parent];
+                position = parent;
+            }
+            nodes[position] = node;
+            distances[position] = distance;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size];
+                double distance = distances[size];
+                int position = 0;
+                int half = size >>> 1;
+                while (position < half) {
+                    int child = (position << 1) + 1;
+                    int right = child + 1;
+                    if (right < size && above(distances[right], distances[child])) {
+                        child = right;
+                    }
+                    if (!above(distances[child], distance)) {
+                        break;
+                    }
+                    nodes[position] = nodes[child];
+                    distances[position] = distances[child];
+                    position = child;
+                }
+                nodes[position] = node;
+                distances[position] = distance;
+            }
+            return top;
+        }
+
+        private boolean above(double distance, double otherDistance) {
+            return maxHeap ? distance > otherDistance : distance < otherDistance;
+        }
+    }
+}
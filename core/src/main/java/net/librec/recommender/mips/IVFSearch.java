@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.mips;
+
+import net.librec.math.algorithm.RandomStream;
+import net.librec.math.structure.TopKHeap;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Partition based maximum inner product search with an inverted file (IVF).
+ * Items are clustered by k-means and a query only scans the items of the
+ * clusters whose centroids are closest to it.
+ * <p>
+ * Clustering runs on the item vectors extended by sqrt(M^2 - |x|^2), M being
+ * the largest item norm, for which the L2 distance to the query extended by 0
+ * orders items as their inner product does, see {@link HNSWSearch}. Scores of
+ * the scanned items are exact inner products.
+ */
+public class IVFSearch implements MaximumInnerProductSearch {
+    private final int numClusters;
+    private final int numProbes;
+    private final int numIterations;
+
+    /**
+     * the seed of the stream seeding the clusters, so that building the index
+     * leaves the stream of {@link net.librec.math.algorithm.Randoms} alone
+     */
+    private final long seed;
+
+    /**
+     * dimension of the item vectors, the extended vectors have one more
+     */
+    private int dimension;
+
+    /**
+     * centroids of the extended item vectors, cluster by cluster
+     */
+    private double[] centroids;
+    private double[] centroidNormsSquared;
+    private int numCentroids;
+
+    /**
+     * the items of cluster c are listItems[listPointers[c]] to
+     * listItems[listPointers[c + 1] - 1], with their vectors stored in the same
+     * order in listVectors
+     */
+    private int[] listPointers;
+    private int[] listItems;
+    private double[] listVectors;
+
+    /**
+     * @param numClusters   the number of k-means clusters
+     * @param numProbes     the number of clusters scanned per query
+     * @param numIterations the number of k-means iterations
+     */
+    public IVFSearch(int numClusters, int numProbes, int numIterations) {
+        this(numClusters, numProbes, numIterations, 0L);
+    }
+
+    /**
+     * @param numClusters   the number of k-means clusters
+     * @param numProbes     the number of clusters scanned per query
+     * @param numIterations the number of k-means iterations
+     * @param seed          the seed of the clusters
+     */
+    public IVFSearch(int numClusters, int numProbes, int numIterations, long seed) {
+        if (numClusters < 1 || numProbes < 1) {
+            throw new IllegalArgumentException("the numbers of clusters and probes should be positive, but are "
+                    + numClusters + " and " + numProbes);
+        }
+        this.numClusters = numClusters;
+        this.numProbes = numProbes;
+        this.numIterations = numIterations;
+        this.seed = seed;
+    }
+
+    @Override
+    public void build(double[][] itemVectors) {
+        int numItems = itemVectors.length;
+        dimension = numItems > 0 ? itemVectors[0].length : 0;
+        int extendedDimension = dimension + 1;
+
+        double maxNormSquared = 0.0D;
+        for (double[] itemVector : itemVectors) {
+            maxNormSquared = Math.max(maxNormSquared, dot(itemVector, itemVector, dimension));
+        }
+        double[] extendedVectors = new double[numItems * extendedDimension];
+        for (int item = 0; item < numItems; item++) {
+            System.arraycopy(itemVectors[item], 0, extendedVectors, item * extendedDimension, dimension);
+            extendedVectors[item * extendedDimension + dimension] =
+                    Math.sqrt(Math.max(0.0D, maxNormSquared - dot(itemVectors[item], itemVectors[item], dimension)));
+        }
+
+        // k-means seeded with distinct random items
+        RandomStream random = new RandomStream(seed);
+        numCentroids = Math.min(numClusters, numItems);
+        centroids = new double[numCentroids * extendedDimension];
+        int[] permutation = IntStream.range(0, numItems).toArray();
+        for (int cluster = 0; cluster < numCentroids; cluster++) {
+            int swap = cluster + random.nextInt(numItems - cluster);
+            int item = permutation[swap];
+            permutation[swap] = permutation[cluster];
+            permutation[cluster] = item;
+            System.arraycopy(extendedVectors, item * extendedDimension, centroids, cluster * extendedDimension, extendedDimension);
+        }
+
+        int[] assignments = new int[numItems];
+        for (int iteration = 0; iteration <= numIterations; iteration++) {
+            IntStream.range(0, numItems).parallel().forEach(item ->
+                    assignments[item] = nearestCentroid(extendedVectors, item * extendedDimension));
+            if (iteration == numIterations) {
+                break;
+            }
+
+            double[] sums = new double[numCentroids * extendedDimension];
+            int[] counts = new int[numCentroids];
+            for (int item = 0; item < numItems; item++) {
+                int cluster = assignments[item];
+                counts[cluster]++;
+                for (int index = 0; index < extendedDimension; index++) {
+                    sums[cluster * extendedDimension + index] += extendedVectors[item * extendedDimension + index];
+                }
+            }
+            for (int cluster = 0; cluster < numCentroids; cluster++) {
+                if (counts[cluster] == 0) {
+                    // re-seed an empty cluster with a random item
+                    int item = random.nextInt(numItems);
+                    System.arraycopy(extendedVectors, item * extendedDimension, centroids, cluster * extendedDimension, extendedDimension);
+                } else {
+                    for (int index = 0; index < extendedDimension; index++) {
+                        centroids[cluster * extendedDimension + index] = sums[cluster * extendedDimension + index] / counts[cluster];
+                    }
+                }
+            }
+        }
+
+        centroidNormsSquared = new double[numCentroids];
+        for (int cluster = 0; cluster < numCentroids; cluster++) {
+            double sum = 0.0D;
+            for (int index = 0; index < extendedDimension; index++) {
+                double value = centroids[cluster * extendedDimension + index];
+                sum += value * value;
+            }
+            centroidNormsSquared[cluster] = sum;
+        }
+
+        // inverted lists in compressed form
+        listPointers = new int[numCentroids + 1];
+        for (int item = 0; item < numItems; item++) {
+            listPointers[assignments[item] + 1]++;
+        }
+        for (int cluster = 0; cluster < numCentroids; cluster++) {
+            listPointers[cluster + 1] += listPointers[cluster];
+        }
+        listItems = new int[numItems];
+        listVectors = new double[numItems * dimension];
+        int[] positions = Arrays.copyOf(listPointers, numCentroids);
+        for (int item = 0; item < numItems; item++) {
+            int position = positions[assignments[item]]++;
+            listItems[position] = item;
+            System.arraycopy(itemVectors[item], 0, listVectors, position * dimension, dimension);
+        }
+    }
+
+    @Override
+    public void search(double[] query, int[] excludedItems, TopKHeap topKHeap) {
+        if (numCentroids == 0 || topKHeap.capacity() == 0) {
+            return;
+        }
+        int extendedDimension = dimension + 1;
+        TopKHeap probeHeap = new TopKHeap(Math.min(numProbes, numCentroids));
+        for (int cluster = 0; cluster < numCentroids; cluster++) {
+            // |q - c|^2 up to the constant |q|^2, the query being extended by 0
+            double distance = centroidNormsSquared[cluster]
+                    - 2.0D * dot(query, 0, centroids, cluster * extendedDimension, dimension);
+            probeHeap.offer(cluster, -distance);
+        }
+
+        for (int position = 0; position < probeHeap.size(); position++) {
+            int cluster = probeHeap.getIndex(position);
+            for (int listPosition = listPointers[cluster]; listPosition < listPointers[cluster + 1]; listPosition++) {
+                int item = listItems[listPosition];
+                if (Arrays.binarySearch(excludedItems, item) < 0) {
+                    topKHeap.offer(item, dot(query, 0, listVectors, listPosition * dimension, dimension));
+                }
+            }
+        }
+    }
+
+    private int nearestCentroid(double[] vectors, int offset) {
+        int extendedDimension = dimension + 1;
+        int nearest = 0;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (int cluster = 0; cluster < numCentroids; cluster++) {
+            int centroidOffset = cluster * extendedDimension;
+            double sum = 0.0D;
+            for (int index = 0; index < extendedDimension && sum < nearestDistance; index++) {
+                double difference = vectors[offset + index] - centroids[centroidOffset + index];
+                sum += difference * difference;
+            }
+            if (sum < nearestDistance) {
+                nearestDistance = sum;
+                nearest = cluster;
+            }
+        }
+        return nearest;
+    }
+
+    private static double dot(double[] a, double[] b, int length) {
+        return dot(a, 0, b, 0, length);
+    }
+
+    private static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0.0D;
+        for (int index = 0; index < length; index++) {
+            sum += a[aOffset + index] * b[bOffset + index];
+        }
+        return sum;
+    }
+}
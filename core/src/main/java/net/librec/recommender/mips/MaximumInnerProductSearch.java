@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.mips;
+
+import net.librec.math.structure.TopKHeap;
+
+/**
+ * Index answering maximum inner product search (MIPS) queries over a fixed set
+ * of item vectors: given a query vector, find the items whose vectors have the
+ * largest inner product with it. Implementations may be approximate. An index
+ * is built once and then searched concurrently from any number of threads.
+ */
+public interface MaximumInnerProductSearch {
+
+    /**
+     * Build the index over the given item vectors.
+     *
+     * @param itemVectors item vectors, row i is the vector of item i
+     */
+    void build(double[][] itemVectors);
+
+    /**
+     * Search the items with the largest inner products with the query. The
+     * number of results is the capacity of the given heap.
+     *
+     * @param query         query vector, of the same dimension as the item vectors
+     * @param excludedItems items never to be returned, sorted ascending
+     * @param topKHeap      empty heap receiving (item, inner product) pairs
+     */
+    void search(double[] query, int[] excludedItems, TopKHeap topKHeap);
+}
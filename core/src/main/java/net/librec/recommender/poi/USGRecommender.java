@@ -8,6 +8,7 @@ import net.librec.common.LibrecException;
 import net.librec.data.convertor.appender.LocationDataAppender;
 import net.librec.data.structure.AbstractBaseDataEntry;
 import net.librec.data.structure.LibrecDataList;
+import net.librec.eval.EvalStatistics;
 import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DataSet;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
@@ -110,39 +111,48 @@ public class USGRecommender extends AbstractRecommender {
         userSimilarityMatrix = context.getSimilarity().getSimilarityMatrix().toSparseMatrix();
         socialPath = conf.get("dfs.data.dir") + "/" + conf.get("data.social.path");
 
-        // for AUCEvaluator and nDCGEvaluator
-        int[] numDroppedItemsArray = new int[numUsers];
+        // for nDCGEvaluator
         int maxNumTestItemsByUser = 0;
         for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
-            numDroppedItemsArray[userIdx] = numPois - trainMatrix.row(userIdx).getNumEntries();
             int numTestItemsByUser = testMatrix.row(userIdx).getNumEntries();
             maxNumTestItemsByUser = maxNumTestItemsByUser < numTestItemsByUser ? numTestItemsByUser : maxNumTestItemsByUser;
         }
-        conf.setInts("rec.eval.auc.dropped.num", numDroppedItemsArray);
         conf.setInt("rec.eval.key.test.max.num", maxNumTestItemsByUser);
 
         // for EntropyEvaluator
         conf.setInt("rec.eval.item.num", testMatrix.columnSize());
 
+        // for AUCEvaluator
+        EvalStatistics statistics = context.getStatistics();
+        statistics.putLazy(EvalStatistics.NUM_DROPPED_ITEMS, () -> {
+            int[] numDroppedItemsArray = new int[numUsers];
+            for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
+                numDroppedItemsArray[userIdx] = numPois - trainMatrix.row(userIdx).getNumEntries();
+            }
+            return numDroppedItemsArray;
+        });
+
         // for NoveltyEvaluator
-        int[] itemPurchasedCount = new int[numPois];
-        for (int itemIdx = 0; itemIdx < numPois; ++itemIdx) {
-            int userNum = 0;
-            int[] userArray = trainMatrix.column(itemIdx).getIndices();
-            for (int userIdx : userArray) {
-                if (userIdx >= 0 && userIdx < limitUserNum) {
-                    userNum++;
+        statistics.putLazy(EvalStatistics.ITEM_PURCHASE_COUNTS, () -> {
+            int[] itemPurchasedCount = new int[numPois];
+            for (int itemIdx = 0; itemIdx < numPois; ++itemIdx) {
+                int userNum = 0;
+                int[] userArray = trainMatrix.column(itemIdx).getIndices();
+                for (int userIdx : userArray) {
+                    if (userIdx >= 0 && userIdx < limitUserNum) {
+                        userNum++;
+                    }
                 }
-            }
-            userArray = testMatrix.column(itemIdx).getIndices();
-            for (int userIdx : userArray) {
-                if (userIdx >= 0 && userIdx < limitUserNum) {
-                    userNum++;
+                userArray = testMatrix.column(itemIdx).getIndices();
+                for (int userIdx : userArray) {
+                    if (userIdx >= 0 && userIdx < limitUserNum) {
+                        userNum++;
+                    }
                 }
+                itemPurchasedCount[itemIdx] = userNum;
             }
-            itemPurchasedCount[itemIdx] = userNum;
-        }
-        conf.setInts("rec.eval.item.purchase.num", itemPurchasedCount);
+            return itemPurchasedCount;
+        });
     }
 
     @Override
@@ -17,21 +17,37 @@
  */
 package net.librec.similarity;
 
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import net.librec.conf.Configuration;
+import net.librec.conf.ConfigurationSnapshot;
 import net.librec.data.DataModel;
 import net.librec.data.convertor.appender.SocialDataAppender;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 import net.librec.math.structure.SequentialSparseVector;
 import net.librec.math.structure.SymmMatrix;
+import net.librec.math.structure.TopKHeap;
 import net.librec.math.structure.Vector;
 import org.apache.commons.lang.StringUtils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Calculate Recommender Similarity, such as cosine, Pearson, Jaccard
  * similarity, etc.
+ * <p>
+ * Most measures are decomposable: they only need a few sums over the
+ * co-rated entries (see {@link #getNumStatistics()}, {@link #accumulate} and
+ * {@link #computeSimilarity}). For those the similarity matrix is built with
+ * an inverted index, so only pairs sharing at least one co-rating are
+ * visited and no per-pair buffer is allocated. Measures that are not
+ * decomposable override {@link #getSimilarity(double[], double[], int)}
+ * instead and are evaluated on the co-rated values of every candidate pair.
+ * <p>
+ * If {@code rec.similarity.topk} is positive, only the k most similar
+ * neighbours of every user/item are kept (the union of both directions is
+ * stored, since the matrix is symmetric).
  *
  * @author zhanghaidong and Keqiang Wang (email: sei.wkq2008@gmail.com)
  */
@@ -47,6 +63,17 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
      */
     protected SymmMatrix similarityMatrix;
 
+    /**
+     * per-thread buffers of {@link #getCorrelation}
+     */
+    private final ThreadLocal<CorrelationBuffer> correlationBuffers = ThreadLocal.withInitial(CorrelationBuffer::new);
+
+    /**
+     * rec.similarity.shrinkage and rec.similarity.topk of {@link #conf}, see
+     * {@link #resolveParameters()}
+     */
+    private volatile ResolvedParameters resolvedParameters;
+
     /**
      * Build social similarity matrix with trainMatrix in dataModel.
      *
@@ -63,35 +90,103 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
                 // calculate the similarity between users, or the similarity between items.
                 boolean isUser = StringUtils.equals(similarityKey, "user");
                 SequentialAccessSparseMatrix trainMatrix = dataModel.getDataSplitter().getTrainData();
-                int numUsers = trainMatrix.rowSize();
-                int numItems = trainMatrix.columnSize();
-                int count = isUser ? numUsers : numItems;
-
-                similarityMatrix = new SymmMatrix(count);
-                List<Integer> indexList = new ArrayList<>();
-                for (int index = 0; index < count; index++) {
-                    indexList.add(index);
+                buildSimilarityMatrix(trainMatrix, isUser);
+            }
+        }
+    }
+
+    /**
+     * Build the similarity matrix between the rows (users) or the columns
+     * (items) of the given matrix with an inverted index.
+     *
+     * @param trainMatrix the rating matrix
+     * @param isUser      true for the similarity between rows
+     */
+    protected void buildSimilarityMatrix(SequentialAccessSparseMatrix trainMatrix, boolean isUser) {
+        ResolvedParameters parameters = resolveParameters();
+        int topK = parameters.topK;
+        int shrinkage = parameters.shrinkage;
+
+        CompressedVectors vectors = new CompressedVectors(trainMatrix, isUser);
+        CompressedVectors invertedVectors = new CompressedVectors(trainMatrix, !isUser);
+        int count = vectors.numVectors;
+        int numStatistics = getNumStatistics();
+
+        similarityMatrix = new SymmMatrix(count, topK <= 0 && count <= SymmMatrix.DENSE_MAX_DIM);
+        ThreadLocal<PairAccumulator> accumulators = ThreadLocal.withInitial(
+                () -> new PairAccumulator(count, numStatistics, topK));
+
+        IntStream.range(0, count).parallel().forEach(thisIndex -> {
+            int thisStart = vectors.pointers[thisIndex], thisEnd = vectors.pointers[thisIndex + 1];
+            if (thisStart == thisEnd) {
+                return;
+            }
+            PairAccumulator accumulator = accumulators.get();
+            int[] counts = accumulator.counts;
+            int[] touched = accumulator.touched;
+            double[] statistics = accumulator.statistics;
+            int numTouched = 0;
+
+            // sparse-sparse product: walk the inverted lists of the entries of this vector
+            for (int thisPosition = thisStart; thisPosition < thisEnd; thisPosition++) {
+                int invertedIndex = vectors.indices[thisPosition];
+                double thisValue = vectors.values[thisPosition];
+                int start = invertedVectors.pointers[invertedIndex], end = invertedVectors.pointers[invertedIndex + 1];
+                if (topK <= 0) {
+                    // only the upper triangle is needed without top-k pruning
+                    start = lowerBound(invertedVectors.indices, start, end, thisIndex + 1);
                 }
+                for (int position = start; position < end; position++) {
+                    int thatIndex = invertedVectors.indices[position];
+                    if (thatIndex == thisIndex) {
+                        continue;
+                    }
+                    if (counts[thatIndex]++ == 0) {
+                        touched[numTouched++] = thatIndex;
+                    }
+                    if (numStatistics > 0) {
+                        accumulate(statistics, thatIndex * numStatistics, thisValue, invertedVectors.values[position]);
+                    }
+                }
+            }
 
-                indexList.parallelStream().forEach((Integer thisIndex) -> {
-                    SequentialSparseVector thisVector = isUser ? trainMatrix.row(thisIndex) : trainMatrix.column(thisIndex);
-                    if (thisVector.getNumEntries() != 0) {
-                        // user/item itself exclusive
-                        for (int thatIndex = thisIndex + 1; thatIndex < count; thatIndex++) {
-                            SequentialSparseVector thatVector = isUser ? trainMatrix.row(thatIndex) : trainMatrix.column(thatIndex);
-                            if (thatVector.getNumEntries() == 0) {
-                                continue;
-                            }
-
-                            double sim = getCorrelation(thisVector, thatVector);
-                            if (!Double.isNaN(sim) && sim != 0.0) {
-                                similarityMatrix.set(thisIndex, thatIndex, sim);
-                            }
-                        }
+            TopKHeap heap = accumulator.heap;
+            for (int touchedPosition = 0; touchedPosition < numTouched; touchedPosition++) {
+                int thatIndex = touched[touchedPosition];
+                int numCommon = counts[thatIndex];
+                counts[thatIndex] = 0;
+
+                double sim;
+                if (numStatistics > 0) {
+                    int offset = thatIndex * numStatistics;
+                    sim = computeSimilarity(statistics, offset, numCommon,
+                            vectors.size(thisIndex), vectors.lengthSquared[thisIndex],
+                            vectors.size(thatIndex), vectors.lengthSquared[thatIndex]);
+                    Arrays.fill(statistics, offset, offset + numStatistics, 0.0D);
+                    if (!Double.isNaN(sim) && shrinkage > 0) {
+                        sim *= numCommon / (numCommon + shrinkage + 0.0);
                     }
-                });
+                } else {
+                    sim = getCorrelation(isUser ? trainMatrix.row(thisIndex) : trainMatrix.column(thisIndex),
+                            isUser ? trainMatrix.row(thatIndex) : trainMatrix.column(thatIndex));
+                }
+
+                if (!Double.isNaN(sim) && sim != 0.0) {
+                    if (topK > 0) {
+                        heap.offer(thatIndex, sim);
+                    } else {
+                        similarityMatrix.set(thisIndex, thatIndex, sim);
+                    }
+                }
             }
-        }
+
+            if (topK > 0) {
+                for (int position = 0; position < heap.size(); position++) {
+                    similarityMatrix.set(thisIndex, heap.getIndex(position), heap.getValue(position));
+                }
+                heap.clear();
+            }
+        });
     }
 
     /**
@@ -139,19 +234,35 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
      * @return similarity
      */
     public double getCorrelation(SequentialSparseVector thisVector, SequentialSparseVector thatVector) {
-        // compute similarity
-        List<Double> thisList = new ArrayList<>();
-        List<Double> thatList = new ArrayList<>();
+        int shrinkage = resolveParameters().shrinkage;
+        int numStatistics = getNumStatistics();
+        CorrelationBuffer buffer = correlationBuffers.get();
 
         int thisPosition = 0, thatPosition = 0;
         int thisSize = thisVector.getNumEntries(), thatSize = thatVector.getNumEntries();
+        double[] statistics = buffer.statistics(numStatistics);
+        double[] thisValues = null, thatValues = null;
+        if (numStatistics == 0) {
+            buffer.ensureCapacity(Math.min(thisSize, thatSize));
+            thisValues = buffer.thisValues;
+            thatValues = buffer.thatValues;
+        }
+
+        int numCommon = 0;
         int thisIndex, thatIndex;
         while (thisPosition < thisSize && thatPosition < thatSize) {
             thisIndex = thisVector.getIndexAtPosition(thisPosition);
             thatIndex = thatVector.getIndexAtPosition(thatPosition);
             if (thisIndex == thatIndex) {
-                thisList.add(thisVector.getAtPosition(thisPosition));
-                thatList.add(thatVector.getAtPosition(thatPosition));
+                double thisValue = thisVector.getAtPosition(thisPosition);
+                double thatValue = thatVector.getAtPosition(thatPosition);
+                if (numStatistics > 0) {
+                    accumulate(statistics, 0, thisValue, thatValue);
+                } else {
+                    thisValues[numCommon] = thisValue;
+                    thatValues[numCommon] = thatValue;
+                }
+                numCommon++;
                 thisPosition++;
                 thatPosition++;
             } else if (thisIndex > thatIndex) {
@@ -161,20 +272,73 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
             }
         }
 
-        double sim = getSimilarity(thisList, thatList);
+        double sim;
+        if (numStatistics > 0) {
+            sim = numCommon == 0 ? Double.NaN : computeSimilarity(statistics, 0, numCommon,
+                    thisSize, lengthSquared(thisVector), thatSize, lengthSquared(thatVector));
+        } else {
+            sim = getSimilarity(thisValues, thatValues, numCommon);
+        }
 
         // shrink to account for vector size
-        if (!Double.isNaN(sim)) {
-            int n = thisList.size();
-            int shrinkage = conf.getInt("rec.similarity.shrinkage", 0);
-            if (shrinkage > 0)
-                sim *= n / (n + shrinkage + 0.0);
+        if (!Double.isNaN(sim) && shrinkage > 0) {
+            sim *= numCommon / (numCommon + shrinkage + 0.0);
         }
 
         return sim;
     }
 
 
+    /**
+     * Resolve the parameters read while computing similarities from a
+     * snapshot of {@link #conf}, so that no pair of vectors reads the
+     * synchronized properties of the configuration. They are resolved again
+     * once {@link #conf} is replaced or its version changes.
+     *
+     * @return the parameters resolved from the current configuration
+     */
+    private ResolvedParameters resolveParameters() {
+        Configuration currentConf = conf;
+        ResolvedParameters parameters = resolvedParameters;
+        if (parameters == null || !parameters.isResolvedFrom(currentConf)) {
+            synchronized (this) {
+                parameters = resolvedParameters;
+                if (parameters == null || !parameters.isResolvedFrom(currentConf)) {
+                    parameters = new ResolvedParameters(currentConf);
+                    resolvedParameters = parameters;
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * The parameters of a version of a configuration.
+     */
+    private static final class ResolvedParameters {
+        private final Configuration conf;
+        private final long version;
+        private final int shrinkage, topK;
+
+        private ResolvedParameters(Configuration conf) {
+            this.conf = conf;
+            if (conf == null) {
+                version = 0L;
+                shrinkage = 0;
+                topK = 0;
+            } else {
+                ConfigurationSnapshot settings = conf.snapshot();
+                version = settings.getVersion();
+                shrinkage = settings.getInt("rec.similarity.shrinkage", 0);
+                topK = settings.getInt("rec.similarity.topk", 0);
+            }
+        }
+
+        private boolean isResolvedFrom(Configuration currentConf) {
+            return conf == currentConf && (conf == null || conf.getVersion() == version);
+        }
+    }
+
     /**
      * Find the common rated items by this user and that user, or the common
      * users have rated this item or that item. And then return the similarity.
@@ -190,14 +354,92 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
         return getCorrelation(thisVector, thatVector);
     }
 
+    /**
+     * Return the number of co-rating statistics a decomposable measure
+     * accumulates per pair, or 0 if the measure is not decomposable.
+     *
+     * @return the number of statistics per pair
+     */
+    protected int getNumStatistics() {
+        return 0;
+    }
+
+    /**
+     * Add one co-rated pair of values to the statistics of a pair.
+     *
+     * @param statistics the statistics array
+     * @param offset     the offset of the pair in the statistics array
+     * @param thisValue  value in this vector
+     * @param thatValue  value in that vector
+     */
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+    }
+
+    /**
+     * Compute the similarity from the accumulated statistics of a pair.
+     *
+     * @param statistics        the statistics array
+     * @param offset            the offset of the pair in the statistics array
+     * @param numCommon         the number of co-rated entries, at least 1
+     * @param thisSize          the number of entries in this vector
+     * @param thisLengthSquared the squared length of this vector
+     * @param thatSize          the number of entries in that vector
+     * @param thatLengthSquared the squared length of that vector
+     * @return similarity
+     */
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        return Double.NaN;
+    }
+
+    /**
+     * Calculate the similarity between the co-rated values of two vectors.
+     *
+     * @param thisValues the co-rated values of this vector
+     * @param thatValues the co-rated values of that vector
+     * @param size       the number of co-rated values
+     * @return similarity
+     */
+    protected double getSimilarity(double[] thisValues, double[] thatValues, int size) {
+        int numStatistics = getNumStatistics();
+        if (numStatistics == 0) {
+            return getSimilarity(DoubleArrayList.wrap(thisValues, size), DoubleArrayList.wrap(thatValues, size));
+        }
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double[] statistics = correlationBuffers.get().statistics(numStatistics);
+        double thisLengthSquared = 0.0, thatLengthSquared = 0.0;
+        for (int i = 0; i < size; i++) {
+            accumulate(statistics, 0, thisValues[i], thatValues[i]);
+            thisLengthSquared += thisValues[i] * thisValues[i];
+            thatLengthSquared += thatValues[i] * thatValues[i];
+        }
+        return computeSimilarity(statistics, 0, size, size, thisLengthSquared, size, thatLengthSquared);
+    }
+
     /**
      * Calculate the similarity between thisList and thatList.
      *
      * @param thisList this list
      * @param thatList that list
      * @return similarity
+     * @deprecated measures implement the primitive statistics methods or
+     * {@link #getSimilarity(double[], double[], int)} instead, which this
+     * method delegates to. A measure has to implement one of the three.
      */
-    protected abstract double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList);
+    @Deprecated
+    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
+        int size = Math.min(thisList.size(), thatList.size());
+        double[] thisValues = new double[size];
+        double[] thatValues = new double[size];
+        for (int i = 0; i < size; i++) {
+            thisValues[i] = thisList.get(i).doubleValue();
+            thatValues[i] = thatList.get(i).doubleValue();
+        }
+        return getSimilarity(thisValues, thatValues, size);
+    }
 
     /**
      * Return the similarity matrix.
@@ -209,4 +451,103 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
         return similarityMatrix;
     }
 
+    private static double lengthSquared(SequentialSparseVector vector) {
+        double lengthSquared = 0.0;
+        for (int position = 0; position < vector.getNumEntries(); position++) {
+            double value = vector.getAtPosition(position);
+            lengthSquared += value * value;
+        }
+        return lengthSquared;
+    }
+
+    private static int lowerBound(int[] indices, int from, int to, int key) {
+        int low = from, high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (indices[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Rows or columns of a sparse matrix in flat compressed arrays.
+     */
+    private static final class CompressedVectors {
+        final int numVectors;
+        final int[] pointers;
+        final int[] indices;
+        final double[] values;
+        final double[] lengthSquared;
+
+        CompressedVectors(SequentialAccessSparseMatrix matrix, boolean byRow) {
+            numVectors = byRow ? matrix.rowSize() : matrix.columnSize();
+            pointers = new int[numVectors + 1];
+            indices = new int[matrix.getNumEntries()];
+            values = new double[matrix.getNumEntries()];
+            lengthSquared = new double[numVectors];
+            int pointer = 0;
+            for (int vectorIndex = 0; vectorIndex < numVectors; vectorIndex++) {
+                SequentialSparseVector vector = byRow ? matrix.row(vectorIndex) : matrix.column(vectorIndex);
+                int numEntries = vector.getNumEntries();
+                for (int position = 0; position < numEntries; position++) {
+                    double value = vector.getAtPosition(position);
+                    indices[pointer] = vector.getIndexAtPosition(position);
+                    values[pointer] = value;
+                    lengthSquared[vectorIndex] += value * value;
+                    pointer++;
+                }
+                pointers[vectorIndex + 1] = pointer;
+            }
+        }
+
+        int size(int vectorIndex) {
+            return pointers[vectorIndex + 1] - pointers[vectorIndex];
+        }
+    }
+
+    /**
+     * Per-thread accumulators of the inverted index product.
+     */
+    private static final class PairAccumulator {
+        final int[] counts;
+        final int[] touched;
+        final double[] statistics;
+        final TopKHeap heap;
+
+        PairAccumulator(int count, int numStatistics, int topK) {
+            counts = new int[count];
+            touched = new int[count];
+            statistics = new double[count * numStatistics];
+            heap = topK > 0 ? new TopKHeap(topK) : null;
+        }
+    }
+
+    /**
+     * Per-thread buffers of the merge based correlation.
+     */
+    private static final class CorrelationBuffer {
+        double[] thisValues = new double[16];
+        double[] thatValues = new double[16];
+        double[] statistics = new double[0];
+
+        void ensureCapacity(int capacity) {
+            if (thisValues.length < capacity) {
+                thisValues = new double[capacity];
+                thatValues = new double[capacity];
+            }
+        }
+
+        double[] statistics(int numStatistics) {
+            if (statistics.length < numStatistics) {
+                statistics = new double[numStatistics];
+            } else {
+                Arrays.fill(statistics, 0, numStatistics, 0.0D);
+            }
+            return statistics;
+        }
+    }
 }
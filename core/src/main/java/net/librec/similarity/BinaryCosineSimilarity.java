@@ -17,30 +17,36 @@
  */
 package net.librec.similarity;
 
-import net.librec.math.structure.SequentialSparseVector;
-
-import java.util.List;
-
 /**
  * Binary cosine similarity
  *
  * @author Ma Chen
  */
 public class BinaryCosineSimilarity extends AbstractRecommenderSimilarity {
+
     /**
-     * Get the binary cosine similarity of two sparse vectors.
+     * Inner product over the co-rated entries.
      *
-     * @param thisVector: the rated items by this user, or users that have rated this
-     *                    item .
-     * @param thatVector: the rated items by that user, or users that have rated that
-     *                    item.
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    public double getCorrelation(SequentialSparseVector thisVector, SequentialSparseVector thatVector) {
-        return thisVector.dot(thatVector) / (Math.sqrt(thisVector.getLengthSquared()) * Math.sqrt(thatVector.getLengthSquared()));
+    @Override
+    protected int getNumStatistics() {
+        return 1;
     }
 
-    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        return 0.0;
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        statistics[offset] += thisValue * thatValue;
+    }
+
+    /**
+     * Get the binary cosine similarity of two sparse vectors, normalized by
+     * the full lengths of both vectors.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        return statistics[offset] / (Math.sqrt(thisLengthSquared) * Math.sqrt(thatLengthSquared));
     }
 }
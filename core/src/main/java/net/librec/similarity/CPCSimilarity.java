@@ -21,7 +21,6 @@ import net.librec.data.DataModel;
 import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SequentialAccessSparseMatrix;
 
-import java.util.List;
 
 /**
  * Constrained Pearson Correlation (CPC)
@@ -55,27 +54,33 @@ public class CPCSimilarity extends AbstractRecommenderSimilarity {
     }
 
     /**
-     * Calculate the similarity between thisList and thatList.
+     * Inner product and the squared lengths of the deviations from the median
+     * over the co-rated entries.
      *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        // compute similarity
-        if (thisList == null || thatList == null || thisList.size() < 1 || thatList.size() < 1 || thisList.size() != thatList.size()) {
-            return Double.NaN;
-        }
+    @Override
+    protected int getNumStatistics() {
+        return 3;
+    }
 
-        double innerProduct = 0.0, thisPower2 = 0.0, thatPower2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisDiff = thisList.get(i).doubleValue() - median;
-            double thatDiff = thatList.get(i).doubleValue() - median;
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        double thisDiff = thisValue - median;
+        double thatDiff = thatValue - median;
 
-            innerProduct += thisDiff * thatDiff;
-            thisPower2 += thisDiff * thisDiff;
-            thatPower2 += thatDiff * thatDiff;
-        }
-        return innerProduct / Math.sqrt(thisPower2 * thatPower2);
+        statistics[offset] += thisDiff * thatDiff;
+        statistics[offset + 1] += thisDiff * thisDiff;
+        statistics[offset + 2] += thatDiff * thatDiff;
+    }
+
+    /**
+     * Calculate the constrained Pearson correlation over the co-rated entries.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        return statistics[offset] / Math.sqrt(statistics[offset + 1] * statistics[offset + 2]);
     }
 }
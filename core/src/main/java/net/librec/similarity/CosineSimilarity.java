@@ -17,8 +17,6 @@
  */
 package net.librec.similarity;
 
-import java.util.List;
-
 /**
  * Cosine similarity
  *
@@ -27,23 +25,29 @@ import java.util.List;
 public class CosineSimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * calculate the similarity between thisList and thatList.
+     * Inner product and the squared lengths over the co-rated entries.
      *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        if (thisList == null || thatList == null || thisList.size() < 1 || thatList.size() < 1 || thisList.size() != thatList.size()) {
-            return Double.NaN;
-        }
+    @Override
+    protected int getNumStatistics() {
+        return 3;
+    }
+
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        statistics[offset] += thisValue * thatValue;
+        statistics[offset + 1] += thisValue * thisValue;
+        statistics[offset + 2] += thatValue * thatValue;
+    }
 
-        double innerProduct = 0.0, thisPower2 = 0.0, thatPower2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            innerProduct += thisList.get(i).doubleValue() * thatList.get(i).doubleValue();
-            thisPower2 += thisList.get(i).doubleValue() * thisList.get(i).doubleValue();
-            thatPower2 += thatList.get(i).doubleValue() * thatList.get(i).doubleValue();
-        }
-        return innerProduct / Math.sqrt(thisPower2 * thatPower2);
+    /**
+     * Calculate the cosine similarity over the co-rated entries.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        return statistics[offset] / Math.sqrt(statistics[offset + 1] * statistics[offset + 2]);
     }
 }
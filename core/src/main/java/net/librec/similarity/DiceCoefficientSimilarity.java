@@ -17,8 +17,6 @@
  */
 package net.librec.similarity;
 
-import java.util.List;
-
 /**
  * Dice Coefficient Similarity
  *
@@ -27,24 +25,29 @@ import java.util.List;
 public class DiceCoefficientSimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * Calculate the similarity between thisList and thatList.
+     * Inner product and the squared lengths over the co-rated entries.
      *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-
-        double innerProduct = 0.0, thisPower2 = 0.0, thatPower2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisValue = thisList.get(i).doubleValue();
-            double thatValue = thatList.get(i).doubleValue();
+    @Override
+    protected int getNumStatistics() {
+        return 3;
+    }
 
-            innerProduct += thisValue * thatValue;
-            thisPower2 += thisValue * thisValue;
-            thatPower2 += thatValue * thatValue;
-        }
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        statistics[offset] += thisValue * thatValue;
+        statistics[offset + 1] += thisValue * thisValue;
+        statistics[offset + 2] += thatValue * thatValue;
+    }
 
-        return 2 * innerProduct / (thisPower2 + thatPower2);
+    /**
+     * Calculate the Dice coefficient over the co-rated entries.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        return 2 * statistics[offset] / (statistics[offset + 1] + statistics[offset + 2]);
     }
 }
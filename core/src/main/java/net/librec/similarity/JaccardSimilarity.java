@@ -17,14 +17,6 @@
  */
 package net.librec.similarity;
 
-
-import net.librec.math.structure.Vector;
-import net.librec.math.structure.VectorBasedSequentialSparseVector;
-
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
 /**
  * Jaccard Similarity
  *
@@ -33,34 +25,30 @@ import java.util.Set;
 public class JaccardSimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * Find the common rated items by this user and that user, or the common
-     * users have rated this item or that item. And then return the similarity.
+     * Only the number of co-rated entries is needed.
      *
-     * @param thisVector: the rated items by this user, or users that have rated this
-     *                    item .
-     * @param thatVector: the rated items by that user, or users that have rated that
-     *                    item.
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    public double getCorrelation(VectorBasedSequentialSparseVector thisVector, VectorBasedSequentialSparseVector thatVector) {
-        // compute similarity
-        Set<Integer> elements = new HashSet<>();
-
-        for(Vector.VectorEntry vectorEntry: thisVector){
-            elements.add(vectorEntry.index());
-        }
-
-        for(Vector.VectorEntry vectorEntry: thatVector){
-            elements.add(vectorEntry.index());
-        }
-
-        int numAllElements = elements.size();
-        int numCommonElements = thisVector.getNumEntries() + thatVector.getNumEntries() - numAllElements;
+    @Override
+    protected int getNumStatistics() {
+        return 1;
+    }
 
-        return (numCommonElements + 0.0) / numAllElements;
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        statistics[offset] += 1.0D;
     }
 
-    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        return 0.0;
+    /**
+     * Calculate the size of the intersection over the size of the union of
+     * the rated items by this user and that user, or the users that have
+     * rated this item and that item.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        double intersection = statistics[offset];
+        return intersection / (thisSize + thatSize - intersection);
     }
 }
@@ -17,12 +17,6 @@
  */
 package net.librec.similarity;
 
-
-import net.librec.math.structure.Vector;
-import net.librec.math.structure.VectorBasedSequentialSparseVector;
-
-import java.util.*;
-
 /**
  * J. I. Marden, Analyzing and modeling rank data. Boca Raton, Florida: CRC Press, 1996.
  * Mingming Chen etc. A Ranking-oriented Hybrid Approach to QoS-aware Web Service Recommendation. 2015
@@ -34,81 +28,37 @@ import java.util.*;
 public class KRCCSimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * Find the common rated items by this user and that user, or the common
-     * users have rated this item or that item. And then return the similarity.
+     * Calculate the Kendall rank correlation between the co-rated values.
      *
-     * @param thisVector: the rated items by this user, or users that have rated this
-     *                    item .
-     * @param thatVector: the rated items by that user, or users that have rated that
-     *                    item.
+     * @param thisValues the co-rated values of this vector
+     * @param thatValues the co-rated values of that vector
+     * @param size       the number of co-rated values
      * @return similarity
      */
-    public double getCorrelation(VectorBasedSequentialSparseVector thisVector, VectorBasedSequentialSparseVector thatVector) {
-
-        if (thisVector == null || thatVector == null || thisVector.size() != thatVector.size()) {
-            return Double.NaN;
-        }
-        // compute similarity
-        List<Double> thisList = new ArrayList<>();
-        List<Double> thatList = new ArrayList<>();
-
-        Iterator<Vector.VectorEntry> thisIterator = thisVector.iterator();
-        Iterator<Vector.VectorEntry> thatIterator = thatVector.iterator();
-
-        while (thatIterator.hasNext()) {
-            Vector.VectorEntry thatVectorEntry = thatIterator.next();
-            int thatIndex = thatVectorEntry.index();
-            thatList.add(thatVectorEntry.get());
-            if (thisIterator.hasNext()) {
-                while (thisIterator.hasNext()) {
-                    Vector.VectorEntry thisVectorEntry = thatIterator.next();
-                    int thisIndex = thisVectorEntry.index();
-                    if (thisIndex == thatIndex) {
-                        thisList.add(thisVectorEntry.get());
-                        break;
-                    } else if (thisIndex > thatIndex) {
-                        thisList.add(0.0D);
-                        break;
-                    }
-                }
-            } else {
-                thisList.add(0.0D);
+    @Override
+    protected double getSimilarity(double[] thisValues, double[] thatValues, int size) {
+        int numCommonIndices = 0;
+        for (int i = 0; i < size; i++) {
+            if (thisValues[i] > 0.0 && thatValues[i] > 0.0) {
+                numCommonIndices++;
             }
         }
 
-        return getSimilarity(thisList, thatList);
-    }
-
-    /**
-     * Calculate the similarity between thisList and thatList.
-     *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
-     */
-    protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        if (thisList == null || thatList == null || thisList.size() < 2 || thatList.size() < 2) {
-            return Double.NaN;
-        }
-
-        Set<Integer> commonIndices = new HashSet<Integer>();
-        for (int i = 0; i < thisList.size(); i++) {
-            if (thisList.get(i).doubleValue() > 0.0 && thatList.get(i).doubleValue() > 0.0) {
-                commonIndices.add(i);
-            }
-        }
-
-        int numCommonIndices = commonIndices.size();
         if (numCommonIndices < 2) {
             return Double.NaN;
         }
 
-        List<Integer> commonIndexList = new ArrayList<Integer>(commonIndices);
         double sum = 0.0;
-        for (int i = 0; i < commonIndexList.size(); i++) {
-            for (int j = i + 1; j < commonIndexList.size(); j++) {
-                double thisDiff = thisList.get(commonIndexList.get(i)).doubleValue() - thisList.get(commonIndexList.get(j)).doubleValue();
-                double thatDiff = thatList.get(commonIndexList.get(i)).doubleValue() - thatList.get(commonIndexList.get(j)).doubleValue();
+        for (int i = 0; i < size; i++) {
+            if (!(thisValues[i] > 0.0 && thatValues[i] > 0.0)) {
+                continue;
+            }
+            for (int j = i + 1; j < size; j++) {
+                if (!(thisValues[j] > 0.0 && thatValues[j] > 0.0)) {
+                    continue;
+                }
+                double thisDiff = thisValues[i] - thisValues[j];
+                double thatDiff = thatValues[i] - thatValues[j];
                 if (thisDiff * thatDiff < 0.0) {
                     sum += 1.0;
                 }
@@ -17,8 +17,6 @@
  */
 package net.librec.similarity;
 
-import java.util.List;
-
 /**
  * Calculate Mean Squared Difference (MSD) similarity proposed by Shardanand and Maes [1995]:
  * <i>Social information filtering: Algorithms for automating "word of mouth"</i>
@@ -30,27 +28,29 @@ import java.util.List;
 public class MSDSimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * Calculate the similarity between thisList and thatList.
+     * Sum of the squared differences over the co-rated entries.
      *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    public double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        if (thisList == null || thatList == null || thisList.size() < 1 || thatList.size() < 1 || thisList.size() != thatList.size()) {
-            return Double.NaN;
-        }
-
-        double sum = 0.0;
-
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisValue = thisList.get(i).doubleValue();
-            double thatValue = thatList.get(i).doubleValue();
+    @Override
+    protected int getNumStatistics() {
+        return 1;
+    }
 
-            sum += Math.pow(thisValue - thatValue, 2);
-        }
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        double diff = thisValue - thatValue;
+        statistics[offset] += diff * diff;
+    }
 
-        double sim = thisList.size() / sum;
+    /**
+     * Calculate the mean squared difference similarity over the co-rated entries.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        double sim = numCommon / statistics[offset];
         if (Double.isInfinite(sim))
             sim = 1.0;
 
@@ -17,8 +17,6 @@
  */
 package net.librec.similarity;
 
-import java.util.List;
-
 /**
  * Mean Square Error Similarity
  *
@@ -27,22 +25,28 @@ import java.util.List;
 public class MSESimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * Calculate the similarity between thisList and thatList.
+     * Sum of the squared differences over the co-rated entries.
      *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    public double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        if (thisList == null || thatList == null || thisList.size() < 1 || thatList.size() < 1 || thisList.size() != thatList.size()) {
-            return Double.NaN;
-        }
+    @Override
+    protected int getNumStatistics() {
+        return 1;
+    }
+
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        double diff = thisValue - thatValue;
+        statistics[offset] += diff * diff;
+    }
 
-        double mse = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double diff = thisList.get(i).doubleValue() - thatList.get(i).doubleValue();
-            mse += Math.pow(diff, 2);
-        }
-        return mse / thisList.size();
+    /**
+     * Calculate the mean square error over the co-rated entries.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        return statistics[offset] / numCommon;
     }
 }
@@ -17,10 +17,6 @@
  */
 package net.librec.similarity;
 
-import net.librec.math.algorithm.Maths;
-
-import java.util.List;
-
 /**
  * Pearson Correlation Coefficient (PCC)
  *
@@ -29,30 +25,41 @@ import java.util.List;
 public class PCCSimilarity extends AbstractRecommenderSimilarity {
 
     /**
-     * Calculate the similarity between thisList and thatList.
+     * Sums, squared sums and the inner product over the co-rated entries.
      *
-     * @param thisList this list
-     * @param thatList that list
-     * @return similarity
+     * @return the number of statistics per pair
      */
-    public double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        // compute similarity
+    @Override
+    protected int getNumStatistics() {
+        return 5;
+    }
+
+    @Override
+    protected void accumulate(double[] statistics, int offset, double thisValue, double thatValue) {
+        statistics[offset] += thisValue;
+        statistics[offset + 1] += thatValue;
+        statistics[offset + 2] += thisValue * thisValue;
+        statistics[offset + 3] += thatValue * thatValue;
+        statistics[offset + 4] += thisValue * thatValue;
+    }
 
-        if (thisList == null || thatList == null || thisList.size() < 2 || thatList.size() < 2 || thisList.size() != thatList.size()) {
+    /**
+     * Calculate the Pearson correlation over the co-rated entries.
+     */
+    @Override
+    protected double computeSimilarity(double[] statistics, int offset, int numCommon,
+                                       int thisSize, double thisLengthSquared,
+                                       int thatSize, double thatLengthSquared) {
+        if (numCommon < 2) {
             return Double.NaN;
         }
 
-        double thisMu = Maths.mean(thisList);
-        double thatMu = Maths.mean(thatList);
-
-        double num = 0.0, thisPow2 = 0.0, thatPow2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisMinusMu = thisList.get(i).doubleValue() - thisMu;
-            double thatMinusMu = thatList.get(i).doubleValue() - thatMu;
-
-            num += thisMinusMu * thatMinusMu;
-            thisPow2 += thisMinusMu * thisMinusMu;
-            thatPow2 += thatMinusMu * thatMinusMu;
+        double thisSum = statistics[offset], thatSum = statistics[offset + 1];
+        double num = statistics[offset + 4] - thisSum * thatSum / numCommon;
+        double thisPow2 = statistics[offset + 2] - thisSum * thisSum / numCommon;
+        double thatPow2 = statistics[offset + 3] - thatSum * thatSum / numCommon;
+        if (thisPow2 <= 0.0 || thatPow2 <= 0.0) {
+            return Double.NaN;
         }
 
         return num / (Math.sqrt(thisPow2) * Math.sqrt(thatPow2));
@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Configuration Test Case corresponds to Configuration
@@ -129,4 +130,37 @@ public class ConfigurationTestCase extends BaseTestCase {
         assertEquals("str1", actual[1]);
         assertEquals("str2", actual[2]);
     }
+
+    /**
+     * Test method snapshot.
+     */
+    @Test
+    public void test8Snapshot() {
+        conf.setInt("test8.int", 8);
+        conf.setDouble("test8.double", 0.8d);
+        conf.setBoolean("test8.boolean", true);
+        ConfigurationSnapshot snapshot = conf.snapshot();
+        conf.setInt("test8.int", 9);
+
+        assertEquals(8, snapshot.getInt("test8.int", 0));
+        assertEquals(0.8d, snapshot.getDouble("test8.double", 0.0d), 0);
+        assertEquals(true, snapshot.getBoolean("test8.boolean", false));
+        assertEquals(7L, snapshot.getLong("test8.missing", 7L));
+        assertEquals(9, (int) conf.getInt("test8.int"));
+    }
+
+    /**
+     * Test method getVersion.
+     */
+    @Test
+    public void test9Version() {
+        long version = conf.getVersion();
+        ConfigurationSnapshot snapshot = conf.snapshot();
+        assertEquals(version, snapshot.getVersion());
+
+        conf.setInt("test9.int", 9);
+        assertTrue(conf.getVersion() > version);
+        assertEquals(conf.getVersion(), conf.snapshot().getVersion());
+        assertEquals(version, snapshot.getVersion());
+    }
 }
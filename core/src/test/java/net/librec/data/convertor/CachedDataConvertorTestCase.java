@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import net.librec.BaseTestCase;
+import net.librec.math.structure.DataFrame;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialSparseVector;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases about the binary dataset cache of
+ * {@link net.librec.data.convertor.CachedDataConvertor}
+ */
+public class CachedDataConvertorTestCase extends BaseTestCase {
+
+    private static class CountingConvertor extends TextDataConvertor {
+        int numProcessed;
+
+        CountingConvertor(String path) {
+            super("UIRT", path, "[\t;, ]");
+        }
+
+        @Override
+        public void processData() throws IOException {
+            numProcessed++;
+            super.processData();
+        }
+    }
+
+    private static void assertMatrixEquals(SequentialAccessSparseMatrix expected, SequentialAccessSparseMatrix actual) {
+        assertEquals(expected.rowSize(), actual.rowSize());
+        assertEquals(expected.columnSize(), actual.columnSize());
+        assertEquals(expected.getNumEntries(), actual.getNumEntries());
+        for (int rowIndex = 0; rowIndex < expected.rowSize(); rowIndex++) {
+            SequentialSparseVector expectedRow = expected.row(rowIndex);
+            SequentialSparseVector actualRow = actual.row(rowIndex);
+            assertEquals(expectedRow.getNumEntries(), actualRow.getNumEntries());
+            for (int position = 0; position < expectedRow.getNumEntries(); position++) {
+                assertEquals(expectedRow.getIndexAtPosition(position), actualRow.getIndexAtPosition(position));
+                assertEquals(expectedRow.getAtPosition(position), actualRow.getAtPosition(position), 0.0D);
+            }
+        }
+        for (int columnIndex = 0; columnIndex < expected.columnSize(); columnIndex++) {
+            assertEquals(expected.column(columnIndex).getNumEntries(), actual.column(columnIndex).getNumEntries());
+        }
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        Random random = new Random(7L);
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < 2000; line++) {
+            sb.append("user").append(random.nextInt(100)).append('\t')
+                    .append("item").append(random.nextInt(150)).append('\t')
+                    .append(1 + random.nextInt(5)).append('\t')
+                    .append(random.nextInt(Integer.MAX_VALUE)).append('\n');
+        }
+        Path directory = Files.createTempDirectory("librec-cache");
+        File input = new File(directory.toFile(), "ratings.txt");
+        Files.write(input.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        String cacheDirectory = new File(directory.toFile(), "cache").toString();
+        String[] inputDataPath = {input.toString()};
+        try {
+            DataFrame.clearInnerMapping();
+            CountingConvertor source = new CountingConvertor(input.toString());
+            File cacheFile = CachedDataConvertor.getCacheFile(cacheDirectory, inputDataPath, "UIRT");
+            CachedDataConvertor convertor = new CachedDataConvertor(source, cacheFile, conf, true);
+            convertor.processData();
+            assertEquals(1, source.numProcessed);
+            assertTrue(cacheFile.exists());
+            SequentialAccessSparseMatrix preferenceMatrix = convertor.getPreferenceMatrix(conf);
+            SequentialAccessSparseMatrix datetimeMatrix = convertor.getDatetimeMatrix();
+            BiMap<String, Integer> userIds = HashBiMap.create(convertor.getIdDictionaries().get("user"));
+            BiMap<String, Integer> itemIds = HashBiMap.create(convertor.getIdDictionaries().get("item"));
+
+            // the second run reads the cache only
+            DataFrame.clearInnerMapping();
+            source = new CountingConvertor(input.toString());
+            convertor = new CachedDataConvertor(source, cacheFile, conf, true);
+            convertor.processData();
+            assertEquals(0, source.numProcessed);
+            assertMatrixEquals(preferenceMatrix, convertor.getPreferenceMatrix(conf));
+            assertMatrixEquals(datetimeMatrix, convertor.getDatetimeMatrix());
+            assertEquals(userIds, convertor.getIdDictionaries().get("user"));
+            assertEquals(itemIds, convertor.getIdDictionaries().get("item"));
+
+            // the data frame is parsed on request
+            assertEquals(2000, convertor.getMatrix().size());
+            assertEquals(1, source.numProcessed);
+
+            // a refresh rebuilds the cache
+            DataFrame.clearInnerMapping();
+            conf.setBoolean("data.cache.refresh", true);
+            source = new CountingConvertor(input.toString());
+            new CachedDataConvertor(source, cacheFile, conf, true).processData();
+            assertEquals(1, source.numProcessed);
+            conf.setBoolean("data.cache.refresh", false);
+
+            // a modified input or other settings have another cache file
+            assertNotEquals(cacheFile, CachedDataConvertor.getCacheFile(cacheDirectory, inputDataPath, "UIR"));
+            assertTrue(input.setLastModified(input.lastModified() - 10000L));
+            assertNotEquals(cacheFile, CachedDataConvertor.getCacheFile(cacheDirectory, inputDataPath, "UIRT"));
+
+            assertEquals(1, CachedDataConvertor.clear(cacheDirectory));
+            assertTrue(!cacheFile.exists());
+        } finally {
+            DataFrame.clearInnerMapping();
+            CachedDataConvertor.clear(cacheDirectory);
+            new File(cacheDirectory).delete();
+            input.delete();
+            directory.toFile().delete();
+        }
+    }
+}
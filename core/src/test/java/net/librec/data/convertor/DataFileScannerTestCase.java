@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import net.librec.BaseTestCase;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SparseMatrixBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * DataFileScanner Test Case corresponds to {@link DataFileScanner} and
+ * {@link SparseMatrixBuilder}
+ */
+public class DataFileScannerTestCase extends BaseTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that lines are split as {@code line.trim().split("[ \t,]+")} does,
+     * over line endings and lines longer than the buffer.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSplitLines() throws Exception {
+        StringBuilder longField = new StringBuilder();
+        for (int index = 0; index < 3 * 1024 * 1024; index++) {
+            longField.append((char) ('a' + index % 26));
+        }
+        String text = "u1 u2 0.5\r\n\r\n  u3\tu4,,2\r" + longField + ",x\n\n \t\nu5 u6 1e-3";
+        File file = folder.newFile("lines.txt");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+        final List<String> lines = new ArrayList<>();
+        long numBytes = DataFileScanner.scan(file.getPath(), line -> {
+            StringBuilder fields = new StringBuilder();
+            for (int field = 0; field < line.numFields(); field++) {
+                fields.append(field == 0 ? "" : "|").append(line.getString(field));
+            }
+            lines.add(fields.toString());
+        });
+
+        List<String> expected = new ArrayList<>();
+        for (String line : text.replaceAll("\r", "\n").split("(\n)+")) {
+            if (!line.trim().isEmpty()) {
+                expected.add(String.join("|", line.trim().split("[ \t,]+")));
+            }
+        }
+        assertEquals(text.length(), numBytes);
+        assertEquals(expected, lines);
+    }
+
+    /**
+     * Test parsing numbers and looking up ids of fields.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFieldValues() throws Exception {
+        File file = folder.newFile("values.txt");
+        Files.write(file.toPath(), Arrays.asList("u1 u2 0.5", "u2 u9 2", "用户 u1 -1.25e2"), StandardCharsets.UTF_8);
+        BiMap<String, Integer> userIds = HashBiMap.create();
+        userIds.put("u1", 0);
+        userIds.put("u2", 1);
+        userIds.put("用户", 2);
+        DataFileScanner.IdIndex userIndex = DataFileScanner.IdIndex.of(userIds);
+
+        final List<String> values = new ArrayList<>();
+        DataFileScanner.scan(file.getPath(), line -> values.add(line.getId(0, userIndex) + " "
+                + line.getId(1, userIndex) + " " + line.getDouble(2)));
+
+        assertEquals(Arrays.asList("0 1 0.5", "1 -1 2.0", "2 0 -125.0"), values);
+    }
+
+    /**
+     * Test that the builder sorts the entries and keeps the last duplicate,
+     * as putting them into a table does.
+     */
+    @Test
+    public void testBuildMatrix() {
+        SparseMatrixBuilder builder = new SparseMatrixBuilder();
+        builder.add(2, 3, 1.0);
+        builder.add(0, 1, 2.0);
+        builder.add(2, 0, 3.0);
+        builder.add(2, 3, 4.0);
+        builder.add(0, 1, 5.0);
+        assertEquals(5, builder.size());
+
+        SequentialAccessSparseMatrix matrix = builder.build(3, 4);
+        assertEquals(3, matrix.size());
+        assertEquals(5.0, matrix.get(0, 1), 0.0);
+        assertEquals(3.0, matrix.get(2, 0), 0.0);
+        assertEquals(4.0, matrix.get(2, 3), 0.0);
+        assertEquals(0.0, matrix.get(1, 1), 0.0);
+        assertEquals(2, matrix.column(3).getNumEntries() + matrix.column(1).getNumEntries());
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import net.librec.BaseTestCase;
+import net.librec.math.structure.DataFrame;
+import net.librec.math.structure.IdDictionaries;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases about the parallel reader of
+ * {@link net.librec.data.convertor.TextDataConvertor}
+ */
+public class TextDataConvertorTestCase extends BaseTestCase {
+
+    private static class Result {
+        List<List<Object>> data;
+        BiMap<String, Integer> userIds;
+        BiMap<String, Integer> itemIds;
+    }
+
+    private Result read(String format, String path, String sep, int numThreads) throws IOException {
+        DataFrame.clearInnerMapping();
+        TextDataConvertor convertor = new TextDataConvertor(format, path, sep);
+        convertor.setNumReadThreads(numThreads);
+        convertor.setReadChunkSize(97);
+        convertor.processData();
+        Result result = new Result();
+        result.data = convertor.getMatrix().getData();
+        result.userIds = HashBiMap.create(convertor.getIdDictionaries().get("user"));
+        result.itemIds = HashBiMap.create(convertor.getIdDictionaries().get("item"));
+        return result;
+    }
+
+    private void checkSameAsLineReader(String format, String path, String sep) throws IOException {
+        Result expected = read(format, path, sep, 1);
+        Result actual = read(format, path, sep, 3);
+        assertTrue(expected.data.get(0).size() > 0);
+        assertEquals(expected.data, actual.data);
+        assertEquals(expected.userIds, actual.userIds);
+        assertEquals(expected.itemIds, actual.itemIds);
+    }
+
+    private String randomLines(Random random, int numLines, String[] separators, String lineEnd) {
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < numLines; line++) {
+            String separator = separators[random.nextInt(separators.length)];
+            sb.append("user").append(random.nextInt(40)).append(separator)
+                    .append("item-é").append(random.nextInt(60)).append(separator)
+                    .append(random.nextInt(2) == 0 ? String.valueOf(1 + random.nextInt(5)) : String.valueOf(random.nextDouble()))
+                    .append(separator)
+                    .append(random.nextInt(Integer.MAX_VALUE))
+                    .append(lineEnd);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testParallelReader() throws IOException {
+        Random random = new Random(3L);
+        Path directory = Files.createTempDirectory("librec-text");
+        File first = new File(directory.toFile(), "a.txt");
+        File second = new File(directory.toFile(), "b.txt");
+        Files.write(first.toPath(), randomLines(random, 300, new String[]{"\t", ";", ",", " "}, "\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        // the lines after a blank line are not read
+        Files.write(second.toPath(), (randomLines(random, 200, new String[]{","}, "\n") + " \n"
+                + randomLines(random, 50, new String[]{","}, "\n")).getBytes(StandardCharsets.UTF_8));
+        try {
+            checkSameAsLineReader("UIRT", directory.toString(), "[\t;, ]");
+            checkSameAsLineReader("UIRT", second.toString(), ",");
+            checkSameAsLineReader("UIRT", second.toString(), "[,]+");
+        } finally {
+            first.delete();
+            second.delete();
+            directory.toFile().delete();
+        }
+    }
+
+    @Test
+    public void testLiteralSeparator() throws IOException {
+        Random random = new Random(5L);
+        File file = File.createTempFile("librec-text", ".dat");
+        Files.write(file.toPath(), randomLines(random, 300, new String[]{"::"}, "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            checkSameAsLineReader("UIRT", file.toString(), "::");
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that a converted data frame counts the users and items of its own
+     * dictionaries rather than of the default ones.
+     */
+    @Test
+    public void testNumUsersAndItems() throws IOException {
+        Random random = new Random(7L);
+        String lines = randomLines(random, 300, new String[]{"\t"}, "\n");
+        Set<String> users = new HashSet<>();
+        Set<String> items = new HashSet<>();
+        for (String line : lines.split("\n")) {
+            String[] fields = line.split("\t");
+            users.add(fields[0]);
+            items.add(fields[1]);
+        }
+        File file = File.createTempFile("librec-text", ".txt");
+        Files.write(file.toPath(), lines.getBytes(StandardCharsets.UTF_8));
+        try {
+            DataFrame.clearInnerMapping();
+            DataFrame.getInnerMapping("user").intern("not-a-user");
+            TextDataConvertor convertor = new TextDataConvertor("UIRT", file.toString(), "\t");
+            convertor.setIdDictionaries(new IdDictionaries());
+            convertor.processData();
+            assertEquals(users.size(), convertor.getMatrix().numUsers());
+            assertEquals(items.size(), convertor.getMatrix().numItems());
+        } finally {
+            DataFrame.clearInnerMapping();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNumberParsing() {
+        String[] numbers = {"0", "-0", "5", "+3", "4.5", "-0.25", ".5", "7.", "0.1", "0.30000000000000004",
+                "123456789012345", "1234567890123456", "1e3", "3.5d", "-17.000001"};
+        for (String number : numbers) {
+            byte[] bytes = number.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                    Double.doubleToLongBits(TextDataChunk.parseDouble(bytes, 0, bytes.length)));
+        }
+        String[] longs = {"0", "-12", "+7", "881250949", "922337203685477580"};
+        for (String number : longs) {
+            byte[] bytes = number.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(Long.parseLong(number), TextDataChunk.parseLong(bytes, 0, bytes.length));
+        }
+    }
+}
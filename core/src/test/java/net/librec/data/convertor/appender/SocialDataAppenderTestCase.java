@@ -57,11 +57,11 @@ public class SocialDataAppenderTestCase extends BaseTestCase {
         textDataConvertor.processData();
         conf.set("data.appender.path", "filmtrust/trust/trust.txt");
         SocialDataAppender dataFeature = (SocialDataAppender) ReflectionUtil.newInstance(DriverClassUtil.getClass(conf.get("data.appender.class")), conf);
-        dataFeature.setUserMappingData(DataFrame.getUserIds());
+        dataFeature.setUserMappingData(textDataConvertor.getIdDictionaries().get("user"));
         dataFeature.processData();
 
         assertTrue(dataFeature.getUserAppender().rowSize() == dataFeature.getUserAppender().columnSize());
-        assertTrue(dataFeature.getUserAppender().rowSize() <= DataFrame.getUserIds().size());
+        assertTrue(dataFeature.getUserAppender().rowSize() <= textDataConvertor.getIdDictionaries().get("user").size());
     }
 
     /**
@@ -76,10 +76,10 @@ public class SocialDataAppenderTestCase extends BaseTestCase {
         textDataConvertor.processData();
         conf.set("data.appender.path", "test/test-append-dir");
         SocialDataAppender dataFeature = new SocialDataAppender(conf);
-        dataFeature.setUserMappingData(DataFrame.getUserIds());
+        dataFeature.setUserMappingData(textDataConvertor.getIdDictionaries().get("user"));
         dataFeature.processData();
 
         assertTrue(dataFeature.getUserAppender().rowSize() == dataFeature.getUserAppender().columnSize());
-        assertTrue(dataFeature.getUserAppender().rowSize() <= DataFrame.getUserIds().size());
+        assertTrue(dataFeature.getUserAppender().rowSize() <= textDataConvertor.getIdDictionaries().get("user").size());
     }
 }
@@ -21,11 +21,15 @@ import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configured;
 import net.librec.data.DataModel;
+import net.librec.math.structure.MappedSequentialAccessSparseMatrix;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
+import java.io.File;
+import java.nio.file.Files;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -459,6 +463,28 @@ public class TextDataModelTestCase extends BaseTestCase {
 		assertEquals(getTestSize(dataModel), 9);
 	}
 
+	/**
+	 * Test the train matrix mapped to a file in the directory of
+	 * data.model.mapped.dir.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test21MappedTrainMatrix() throws Exception {
+		File mappedDir = Files.createTempDirectory("librec-mapped").toFile();
+		conf.set("data.model.mapped.dir", mappedDir.getPath());
+		conf.set(Configured.CONF_DATA_COLUMN_FORMAT, "UIR");
+		conf.set(Configured.CONF_DATA_INPUT_PATH, "test/datamodeltest/matrix4by4.txt");
+
+		TextDataModel dataModel = new TextDataModel(conf);
+		dataModel.buildDataModel();
+
+		assertTrue(dataModel.getTrainDataSet() instanceof MappedSequentialAccessSparseMatrix);
+		assertEquals(getDataSize(dataModel), 13);
+		MappedSequentialAccessSparseMatrix trainMatrix = (MappedSequentialAccessSparseMatrix) dataModel.getTrainDataSet();
+		assertEquals(mappedDir.getCanonicalFile(), trainMatrix.getFile().getParentFile());
+	}
+
 	/**
 	 * Returns the size of preference matrix of a specified DataModel object
 	 *
@@ -20,6 +20,8 @@ package net.librec.data.splitter;
 import net.librec.BaseTestCase;
 import net.librec.conf.Configured;
 import net.librec.data.convertor.TextDataConvertor;
+import net.librec.math.structure.MatrixEntry;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -86,4 +88,36 @@ public class KCVDataSplitterTestCase extends BaseTestCase {
 			assertEquals(splitter.getTestData().size(), 2);
 		}
 	}
+
+	/**
+	 * Test method getFold gives the folds nextFold goes through
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetFold() throws Exception {
+		conf.set(Configured.CONF_DATA_COLUMN_FORMAT, "UIR");
+		convertor.processData();
+		KCVDataSplitter splitter = new KCVDataSplitter(convertor, conf);
+		splitter.splitData();
+		int numFolds = splitter.getNumRemainingFolds();
+		assertEquals(6, numFolds);
+		SequentialAccessSparseMatrix[][] folds = new SequentialAccessSparseMatrix[numFolds][];
+		for (int fold = 0; fold < numFolds; fold++) {
+			folds[fold] = splitter.getFold(fold);
+		}
+		assertEquals(numFolds, splitter.getNumRemainingFolds());
+		for (int fold = 0; splitter.nextFold(); fold++) {
+			assertMatrixEquals(splitter.getTrainData(), folds[fold][0]);
+			assertMatrixEquals(splitter.getTestData(), folds[fold][1]);
+		}
+		assertEquals(0, splitter.getNumRemainingFolds());
+	}
+
+	private void assertMatrixEquals(SequentialAccessSparseMatrix expected, SequentialAccessSparseMatrix actual) {
+		assertEquals(expected.getNumEntries(), actual.getNumEntries());
+		for (MatrixEntry matrixEntry : expected) {
+			assertEquals(matrixEntry.get(), actual.get(matrixEntry.row(), matrixEntry.column()), 0.0);
+		}
+	}
 }
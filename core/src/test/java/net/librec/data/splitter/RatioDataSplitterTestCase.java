@@ -25,6 +25,7 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -189,6 +190,28 @@ public class RatioDataSplitterTestCase extends BaseTestCase{
 		assertTrue(Math.abs(actualRatio-0.8) <= 0.04);
 	}
 
+	/**
+	 * Test the fixed ratio of each user: the train and test sets are disjoint
+	 * and cover the data.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test08UserFixedRatio() throws Exception{
+		conf.set("data.splitter.ratio", "userfixed");
+		conf.set("data.splitter.trainset.ratio", "0.8");
+		conf.set(Configured.CONF_DATA_COLUMN_FORMAT, "UIR");
+
+		convertor.processData();
+		RatioDataSplitter splitter = new RatioDataSplitter(convertor, conf);
+		splitter.splitData();
+
+		assertEquals(convertor.getPreferenceMatrix().size(),
+				splitter.getTrainData().size() + splitter.getTestData().size());
+		double actualRatio = calTrainRatio(splitter, convertor);
+		assertTrue(Math.abs(actualRatio - 0.8) <= 0.05);
+	}
+
 	/**
 	 * calculate the ratio of training set of a specified RatioDataSplitter object and its convertor
 	 *
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import net.librec.BaseTestCase;
+import net.librec.eval.ranking.*;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.recommender.item.KeyValue;
+import net.librec.recommender.item.KeyValueArrayList;
+import net.librec.recommender.item.RecommendedList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * EvaluationSweep test case
+ * {@link net.librec.eval.EvaluationSweep}
+ */
+public class EvaluationSweepTestCase extends BaseTestCase {
+
+    private static final int NUM_USERS = 1000;
+    private static final int NUM_ITEMS = 300;
+    private static final int TOP_N = 10;
+
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        random = new Random(7L);
+        int[] numDropped = new int[NUM_USERS];
+        Arrays.fill(numDropped, NUM_ITEMS);
+        conf.setInts("rec.eval.auc.dropped.num", numDropped);
+        int[] itemCounts = new int[NUM_ITEMS];
+        for (int itemIdx = 0; itemIdx < NUM_ITEMS; itemIdx++) {
+            itemCounts[itemIdx] = random.nextInt(20);
+        }
+        conf.setInts("rec.eval.item.purchase.num", itemCounts);
+    }
+
+    /**
+     * Test that a sweep over a test matrix gives the values of the evaluators
+     * run one by one, bit for bit.
+     */
+    @Test
+    public void testSweepOnTestMatrix() {
+        Table<Integer, Integer, Double> testTable = HashBasedTable.create();
+        for (int userIdx = 0; userIdx < NUM_USERS; userIdx++) {
+            int numTestItems = random.nextInt(30);
+            for (int i = 0; i < numTestItems; i++) {
+                testTable.put(userIdx, random.nextInt(NUM_ITEMS), 1.0 + random.nextInt(5));
+            }
+        }
+        SequentialAccessSparseMatrix testMatrix = new SequentialAccessSparseMatrix(NUM_USERS, NUM_ITEMS, testTable);
+        EvalContext evalContext = new EvalContext(conf, randomRecommendedList(), testMatrix);
+
+        assertSweepEquals(evalContext, new PrecisionEvaluator(), new RecallEvaluator(), new AUCEvaluator(),
+                new AveragePrecisionEvaluator(), new NormalizedDCGEvaluator(), new ReciprocalRankEvaluator(),
+                new NoveltyEvaluator(), new IdealDCGEvaluator(), new AverageReciprocalHitRankEvaluator());
+    }
+
+    /**
+     * Test a ground truth with repeated keys, not sorted by key.
+     */
+    @Test
+    public void testSweepOnRepeatedKeys() {
+        RecommendedList groundTruthList = new RecommendedList(NUM_USERS);
+        for (int userIdx = 0; userIdx < NUM_USERS; userIdx++) {
+            List<KeyValue<Integer, Double>> truth = new ArrayList<>();
+            int numTestItems = random.nextInt(30);
+            for (int i = 0; i < numTestItems; i++) {
+                truth.add(new KeyValue<>(random.nextInt(NUM_ITEMS / 10), random.nextDouble()));
+            }
+            groundTruthList.addList(truth);
+        }
+        EvalContext evalContext = new EvalContext(conf, randomRecommendedList(), emptyTestMatrix());
+        evalContext.setGroundTruthList(groundTruthList);
+
+        assertSweepEquals(evalContext, new PrecisionEvaluator(), new RecallEvaluator(), new AUCEvaluator(),
+                new AveragePrecisionEvaluator(), new NormalizedDCGEvaluator(), new ReciprocalRankEvaluator(),
+                new NoveltyEvaluator());
+    }
+
+    /**
+     * Test the hit rate on a leave-one-out ground truth.
+     */
+    @Test
+    public void testSweepOnLeaveOneOut() {
+        RecommendedList groundTruthList = new RecommendedList(NUM_USERS);
+        for (int userIdx = 0; userIdx < NUM_USERS; userIdx++) {
+            List<KeyValue<Integer, Double>> truth = new ArrayList<>();
+            if (random.nextInt(10) > 0) {
+                truth.add(new KeyValue<>(random.nextInt(NUM_ITEMS / 10), 1.0));
+            }
+            groundTruthList.addList(truth);
+        }
+        EvalContext evalContext = new EvalContext(conf, randomRecommendedList(), emptyTestMatrix());
+        evalContext.setGroundTruthList(groundTruthList);
+
+        assertSweepEquals(evalContext, new HitRateEvaluator(), new AverageReciprocalHitRankEvaluator(),
+                new AUCEvaluator());
+    }
+
+    /**
+     * Test the values of the evaluators on a single context.
+     */
+    @Test
+    public void testValuesOfContext() {
+        conf.setInts("rec.eval.auc.dropped.num", new int[]{10});
+        Table<Integer, Integer, Double> testTable = HashBasedTable.create();
+        testTable.put(0, 1, 3.0);
+        testTable.put(0, 2, 1.0);
+        testTable.put(0, 5, 2.0);
+        RecommendedList recommendedList = new RecommendedList(1);
+        recommendedList.addList(new KeyValueArrayList(new int[]{5, 3, 1}, new double[]{3.0, 2.0, 1.0}, 3));
+        EvalContext evalContext = new EvalContext(conf, recommendedList,
+                new SequentialAccessSparseMatrix(1, NUM_ITEMS, testTable));
+
+        List<ContextRecommenderEvaluator> evaluators = new ArrayList<>();
+        for (AbstractContextRecommenderEvaluator evaluator : new AbstractContextRecommenderEvaluator[]{
+                new PrecisionEvaluator(), new RecallEvaluator(), new AveragePrecisionEvaluator(),
+                new ReciprocalRankEvaluator(), new NormalizedDCGEvaluator(), new AUCEvaluator()}) {
+            evaluator.setTopN(3);
+            evaluators.add(evaluator);
+        }
+        double[] values = EvaluationSweep.evaluate(evalContext, evaluators);
+        assertEquals(2.0 / 3, values[0], 1e-12);
+        assertEquals(2.0 / 3, values[1], 1e-12);
+        assertEquals((1.0 + 2.0 / 3) / 3, values[2], 1e-12);
+        assertEquals(1.0, values[3], 1e-12);
+        // the ideal DCG is computed from the gains of the hits
+        double dcg = 2.0 + 3.0 / 2;
+        double idcg = 3.0 + 2.0 / (Math.log(3) / Math.log(2));
+        assertEquals(dcg / idcg, values[4], 1e-12);
+        // 7 dropped items, key 2 is ranked below key 1, 6 dropped below each of 2 hits
+        assertEquals(13.0 / 16, values[5], 1e-12);
+    }
+
+    /**
+     * Test that a statistic put lazily is computed once, when it is first
+     * asked for, and shared by the evaluators in place of the configuration.
+     */
+    @Test
+    public void testLazyStatistics() {
+        Table<Integer, Integer, Double> testTable = HashBasedTable.create();
+        testTable.put(0, 1, 3.0);
+        testTable.put(0, 2, 1.0);
+        testTable.put(0, 5, 2.0);
+        RecommendedList recommendedList = new RecommendedList(1);
+        recommendedList.addList(new KeyValueArrayList(new int[]{5, 3, 1}, new double[]{3.0, 2.0, 1.0}, 3));
+        EvalContext evalContext = new EvalContext(conf, recommendedList,
+                new SequentialAccessSparseMatrix(1, NUM_ITEMS, testTable));
+
+        AtomicInteger numComputed = new AtomicInteger();
+        evalContext.getStatistics().putLazy(EvalStatistics.NUM_DROPPED_ITEMS, () -> {
+            numComputed.incrementAndGet();
+            return new int[]{10};
+        });
+        assertEquals(0, numComputed.get());
+
+        AUCEvaluator firstEvaluator = new AUCEvaluator();
+        firstEvaluator.setTopN(3);
+        AUCEvaluator secondEvaluator = new AUCEvaluator();
+        secondEvaluator.setTopN(3);
+        double[] values = EvaluationSweep.evaluate(evalContext,
+                Arrays.<ContextRecommenderEvaluator>asList(firstEvaluator, secondEvaluator));
+        assertEquals(13.0 / 16, values[0], 1e-12);
+        assertEquals(13.0 / 16, values[1], 1e-12);
+        assertEquals(13.0 / 16, secondEvaluator.evaluate(evalContext), 1e-12);
+        assertEquals(1, numComputed.get());
+    }
+
+    private void assertSweepEquals(EvalContext evalContext, AbstractRecommenderEvaluator... evaluators) {
+        List<ContextRecommenderEvaluator> sweepEvaluators = new ArrayList<>();
+        for (AbstractRecommenderEvaluator evaluator : evaluators) {
+            evaluator.setTopN(TOP_N);
+            sweepEvaluators.add((ContextRecommenderEvaluator) evaluator);
+        }
+        double[] sweepValues = EvaluationSweep.evaluate(evalContext, sweepEvaluators);
+        for (int evaluatorIdx = 0; evaluatorIdx < evaluators.length; evaluatorIdx++) {
+            double value = evaluators[evaluatorIdx].evaluate(evalContext);
+            assertEquals(evaluators[evaluatorIdx].getClass().getSimpleName(), value, sweepValues[evaluatorIdx], 0.0);
+        }
+    }
+
+    private RecommendedList randomRecommendedList() {
+        RecommendedList recommendedList = new RecommendedList(NUM_USERS);
+        for (int userIdx = 0; userIdx < NUM_USERS; userIdx++) {
+            int numRecommended = random.nextInt(4) == 0 ? random.nextInt(TOP_N) : TOP_N + 5;
+            int[] keys = new int[numRecommended];
+            double[] values = new double[numRecommended];
+            for (int rank = 0; rank < numRecommended; rank++) {
+                keys[rank] = random.nextInt(NUM_ITEMS / 5);
+                values[rank] = numRecommended - rank;
+            }
+            if (userIdx % 2 == 0) {
+                recommendedList.addList(new KeyValueArrayList(keys, values, numRecommended));
+            } else {
+                List<KeyValue<Integer, Double>> list = new ArrayList<>();
+                for (int rank = 0; rank < numRecommended; rank++) {
+                    list.add(new KeyValue<>(keys[rank], values[rank]));
+                }
+                recommendedList.addList(list);
+            }
+        }
+        return recommendedList;
+    }
+
+    private SequentialAccessSparseMatrix emptyTestMatrix() {
+        return new SequentialAccessSparseMatrix(NUM_USERS, NUM_ITEMS, HashBasedTable.<Integer, Integer, Double>create());
+    }
+}
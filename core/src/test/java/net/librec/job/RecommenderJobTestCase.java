@@ -19,6 +19,8 @@ package net.librec.job;
 
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
+import net.librec.conf.Configuration;
+import net.librec.conf.Configuration.Resource;
 import net.librec.recommender.item.GenericRecommendedItem;
 import net.librec.recommender.item.RecommendedItem;
 import org.junit.Before;
@@ -29,6 +31,9 @@ import org.junit.runners.MethodSorters;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * RecommenderJob test case
@@ -84,4 +89,37 @@ public class RecommenderJobTestCase extends BaseTestCase {
 		conf.set("rec.recommender.class", "net.librec.recommender.cf.AOBPRRecommender");
 		// saveResult(recommendedItemList);
 	}
+
+	/**
+	 * cross validation gives the same results whether the folds are run one
+	 * by one or at the same time.
+	 *
+	 * @throws LibrecException
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	@Test
+	public void testParallelFolds() throws LibrecException, IOException, ClassNotFoundException {
+		conf.addResource(new Resource("rec/cf/rating/biasedmf-test.properties"));
+		conf.set("data.input.path", "filmtrust/rating");
+		conf.set("data.column.format", "UIR");
+		conf.set("data.model.splitter", "kcv");
+		conf.set("data.splitter.cv.number", "3");
+		conf.set("rec.iterator.maximum", "5");
+		conf.set("rec.eval.classes", "rmse,mae");
+
+		Map<String, List<Double>> sequentialResults = runCrossValidation(new Configuration(conf), 1);
+		Map<String, List<Double>> parallelResults = runCrossValidation(new Configuration(conf), 3);
+		assertEquals(2, sequentialResults.size());
+		assertEquals(3, sequentialResults.get("RMSEEvaluator").size());
+		assertEquals(sequentialResults, parallelResults);
+	}
+
+	private Map<String, List<Double>> runCrossValidation(Configuration conf, int numThreads)
+			throws LibrecException, IOException, ClassNotFoundException {
+		conf.setInt("data.splitter.cv.threads", numThreads);
+		RecommenderJob job = new RecommenderJob(conf);
+		job.runJob();
+		return job.getCVEvalResults();
+	}
 }
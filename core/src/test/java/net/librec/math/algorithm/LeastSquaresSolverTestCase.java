@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import net.librec.BaseTestCase;
+import net.librec.math.structure.DenseMatrix;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SparseMatrixBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * LeastSquaresSolver TestCase {@link net.librec.math.algorithm.LeastSquaresSolver}
+ */
+public class LeastSquaresSolverTestCase extends BaseTestCase {
+
+    /**
+     * the squared loss of the entries with a fixed regularization
+     */
+    private static final LeastSquaresSolver.Loss SQUARED_LOSS = new LeastSquaresSolver.Loss() {
+        @Override
+        public double confidence(double value) {
+            return 1.0D;
+        }
+
+        @Override
+        public double target(double value) {
+            return value;
+        }
+
+        @Override
+        public double regularization(int rowIdx, int numEntries) {
+            return 0.1D;
+        }
+    };
+
+    /**
+     * the Cholesky solution of a small system satisfies it
+     */
+    @Test
+    public void testScratchSolve() {
+        LeastSquaresSolver.Scratch scratch = new LeastSquaresSolver.Scratch(2);
+        scratch.matrix[0][0] = 4.0D;
+        scratch.matrix[1][0] = 2.0D;
+        scratch.matrix[1][1] = 3.0D;
+        scratch.vector[0] = 2.0D;
+        scratch.vector[1] = 5.0D;
+        double[] solution = new double[2];
+        scratch.solve(solution);
+        assertEquals(2.0D, 4.0D * solution[0] + 2.0D * solution[1], 1e-12);
+        assertEquals(5.0D, 2.0D * solution[0] + 3.0D * solution[1], 1e-12);
+    }
+
+    /**
+     * the rows solved on several threads and their Gram matrix are those of a single thread
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testThreadsAgree() throws Exception {
+        int numUsers = 500, numItems = 300, numFactors = 5;
+        Randoms.seed(1L);
+        SparseMatrixBuilder builder = new SparseMatrixBuilder();
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            for (int count = 0; count < 10; count++) {
+                builder.add(userIdx, Randoms.uniform(numItems), 1 + Randoms.uniform(5));
+            }
+        }
+        SequentialAccessSparseMatrix matrix = builder.build(numUsers, numItems);
+        DenseMatrix itemFactors = new DenseMatrix(numItems, numFactors);
+        itemFactors.init(0.0, 0.1);
+
+        DenseMatrix[] userFactors = new DenseMatrix[2];
+        DenseMatrix[] grams = new DenseMatrix[2];
+        int[] numThreads = {1, 4};
+        for (int run = 0; run < numThreads.length; run++) {
+            LeastSquaresSolver solver = new LeastSquaresSolver(numFactors, numThreads[run]);
+            try {
+                userFactors[run] = new DenseMatrix(numUsers, numFactors);
+                grams[run] = solver.gramMatrix(itemFactors, null);
+                solver.solve(matrix, false, itemFactors, grams[run], userFactors[run], SQUARED_LOSS);
+            } finally {
+                solver.shutdown();
+            }
+        }
+        for (int row = 0; row < numFactors; row++) {
+            for (int column = 0; column < numFactors; column++) {
+                assertEquals(grams[0].get(row, column), grams[1].get(row, column), 1e-9);
+            }
+        }
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                assertEquals(userFactors[0].get(userIdx, factorIdx), userFactors[1].get(userIdx, factorIdx), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import net.librec.BaseTestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * RandomStream TestCase {@link net.librec.math.algorithm.RandomStream}
+ * and {@link net.librec.math.algorithm.AliasTable}
+ */
+public class RandomStreamTestCase extends BaseTestCase {
+
+    /**
+     * the streams of a task are the same whichever thread derives them
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTaskStreams() throws Exception {
+        Randoms.seed(7L);
+        double[] expected = new double[3];
+        for (int task = 0; task < expected.length; task++) {
+            expected[task] = Randoms.stream(task).nextDouble();
+        }
+        assertNotEquals(expected[0], expected[1], 0.0);
+
+        double[] actual = new double[3];
+        Thread[] threads = new Thread[actual.length];
+        for (int task = actual.length - 1; task >= 0; task--) {
+            final int threadTask = task;
+            threads[task] = new Thread(() -> actual[threadTask] = Randoms.stream(threadTask).nextDouble());
+            threads[task].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertArrayEquals(expected, actual, 0.0);
+    }
+
+    /**
+     * the stream of a thread replaces the shared one in that thread only
+     */
+    @Test
+    public void testThreadStream() {
+        Randoms.seed(7L);
+        double shared = Randoms.uniform();
+
+        Randoms.seed(7L);
+        Randoms.seedThread(new RandomStream(11L));
+        try {
+            assertEquals(new RandomStream(11L).nextDouble(), Randoms.uniform(), 0.0);
+        } finally {
+            Randoms.clearThreadSeed();
+        }
+        assertEquals(shared, Randoms.uniform(), 0.0);
+    }
+
+    /**
+     * the Gaussian fill gives the same numbers as drawing them one by one
+     */
+    @Test
+    public void testFillGaussian() {
+        double[] filled = new double[7];
+        RandomStream stream = new RandomStream(3L);
+        stream.nextGaussian();
+        stream.fillGaussian(filled, 0, filled.length, 1.0, 0.5);
+
+        RandomStream expected = new RandomStream(3L);
+        expected.nextGaussian();
+        for (double value : filled) {
+            assertEquals(1.0 + 0.5 * expected.nextGaussian(), value, 1e-12);
+        }
+
+        Randoms.seed(5L);
+        double[] shared = new double[5];
+        Randoms.gaussians(shared, 0.0, 0.1);
+        Random random = new Random(5L);
+        for (double value : shared) {
+            assertEquals(0.1 * random.nextGaussian(), value, 0.0);
+        }
+    }
+
+    /**
+     * a deserialized stream draws numbers, the same ones for the same stream
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerialization() throws Exception {
+        RandomStream first = deserialize(new RandomStream(13L));
+        RandomStream second = deserialize(new RandomStream(13L));
+        for (int draw = 0; draw < 10; draw++) {
+            assertEquals(first.nextLong(), second.nextLong());
+        }
+        first.nextGaussian();
+        double[] values = new double[4];
+        first.fillUniform(values, 0, values.length, 0.0, 1.0);
+    }
+
+    private static RandomStream deserialize(RandomStream stream) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(stream);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (RandomStream) in.readObject();
+        }
+    }
+
+    /**
+     * the alias table samples the outcomes by their weights
+     */
+    @Test
+    public void testAliasTable() {
+        double[] weights = {1.0, 0.0, 3.0, 4.0};
+        AliasTable table = new AliasTable(weights);
+        int[] counts = new int[weights.length];
+        RandomStream stream = new RandomStream(1L);
+        int numSamples = 200000;
+        for (int sample = 0; sample < numSamples; sample++) {
+            counts[table.sample(stream)]++;
+        }
+        assertEquals(0, counts[1]);
+        for (int outcome = 0; outcome < weights.length; outcome++) {
+            assertEquals(weights[outcome] / 8.0, (double) counts[outcome] / numSamples, 0.01);
+        }
+    }
+}
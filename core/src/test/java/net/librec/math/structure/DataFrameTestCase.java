@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import net.librec.BaseTestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases about the columnar storage of
+ * {@link net.librec.math.structure.DataFrame}
+ */
+public class DataFrameTestCase extends BaseTestCase {
+
+    private DataFrame newDataFrame() {
+        DataFrame.clearInnerMapping();
+        DataFrame df = new DataFrame();
+        df.setHeader(new String[]{"user", "item", "rating", "datetime"});
+        df.setAttrType(new String[]{"STRING", "STRING", "NUMERIC", "DATE"});
+        return df;
+    }
+
+    private void checkMatrix(Table<Integer, Integer, Double> expected, SequentialAccessSparseMatrix matrix) {
+        assertEquals(expected.size(), matrix.getNumEntries());
+        for (int row = 0; row < matrix.rowSize(); row++) {
+            SequentialSparseVector rowVector = matrix.row(row);
+            assertEquals(expected.row(row).size(), rowVector.getNumEntries());
+            for (int position = 0; position < rowVector.getNumEntries(); position++) {
+                int column = rowVector.getIndexAtPosition(position);
+                if (position > 0) {
+                    assertTrue(rowVector.getIndexAtPosition(position - 1) < column);
+                }
+                assertEquals(expected.get(row, column), rowVector.getAtPosition(position), 1e-10);
+            }
+        }
+        for (int column = 0; column < matrix.columnSize(); column++) {
+            SequentialSparseVector columnVector = matrix.column(column);
+            assertEquals(expected.column(column).size(), columnVector.getNumEntries());
+            for (Vector.VectorEntry entry : columnVector) {
+                assertEquals(expected.get(entry.index(), column), entry.get(), 1e-10);
+            }
+        }
+    }
+
+    /**
+     * Test the conversion to a sparse matrix against a table built from the
+     * same rows, the first occurrence of a duplicated cell winning.
+     */
+    @Test
+    public void testToSparseMatrix() {
+        DataFrame df = newDataFrame();
+        Random random = new Random(11L);
+        int numRows = 50000;
+        df.ensureCapacity(numRows / 2);
+        Table<Integer, Integer, Double> ratings = HashBasedTable.create();
+        Table<Integer, Integer, Double> datetimes = HashBasedTable.create();
+        Table<Integer, Integer, Double> binarized = HashBasedTable.create();
+        for (int i = 0; i < numRows; i++) {
+            String user = "u" + random.nextInt(500);
+            String item = "i" + random.nextInt(300);
+            double rating = 1 + random.nextInt(5);
+            long datetime = random.nextInt(1000000);
+            df.add(new String[]{user, item, String.valueOf(rating), String.valueOf(datetime)});
+
+            int row = df.getIdDictionary("user").get(user);
+            int column = df.getIdDictionary("item").get(item);
+            if (!ratings.contains(row, column)) {
+                ratings.put(row, column, rating);
+                datetimes.put(row, column, (double) datetime);
+                binarized.put(row, column, rating > 3.0 ? 1.0 : -1.0);
+            }
+        }
+        assertEquals(numRows, df.size());
+
+        checkMatrix(ratings, df.toSparseMatrix("preferenceMatrix"));
+        checkMatrix(datetimes, df.toSparseMatrix("datetimeMatrix"));
+        checkMatrix(binarized, df.toSparseMatrix(3.0));
+    }
+
+    @Test
+    public void testBoxedViews() {
+        DataFrame df = newDataFrame();
+        df.add(new String[]{"a", "x", "4.5", "100"});
+        df.add(new String[]{"b", "x", "1.0", "200"});
+        df.add(new String[]{"a", "y", "4.5", "300"});
+
+        assertEquals(3, df.size());
+        assertEquals(1, df.get(1, 0));
+        assertEquals(1, df.get(2, 1));
+        assertEquals(1.0, df.get(1, 2));
+        assertEquals(300L, df.get(2, 3));
+
+        List<List<Object>> data = df.getData();
+        assertEquals(4, data.size());
+        assertEquals(Arrays.asList(0, 1, 0), data.get(0));
+        assertEquals(Arrays.asList(1.0, 4.5), df.getRatingScale());
+
+    }
+
+    @Test
+    public void testToSparseTensor() throws Exception {
+        DataFrame.clearInnerMapping();
+        DataFrame df = new DataFrame();
+        df.setHeader(new String[]{"user", "item", "tag", "rating"});
+        df.setAttrType(new String[]{"STRING", "STRING", "STRING", "NUMERIC"});
+        df.add(new String[]{"a", "x", "t1", "4.5"});
+        df.add(new String[]{"b", "x", "t2", "1.0"});
+        df.add(new String[]{"a", "y", "t1", "3.0"});
+
+        SparseTensor tensor = df.toSparseTensor(new String[]{"user", "item", "tag"}, "rating");
+        assertEquals(3, tensor.size());
+        assertEquals(4.5, tensor.get(0, 0, 0), 1e-10);
+        assertEquals(1.0, tensor.get(1, 0, 1), 1e-10);
+        assertEquals(3.0, tensor.get(0, 1, 0), 1e-10);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import java.util.function.Supplier;
+
+/**
+ * Micro benchmark comparing the blocked kernels of {@link DenseMatrix} against the element by element
+ * implementations they replaced: {@code times} by a row by column dot product per entry, the Gram matrix by an
+ * explicit transpose, {@code covariance} by centered column vectors and {@code cholesky} through get and set.
+ * Run with {@code java -cp ... net.librec.math.structure.DenseMatrixBenchmark [size factors]}.
+ */
+public class DenseMatrixBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int numFactors = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        DenseMatrix squareMatrix = new DenseMatrix(size, size);
+        DenseMatrix factorMatrix = new DenseMatrix(size * 10, numFactors);
+        squareMatrix.init(0.0, 1.0);
+        factorMatrix.init(0.0, 1.0);
+        DenseVector vector = new VectorBasedDenseVector(size);
+        vector.init(0.0, 1.0);
+        DenseMatrix spdMatrix = squareMatrix.gram().plus(squareMatrix.times(0.0).assign(
+                (row, column, value) -> row == column ? size : 0.0D));
+
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("round %d%n", round);
+            compare("times", () -> timesByDot(squareMatrix, squareMatrix), () -> squareMatrix.times(squareMatrix));
+            compare("times(vector)", () -> timesByDot(squareMatrix, vector), () -> squareMatrix.times(vector));
+            compare("gram", () -> timesByDot(factorMatrix.transpose(), factorMatrix), factorMatrix::gram);
+            compare("covariance", () -> covarianceByColumns(factorMatrix), factorMatrix::covariance);
+            compare("cholesky", () -> choleskyByEntries(spdMatrix), spdMatrix::cholesky);
+        }
+    }
+
+    private static void compare(String name, Supplier<Object> reference, Supplier<Object> kernel) {
+        long start = System.nanoTime();
+        reference.get();
+        long referenceTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        kernel.get();
+        long kernelTime = System.nanoTime() - start;
+
+        System.out.printf("  %-14s element-wise %8.1f ms, kernel %8.1f ms, speedup %.1fx%n",
+                name, referenceTime / 1e6, kernelTime / 1e6, (double) referenceTime / kernelTime);
+    }
+
+    private static DenseMatrix timesByDot(DenseMatrix matrix, DenseMatrix otherMatrix) {
+        DenseMatrix result = new DenseMatrix(matrix.rowSize(), otherMatrix.columnSize());
+        for (int columnIndex = 0; columnIndex < result.columnSize(); columnIndex++) {
+            Vector columnVector = otherMatrix.viewColumn(columnIndex);
+            for (int rowIndex = 0; rowIndex < result.rowSize(); rowIndex++) {
+                result.set(rowIndex, columnIndex, matrix.row(rowIndex).dot(columnVector));
+            }
+        }
+        return result;
+    }
+
+    private static DenseVector timesByDot(DenseMatrix matrix, DenseVector vector) {
+        DenseVector result = new VectorBasedDenseVector(matrix.rowSize());
+        for (int rowIndex = 0; rowIndex < matrix.rowSize(); rowIndex++) {
+            result.set(rowIndex, matrix.row(rowIndex).dot(vector));
+        }
+        return result;
+    }
+
+    private static DenseMatrix covarianceByColumns(DenseMatrix matrix) {
+        DenseMatrix result = new DenseMatrix(matrix.columnSize(), matrix.columnSize());
+        for (int rowIndex = 0; rowIndex < matrix.columnSize(); rowIndex++) {
+            DenseVector columnVector = matrix.column(rowIndex);
+            DenseVector centeredVector = columnVector.plus(-columnVector.mean());
+            for (int columnIndex = rowIndex; columnIndex < matrix.columnSize(); columnIndex++) {
+                DenseVector columnVector2 = matrix.column(columnIndex);
+                double value = centeredVector.dot(columnVector2.plus(-columnVector2.mean()))
+                        / (matrix.rowSize() - 1);
+                result.set(rowIndex, columnIndex, value);
+                result.set(columnIndex, rowIndex, value);
+            }
+        }
+        return result;
+    }
+
+    private static DenseMatrix choleskyByEntries(DenseMatrix matrix) {
+        int size = matrix.rowSize();
+        DenseMatrix result = new DenseMatrix(size, size);
+        for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+            for (int rowIndex2 = 0; rowIndex2 <= rowIndex; rowIndex2++) {
+                double sum = 0.0D;
+                for (int columnIndex = 0; columnIndex < rowIndex2; columnIndex++) {
+                    sum += result.get(rowIndex, columnIndex) * result.get(rowIndex2, columnIndex);
+                }
+                result.set(rowIndex, rowIndex2, rowIndex == rowIndex2 ? Math.sqrt(matrix.get(rowIndex, rowIndex) - sum)
+                        : (matrix.get(rowIndex, rowIndex2) - sum) / result.get(rowIndex2, rowIndex2));
+            }
+        }
+        return result.transpose();
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Iterator;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * Test cases about the DenseMatrix class
@@ -379,6 +380,108 @@ public class DenseMatrixTestCase extends BaseTestCase {
         System.out.println("time:" + elapsedTime);
     }
 
+    @Test
+    public void testTimesInBlocks() {
+        // large enough to be split into tiles and run in parallel
+        Random rand = new Random(1L);
+        double[][] data1 = new double[300][257];
+        double[][] data2 = new double[257][310];
+        for (double[] rowValues : data1) {
+            for (int j = 0; j < rowValues.length; j++) {
+                rowValues[j] = rand.nextGaussian();
+            }
+        }
+        for (double[] rowValues : data2) {
+            for (int j = 0; j < rowValues.length; j++) {
+                rowValues[j] = rand.nextGaussian();
+            }
+        }
+        DenseMatrix denseMatrix1 = new DenseMatrix(data1);
+        DenseMatrix denseMatrix2 = new DenseMatrix(data2);
+
+        DenseMatrix result = denseMatrix1.times(denseMatrix2);
+        for (int i = 0; i < result.rowSize(); i++) {
+            for (int j = 0; j < result.columnSize(); j++) {
+                double expected = 0.0D;
+                for (int k = 0; k < denseMatrix1.columnSize(); k++) {
+                    expected += data1[i][k] * data2[k][j];
+                }
+                assertEquals(expected, result.get(i, j), 0.0D);
+            }
+        }
+
+        DenseMatrix transposeResult = denseMatrix1.transpose();
+        assertEquals(data1[299][256], transposeResult.get(256, 299), 0.0D);
+        assertEquals(data1[10][200], transposeResult.get(200, 10), 0.0D);
+    }
+
+    @Test
+    public void testTransposeTimesAndGram() {
+        DenseMatrix denseMatrix1 = new DenseMatrix(matrixData1);
+
+        DenseMatrix gram = denseMatrix1.gram();
+        DenseMatrix expected = denseMatrix1.transpose().times(denseMatrix1);
+        for (int i = 0; i < gram.rowSize(); i++) {
+            for (int j = 0; j < gram.columnSize(); j++) {
+                assertEquals(expected.get(i, j), gram.get(i, j), 0.0D);
+            }
+        }
+        assertEquals(107, gram.get(0, 0), 1e-8);
+        assertEquals(176, gram.get(3, 1), 1e-8);
+
+        DenseMatrix result = denseMatrix1.transposeTimes(new DenseMatrix(new double[][]{{1}, {0}, {2}}));
+        assertEquals(19, result.get(0, 0), 1e-8);
+        assertEquals(28, result.get(3, 0), 1e-8);
+
+        DenseVector vector = denseMatrix1.transposeTimes(new VectorBasedDenseVector(new double[]{1, 0, 2}));
+        assertEquals(19, vector.get(0), 1e-8);
+        assertEquals(28, vector.get(3), 1e-8);
+    }
+
+    @Test
+    public void testCovariance() {
+        DenseMatrix denseMatrix = new DenseMatrix(new double[][]{
+                {1, 2},
+                {2, 4},
+                {3, 9}
+        });
+
+        DenseMatrix covariance = denseMatrix.covariance();
+        assertEquals(1, covariance.get(0, 0), 1e-8);
+        assertEquals(3.5, covariance.get(0, 1), 1e-8);
+        assertEquals(3.5, covariance.get(1, 0), 1e-8);
+        assertEquals(13, covariance.get(1, 1), 1e-8);
+    }
+
+    @Test
+    public void testCholeskySolve() {
+        DenseMatrix denseMatrix = new DenseMatrix(new double[][]{
+                {4, 12, -16},
+                {12, 37, -43},
+                {-16, -43, 98}
+        });
+
+        DenseMatrix cholesky = denseMatrix.cholesky();
+        assertEquals(2, cholesky.get(0, 0), 1e-8);
+        assertEquals(6, cholesky.get(0, 1), 1e-8);
+        assertEquals(-8, cholesky.get(0, 2), 1e-8);
+        assertEquals(3, cholesky.get(2, 2), 1e-8);
+
+        DenseVector vector = new VectorBasedDenseVector(new double[]{1, 2, 3});
+        DenseVector solution = denseMatrix.choleskySolve(vector);
+        DenseVector expected = denseMatrix.inverse().times(vector);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.get(i), solution.get(i), 1e-8);
+        }
+
+        DenseMatrix indefiniteMatrix = new DenseMatrix(new double[][]{
+                {1, 2},
+                {2, 1}
+        });
+        assertNull(indefiniteMatrix.cholesky());
+        assertNull(indefiniteMatrix.choleskySolve(new VectorBasedDenseVector(new double[]{1, 1})));
+    }
+
     @Test
     public void testCholeskyPerformance() {
         int dimension = 5000;
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import net.librec.BaseTestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases of {@link IdDictionary} and {@link IdDictionaries}
+ */
+public class IdDictionaryTestCase extends BaseTestCase {
+
+    /**
+     * Test that the dictionary assigns and resolves ids as a {@code HashBiMap}
+     * filled in the same order.
+     */
+    @Test
+    public void testBiMap() {
+        IdDictionary dictionary = new IdDictionary();
+        BiMap<String, Integer> expected = HashBiMap.create();
+        for (int index = 0; index < 1000; index++) {
+            String rawId = "u" + (index * 7919 % 613);
+            int innerId = dictionary.intern(rawId);
+            if (!expected.containsKey(rawId)) {
+                expected.put(rawId, expected.size());
+            }
+            assertEquals((int) expected.get(rawId), innerId);
+        }
+        assertEquals(expected, dictionary);
+        assertEquals(expected.inverse(), dictionary.inverse());
+        assertEquals(expected.keySet(), dictionary.keySet());
+        assertSame(dictionary, dictionary.inverse().inverse());
+        for (int innerId = 0; innerId < expected.size(); innerId++) {
+            assertEquals(expected.inverse().get(innerId), dictionary.getRawId(innerId));
+        }
+        assertEquals(-1, dictionary.getId("absent"));
+        assertNull(dictionary.get("absent"));
+        assertNull(dictionary.getRawId(expected.size()));
+
+        assertNull(dictionary.put("next", expected.size()));
+        assertEquals(expected.size(), (int) dictionary.put("next", expected.size()));
+        assertEquals("next", dictionary.inverse().get(expected.size()));
+        try {
+            dictionary.put("other", 0);
+            fail("inner ids are dense");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that concurrent interning gives every raw id a single inner id.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        final IdDictionary dictionary = new IdDictionary();
+        final int numIds = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    int[] innerIds = new int[numIds];
+                    for (int index = 0; index < numIds; index++) {
+                        innerIds[index] = dictionary.intern(Integer.toString(index));
+                    }
+                    return innerIds;
+                }));
+            }
+            int[] innerIds = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                assertArrayEquals(innerIds, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(numIds, dictionary.size());
+        for (int index = 0; index < numIds; index++) {
+            assertEquals(Integer.toString(index), dictionary.getRawId(dictionary.getId(Integer.toString(index))));
+        }
+    }
+
+    /**
+     * Test writing and reading a dictionary.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        IdDictionary dictionary = new IdDictionary();
+        dictionary.intern("user 1");
+        dictionary.intern("用户");
+        dictionary.intern("");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        dictionary.writeTo(new DataOutputStream(bytes));
+        IdDictionary restored = IdDictionary.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(dictionary, restored);
+        assertEquals(1, restored.getId("用户"));
+    }
+
+    /**
+     * Test that dataFrames with their own dictionaries do not share inner ids.
+     */
+    @Test
+    public void testIsolatedDataFrames() {
+        IdDictionaries first = new IdDictionaries();
+        IdDictionaries second = new IdDictionaries();
+        for (IdDictionaries idDictionaries : new IdDictionaries[]{first, second}) {
+            DataFrame df = new DataFrame(idDictionaries);
+            df.setHeader(new String[]{"user", "item", "rating"});
+            df.setAttrType(new String[]{"STRING", "STRING", "NUMERIC"});
+            df.add(new String[]{idDictionaries == first ? "a" : "b", "i", "1"});
+        }
+        assertEquals(0, first.get("user").getId("a"));
+        assertEquals(-1, first.get("user").getId("b"));
+        assertEquals(0, second.get("user").getId("b"));
+        assertFalse(DataFrame.getDefaultIdDictionaries().get("user") == first.get("user"));
+    }
+}
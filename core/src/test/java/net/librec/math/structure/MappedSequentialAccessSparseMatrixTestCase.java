@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import net.librec.BaseTestCase;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases about
+ * {@link net.librec.math.structure.MappedSequentialAccessSparseMatrix}
+ */
+public class MappedSequentialAccessSparseMatrixTestCase extends BaseTestCase {
+
+    private SequentialAccessSparseMatrix randomMatrix(int rows, int columns, int numEntries) {
+        Random random = new Random(13L);
+        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
+        while (dataTable.size() < numEntries) {
+            dataTable.put(random.nextInt(rows), random.nextInt(columns), 1.0D + random.nextInt(5) / 2.0D);
+        }
+        return new SequentialAccessSparseMatrix(rows, columns, dataTable);
+    }
+
+    private void checkSameMatrix(SequentialAccessSparseMatrix expected, SequentialAccessSparseMatrix actual) {
+        assertEquals(expected.rowSize(), actual.rowSize());
+        assertEquals(expected.columnSize(), actual.columnSize());
+        assertEquals(expected.getNumEntries(), actual.getNumEntries());
+        for (int row = 0; row < expected.rowSize(); row++) {
+            SequentialSparseVector expectedRow = expected.row(row);
+            SequentialSparseVector actualRow = actual.row(row);
+            assertArrayEquals(expectedRow.getIndices(), actualRow.getIndices());
+            for (int position = 0; position < expectedRow.getNumEntries(); position++) {
+                assertEquals(expectedRow.getAtPosition(position), actualRow.getAtPosition(position), 0.0D);
+                assertEquals(expected.getAtColumnPosition(row, position), actual.getAtColumnPosition(row, position), 0.0D);
+            }
+        }
+        for (int column = 0; column < expected.columnSize(); column++) {
+            SequentialSparseVector expectedColumn = expected.column(column);
+            SequentialSparseVector actualColumn = actual.column(column);
+            assertArrayEquals(expectedColumn.getIndices(), actualColumn.getIndices());
+            for (int position = 0; position < expectedColumn.getNumEntries(); position++) {
+                assertEquals(expectedColumn.getAtPosition(position), actualColumn.getAtPosition(position), 0.0D);
+                assertEquals(expected.getAtRowPosition(position, column), actual.getAtRowPosition(position, column), 0.0D);
+            }
+            assertEquals(expected.viewColumn(column).getNumEntries(), actualColumn.getNumEntries());
+        }
+        Iterator<MatrixEntry> expectedIterator = expected.iterator();
+        Iterator<MatrixEntry> actualIterator = actual.iterator();
+        while (expectedIterator.hasNext()) {
+            assertTrue(actualIterator.hasNext());
+            MatrixEntry expectedEntry = expectedIterator.next();
+            MatrixEntry actualEntry = actualIterator.next();
+            assertEquals(expectedEntry.row(), actualEntry.row());
+            assertEquals(expectedEntry.column(), actualEntry.column());
+            assertEquals(expectedEntry.columnPosition(), actualEntry.columnPosition());
+            assertEquals(expectedEntry.rowPosition(), actualEntry.rowPosition());
+            assertEquals(expectedEntry.get(), actualEntry.get(), 0.0D);
+            assertEquals(expectedEntry.get(), actual.get(actualEntry.row(), actualEntry.column()), 0.0D);
+        }
+        assertFalse(actualIterator.hasNext());
+        assertEquals(expected.mean(), actual.mean(), 1e-12);
+    }
+
+    /**
+     * Test the rows, columns and entries of a mapped matrix against the matrix
+     * it was written from.
+     */
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        SequentialAccessSparseMatrix matrix = randomMatrix(300, 200, 5000);
+        File file = File.createTempFile("librec-matrix", ".csr");
+        try {
+            MappedSequentialAccessSparseMatrix mappedMatrix = MappedSequentialAccessSparseMatrix.write(matrix, file);
+            checkSameMatrix(matrix, mappedMatrix);
+            assertSame(mappedMatrix, MappedSequentialAccessSparseMatrix.open(file));
+
+            // copies are mutable matrices on the heap
+            SequentialAccessSparseMatrix copy = new SequentialAccessSparseMatrix(mappedMatrix);
+            checkSameMatrix(matrix, copy);
+            checkSameMatrix(matrix, mappedMatrix.clone());
+            checkSameMatrix(matrix, new SequentialAccessSparseMatrix(mappedMatrix, true));
+            copy.setAtColumnPosition(0, 0, 0.0D);
+            copy.reshape();
+            assertEquals(matrix.getNumEntries() - 1, copy.getNumEntries());
+            assertEquals(matrix.getNumEntries(), mappedMatrix.getNumEntries());
+            try {
+                mappedMatrix.setAtColumnPosition(0, 0, 0.0D);
+                fail("the mapped matrix should be read-only");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+
+            // a mapped matrix written again
+            File secondFile = File.createTempFile("librec-matrix", ".csr");
+            try {
+                checkSameMatrix(matrix, MappedSequentialAccessSparseMatrix.write(mappedMatrix, secondFile));
+            } finally {
+                secondFile.delete();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test a matrix with empty rows and columns.
+     */
+    @Test
+    public void testEmptyRowsAndColumns() throws IOException {
+        SequentialAccessSparseMatrix matrix = randomMatrix(50, 70, 20);
+        File file = File.createTempFile("librec-matrix", ".csr");
+        try {
+            checkSameMatrix(matrix, MappedSequentialAccessSparseMatrix.write(matrix, file));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import net.librec.BaseTestCase;
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases about the SymmMatrix class
+ * {@link net.librec.math.structure.SymmMatrix}
+ */
+public class SymmMatrixTestCase extends BaseTestCase {
+
+    private void checkBasicOperations(SymmMatrix matrix) {
+        matrix.set(0, 3, 0.5);
+        matrix.set(2, 1, 0.25);
+        matrix.add(3, 0, 0.5);
+        matrix.add(1, 4, 0.75);
+        matrix.set(2, 2, 1.0);
+
+        assertEquals(1.0, matrix.get(3, 0), 1e-8);
+        assertEquals(1.0, matrix.get(0, 3), 1e-8);
+        assertEquals(0.25, matrix.get(1, 2), 1e-8);
+        assertEquals(0.75, matrix.get(4, 1), 1e-8);
+        assertEquals(0.0, matrix.get(0, 1), 1e-8);
+        assertTrue(matrix.contains(1, 2));
+        assertFalse(matrix.contains(0, 1));
+        assertEquals(4, matrix.size());
+
+        SequentialSparseVector row = matrix.row(1);
+        assertArrayEquals(new int[]{2, 4}, row.getIndices());
+        assertEquals(0.25, row.getAtPosition(0), 1e-8);
+        assertEquals(0.75, row.getAtPosition(1), 1e-8);
+
+        row = matrix.row(2);
+        assertArrayEquals(new int[]{1, 2}, row.getIndices());
+
+        // writes invalidate the cached rows
+        matrix.set(1, 0, 0.1);
+        assertArrayEquals(new int[]{0, 2, 4}, matrix.row(1).getIndices());
+
+        SequentialAccessSparseMatrix sparseMatrix = matrix.toSparseMatrix();
+        assertEquals(9, sparseMatrix.getNumEntries());
+        assertEquals(1.0, sparseMatrix.get(3, 0), 1e-8);
+        assertEquals(1.0, sparseMatrix.get(0, 3), 1e-8);
+        assertArrayEquals(new int[]{1, 2}, sparseMatrix.column(2).getIndices());
+
+        SymmMatrix copy = matrix.clone();
+        copy.set(0, 3, Double.NaN);
+        assertFalse(copy.contains(3, 0));
+        assertTrue(matrix.contains(3, 0));
+    }
+
+    @Test
+    public void testDenseMode() {
+        SymmMatrix matrix = new SymmMatrix(5, true);
+        assertTrue(matrix.isDense());
+        checkBasicOperations(matrix);
+    }
+
+    @Test
+    public void testSparseMode() {
+        SymmMatrix matrix = new SymmMatrix(5, false);
+        assertFalse(matrix.isDense());
+        checkBasicOperations(matrix);
+    }
+
+    @Test
+    public void testParallelFill() {
+        int dim = 500;
+        SymmMatrix dense = new SymmMatrix(dim, true);
+        SymmMatrix sparse = new SymmMatrix(dim, false);
+        IntStream.range(0, dim).parallel().forEach(row -> {
+            for (int col = 0; col < dim; col += 3) {
+                dense.set(col, row, row + col);
+                sparse.set(row, col, row + col);
+            }
+        });
+
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col += 3) {
+                assertEquals(row + col, dense.get(row, col), 1e-8);
+                assertEquals(row + col, sparse.get(col, row), 1e-8);
+            }
+        }
+        assertEquals(dense.size(), sparse.size());
+        assertEquals(dense.toSparseMatrix().getNumEntries(), sparse.toSparseMatrix().getNumEntries());
+    }
+
+    /**
+     * rows read while other threads write are never missing a finished write
+     */
+    @Test
+    public void testReadWhileWriting() {
+        int dim = 200;
+        for (boolean dense : new boolean[]{true, false}) {
+            SymmMatrix matrix = new SymmMatrix(dim, dense);
+            IntStream.range(0, dim).parallel().forEach(row -> {
+                matrix.set(row, 0, row + 1.0);
+                assertEquals(row + 1.0, matrix.row(row).get(0), 1e-8);
+                assertEquals(row + 1.0, matrix.row(0).get(row), 1e-8);
+            });
+            assertEquals(dim, matrix.row(0).getNumEntries());
+        }
+    }
+}
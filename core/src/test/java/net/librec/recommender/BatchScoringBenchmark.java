@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender;
+
+import net.librec.common.LibrecException;
+import net.librec.math.structure.DenseMatrix;
+import net.librec.recommender.cf.ranking.BPRRecommender;
+
+/**
+ * Micro benchmark comparing scoring all items with {@link MatrixRecommender#predict(int, int)}
+ * against the blocked {@link MatrixFactorizationRecommender#predictAllItems(int[], double[][])}.
+ * Run with {@code java -cp ... net.librec.recommender.BatchScoringBenchmark [numUsers numItems numFactors]}.
+ */
+public class BatchScoringBenchmark {
+
+    public static void main(String[] args) throws LibrecException {
+        int numUsers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int numItems = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int numFactors = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int blockSize = 32;
+
+        BPRRecommender recommender = new BPRRecommender();
+        recommender.numUsers = numUsers;
+        recommender.numItems = numItems;
+        recommender.numFactors = numFactors;
+        recommender.userFactors = new DenseMatrix(numUsers, numFactors);
+        recommender.itemFactors = new DenseMatrix(numItems, numFactors);
+        recommender.userFactors.init(0.0, 0.1);
+        recommender.itemFactors.init(0.0, 0.1);
+
+        double[][] scores = new double[blockSize][numItems];
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            double checksum = 0.0D;
+            for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+                double[] userScores = scores[0];
+                for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+                    userScores[itemIdx] = recommender.predict(userIdx, itemIdx);
+                }
+                checksum += userScores[userIdx % numItems];
+            }
+            long singleTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double batchChecksum = 0.0D;
+            int[] userIndices = new int[blockSize];
+            for (int fromUserIdx = 0; fromUserIdx < numUsers; fromUserIdx += blockSize) {
+                int numBlockUsers = Math.min(blockSize, numUsers - fromUserIdx);
+                if (numBlockUsers != userIndices.length) {
+                    userIndices = new int[numBlockUsers];
+                }
+                for (int blockUserIdx = 0; blockUserIdx < numBlockUsers; blockUserIdx++) {
+                    userIndices[blockUserIdx] = fromUserIdx + blockUserIdx;
+                }
+                recommender.predictAllItems(userIndices, scores);
+                for (int blockUserIdx = 0; blockUserIdx < numBlockUsers; blockUserIdx++) {
+                    batchChecksum += scores[blockUserIdx][(fromUserIdx + blockUserIdx) % numItems];
+                }
+            }
+            long batchTime = System.nanoTime() - start;
+
+            System.out.printf("round %d: predict %.1f ms, predictAllItems %.1f ms, speedup %.1fx (checksum %.6f / %.6f)%n",
+                    round, singleTime / 1e6, batchTime / 1e6, (double) singleTime / batchTime, checksum, batchChecksum);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender;
+
+import net.librec.BaseTestCase;
+import net.librec.data.DataModel;
+import net.librec.data.model.TextDataModel;
+import net.librec.recommender.cf.ranking.BPRRecommender;
+import net.librec.recommender.cf.ranking.WBPRRecommender;
+import net.librec.recommender.cf.rating.ASVDPlusPlusRecommender;
+import net.librec.recommender.cf.rating.BiasedMFRecommender;
+import net.librec.recommender.cf.rating.SVDPlusPlusRecommender;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases about the batched scoring of
+ * {@link net.librec.recommender.MatrixFactorizationRecommender}
+ */
+public class BatchScoringTestCase extends BaseTestCase {
+
+    private RecommenderContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        conf.set("rec.iterator.maximum", "2");
+        DataModel dataModel = new TextDataModel(conf);
+        dataModel.buildDataModel();
+        context = new RecommenderContext(conf, dataModel);
+    }
+
+    private void checkBatchScoring(MatrixFactorizationRecommender recommender) throws Exception {
+        recommender.train(context);
+        assertTrue(recommender.isBatchScoringSupported());
+
+        int[] userIndices = new int[]{0, 3, 5, 8, 13, 21};
+        double[][] scores = new double[userIndices.length][recommender.numItems];
+        recommender.predictAllItems(userIndices, scores);
+        int[] items = new int[]{recommender.numItems - 1, 0, 7};
+        double[] batchScores = new double[items.length];
+        for (int blockUserIdx = 0; blockUserIdx < userIndices.length; blockUserIdx++) {
+            int userIdx = userIndices[blockUserIdx];
+            for (int itemIdx = 0; itemIdx < recommender.numItems; itemIdx++) {
+                assertEquals(recommender.predict(userIdx, itemIdx), scores[blockUserIdx][itemIdx], 1e-10);
+            }
+            recommender.predictBatch(userIdx, items, batchScores);
+            for (int position = 0; position < items.length; position++) {
+                assertEquals(recommender.predict(userIdx, items[position]), batchScores[position], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchScoring() throws Exception {
+        checkBatchScoring(new BPRRecommender());
+        checkBatchScoring(new WBPRRecommender());
+        checkBatchScoring(new BiasedMFRecommender());
+        checkBatchScoring(new SVDPlusPlusRecommender());
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        // ASVD++ overrides predict of BiasedMF without the scoring hooks
+        MatrixFactorizationRecommender recommender = new ASVDPlusPlusRecommender();
+        recommender.setContext(context);
+        assertFalse(recommender.isBatchScoringSupported());
+    }
+}
@@ -53,4 +53,20 @@ public class BPRTestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test the whole process of BPR recommendation trained on several threads
+     *
+     * @throws ClassNotFoundException
+     * @throws LibrecException
+     * @throws IOException
+     */
+    @Test
+    public void testParallelTraining() throws ClassNotFoundException, LibrecException, IOException {
+        Configuration.Resource resource = new Configuration.Resource("rec/cf/ranking/bpr-test.properties");
+        conf.addResource(resource);
+        conf.setInt("rec.train.threads", 4);
+        RecommenderJob job = new RecommenderJob(conf);
+        job.runJob();
+    }
 }
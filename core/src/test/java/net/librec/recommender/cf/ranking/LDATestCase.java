@@ -53,4 +53,21 @@ public class LDATestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test the whole process of LDA recommendation by the alias sampler on two threads
+     *
+     * @throws ClassNotFoundException
+     * @throws LibrecException
+     * @throws IOException
+     */
+    @Test
+    public void testRecommenderByAliasSampler() throws ClassNotFoundException, LibrecException, IOException {
+        Configuration.Resource resource = new Configuration.Resource("rec/cf/ranking/lda-test.properties");
+        conf.addResource(resource);
+        conf.set("rec.topic.sampler", LDARecommender.ALIAS_SAMPLER);
+        conf.set("rec.train.threads", "2");
+        RecommenderJob job = new RecommenderJob(conf);
+        job.runJob();
+    }
 }
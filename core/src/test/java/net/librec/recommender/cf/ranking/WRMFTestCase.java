@@ -25,6 +25,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.file.Files;
 
 /**
  * WRMF Test Case corresponds to WRMFRecommender
@@ -53,4 +54,36 @@ public class WRMFTestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test WRMF solving the users and items on a pool of its own
+     *
+     * @throws ClassNotFoundException
+     * @throws LibrecException
+     * @throws IOException
+     */
+    @Test
+    public void testThreadPool() throws ClassNotFoundException, LibrecException, IOException {
+        Configuration.Resource resource = new Configuration.Resource("rec/cf/ranking/wrmf-test.properties");
+        conf.addResource(resource);
+        conf.set("rec.train.threads", "3");
+        RecommenderJob job = new RecommenderJob(conf);
+        job.runJob();
+    }
+
+    /**
+     * test WRMF weighting a copy of a train matrix mapped read-only
+     *
+     * @throws ClassNotFoundException
+     * @throws LibrecException
+     * @throws IOException
+     */
+    @Test
+    public void testMappedTrainMatrix() throws ClassNotFoundException, LibrecException, IOException {
+        Configuration.Resource resource = new Configuration.Resource("rec/cf/ranking/wrmf-test.properties");
+        conf.addResource(resource);
+        conf.set("data.model.mapped.dir", Files.createTempDirectory("librec-mapped").toString());
+        RecommenderJob job = new RecommenderJob(conf);
+        job.runJob();
+    }
 }
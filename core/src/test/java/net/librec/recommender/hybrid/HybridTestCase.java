@@ -53,4 +53,20 @@ public class HybridTestCase extends BaseTestCase {
 		RecommenderJob job = new RecommenderJob(conf);
 		job.runJob();
 	}
+
+	/**
+	 * test the whole process of Hybrid recommendation with pruned spreading
+	 *
+	 * @throws ClassNotFoundException
+	 * @throws LibrecException
+	 * @throws IOException
+	 */
+	@Test
+	public void testPrunedRecommender() throws ClassNotFoundException, LibrecException, IOException {
+		Configuration.Resource resource = new Configuration.Resource("rec/hybrid/hybrid-test.properties");
+		conf.addResource(resource);
+		conf.set("rec.hybrid.prune.threshold", "0.001");
+		RecommenderJob job = new RecommenderJob(conf);
+		job.runJob();
+	}
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.item;
+
+import net.librec.BaseTestCase;
+import net.librec.math.structure.TopKHeap;
+import net.librec.util.Lists;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases about the compact ranking representation of
+ * {@link net.librec.recommender.item.RecommendedList}
+ */
+public class RecommendedListTestCase extends BaseTestCase {
+
+    @Test
+    public void testKeyValueArrayList() {
+        KeyValueArrayList list = new KeyValueArrayList(1);
+        list.addKeyValue(3, 0.3);
+        list.add(new KeyValue<>(5, 0.5));
+        list.add(0, new KeyValue<>(1, 0.1));
+        assertEquals(3, list.size());
+        assertArrayEquals(new int[]{1, 3, 5}, list.toKeyArray());
+
+        list.set(1, new KeyValue<>(4, 0.4));
+        list.setValue(2, 0.6);
+        assertEquals(4, list.getKey(1));
+        assertEquals(0.6, list.getValue(2), 1e-8);
+        assertEquals(new KeyValue<>(4, 0.4), list.get(1));
+
+        list.remove(0);
+        assertArrayEquals(new int[]{4, 5}, list.toKeyArray());
+        assertArrayEquals(new double[]{0.4, 0.6}, list.toValueArray(), 1e-8);
+    }
+
+    @Test
+    public void testTopNListMatchesSortedTopK() {
+        Random random = new Random(11L);
+        int numItems = 500, topN = 10;
+        List<KeyValue<Integer, Double>> itemValueList = new ArrayList<>();
+        TopKHeap topKHeap = new TopKHeap(topN);
+        for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+            double score = random.nextInt(100) / 10.0;
+            itemValueList.add(new KeyValue<>(itemIdx, score));
+            topKHeap.offer(itemIdx, score);
+        }
+        List<KeyValue<Integer, Double>> expectedList = Lists.sortKeyValueListTopK(itemValueList, true, topN);
+
+        RecommendedList recommendedList = new RecommendedList(1);
+        recommendedList.addList(new ArrayList<>());
+        recommendedList.setTopNList(0, topKHeap);
+        assertEquals(0, topKHeap.size());
+
+        List<KeyValue<Integer, Double>> rankedList = recommendedList.getKeyValueListByContext(0);
+        assertTrue(rankedList instanceof KeyValueArrayList);
+        assertEquals(topN, rankedList.size());
+        for (int position = 0; position < topN; position++) {
+            assertEquals(expectedList.get(position).getValue(), rankedList.get(position).getValue(), 1e-8);
+        }
+        assertEquals(topN, recommendedList.getKeySetByContext(0).size());
+    }
+
+    @Test
+    public void testIterator() {
+        RecommendedList recommendedList = new RecommendedList(2);
+        recommendedList.addList(new KeyValueArrayList());
+        recommendedList.addList(new KeyValueArrayList());
+        recommendedList.add(0, 7, 0.7);
+        recommendedList.add(1, 2, 0.2);
+        recommendedList.add(1, 9, 0.9);
+
+        Iterator<ContextKeyValueEntry> iterator = recommendedList.iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            ContextKeyValueEntry entry = iterator.next();
+            assertEquals(entry.getContextIdx() == 0 ? 0.7 : (entry.getKey() == 2 ? 0.2 : 0.9), entry.getValue(), 1e-8);
+            count++;
+        }
+        assertEquals(3, count);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.mips;
+
+import net.librec.BaseTestCase;
+import net.librec.data.DataModel;
+import net.librec.data.model.TextDataModel;
+import net.librec.eval.ranking.RecallEvaluator;
+import net.librec.math.algorithm.Randoms;
+import net.librec.math.structure.TopKHeap;
+import net.librec.recommender.RecommenderContext;
+import net.librec.recommender.cf.rating.BiasedMFRecommender;
+import net.librec.recommender.item.RecommendedList;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases about the maximum inner product search indexes
+ * {@link net.librec.recommender.mips.HNSWSearch} and
+ * {@link net.librec.recommender.mips.IVFSearch}
+ */
+public class MaximumInnerProductSearchTestCase extends BaseTestCase {
+
+    private double recallAgainstExact(MaximumInnerProductSearch index) {
+        Random random = new Random(3L);
+        int numItems = 3000, dimension = 16, topN = 10, numQueries = 100;
+        double[][] itemVectors = new double[numItems][dimension];
+        for (int item = 0; item < numItems; item++) {
+            // varying norms, as in factor models
+            double scale = 0.5 + random.nextDouble();
+            for (int factorIdx = 0; factorIdx < dimension; factorIdx++) {
+                itemVectors[item][factorIdx] = random.nextGaussian() * scale;
+            }
+        }
+        index.build(itemVectors);
+
+        int[] excludedItems = new int[]{1, 5, 9};
+        int numHits = 0;
+        TopKHeap exactHeap = new TopKHeap(topN);
+        TopKHeap approximateHeap = new TopKHeap(topN);
+        for (int queryIdx = 0; queryIdx < numQueries; queryIdx++) {
+            double[] query = new double[dimension];
+            for (int factorIdx = 0; factorIdx < dimension; factorIdx++) {
+                query[factorIdx] = random.nextGaussian();
+            }
+            exactHeap.clear();
+            for (int item = 0; item < numItems; item++) {
+                if (item != 1 && item != 5 && item != 9) {
+                    double score = 0.0D;
+                    for (int factorIdx = 0; factorIdx < dimension; factorIdx++) {
+                        score += query[factorIdx] * itemVectors[item][factorIdx];
+                    }
+                    exactHeap.offer(item, score);
+                }
+            }
+            Set<Integer> exactItems = new HashSet<>();
+            for (int position = 0; position < exactHeap.size(); position++) {
+                exactItems.add(exactHeap.getIndex(position));
+            }
+
+            approximateHeap.clear();
+            index.search(query, excludedItems, approximateHeap);
+            assertEquals(topN, approximateHeap.size());
+            for (int position = 0; position < approximateHeap.size(); position++) {
+                int item = approximateHeap.getIndex(position);
+                assertTrue(item != 1 && item != 5 && item != 9);
+                if (exactItems.contains(item)) {
+                    numHits++;
+                }
+            }
+        }
+        return numHits / (double) (topN * numQueries);
+    }
+
+    @Test
+    public void testHNSWRecall() {
+        assertTrue(recallAgainstExact(new HNSWSearch(16, 200, 100)) > 0.95);
+    }
+
+    @Test
+    public void testIVFRecall() {
+        assertTrue(recallAgainstExact(new IVFSearch(55, 20, 10)) > 0.9);
+    }
+
+    /**
+     * building an index draws from a stream of its own, not from the one training uses
+     */
+    @Test
+    public void testIndexesKeepRandoms() {
+        Random random = new Random(5L);
+        double[][] itemVectors = new double[200][8];
+        for (double[] itemVector : itemVectors) {
+            for (int factorIdx = 0; factorIdx < itemVector.length; factorIdx++) {
+                itemVector[factorIdx] = random.nextGaussian();
+            }
+        }
+        Randoms.seed(5L);
+        double expected = Randoms.uniform();
+        Randoms.seed(5L);
+        new HNSWSearch(8, 50, 50, 7L).build(itemVectors);
+        new IVFSearch(14, 4, 5, 7L).build(itemVectors);
+        assertEquals(expected, Randoms.uniform(), 0.0D);
+    }
+
+    /**
+     * recall@N of approximate ranking against exact ranking, measured with the ranking evaluator
+     */
+    @Test
+    public void testApproximateRanking() throws Exception {
+        conf.set("rec.iterator.maximum", "5");
+        conf.set("rec.recommender.isranking", "true");
+        DataModel dataModel = new TextDataModel(conf);
+        dataModel.buildDataModel();
+        RecommenderContext context = new RecommenderContext(conf, dataModel);
+        BiasedMFRecommender recommender = new BiasedMFRecommender();
+        recommender.train(context);
+
+        RecallEvaluator evaluator = new RecallEvaluator();
+        evaluator.setTopN(10);
+        RecommendedList exactList = recommender.recommendRank();
+
+        conf.set("rec.recommender.ranking.retrieval", "hnsw");
+        double hnswRecall = evaluator.evaluate(exactList, recommender.recommendRank());
+        conf.set("rec.recommender.ranking.retrieval", "ivf");
+        conf.setInt("rec.mips.ivf.probes", 16);
+        double ivfRecall = evaluator.evaluate(exactList, recommender.recommendRank());
+        assertTrue("hnsw recall@10 against exact ranking " + hnswRecall, hnswRecall > 0.9);
+        assertTrue("ivf recall@10 against exact ranking " + ivfRecall, ivfRecall > 0.8);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2016 LibRec
+ *
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.similarity;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import net.librec.BaseTestCase;
+import net.librec.math.structure.SequentialAccessSparseMatrix;
+import net.librec.math.structure.SequentialSparseVector;
+import net.librec.math.structure.SymmMatrix;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases about the inverted index similarity build of
+ * {@link net.librec.similarity.AbstractRecommenderSimilarity}
+ */
+public class AllPairsSimilarityTestCase extends BaseTestCase {
+
+    private SequentialAccessSparseMatrix randomMatrix(int rows, int columns, double density) {
+        Random random = new Random(7L);
+        Table<Integer, Integer, Double> table = HashBasedTable.create();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (random.nextDouble() < density) {
+                    table.put(row, column, 1.0 + random.nextInt(5));
+                }
+            }
+        }
+        // make sure the last row and column are not empty
+        table.put(rows - 1, columns - 1, 3.0);
+        return new SequentialAccessSparseMatrix(rows, columns, table);
+    }
+
+    private void checkAgainstPairwise(AbstractRecommenderSimilarity similarity, boolean isUser) {
+        SequentialAccessSparseMatrix matrix = randomMatrix(40, 30, 0.3);
+        similarity.conf = conf;
+        similarity.buildSimilarityMatrix(matrix, isUser);
+        SymmMatrix simMatrix = similarity.getSimilarityMatrix();
+
+        int count = isUser ? matrix.rowSize() : matrix.columnSize();
+        for (int thisIndex = 0; thisIndex < count; thisIndex++) {
+            SequentialSparseVector thisVector = isUser ? matrix.row(thisIndex) : matrix.column(thisIndex);
+            for (int thatIndex = thisIndex + 1; thatIndex < count; thatIndex++) {
+                SequentialSparseVector thatVector = isUser ? matrix.row(thatIndex) : matrix.column(thatIndex);
+                double sim = similarity.getCorrelation(thisVector, thatVector);
+                if (Double.isNaN(sim) || sim == 0.0) {
+                    assertEquals(0.0, simMatrix.get(thisIndex, thatIndex), 1e-10);
+                } else {
+                    assertEquals(sim, simMatrix.get(thisIndex, thatIndex), 1e-10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDecomposableMeasures() {
+        conf.setInt("rec.similarity.shrinkage", 5);
+        AbstractRecommenderSimilarity[] similarities = new AbstractRecommenderSimilarity[]{
+                new CosineSimilarity(), new PCCSimilarity(), new MSDSimilarity(), new MSESimilarity(),
+                new DiceCoefficientSimilarity(), new ExJaccardSimilarity(), new JaccardSimilarity(),
+                new BinaryCosineSimilarity()};
+        for (AbstractRecommenderSimilarity similarity : similarities) {
+            checkAgainstPairwise(similarity, true);
+            checkAgainstPairwise(similarity, false);
+        }
+    }
+
+    @Test
+    public void testNonDecomposableMeasure() {
+        checkAgainstPairwise(new KRCCSimilarity(), true);
+    }
+
+    /**
+     * Test that the deprecated list method still works for the measures which
+     * do not override it, and agrees with the primitive one.
+     */
+    @Test
+    public void testDeprecatedListSimilarity() {
+        conf.setInt("rec.similarity.shrinkage", 5);
+        AbstractRecommenderSimilarity[] similarities = new AbstractRecommenderSimilarity[]{
+                new CosineSimilarity(), new PCCSimilarity(), new MSDSimilarity(), new KRCCSimilarity()};
+        Random random = new Random(13L);
+        int size = 20;
+        double[] thisValues = new double[size];
+        double[] thatValues = new double[size];
+        List<Double> thisList = new ArrayList<>();
+        List<Double> thatList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            thisValues[i] = 1.0 + random.nextInt(5);
+            thatValues[i] = 1.0 + random.nextInt(5);
+            thisList.add(thisValues[i]);
+            thatList.add(thatValues[i]);
+        }
+        for (AbstractRecommenderSimilarity similarity : similarities) {
+            similarity.conf = conf;
+            assertEquals(similarity.getSimilarity(thisValues, thatValues, size),
+                    similarity.getSimilarity(thisList, thatList), 1e-10);
+        }
+    }
+
+    @Test
+    public void testTopK() {
+        conf.setInt("rec.similarity.topk", 3);
+        SequentialAccessSparseMatrix matrix = randomMatrix(40, 30, 0.3);
+        CosineSimilarity similarity = new CosineSimilarity();
+        similarity.conf = conf;
+        similarity.buildSimilarityMatrix(matrix, true);
+        SymmMatrix simMatrix = similarity.getSimilarityMatrix();
+
+        for (int thisIndex = 0; thisIndex < matrix.rowSize(); thisIndex++) {
+            // the k best neighbours of every row are kept, so nothing dropped beats the k-th kept value
+            SequentialSparseVector simVector = simMatrix.row(thisIndex);
+            assertTrue(simVector.getNumEntries() >= 3);
+            double[] keptValues = new double[simVector.getNumEntries()];
+            for (int position = 0; position < keptValues.length; position++) {
+                keptValues[position] = -simVector.getAtPosition(position);
+            }
+            Arrays.sort(keptValues);
+            double threshold = -keptValues[2];
+
+            int numBetter = 0;
+            for (int thatIndex = 0; thatIndex < matrix.rowSize(); thatIndex++) {
+                if (thatIndex != thisIndex && !simMatrix.contains(thisIndex, thatIndex)) {
+                    double sim = similarity.getCorrelation(matrix.row(thisIndex), matrix.row(thatIndex));
+                    if (sim > threshold) {
+                        numBetter++;
+                    }
+                }
+            }
+            assertEquals(0, numBetter);
+        }
+    }
+}
@@ -21,8 +21,10 @@ import net.librec.math.structure.SequentialSparseVector
 import net.librec.spark.Correlation.Correlation
 import net.librec.spark.math.structure.IndexedVector
 import net.librec.spark.{LibrecConf, Similarity}
+import org.apache.spark.mllib.rdd.MLPairRDDFunctions._
 import org.apache.spark.rdd.RDD
 
+import scala.collection.mutable
 import scala.collection.mutable.ArrayBuffer
 
 class SimilarityFunctions(rdd: RDD[IndexedVector]) {
@@ -31,40 +33,125 @@ class SimilarityFunctions(rdd: RDD[IndexedVector]) {
     * Calculate Recommender Similarity, such as cosine, Pearson, Jaccard
     * similarity, etc.
     *
+    * The vectors are split into as many blocks as the RDD has partitions, and
+    * the top rec.similarity.topk neighbours of every vector are kept if it is
+    * positive, see the block by block computeSimilarity.
+    *
     * @param correlation the method of calculate similarity between thisVector and thatVector.
     * @param conf
     * @return all recommender similarity
     */
   def computeSimilarity(correlation: Correlation, conf: LibrecConf): RDD[(Int, (Int, Double))] = {
-    val vectorRDD = rdd.mapPartitions({iter =>
-      val localVectors = ArrayBuffer[(Int, SequentialSparseVector)]()
-      while (iter.hasNext) {
-        val indexedVector = iter.next()
-        localVectors.+=((indexedVector.getIndex, indexedVector.asLocalVector.asInstanceOf[SequentialSparseVector]))
+    computeSimilarity(correlation, conf, conf.getInt("rec.similarity.topk", 0), rdd.getNumPartitions)
+  }
+
+  /**
+    * Calculate Recommender Similarity block by block.
+    *
+    * Every vector is assigned to one of numBlocks blocks by its index and sent
+    * to the numBlocks pairs of blocks it belongs to. A task thus holds two
+    * blocks of vectors rather than the whole dataset, and computes every pair
+    * of vectors of its blocks once. Within a task only the pairs sharing at
+    * least one rated entry are visited, found with an inverted index, since
+    * the others have no similarity.
+    *
+    * @param correlation the method of calculate similarity between thisVector and thatVector.
+    * @param conf
+    * @param topK        if positive, the number of most similar neighbours kept per
+    *                    vector, both (thisIndex, (thatIndex, sim)) and
+    *                    (thatIndex, (thisIndex, sim)) being candidates; otherwise all
+    *                    similarities (thisIndex, (thatIndex, sim)) with thisIndex < thatIndex
+    * @param numBlocks   the number of blocks
+    * @return recommender similarity
+    */
+  def computeSimilarity(correlation: Correlation, conf: LibrecConf, topK: Int, numBlocks: Int): RDD[(Int, (Int, Double))] = {
+    require(numBlocks > 0, "the number of blocks should be positive, but is " + numBlocks)
+    val blockPairVectors = rdd.flatMap { indexedVector =>
+      val block = SimilarityFunctions.blockOf(indexedVector.getIndex, numBlocks)
+      (0 until numBlocks).iterator.map { otherBlock =>
+        ((math.min(block, otherBlock), math.max(block, otherBlock)), indexedVector)
       }
-      localVectors.iterator
-    }, true)
-    val ratingVectors = rdd.sparkContext.broadcast(vectorRDD.collect())
-    vectorRDD.mapPartitions({ iter =>
-      val vectors = ratingVectors.value
-      val similarities = ArrayBuffer[(Int, (Int, Double))]()
-      while (iter.hasNext) {
-        val thisVector = iter.next()
-        vectors.map { thatVector =>
-          if (thisVector._1 < thatVector._1) {
-            val sim = Similarity.getCorrelation(correlation, thisVector._2, thatVector._2, conf)
-            if (sim == sim && sim != 0.0D) { // Return the specified number is Not-a-Number (NaN) value and unequals 0.0D
-              similarities.+=((thisVector._1, (thatVector._1, sim)))
-            }
-          }
-        }
+    }
+
+    val similarities = blockPairVectors.groupByKey().flatMap { case ((thisBlock, thatBlock), indexedVectors) =>
+      val vectors = indexedVectors.iterator.map { indexedVector =>
+        (indexedVector.getIndex, indexedVector.asLocalVector.asInstanceOf[SequentialSparseVector])
+      }.toArray
+      val (thisVectors, thatVectors) = if (thisBlock == thatBlock) {
+        (vectors, vectors)
+      } else {
+        vectors.partition(vector => SimilarityFunctions.blockOf(vector._1, numBlocks) == thisBlock)
       }
-      similarities.iterator
-    }, true)
+      SimilarityFunctions.blockSimilarities(correlation, conf, thisVectors, thatVectors, thisBlock == thatBlock)
+    }
+
+    if (topK > 0) {
+      similarities.flatMap { case (thisIndex, (thatIndex, sim)) =>
+        Iterator((thisIndex, (thatIndex, sim)), (thatIndex, (thisIndex, sim)))
+      }.topByKey(topK)(Ordering.by[(Int, Double), Double](_._2))
+        .flatMap { case (thisIndex, neighbours) => neighbours.iterator.map(neighbour => (thisIndex, neighbour)) }
+    } else {
+      similarities
+    }
   }
 
 }
 
 object SimilarityFunctions {
   implicit def addSimilarityFunctions(rdd: RDD[IndexedVector]) = new SimilarityFunctions(rdd)
+
+  private def blockOf(index: Int, numBlocks: Int): Int = Math.floorMod(index, numBlocks)
+
+  /**
+    * Compute the similarities between the vectors of two blocks which share at
+    * least one rated entry, as (lowerIndex, (upperIndex, sim)).
+    *
+    * @param sameBlock true if both arrays hold the same block, whose pairs are then computed once
+    */
+  private def blockSimilarities(correlation: Correlation,
+                                conf: LibrecConf,
+                                thisVectors: Array[(Int, SequentialSparseVector)],
+                                thatVectors: Array[(Int, SequentialSparseVector)],
+                                sameBlock: Boolean): Iterator[(Int, (Int, Double))] = {
+    // inverted index: entry index -> positions of the vectors of that block rating it
+    val postings = mutable.HashMap[Int, ArrayBuffer[Int]]()
+    for (thatPosition <- thatVectors.indices) {
+      val thatVector = thatVectors(thatPosition)._2
+      for (position <- 0 until thatVector.getNumEntries) {
+        postings.getOrElseUpdate(thatVector.getIndexAtPosition(position), ArrayBuffer[Int]()) += thatPosition
+      }
+    }
+
+    val similarities = ArrayBuffer[(Int, (Int, Double))]()
+    val visited = Array.fill(thatVectors.length)(-1)
+    val candidates = ArrayBuffer[Int]()
+    for (thisPosition <- thisVectors.indices) {
+      val (thisIndex, thisVector) = thisVectors(thisPosition)
+      candidates.clear()
+      for (position <- 0 until thisVector.getNumEntries) {
+        postings.get(thisVector.getIndexAtPosition(position)).foreach { thatPositions =>
+          thatPositions.foreach { thatPosition =>
+            if (visited(thatPosition) != thisPosition) {
+              visited(thatPosition) = thisPosition
+              candidates += thatPosition
+            }
+          }
+        }
+      }
+      candidates.foreach { thatPosition =>
+        val (thatIndex, thatVector) = thatVectors(thatPosition)
+        if (!sameBlock || thisIndex < thatIndex) {
+          val sim = if (thisIndex < thatIndex) {
+            Similarity.getCorrelation(correlation, thisVector, thatVector, conf)
+          } else {
+            Similarity.getCorrelation(correlation, thatVector, thisVector, conf)
+          }
+          if (sim == sim && sim != 0.0D) { // Return the specified number is Not-a-Number (NaN) value and unequals 0.0D
+            similarities += ((math.min(thisIndex, thatIndex), (math.max(thisIndex, thatIndex), sim)))
+          }
+        }
+      }
+    }
+    similarities.iterator
+  }
 }
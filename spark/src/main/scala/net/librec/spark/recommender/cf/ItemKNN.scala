@@ -8,7 +8,6 @@ import net.librec.spark.rdd.StatisticalFunctions._
 import net.librec.spark.recommender.Recommender
 
 import scala.collection.mutable
-import scala.collection.mutable.ArrayBuffer
 
 /**
   * ItemKNNRecommender
@@ -37,6 +36,11 @@ class ItemKNN(val knn: Int,
     * All training sample denoted by Vectors
     */
   var trainVectors: RDD[IndexedVector] = _
+  /**
+    * The maximum number of similarities of the predicted items broadcast to
+    * the executors, more are joined with the ratings instead
+    */
+  var maxBroadcastSimilarities: Long = KNNPrediction.DefaultMaxBroadcastSimilarities
 
   /**
     * @see net.librec.spark.recommender.Recommender#train()
@@ -55,55 +59,36 @@ class ItemKNN(val knn: Int,
     val predUsersBC = sc.broadcast(userItems.map(_._1).toSet)
     val predItemsBC = sc.broadcast(userItems.map(_._2).toSet)
 
-    // get all <predItem, simiItem> pairs of predItems
+    // get all <simiItem, (predItem, score)> pairs of predItems
     val predItemSimiItemPairs = similarityData.filter { similarity =>
       val predItems = predItemsBC.value
-      if (predItems.contains(similarity._1)) {
-        if (similarity._2._2 > 0) true else false
-      } else false
+      predItems.contains(similarity._1) && similarity._2._2 > 0
     }.map { case (predItem, (simiItem, score)) => (simiItem, (predItem, score)) }
 
-    // get all <predUser, ratedItem> pairs of predUsers
+    // get all <ratedItem, (predUser, deviation)> pairs of predUsers
+    val itemMeansBC = sc.broadcast(itemMeans.toMap)
+    val (ranking, defaultRate) = (isRanking, globalMean)
     val predUserRatedItemPairs = trainData.filter { rating =>
       val predUsers = predUsersBC.value
-      if (predUsers.contains(rating.user)) true else false
-    }.map(rat => (rat.item, (rat.user, rat.rate)))
+      predUsers.contains(rating.user)
+    }.mapPartitions { iter =>
+      val itemMeans = itemMeansBC.value
+      iter.map(rat => (rat.item, (rat.user, if (ranking) 0.0 else rat.rate - itemMeans.getOrElse(rat.item, 0.0))))
+    }
 
-    if (isRanking) {
-      predItemSimiItemPairs.join(predUserRatedItemPairs)
-        .map { case (simiItem, ((predItem, score), (predUser, rate))) =>
-          (predUser + "_" + predItem, score)
-        }.aggregateByKey(ArrayBuffer[Double]())(_ += _, _ ++ _)
-        .map { case (predUserItem, scores) =>
-          val predUserItemArr = predUserItem.split("_", 2)
-          Rating(predUserItemArr(0).toInt, predUserItemArr(1).toInt, scores.sortWith(_ < _).take(knn).sum)
-        }
-    } else {
-      val itemMeansBC = sc.broadcast(itemMeans.toMap)
-      predItemSimiItemPairs.join(predUserRatedItemPairs)
-        .mapPartitions { iter =>
-          val itemMeans = itemMeansBC.value
-          iter.map { case (simiItem, ((predItem, score), (predUser, rate))) =>
-            val mean = itemMeans.getOrElse(simiItem, 0.0)
-            (predUser + "_" + predItem, (rate, score, mean))
-          }
-        }.aggregateByKey(ArrayBuffer[(Double, Double, Double)]())(_ += _, _ ++ _)
-        .mapPartitions { iter =>
-          val itemMeans = itemMeansBC.value
-          iter.map { case (predUserItem, rateScores) =>
-            val predUserItemArr = predUserItem.split("_", 2)
-            val (predUser, predItem) = (predUserItemArr(0).toInt, predUserItemArr(1).toInt)
-            var sum, ws = 0.0
-            rateScores.sortWith((rateScore1, rateScore2) => rateScore1._2.compareTo(rateScore2._2) > 0).take(knn).foreach { case (rate, score, mean) =>
-              sum += score * (rate - mean)
-              ws += Math.abs(score)
-            }
-            val predRate = if (ws > 0) itemMeans.getOrElse(predItem, 0.0) + sum / ws else globalMean
-            Rating(predUser, predItem, predRate)
-          }
+    KNNPrediction.topNeighbours(predItemSimiItemPairs, predUserRatedItemPairs, targetIsItem = true, knn,
+      maxBroadcastSimilarities).mapPartitions { iter =>
+      val itemMeans = itemMeansBC.value
+      iter.map { case (predUserItem, neighbours) =>
+        val (predUser, predItem) = (KNNPrediction.unpackUser(predUserItem), KNNPrediction.unpackItem(predUserItem))
+        val predRate = if (ranking) {
+          neighbours.scoreSum
+        } else {
+          neighbours.weightedRating(itemMeans.getOrElse(predItem, 0.0), defaultRate)
         }
+        Rating(predUser, predItem, predRate)
+      }
     }
-
   }
 
   /**
@@ -0,0 +1,174 @@
+package net.librec.spark.recommender.cf
+
+import org.apache.spark.rdd.RDD
+import org.apache.spark.storage.StorageLevel
+
+/**
+  * Shared prediction path of ItemKNN and UserKNN.
+  *
+  * A candidate contributes a neighbour, its similarity score and the
+  * deviation of the neighbour's rating from its mean to a (user, item) pair.
+  * Pairs are keyed by a packed Long instead of a string, and the candidates
+  * of a pair are reduced into a bounded [[TopNeighbours]] rather than
+  * collected into a buffer and sorted.
+  */
+private[cf] object KNNPrediction {
+
+  /**
+    * The default maximum number of similarities of the predicted users or
+    * items broadcast to the executors instead of being joined.
+    */
+  val DefaultMaxBroadcastSimilarities: Long = 1L << 22
+
+  def pack(user: Int, item: Int): Long = (user.toLong << 32) | (item & 0xFFFFFFFFL)
+
+  def unpackUser(userItem: Long): Int = (userItem >>> 32).toInt
+
+  def unpackItem(userItem: Long): Int = userItem.toInt
+
+  /**
+    * Reduce the candidates of every (user, item) pair to its knn most similar
+    * neighbours, the one of lower index being kept among neighbours of equal
+    * score, whatever the partitioning or the path taken.
+    *
+    * @param similarities           (neighbour, (target, score)) for the predicted targets
+    * @param ratings                (neighbour, (other, deviation)) of the neighbours' ratings
+    * @param targetIsItem           true if targets are items and others users (ItemKNN),
+    *                               false if targets are users and others items (UserKNN)
+    * @param knn                    the number of neighbours
+    * @param maxBroadcastSimilarities the similarities are broadcast and looked up while
+    *                               scanning the ratings if there are at most so many,
+    *                               otherwise they are joined with the ratings
+    * @return packed (user, item) and its neighbours
+    */
+  def topNeighbours(similarities: RDD[(Int, (Int, Double))],
+                    ratings: RDD[(Int, (Int, Double))],
+                    targetIsItem: Boolean,
+                    knn: Int,
+                    maxBroadcastSimilarities: Long): RDD[(Long, TopNeighbours)] = {
+    // counting runs the similarity lineage, keep its result for the lookup table or the join
+    similarities.persist(StorageLevel.MEMORY_AND_DISK)
+    val candidates: RDD[(Long, (Int, Double, Double))] = if (similarities.count() <= maxBroadcastSimilarities) {
+      val similarityTable = similarities.groupByKey().mapValues(_.toArray).collectAsMap()
+      similarities.unpersist(blocking = false)
+      val similarityTableBC = ratings.sparkContext.broadcast(similarityTable)
+      ratings.mapPartitions { iter =>
+        val similarityTable = similarityTableBC.value
+        iter.flatMap { case (neighbour, (other, deviation)) =>
+          similarityTable.get(neighbour) match {
+            case Some(targets) => targets.iterator.map { case (target, score) =>
+              (userItem(target, other, targetIsItem), (neighbour, score, deviation))
+            }
+            case None => Iterator.empty
+          }
+        }
+      }
+    } else {
+      similarities.join(ratings).map { case (neighbour, ((target, score), (other, deviation))) =>
+        (userItem(target, other, targetIsItem), (neighbour, score, deviation))
+      }
+    }
+    candidates.aggregateByKey(new TopNeighbours(knn))(_.add(_), _.merge(_))
+  }
+
+  private def userItem(target: Int, other: Int, targetIsItem: Boolean): Long = {
+    if (targetIsItem) pack(other, target) else pack(target, other)
+  }
+}
+
+/**
+  * The neighbours of highest similarity score among those added, at most
+  * capacity, in a heap whose root is the worst neighbour kept: the one of
+  * lowest score, and of highest index among those of equal score.
+  *
+  * @param capacity the maximum number of neighbours kept
+  */
+private[cf] class TopNeighbours(val capacity: Int) extends Serializable {
+  private val neighbours = new Array[Int](math.max(capacity, 0))
+  private val scores = new Array[Double](math.max(capacity, 0))
+  private val deviations = new Array[Double](math.max(capacity, 0))
+  private var size = 0
+
+  def add(candidate: (Int, Double, Double)): TopNeighbours = {
+    add(candidate._1, candidate._2, candidate._3)
+  }
+
+  def add(neighbour: Int, score: Double, deviation: Double): TopNeighbours = {
+    if (size < scores.length) {
+      var position = size
+      size += 1
+      while (position > 0 && isWorse(neighbour, score, neighbours((position - 1) / 2), scores((position - 1) / 2))) {
+        move((position - 1) / 2, position)
+        position = (position - 1) / 2
+      }
+      set(position, neighbour, score, deviation)
+    } else if (size > 0 && isWorse(neighbours(0), scores(0), neighbour, score)) {
+      var position = 0
+      var child = 1
+      while (child < size) {
+        if (child + 1 < size && isWorse(neighbours(child + 1), scores(child + 1), neighbours(child), scores(child))) {
+          child += 1
+        }
+        if (isWorse(neighbours(child), scores(child), neighbour, score)) {
+          move(child, position)
+          position = child
+          child = 2 * position + 1
+        } else {
+          child = size
+        }
+      }
+      set(position, neighbour, score, deviation)
+    }
+    this
+  }
+
+  def merge(other: TopNeighbours): TopNeighbours = {
+    for (position <- 0 until other.size) {
+      add(other.neighbours(position), other.scores(position), other.deviations(position))
+    }
+    this
+  }
+
+  /**
+    * @return true if the neighbour of lower score, or of higher index at equal
+    *         score, is the first one
+    */
+  private def isWorse(neighbour: Int, score: Double, otherNeighbour: Int, otherScore: Double): Boolean = {
+    score < otherScore || (score == otherScore && neighbour > otherNeighbour)
+  }
+
+  private def move(from: Int, to: Int): Unit = {
+    set(to, neighbours(from), scores(from), deviations(from))
+  }
+
+  private def set(position: Int, neighbour: Int, score: Double, deviation: Double): Unit = {
+    neighbours(position) = neighbour
+    scores(position) = score
+    deviations(position) = deviation
+  }
+
+  /**
+    * @return the sum of the scores
+    */
+  def scoreSum: Double = {
+    var sum = 0.0
+    for (position <- 0 until size) {
+      sum += scores(position)
+    }
+    sum
+  }
+
+  /**
+    * @param mean   the mean rating of the target
+    * @param globalMean the prediction without neighbours
+    * @return the mean plus the similarity weighted deviations
+    */
+  def weightedRating(mean: Double, globalMean: Double): Double = {
+    var sum, ws = 0.0
+    for (position <- 0 until size) {
+      sum += scores(position) * deviations(position)
+      ws += Math.abs(scores(position))
+    }
+    if (ws > 0) mean + sum / ws else globalMean
+  }
+}
@@ -26,7 +26,6 @@ import net.librec.spark.rdd.StatisticalFunctions._
 import net.librec.spark.recommender.Recommender
 
 import scala.collection.mutable
-import scala.collection.mutable.ArrayBuffer
 
 /**
   * UserKNNRecommender
@@ -56,6 +55,11 @@ class UserKNN(val knn: Int,
     * All training sample denoted by Vectors
     */
   var trainVectors: RDD[IndexedVector] = _
+  /**
+    * The maximum number of similarities of the predicted users broadcast to
+    * the executors, more are joined with the ratings instead
+    */
+  var maxBroadcastSimilarities: Long = KNNPrediction.DefaultMaxBroadcastSimilarities
 
   /**
     * @see net.librec.spark.recommender.Recommender#train()
@@ -74,51 +78,35 @@ class UserKNN(val knn: Int,
     val predUsersBC = sc.broadcast(userItems.map(_._1).toSet)
     val predItemsBC = sc.broadcast(userItems.map(_._2).toSet)
 
-    // get all <predUser, simiUser> pairs of predUsers
+    // get all <simiUser, (predUser, score)> pairs of predUsers
     val predUserSimiUserPairs = similarityData.filter { similarity =>
       val predUsers = predUsersBC.value
-      if (predUsers.contains(similarity._1)) true else false
+      predUsers.contains(similarity._1)
     }.map { case (predUser, (simiUser, score)) => (simiUser, (predUser, score)) }
 
-    // get all <predItem, ratingUser> pairs of predItems
+    // get all <ratingUser, (predItem, deviation)> pairs of predItems
+    val userMeansBC = sc.broadcast(userMeans.toMap)
+    val (ranking, defaultRate) = (isRanking, globalMean)
     val predItemRatingUserPairs = trainData.filter { rating =>
       val predItems = predItemsBC.value
-      if (predItems.contains(rating.item)) true else false
-    }.map(rat => (rat.user, (rat.item, rat.rate)))
+      predItems.contains(rating.item)
+    }.mapPartitions { iter =>
+      val userMeans = userMeansBC.value
+      iter.map(rat => (rat.user, (rat.item, if (ranking) 0.0 else rat.rate - userMeans.getOrElse(rat.user, 0.0))))
+    }
 
-    if (isRanking) {
-      predUserSimiUserPairs.join(predItemRatingUserPairs)
-        .map { case (simiRatingUser, ((predUser, score), (predItem, rate))) =>
-          (predUser + "_" + predItem, score)
-        }.aggregateByKey(ArrayBuffer[Double]())(_ += _, _ ++ _)
-        .map { case (predUserItem, scores) =>
-          val predUserItemArr = predUserItem.split("_", 2)
-          Rating(predUserItemArr(0).toInt, predUserItemArr(1).toInt, scores.sortWith(_ < _).take(knn).sum)
-        }
-    } else {
-      val userMeansBC = sc.broadcast(userMeans.toMap)
-      predUserSimiUserPairs.join(predItemRatingUserPairs)
-        .mapPartitions { iter =>
-          val userMeans = userMeansBC.value
-          iter.map { case (simiRatingUser, ((predUser, score), (predItem, rate))) =>
-            val mean = userMeans.getOrElse(simiRatingUser, 0.0)
-            (predUser + "_" + predItem, (rate, score, mean))
-          }
-        }.aggregateByKey(ArrayBuffer[(Double, Double, Double)]())(_ += _, _ ++ _)
-        .mapPartitions { iter =>
-          val userMeans = userMeansBC.value
-          iter.map { case (predUserItem, rateScores) =>
-            val predUserItemArr = predUserItem.split("_", 2)
-            val (predUser, predItem) = (predUserItemArr(0).toInt, predUserItemArr(1).toInt)
-            var sum, ws = 0.0
-            rateScores.sortWith((rateScore1, rateScore2) => rateScore1._2.compareTo(rateScore2._2) > 0).take(knn).foreach { case (rate, score, mean) =>
-              sum += score * (rate - mean)
-              ws += Math.abs(score)
-            }
-            val predRate = if (ws > 0) userMeans.getOrElse(predUser, 0.0) + sum / ws else globalMean
-            Rating(predUser, predItem, predRate)
-          }
+    KNNPrediction.topNeighbours(predUserSimiUserPairs, predItemRatingUserPairs, targetIsItem = false, knn,
+      maxBroadcastSimilarities).mapPartitions { iter =>
+      val userMeans = userMeansBC.value
+      iter.map { case (predUserItem, neighbours) =>
+        val (predUser, predItem) = (KNNPrediction.unpackUser(predUserItem), KNNPrediction.unpackItem(predUserItem))
+        val predRate = if (ranking) {
+          neighbours.scoreSum
+        } else {
+          neighbours.weightedRating(userMeans.getOrElse(predUser, 0.0), defaultRate)
         }
+        Rating(predUser, predItem, predRate)
+      }
     }
   }
 
@@ -1,6 +1,6 @@
 package net.librec.spark
 
-import net.librec.spark.data.DataConverter
+import net.librec.spark.data.{DataConverter, Rating}
 import net.librec.spark.rdd.SimilarityFunctions._
 import net.librec.spark.rdd.StatisticalFunctions
 
@@ -26,4 +26,23 @@ class SimilarityTestCase extends BaseTestSuite{
     val rdd = dataConverter.convertText("file:///E:/workspace/my_workspace/librec/librec/data/spark/rating/ratings.txt")
     val similarity = StatisticalFunctions.toIndexedSparseVectors(rdd).computeSimilarity(Correlation.BCOS, conf).foreach(println)
   }
+
+  test("BlockSimilarityTestCase") {
+    val random = new scala.util.Random(7L)
+    val ratings = for (user <- 0 until 60; item <- 0 until 40 if random.nextDouble() < 0.2)
+      yield Rating(user, item, 1.0 + random.nextInt(5))
+    val vectors = StatisticalFunctions.toIndexedSparseVectors(lc.sparkContext.parallelize(ratings, 3))
+
+    val expected = vectors.computeSimilarity(Correlation.COS, conf, 0, 1)
+      .map { case (thisIndex, (thatIndex, sim)) => ((thisIndex, thatIndex), sim) }.collect().toMap
+    val actual = vectors.computeSimilarity(Correlation.COS, conf, 0, 4).collect()
+    assert(actual.length == expected.size)
+    actual.foreach { case (thisIndex, (thatIndex, sim)) =>
+      assert(thisIndex < thatIndex)
+      assert(scala.math.abs(expected((thisIndex, thatIndex)) - sim) < 1e-10)
+    }
+
+    val topK = vectors.computeSimilarity(Correlation.COS, conf, 5, 4).groupByKey().collect()
+    topK.foreach { case (thisIndex, neighbours) => assert(neighbours.size <= 5) }
+  }
 }
@@ -2,7 +2,7 @@ package net.librec.spark.recommender
 
 import net.librec.recommender.item.RecommendedList
 import net.librec.spark.{BaseTestSuite, _}
-import net.librec.spark.data.DataConverter
+import net.librec.spark.data.{DataConverter, Rating}
 import net.librec.spark.rdd.SimilarityFunctions._
 import net.librec.spark.rdd.SplitterFunctions._
 import net.librec.spark.rdd.StatisticalFunctions
@@ -74,4 +74,34 @@ class ItemKNNTestCase extends BaseTestSuite {
     lc.stop()
   }
 
+  test("ItemKNNBroadcastTestCase") {
+    val conf = new LibrecConf().setMaster(master).setAppName(appName)
+    val lc = new LibrecContext(conf)
+    val random = new scala.util.Random(7L)
+    val ratings = for (user <- 0 until 200; item <- 0 until 100 if random.nextDouble() < 0.1)
+      yield Rating(user, item, 1.0 + random.nextInt(5))
+    val predictArr = (for (user <- 0 until 200 by 7; item <- 0 until 100 by 3) yield (user, item)).toArray
+
+    for (isRanking <- Seq(true, false)) {
+      // neighbours of equal score are chosen alike whatever the partitioning
+      val results = Seq((0L, 4), (Long.MaxValue, 4), (Long.MaxValue, 1)).map { case (maxBroadcastSimilarities, numSlices) =>
+        val trainData = lc.sparkContext.parallelize(ratings, numSlices)
+        val similarity = StatisticalFunctions.toIndexedSparseVectors(trainData, "item").computeSimilarity(Correlation.COS, conf)
+        val itemKNN = new ItemKNN(knn = 3, isRanking = isRanking, trainData = trainData, similarityData = similarity)
+        itemKNN.maxBroadcastSimilarities = maxBroadcastSimilarities
+        itemKNN.train()
+        val startTime = System.currentTimeMillis()
+        val predictResult = itemKNN.predict(predictArr).map(rat => ((rat.user, rat.item), rat.rate)).collect().toMap
+        println("---maxBroadcastSimilarities " + maxBroadcastSimilarities + ", " + numSlices + " slices: "
+          + predictResult.size + " predictions in " + (System.currentTimeMillis() - startTime) + " ms")
+        predictResult
+      }
+      results.tail.foreach { result =>
+        assert(result.keySet == results.head.keySet)
+        results.head.foreach { case (userItem, rate) => assert(scala.math.abs(result(userItem) - rate) < 1e-10) }
+      }
+    }
+
+    lc.stop()
+  }
 }